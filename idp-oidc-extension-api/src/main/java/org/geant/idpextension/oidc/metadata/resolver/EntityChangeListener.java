@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.resolver;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Listener notified of the entities changed by a refresh of a resolver, for invalidating only the affected entries of
+ * the caches built on the resolved entities instead of flushing them.
+ * 
+ * @param <Key> The identifier type of the entities.
+ */
+public interface EntityChangeListener<Key> {
+
+    /**
+     * Called after a refresh has made the changed entities available.
+     * 
+     * @param changes the entities added, updated and removed by the refresh
+     */
+    void onChange(@Nonnull EntityChangeSet<Key> changes);
+}
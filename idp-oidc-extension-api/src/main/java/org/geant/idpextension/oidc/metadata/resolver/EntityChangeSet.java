@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.resolver;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
+
+/**
+ * The identifiers of the entities added, updated and removed by a refresh of a resolver, for targeted invalidation of
+ * the caches built on the resolved entities.
+ * 
+ * @param <Key> The identifier type of the entities.
+ */
+public final class EntityChangeSet<Key> {
+
+    /** The identifier of the resolver that was refreshed. */
+    @Nullable
+    private final String source;
+
+    /** The identifiers of the added entities. */
+    @Nonnull
+    @NonnullElements
+    private final Set<Key> added;
+
+    /** The identifiers of the updated entities. */
+    @Nonnull
+    @NonnullElements
+    private final Set<Key> updated;
+
+    /** The identifiers of the removed entities. */
+    @Nonnull
+    @NonnullElements
+    private final Set<Key> removed;
+
+    /**
+     * Constructor.
+     * 
+     * @param resolverId the identifier of the resolver that was refreshed
+     * @param addedKeys the identifiers of the added entities
+     * @param updatedKeys the identifiers of the updated entities
+     * @param removedKeys the identifiers of the removed entities
+     */
+    public EntityChangeSet(@Nullable final String resolverId, @Nonnull @NonnullElements final Set<Key> addedKeys,
+            @Nonnull @NonnullElements final Set<Key> updatedKeys,
+            @Nonnull @NonnullElements final Set<Key> removedKeys) {
+        source = resolverId;
+        added = Collections.unmodifiableSet(new LinkedHashSet<>(addedKeys));
+        updated = Collections.unmodifiableSet(new LinkedHashSet<>(updatedKeys));
+        removed = Collections.unmodifiableSet(new LinkedHashSet<>(removedKeys));
+    }
+
+    /**
+     * Get the identifier of the resolver that was refreshed.
+     * 
+     * @return the identifier of the resolver
+     */
+    @Nullable
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Get the identifiers of the added entities.
+     * 
+     * @return the identifiers of the added entities
+     */
+    @Nonnull
+    @NonnullElements
+    @Unmodifiable
+    public Set<Key> getAdded() {
+        return added;
+    }
+
+    /**
+     * Get the identifiers of the updated entities.
+     * 
+     * @return the identifiers of the updated entities
+     */
+    @Nonnull
+    @NonnullElements
+    @Unmodifiable
+    public Set<Key> getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Get the identifiers of the removed entities.
+     * 
+     * @return the identifiers of the removed entities
+     */
+    @Nonnull
+    @NonnullElements
+    @Unmodifiable
+    public Set<Key> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Whether the refresh changed no entities.
+     * 
+     * @return true if no entities were added, updated or removed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "EntityChangeSet [source=" + source + ", added=" + added.size() + ", updated=" + updated.size()
+                + ", removed=" + removed.size() + "]";
+    }
+}
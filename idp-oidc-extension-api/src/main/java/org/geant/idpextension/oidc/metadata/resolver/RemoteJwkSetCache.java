@@ -18,11 +18,25 @@ package org.geant.idpextension.oidc.metadata.resolver;
 
 import java.io.IOException;
 import java.net.URI;
+import java.text.ParseException;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.apache.http.client.HttpClient;
+import org.geant.idpextension.oidc.metadata.support.RemoteJwkSetResponse;
 import org.geant.idpextension.oidc.metadata.support.RemoteJwkUtils;
 import org.opensaml.security.httpclient.HttpClientSecurityParameters;
 import org.opensaml.storage.StorageCapabilities;
@@ -32,10 +46,19 @@ import org.opensaml.storage.StorageService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.util.JSONObjectUtils;
 
+import net.minidev.json.JSONObject;
+
+import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
 import net.shibboleth.utilities.java.support.component.AbstractIdentifiableInitializableComponent;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
@@ -43,12 +66,64 @@ import net.shibboleth.utilities.java.support.logic.Constraint;
 
 /**
  * Stores fetched remote key set values for a desired period of time.
+ * 
+ * <p>
+ * Only one fetch per context and URI is in flight at a time: concurrent callers either get the last known good key
+ * set or wait for the ongoing fetch. Values that are about to expire are refreshed in the background, and the last
+ * known good value is served for a configurable period if the remote endpoint cannot be reached. The background
+ * refreshes run on a small bounded pool of threads, and a value whose fetch failed is not refreshed in the background
+ * again before the failure backoff has elapsed.
+ * </p>
+ * 
+ * <p>
+ * The parsed key sets are also kept in memory until the expiration of their storage records, so that the
+ * {@link StorageService} is only read and parsed on a local miss. The number of key sets kept in memory is bounded,
+ * the least recently used ones are dropped first.
+ * </p>
+ * 
+ * <p>
+ * The Cache-Control max-age and Expires response headers override the requested expiration, within the configured
+ * minimum and maximum cache durations. The ETag and Last-Modified headers are stored next to the key set, the
+ * refreshes are conditional on them, and a not modified response only extends the expiration of the current value.
+ * </p>
+ * 
+ * <p>
+ * The stored value is the plain key set, as stored by the earlier versions, so that the nodes sharing the storage
+ * can be upgraded in any order. The validators are stored in a separate record of the same context, keyed by the URI
+ * prefixed with {@value #VALIDATORS_KEY_PREFIX}, together with the hash of the key set value they apply to. The
+ * earlier versions ignore that record, and validators not matching the stored key set are ignored. The values
+ * stored by the versions wrapping the key set and the validators in a single JSON object are still read.
+ * </p>
  */
 public class RemoteJwkSetCache extends AbstractIdentifiableInitializableComponent {
 
     /** The context name in the {@link StorageService}. */
     public static final String CONTEXT_NAME = "oidcRemoteJwkSetContents";
 
+    /** The default maximum number of key sets kept in memory. */
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /** The default number of threads running the background refreshes. */
+    public static final int DEFAULT_REFRESH_THREADS = 4;
+
+    /** The maximum number of background refreshes waiting for a thread. */
+    private static final int MAX_QUEUED_REFRESHES = 1000;
+
+    /** The prefix of the storage key of the validators of a key set, never found in an absolute URI. */
+    public static final String VALIDATORS_KEY_PREFIX = "validators!";
+
+    /** The field of the wrapped stored value for the key set. */
+    private static final String FIELD_JWKS = "jwks";
+
+    /** The field of the stored validators, or of the wrapped stored value, for the entity tag. */
+    private static final String FIELD_ENTITY_TAG = "etag";
+
+    /** The field of the stored validators, or of the wrapped stored value, for the last modification date. */
+    private static final String FIELD_LAST_MODIFIED = "lastModified";
+
+    /** The field of the stored validators for the hash of the key set value they apply to. */
+    private static final String FIELD_JWKS_HASH = "jwksHash";
+
     /** Logger. */
     private final Logger log = LoggerFactory.getLogger(RemoteJwkSetCache.class);
 
@@ -61,6 +136,73 @@ public class RemoteJwkSetCache extends AbstractIdentifiableInitializableComponen
     /** HTTP client security parameters. */
     @Nullable private HttpClientSecurityParameters httpClientSecurityParameters;
 
+    /** Time before the expiration when a value is refreshed in the background. Default value: 5 minutes. */
+    @Duration @NonNegative private long refreshAheadInterval;
+
+    /** Time after the expiration during which the last known good value may be served. Default value: 24 hours. */
+    @Duration @NonNegative private long maxStaleness;
+
+    /** Minimum cache duration applied to the lifetimes given by the response headers. Default value: 5 minutes. */
+    @Duration @NonNegative private long minCacheDuration;
+
+    /** Maximum cache duration applied to the lifetimes given by the response headers. Default value: 24 hours. */
+    @Duration @Positive private long maxCacheDuration;
+
+    /** Maximum number of key sets kept in memory. */
+    @Positive private long maximumSize;
+
+    /** Time after a failed fetch during which the value is not refreshed in the background. Default value: 1 min. */
+    @Duration @NonNegative private long failureBackoff;
+
+    /** Number of threads running the background refreshes, if we create our own executor. */
+    @Positive private int refreshThreads;
+
+    /** Executor running the background refreshes. */
+    @Nullable private ExecutorService refreshExecutor;
+
+    /** Whether we created our own refresh executor. */
+    private boolean createdOwnRefreshExecutor;
+
+    /** The fetches currently in flight, keyed by context and URI. */
+    @Nonnull private final ConcurrentMap<String, FutureTask<JWKSet>> inFlightFetches;
+
+    /** The parsed values, keyed by context and URI. Kept after their expiration as the last known good values. */
+    @NonnullAfterInit private Cache<String, LocalEntry> localEntries;
+
+    /** The times of the last failed fetches, keyed by context and URI, kept for the failure backoff. */
+    @NonnullAfterInit private Cache<String, Long> failedFetches;
+
+    /** Number of lookups answered from the parsed values in memory. */
+    @Nonnull private final AtomicLong localHits = new AtomicLong();
+
+    /** Number of lookups answered from the {@link StorageService}. */
+    @Nonnull private final AtomicLong storageHits = new AtomicLong();
+
+    /** Number of fetches from the remote endpoints. */
+    @Nonnull private final AtomicLong remoteFetches = new AtomicLong();
+
+    /** Constructor. */
+    public RemoteJwkSetCache() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param executor executor running the background refreshes, null to create one
+     */
+    public RemoteJwkSetCache(@Nullable final ExecutorService executor) {
+        refreshAheadInterval = 5 * 60 * 1000;
+        maxStaleness = 24 * 60 * 60 * 1000;
+        minCacheDuration = 5 * 60 * 1000;
+        maxCacheDuration = 24 * 60 * 60 * 1000;
+        maximumSize = DEFAULT_MAXIMUM_SIZE;
+        failureBackoff = 60 * 1000;
+        refreshThreads = DEFAULT_REFRESH_THREADS;
+        refreshExecutor = executor;
+        inFlightFetches = new ConcurrentHashMap<>();
+    }
+
     /**
      * Get the backing store for the remote JWK set contents.
      * 
@@ -110,6 +252,126 @@ public class RemoteJwkSetCache extends AbstractIdentifiableInitializableComponen
         httpClientSecurityParameters = params;
     }
 
+    /**
+     * Set the time before the expiration when a value is refreshed in the background. Zero disables the
+     * background refreshes.
+     * 
+     * @param interval time in milliseconds
+     */
+    @Duration public void setRefreshAheadInterval(@Duration @NonNegative final long interval) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        refreshAheadInterval = Constraint.isGreaterThanOrEqual(0, interval,
+                "Refresh ahead interval must be greater than or equal to 0");
+    }
+
+    /**
+     * Set the time after the expiration during which the last known good value may be served if it cannot be
+     * fetched. Zero disables serving stale values.
+     * 
+     * @param staleness time in milliseconds
+     */
+    @Duration public void setMaxStaleness(@Duration @NonNegative final long staleness) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        maxStaleness = Constraint.isGreaterThanOrEqual(0, staleness,
+                "Max staleness must be greater than or equal to 0");
+    }
+
+    /**
+     * Set the minimum cache duration applied to the lifetimes given by the Cache-Control and Expires response
+     * headers.
+     * 
+     * @param duration time in milliseconds
+     */
+    @Duration public void setMinCacheDuration(@Duration @NonNegative final long duration) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        minCacheDuration = Constraint.isGreaterThanOrEqual(0, duration,
+                "Minimum cache duration must be greater than or equal to 0");
+    }
+
+    /**
+     * Set the maximum cache duration applied to the lifetimes given by the Cache-Control and Expires response
+     * headers.
+     * 
+     * @param duration time in milliseconds
+     */
+    @Duration public void setMaxCacheDuration(@Duration @Positive final long duration) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        maxCacheDuration = Constraint.isGreaterThan(0, duration, "Maximum cache duration must be greater than 0");
+    }
+
+    /**
+     * Set the maximum number of key sets kept in memory.
+     * 
+     * @param size maximum number of key sets kept in memory
+     */
+    public void setMaximumSize(@Positive final long size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        maximumSize = Constraint.isGreaterThan(0, size, "Maximum size must be greater than 0");
+    }
+
+    /**
+     * Set the time after a failed fetch during which the value is not refreshed in the background.
+     * 
+     * @param backoff time in milliseconds
+     */
+    @Duration public void setFailureBackoff(@Duration @NonNegative final long backoff) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        failureBackoff = Constraint.isGreaterThanOrEqual(0, backoff,
+                "Failure backoff must be greater than or equal to 0");
+    }
+
+    /**
+     * Set the number of threads running the background refreshes. Not used if an executor is given to the
+     * constructor.
+     * 
+     * @param threads number of threads
+     */
+    public void setRefreshThreads(@Positive final int threads) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        refreshThreads = Constraint.isGreaterThan(0, threads, "Number of refresh threads must be greater than 0");
+    }
+
+    /**
+     * Get the number of lookups answered from the parsed values in memory.
+     * 
+     * @return number of lookups answered from memory
+     */
+    public long getLocalHits() {
+        return localHits.get();
+    }
+
+    /**
+     * Get the number of lookups answered from the {@link StorageService}.
+     * 
+     * @return number of lookups answered from the storage
+     */
+    public long getStorageHits() {
+        return storageHits.get();
+    }
+
+    /**
+     * Get the number of fetches from the remote endpoints, including the background refreshes.
+     * 
+     * @return number of remote fetches
+     */
+    public long getRemoteFetches() {
+        return remoteFetches.get();
+    }
+
     /** {@inheritDoc} */
     @Override
     public void doInitialize() throws ComponentInitializationException {
@@ -119,6 +381,36 @@ public class RemoteJwkSetCache extends AbstractIdentifiableInitializableComponen
         if (httpClient == null) {
             throw new ComponentInitializationException("HttpClient cannot be null");
         }
+        if (minCacheDuration > maxCacheDuration) {
+            throw new ComponentInitializationException("Minimum cache duration cannot exceed the maximum");
+        }
+        if (refreshExecutor == null) {
+            final ThreadPoolExecutor executor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 60,
+                    TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(MAX_QUEUED_REFRESHES),
+                    new ThreadFactoryBuilder().setDaemon(true).setNameFormat("RemoteJwkSetCache-%d").build());
+            executor.allowCoreThreadTimeOut(true);
+            refreshExecutor = executor;
+            createdOwnRefreshExecutor = true;
+        }
+        localEntries = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        failedFetches = CacheBuilder.newBuilder().maximumSize(maximumSize)
+                .expireAfterWrite(failureBackoff, TimeUnit.MILLISECONDS).build();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        if (createdOwnRefreshExecutor) {
+            refreshExecutor.shutdownNow();
+        }
+        inFlightFetches.clear();
+        if (localEntries != null) {
+            localEntries.invalidateAll();
+        }
+        if (failedFetches != null) {
+            failedFetches.invalidateAll();
+        }
+        super.doDestroy();
     }
 
     /**
@@ -151,27 +443,367 @@ public class RemoteJwkSetCache extends AbstractIdentifiableInitializableComponen
             return null;
         }
 
+        final String cacheKey = context + '!' + key;
+        final LocalEntry localEntry = localEntries.getIfPresent(cacheKey);
+        if (localEntry != null && localEntry.expiration > System.currentTimeMillis()) {
+            localHits.incrementAndGet();
+            log.debug("Parsed value found from memory and will be returned, expires at {}", localEntry.expiration);
+            refreshAheadIfNeeded(context, uri, localEntry.expiration, expires);
+            return localEntry.jwkSet;
+        }
+
         try {
             final StorageRecord<?> entry = storage.read(context, key);
-            if (entry == null) {
-                log.debug("Value '{}' was not in the cache, fetching it", key);
-                final JWKSet remoteJwkSet = RemoteJwkUtils.fetchRemoteJwkSet("RemoteJwkSetCache", uri, httpClient, 
-                        httpClientSecurityParameters);
-                if (remoteJwkSet != null && remoteJwkSet.getKeys() != null && !remoteJwkSet.getKeys().isEmpty()) {
-                    storage.create(context, key, remoteJwkSet.toString(), expires);
-                    return remoteJwkSet;
-                } else {
-                    log.warn("Could not find any remote keys from {}", key);
-                }
-            } else {
-                final JWKSet cachedSet = JWKSet.parse(entry.getValue());
+            if (entry != null) {
+                final long expiration = entry.getExpiration() != null ? entry.getExpiration() : expires;
+                final LocalEntry storedEntry = readStoredValue(context, key, entry.getValue(), expiration);
+                storageHits.incrementAndGet();
                 log.debug("Cached value found and will be returned, expires at {}", entry.getExpiration());
-                return cachedSet;
+                localEntries.put(cacheKey, storedEntry);
+                refreshAheadIfNeeded(context, uri, expiration, expires);
+                return storedEntry.jwkSet;
             }
-        } catch (final IOException | java.text.ParseException e) {
+        } catch (final IOException | ParseException e) {
             log.error("Exception reading/writing to storage service", e);
         }
 
-        return null;
+        log.debug("Value '{}' was not in the cache, fetching it", key);
+        final JWKSet staleSet = getLastKnownGood(cacheKey);
+        final FutureTask<JWKSet> task = new FutureTask<>(new FetchTask(context, uri, expires));
+        final FutureTask<JWKSet> inFlight = inFlightFetches.putIfAbsent(cacheKey, task);
+        if (inFlight == null) {
+            try {
+                task.run();
+            } finally {
+                inFlightFetches.remove(cacheKey, task);
+            }
+            return getResult(task, staleSet);
+        }
+        if (staleSet != null) {
+            log.debug("Fetch of '{}' already in flight, returning the last known good value", key);
+            return staleSet;
+        }
+        log.debug("Fetch of '{}' already in flight, waiting for it", key);
+        return getResult(inFlight, null);
+    }
+
+    /**
+     * Schedules a background refresh of the given value if it expires within the refresh ahead interval, unless its
+     * last fetch failed within the failure backoff.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param uri value to refresh
+     * @param expiration time (in milliseconds since beginning of epoch) when the current value expires
+     * @param expires time (in milliseconds since beginning of epoch) for disposal of the refreshed value from cache
+     */
+    private void refreshAheadIfNeeded(@Nonnull final String context, @Nonnull final URI uri, final long expiration,
+            final long expires) {
+        if (refreshAheadInterval > 0 && expiration - System.currentTimeMillis() <= refreshAheadInterval) {
+            final Long failed = failedFetches.getIfPresent(context + '!' + uri.toString());
+            if (failed != null) {
+                log.trace("Fetch of '{}' failed at {}, not refreshing it before the backoff has elapsed", uri,
+                        failed);
+                return;
+            }
+            refreshInBackground(context, uri, expires);
+        }
+    }
+
+    /**
+     * Schedules a background refresh of the given value, unless its fetch is already in flight.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param uri value to refresh
+     * @param expires time (in milliseconds since beginning of epoch) for disposal of value from cache
+     */
+    private void refreshInBackground(@Nonnull final String context, @Nonnull final URI uri, final long expires) {
+        final String cacheKey = context + '!' + uri.toString();
+        final FutureTask<JWKSet> task = new FutureTask<>(new FetchTask(context, uri, expires));
+        if (inFlightFetches.putIfAbsent(cacheKey, task) != null) {
+            return;
+        }
+        log.debug("Value '{}' is about to expire, refreshing it in the background", uri);
+        try {
+            refreshExecutor.execute(new Runnable() {
+
+                /** {@inheritDoc} */
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        inFlightFetches.remove(cacheKey, task);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            log.warn("Could not schedule the background refresh of {}", uri, e);
+            inFlightFetches.remove(cacheKey, task);
+        }
+    }
+
+    /**
+     * Waits for the result of the given fetch.
+     * 
+     * @param task the fetch
+     * @param staleSet value to return if the fetch fails
+     * @return the fetched JWK set, or the given stale value if the fetch failed
+     */
+    @Nullable private JWKSet getResult(@Nonnull final FutureTask<JWKSet> task, @Nullable final JWKSet staleSet) {
+        try {
+            final JWKSet result = task.get();
+            if (result == null && staleSet != null) {
+                log.warn("Could not fetch the remote keys, returning the last known good value");
+                return staleSet;
+            }
+            return result;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            log.error("Exception while fetching the remote keys", e.getCause());
+        }
+        return staleSet;
+    }
+
+    /**
+     * Get the last known good value, if it has not been expired for longer than the max staleness.
+     * 
+     * @param cacheKey the context and URI of the value
+     * @return the last known good value, or null
+     */
+    @Nullable private JWKSet getLastKnownGood(@Nonnull final String cacheKey) {
+        final LocalEntry lastKnownGood = localEntries.getIfPresent(cacheKey);
+        if (lastKnownGood == null) {
+            return null;
+        }
+        if (lastKnownGood.expiration + maxStaleness < System.currentTimeMillis()) {
+            localEntries.asMap().remove(cacheKey, lastKnownGood);
+            return null;
+        }
+        return lastKnownGood.jwkSet;
+    }
+
+    /**
+     * Parses the stored key set, and reads the validators of the response it was fetched from if they are stored for
+     * that key set. A value wrapping the key set and its validators in a single JSON object is also accepted.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param key the storage key of the key set
+     * @param value the stored value
+     * @param expiration time (in milliseconds since beginning of epoch) when the value expires from the cache
+     * @return the parsed value
+     * @throws IOException if the validators cannot be read
+     * @throws ParseException if the value cannot be parsed
+     */
+    @Nonnull private LocalEntry readStoredValue(@Nonnull final String context, @Nonnull final String key,
+            @Nonnull final String value, final long expiration) throws IOException, ParseException {
+        final JSONObject json = JSONObjectUtils.parse(value);
+        final Object jwks = json.get(FIELD_JWKS);
+        if (jwks instanceof JSONObject) {
+            return new LocalEntry(JWKSet.parse((JSONObject) jwks), expiration, getString(json, FIELD_ENTITY_TAG),
+                    getString(json, FIELD_LAST_MODIFIED));
+        }
+        final JWKSet jwkSet = JWKSet.parse(json);
+        final StorageRecord<?> validators = storage.read(context, VALIDATORS_KEY_PREFIX + key);
+        if (validators == null) {
+            return new LocalEntry(jwkSet, expiration, null, null);
+        }
+        final JSONObject validatorsJson = JSONObjectUtils.parse(validators.getValue());
+        final Object hash = validatorsJson.get(FIELD_JWKS_HASH);
+        if (!(hash instanceof Number) || ((Number) hash).intValue() != value.hashCode()) {
+            log.debug("Stored validators of '{}' apply to an other key set, ignoring them", key);
+            return new LocalEntry(jwkSet, expiration, null, null);
+        }
+        return new LocalEntry(jwkSet, expiration, getString(validatorsJson, FIELD_ENTITY_TAG),
+                getString(validatorsJson, FIELD_LAST_MODIFIED));
+    }
+
+    /**
+     * Stores the key set and the validators of the response it was fetched from, if any, in separate records.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param key the storage key of the key set
+     * @param entry the value to store
+     * @throws IOException if the value cannot be stored
+     */
+    private void storeValue(@Nonnull final String context, @Nonnull final String key,
+            @Nonnull final LocalEntry entry) throws IOException {
+        final String value = entry.jwkSet.toString();
+        if (!storage.create(context, key, value, entry.expiration)) {
+            storage.update(context, key, value, entry.expiration);
+        }
+        final String validatorsKey = VALIDATORS_KEY_PREFIX + key;
+        if (entry.entityTag == null && entry.lastModified == null) {
+            storage.delete(context, validatorsKey);
+            return;
+        }
+        if (validatorsKey.length() > storage.getCapabilities().getKeySize()) {
+            log.debug("Key of the validators of '{}' too long for StorageService, not storing them", key);
+            return;
+        }
+        final JSONObject validators = new JSONObject();
+        validators.put(FIELD_JWKS_HASH, value.hashCode());
+        if (entry.entityTag != null) {
+            validators.put(FIELD_ENTITY_TAG, entry.entityTag);
+        }
+        if (entry.lastModified != null) {
+            validators.put(FIELD_LAST_MODIFIED, entry.lastModified);
+        }
+        if (!storage.create(context, validatorsKey, validators.toJSONString(), entry.expiration)) {
+            storage.update(context, validatorsKey, validators.toJSONString(), entry.expiration);
+        }
+    }
+
+    /**
+     * Get a string field of a JSON object.
+     * 
+     * @param json the JSON object
+     * @param field the name of the field
+     * @return the value of the field, null if it is not a string
+     */
+    @Nullable private static String getString(@Nonnull final JSONObject json, @Nonnull final String field) {
+        final Object value = json.get(field);
+        return value instanceof String ? (String) value : null;
+    }
+
+    /**
+     * Fetches the remote JWK set and stores it.
+     */
+    private class FetchTask implements Callable<JWKSet> {
+
+        /** The context label. */
+        @Nonnull private final String context;
+
+        /** The URI to fetch. */
+        @Nonnull private final URI uri;
+
+        /** Time (in milliseconds since beginning of epoch) for disposal of value from cache. */
+        private final long expires;
+
+        /**
+         * Constructor.
+         * 
+         * @param ctx the context label
+         * @param jwksUri the URI to fetch
+         * @param exp time (in milliseconds since beginning of epoch) for disposal of value from cache
+         */
+        private FetchTask(@Nonnull final String ctx, @Nonnull final URI jwksUri, final long exp) {
+            context = ctx;
+            uri = jwksUri;
+            expires = exp;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public JWKSet call() {
+            final String cacheKey = context + '!' + uri.toString();
+            boolean fetched = false;
+            try {
+                final JWKSet jwkSet = fetch();
+                fetched = jwkSet != null;
+                return jwkSet;
+            } finally {
+                if (fetched) {
+                    failedFetches.invalidate(cacheKey);
+                } else if (failureBackoff > 0) {
+                    failedFetches.put(cacheKey, System.currentTimeMillis());
+                }
+            }
+        }
+
+        /**
+         * Fetches the remote JWK set and stores it.
+         * 
+         * @return the fetched JWK set, null if it cannot be fetched
+         */
+        @Nullable private JWKSet fetch() {
+            final String key = uri.toString();
+            final LocalEntry previous = localEntries.getIfPresent(context + '!' + key);
+            remoteFetches.incrementAndGet();
+            final RemoteJwkSetResponse response = RemoteJwkUtils.fetchRemoteJwkSet("RemoteJwkSetCache", uri,
+                    httpClient, httpClientSecurityParameters, previous != null ? previous.entityTag : null,
+                    previous != null ? previous.lastModified : null);
+            if (response == null) {
+                log.warn("Could not find any remote keys from {}", key);
+                return null;
+            }
+            final long expiration = getExpiration(response);
+            final boolean notModified = response.isNotModified() && previous != null;
+            final JWKSet remoteJwkSet = notModified ? previous.jwkSet : response.getJwkSet();
+            if (remoteJwkSet == null || remoteJwkSet.getKeys() == null || remoteJwkSet.getKeys().isEmpty()) {
+                log.warn("Could not find any remote keys from {}", key);
+                return null;
+            }
+            final String entityTag = response.getEntityTag() != null || !notModified ? response.getEntityTag()
+                    : previous.entityTag;
+            final String lastModified = response.getLastModified() != null || !notModified
+                    ? response.getLastModified() : previous.lastModified;
+            final LocalEntry entry = new LocalEntry(remoteJwkSet, expiration, entityTag, lastModified);
+            try {
+                if (notModified && Objects.equals(entityTag, previous.entityTag)
+                        && Objects.equals(lastModified, previous.lastModified)) {
+                    log.debug("Remote keys from {} not modified, extending the expiration to {}", key, expiration);
+                    if (!storage.updateExpiration(context, key, expiration)
+                            || !storage.updateExpiration(context, VALIDATORS_KEY_PREFIX + key, expiration)) {
+                        storeValue(context, key, entry);
+                    }
+                } else {
+                    storeValue(context, key, entry);
+                }
+            } catch (final IOException e) {
+                log.error("Exception reading/writing to storage service", e);
+            }
+            localEntries.put(context + '!' + key, entry);
+            return remoteJwkSet;
+        }
+
+        /**
+         * Get the expiration for the fetched value. The lifetime given by the response headers is used if
+         * available, otherwise the requested expiration.
+         * 
+         * @param response the response from the endpoint
+         * @return time (in milliseconds since beginning of epoch) for disposal of value from cache
+         */
+        private long getExpiration(@Nonnull final RemoteJwkSetResponse response) {
+            final Long lifetime = response.getFreshnessLifetime();
+            if (lifetime == null) {
+                return expires;
+            }
+            return System.currentTimeMillis() + Math.min(Math.max(lifetime, minCacheDuration), maxCacheDuration);
+        }
+    }
+
+    /**
+     * A parsed value and its expiration.
+     */
+    private static class LocalEntry {
+
+        /** The parsed JWK set. */
+        @Nonnull private final JWKSet jwkSet;
+
+        /** Time (in milliseconds since beginning of epoch) when the value expires from the cache. */
+        private final long expiration;
+
+        /** The entity tag of the response the value was fetched from. */
+        @Nullable private final String entityTag;
+
+        /** The last modification date of the response the value was fetched from. */
+        @Nullable private final String lastModified;
+
+        /**
+         * Constructor.
+         * 
+         * @param set the parsed JWK set
+         * @param exp time (in milliseconds since beginning of epoch) when the value expires from the cache
+         * @param etag the entity tag of the response the value was fetched from
+         * @param modified the last modification date of the response the value was fetched from
+         */
+        private LocalEntry(@Nonnull final JWKSet set, final long exp, @Nullable final String etag,
+                @Nullable final String modified) {
+            jwkSet = set;
+            expiration = exp;
+            entityTag = etag;
+            lastModified = modified;
+        }
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.metadata.resolver;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
+
+import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * An {@link OIDCClientInformation} whose key set is fetched from its jwks_uri only when the keys are needed.
+ * 
+ * <p>
+ * The client metadata is never modified: the remote key set is resolved through the {@link RemoteJwkSetCache} on
+ * each call to {@link #getJWKSet()}, and the cache keeps the parsed set in memory. Instances are created once per
+ * client entry by the resolvers and can be shared between threads.
+ * </p>
+ */
+public class RemoteKeysOIDCClientInformation extends OIDCClientInformation {
+
+    /** The cache for remote JWK key sets. */
+    @Nonnull private final RemoteJwkSetCache remoteJwkSetCache;
+
+    /** The remote key refresh interval in milliseconds. */
+    @Duration @Positive private final long keyFetchInterval;
+
+    /**
+     * Constructor.
+     * 
+     * @param clientInformation the client information to wrap
+     * @param jwkSetCache the cache for remote JWK key sets
+     * @param interval the remote key refresh interval in milliseconds
+     */
+    public RemoteKeysOIDCClientInformation(@Nonnull final OIDCClientInformation clientInformation,
+            @Nonnull final RemoteJwkSetCache jwkSetCache, @Duration @Positive final long interval) {
+        super(clientInformation.getID(), clientInformation.getIDIssueDate(), clientInformation.getOIDCMetadata(),
+                clientInformation.getSecret(), clientInformation.getRegistrationURI(),
+                clientInformation.getRegistrationAccessToken());
+        remoteJwkSetCache = Constraint.isNotNull(jwkSetCache, "The remote JWK set cache cannot be null");
+        keyFetchInterval = interval;
+    }
+
+    /**
+     * Get the key set of the client. The key set from the metadata is returned if it exists, otherwise the key set
+     * is fetched from the jwks_uri through the cache.
+     * 
+     * @return the key set of the client, or null if not available
+     */
+    @Nullable public JWKSet getJWKSet() {
+        if (getOIDCMetadata().getJWKSet() != null || getOIDCMetadata().getJWKSetURI() == null) {
+            return getOIDCMetadata().getJWKSet();
+        }
+        return remoteJwkSetCache.fetch(getOIDCMetadata().getJWKSetURI(),
+                System.currentTimeMillis() + keyFetchInterval);
+    }
+
+    /**
+     * Get the key set of the given client, resolving the remote key set if the client information supports it.
+     * 
+     * @param clientInformation the client information
+     * @return the key set of the client, or null if not available
+     */
+    @Nullable public static JWKSet resolveJWKSet(@Nonnull final OIDCClientInformation clientInformation) {
+        if (clientInformation instanceof RemoteKeysOIDCClientInformation) {
+            return ((RemoteKeysOIDCClientInformation) clientInformation).getJWKSet();
+        }
+        return clientInformation.getOIDCMetadata().getJWKSet();
+    }
+}
@@ -0,0 +1,590 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.resolver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.util.EntityUtils;
+import org.geant.idpextension.oidc.metadata.support.RemoteJwkUtils;
+import org.opensaml.security.httpclient.HttpClientSecurityParameters;
+import org.opensaml.security.httpclient.HttpClientSecuritySupport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.component.AbstractIdentifiableInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Fetches request objects passed by reference with the request_uri parameter, and stores them in memory for the
+ * lifetime given by the Cache-Control max-age and Expires response headers. A response without such headers is
+ * cached for the maximum cache duration if the URI has a fragment, as the fragment pins the content, and otherwise
+ * for the default cache duration, which is zero by default.
+ * 
+ * <p>
+ * The values are cached by the URI without its fragment. A cached value is only used for the same fragment, so that
+ * the clients can force the request object to be fetched again by changing the fragment, as described in the
+ * section 6.2 of the OpenID Connect Core specification.
+ * </p>
+ * 
+ * <p>
+ * The fetches are run in a background thread pool. Only one fetch per URI is in flight at a time, the number of
+ * concurrent fetches per host is bounded, and the caller waits at most the fetch timeout, which covers both the wait
+ * for a free slot and the fetch itself. A fetch exceeding the timeout is not interrupted, its result is still cached
+ * for the following requests. The response bodies exceeding the maximum response size are rejected.
+ * </p>
+ */
+public class RemoteRequestObjectCache extends AbstractIdentifiableInitializableComponent {
+
+    /** The default maximum number of cached request objects. */
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /** Logger. */
+    private final Logger log = LoggerFactory.getLogger(RemoteRequestObjectCache.class);
+
+    /** The {@link HttpClient} to use. */
+    @NonnullAfterInit private HttpClient httpClient;
+
+    /** HTTP client security parameters. */
+    @Nullable private HttpClientSecurityParameters httpClientSecurityParameters;
+
+    /** Maximum time the caller waits for a request object to be fetched. Default value: 5 seconds. */
+    @Duration @Positive private long fetchTimeout;
+
+    /**
+     * Cache duration for the responses without Cache-Control or Expires headers fetched with an URI without a
+     * fragment. Default value: 0.
+     */
+    @Duration @NonNegative private long defaultCacheDuration;
+
+    /** Maximum cache duration applied to the lifetimes given by the response headers. Default value: 1 hour. */
+    @Duration @NonNegative private long maxCacheDuration;
+
+    /** Maximum size of the response body in bytes. Default value: 65536. */
+    @Positive private int maxResponseSize;
+
+    /** Maximum number of concurrent fetches per host. Default value: 4. */
+    @Positive private int maxConcurrentFetchesPerHost;
+
+    /** Maximum number of concurrent fetches in total. Default value: 32. */
+    @Positive private int maxConcurrentFetches;
+
+    /** Maximum number of cached request objects. */
+    @Positive private long maximumSize;
+
+    /** The cached request objects, keyed by the URI without its fragment. */
+    @NonnullAfterInit private Cache<String, CachedRequestObject> cache;
+
+    /** The slots for the concurrent fetches, keyed by host. Released when no longer referenced by any fetch. */
+    @NonnullAfterInit private LoadingCache<String, Semaphore> hostPermits;
+
+    /** The thread pool running the fetches. */
+    @NonnullAfterInit private ThreadPoolExecutor executor;
+
+    /** The fetches currently in flight, keyed by URI. */
+    @Nonnull private final ConcurrentMap<String, Future<String>> inFlightFetches;
+
+    /** Number of lookups answered from the cache. */
+    @Nonnull private final AtomicLong cacheHits = new AtomicLong();
+
+    /** Number of fetches from the remote endpoints. */
+    @Nonnull private final AtomicLong remoteFetches = new AtomicLong();
+
+    /** Number of fetches rejected because the concurrency limits were reached. */
+    @Nonnull private final AtomicLong rejectedFetches = new AtomicLong();
+
+    /** Constructor. */
+    public RemoteRequestObjectCache() {
+        fetchTimeout = 5 * 1000;
+        defaultCacheDuration = 0;
+        maxCacheDuration = 60 * 60 * 1000;
+        maxResponseSize = 65536;
+        maxConcurrentFetchesPerHost = 4;
+        maxConcurrentFetches = 32;
+        maximumSize = DEFAULT_MAXIMUM_SIZE;
+        inFlightFetches = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Set the {@link HttpClient} to use.
+     * 
+     * @param client client to use
+     */
+    public void setHttpClient(@Nonnull final HttpClient client) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        httpClient = Constraint.isNotNull(client, "HttpClient cannot be null");
+    }
+
+    /**
+     * Set the optional client security parameters.
+     * 
+     * @param params the new client security parameters
+     */
+    public void setHttpClientSecurityParameters(@Nullable final HttpClientSecurityParameters params) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        httpClientSecurityParameters = params;
+    }
+
+    /**
+     * Set the maximum time the caller waits for a request object to be fetched. Also used as the connection and
+     * socket timeouts of the fetches.
+     * 
+     * @param timeout time in milliseconds
+     */
+    @Duration public void setFetchTimeout(@Duration @Positive final long timeout) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        fetchTimeout = Constraint.isGreaterThan(0, timeout, "Fetch timeout must be greater than 0");
+    }
+
+    /**
+     * Set the cache duration for the responses without Cache-Control or Expires headers fetched with an URI without
+     * a fragment. Zero, the default, disables caching such responses.
+     * 
+     * @param duration time in milliseconds
+     */
+    @Duration public void setDefaultCacheDuration(@Duration @NonNegative final long duration) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        defaultCacheDuration = Constraint.isGreaterThanOrEqual(0, duration,
+                "Default cache duration must be greater than or equal to 0");
+    }
+
+    /**
+     * Set the maximum cache duration applied to the lifetimes given by the Cache-Control and Expires response
+     * headers. Zero disables caching.
+     * 
+     * @param duration time in milliseconds
+     */
+    @Duration public void setMaxCacheDuration(@Duration @NonNegative final long duration) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        maxCacheDuration = Constraint.isGreaterThanOrEqual(0, duration,
+                "Maximum cache duration must be greater than or equal to 0");
+    }
+
+    /**
+     * Set the maximum size of the response body.
+     * 
+     * @param size size in bytes
+     */
+    public void setMaxResponseSize(@Positive final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        maxResponseSize = Constraint.isGreaterThan(0, size, "Maximum response size must be greater than 0");
+    }
+
+    /**
+     * Set the maximum number of concurrent fetches per host.
+     * 
+     * @param max maximum number of concurrent fetches
+     */
+    public void setMaxConcurrentFetchesPerHost(@Positive final int max) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        maxConcurrentFetchesPerHost = Constraint.isGreaterThan(0, max,
+                "Maximum concurrent fetches per host must be greater than 0");
+    }
+
+    /**
+     * Set the maximum number of concurrent fetches in total.
+     * 
+     * @param max maximum number of concurrent fetches
+     */
+    public void setMaxConcurrentFetches(@Positive final int max) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        maxConcurrentFetches = Constraint.isGreaterThan(0, max, "Maximum concurrent fetches must be greater than 0");
+    }
+
+    /**
+     * Set the maximum number of cached request objects.
+     * 
+     * @param size maximum number of cached request objects
+     */
+    public void setMaximumSize(@Positive final long size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        maximumSize = Constraint.isGreaterThan(0, size, "Maximum size must be greater than 0");
+    }
+
+    /**
+     * Get the number of lookups answered from the cache.
+     * 
+     * @return number of lookups answered from the cache
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Get the number of fetches from the remote endpoints, including the prefetches.
+     * 
+     * @return number of remote fetches
+     */
+    public long getRemoteFetches() {
+        return remoteFetches.get();
+    }
+
+    /**
+     * Get the number of fetches rejected because the concurrency limits were reached.
+     * 
+     * @return number of rejected fetches
+     */
+    public long getRejectedFetches() {
+        return rejectedFetches.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void doInitialize() throws ComponentInitializationException {
+        if (httpClient == null) {
+            throw new ComponentInitializationException("HttpClient cannot be null");
+        }
+        cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        hostPermits = CacheBuilder.newBuilder().weakValues().build(new CacheLoader<String, Semaphore>() {
+
+            /** {@inheritDoc} */
+            @Override
+            public Semaphore load(final String host) {
+                return new Semaphore(maxConcurrentFetchesPerHost);
+            }
+        });
+        executor = new ThreadPoolExecutor(0, maxConcurrentFetches, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("RemoteRequestObjectCache-%d").build());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        inFlightFetches.clear();
+        super.doDestroy();
+    }
+
+    /**
+     * Returns the request object if found from the cache, otherwise fetches it and waits at most the fetch timeout
+     * for the result.
+     * 
+     * @param uri the request_uri
+     * @return the request object, null if not found from the cache and cannot be fetched within the timeout
+     */
+    @Nullable public String fetch(@Nonnull final URI uri) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+
+        final String cached = getCached(uri);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            log.debug("Request object from {} found from the cache", uri);
+            return cached;
+        }
+        final long deadline = System.currentTimeMillis() + fetchTimeout;
+        final Future<String> future = submitFetch(uri, fetchTimeout);
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            log.error("Exception while fetching the request object from {}", uri, e.getCause());
+        } catch (final TimeoutException e) {
+            log.warn("Request object from {} could not be fetched within {} ms", uri, fetchTimeout);
+        }
+        return null;
+    }
+
+    /**
+     * Fetches the request object in the background if it is not found from the cache. Does not wait for a free
+     * slot if the concurrency limits are reached.
+     * 
+     * @param uri the request_uri
+     */
+    public void prefetch(@Nonnull final URI uri) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+
+        if (getCached(uri) == null) {
+            log.debug("Prefetching the request object from {}", uri);
+            submitFetch(uri, 0);
+        }
+    }
+
+    /**
+     * Get the cached request object for the given URI, if it has not expired and was fetched with the same
+     * fragment.
+     * 
+     * @param uri the request_uri
+     * @return the cached request object, or null
+     */
+    @Nullable private String getCached(@Nonnull final URI uri) {
+        final CachedRequestObject entry = cache.getIfPresent(getCacheKey(uri));
+        if (entry == null || !Objects.equals(entry.fragment, uri.getRawFragment())) {
+            return null;
+        }
+        if (entry.expiration <= System.currentTimeMillis()) {
+            cache.asMap().remove(getCacheKey(uri), entry);
+            return null;
+        }
+        return entry.requestObject;
+    }
+
+    /**
+     * Submits the fetch of the given URI to the thread pool, unless its fetch is already in flight.
+     * 
+     * @param uri the request_uri
+     * @param permitTimeout maximum time in milliseconds to wait for a free slot for the host
+     * @return the fetch, or null if the concurrency limits were reached
+     */
+    @Nullable private Future<String> submitFetch(@Nonnull final URI uri, final long permitTimeout) {
+        final String fetchKey = uri.toString();
+        final FutureTask<String> task = new FutureTask<>(new FetchTask(uri));
+        final Future<String> inFlight = inFlightFetches.putIfAbsent(fetchKey, task);
+        if (inFlight != null) {
+            log.debug("Fetch of {} already in flight, waiting for it", uri);
+            return inFlight;
+        }
+        final Semaphore permits = hostPermits.getUnchecked(String.valueOf(uri.getHost()).toLowerCase());
+        boolean acquired = false;
+        try {
+            acquired = permits.tryAcquire(permitTimeout, TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!acquired) {
+            inFlightFetches.remove(fetchKey, task);
+            rejectedFetches.incrementAndGet();
+            log.warn("Too many concurrent fetches from the host of {}, not fetching it", uri);
+            return null;
+        }
+        try {
+            executor.execute(new Runnable() {
+
+                /** {@inheritDoc} */
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } finally {
+                        permits.release();
+                        inFlightFetches.remove(fetchKey, task);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            permits.release();
+            inFlightFetches.remove(fetchKey, task);
+            rejectedFetches.incrementAndGet();
+            log.warn("Too many concurrent fetches, not fetching {}", uri);
+            return null;
+        }
+        return task;
+    }
+
+    /**
+     * Get the cache key for the given URI, the URI without its fragment.
+     * 
+     * @param uri the request_uri
+     * @return the cache key
+     */
+    @Nonnull private static String getCacheKey(@Nonnull final URI uri) {
+        final String value = uri.toString();
+        final int index = value.indexOf('#');
+        return index < 0 ? value : value.substring(0, index);
+    }
+
+    /**
+     * Fetches the request object and stores it.
+     */
+    private class FetchTask implements Callable<String> {
+
+        /** The URI to fetch. */
+        @Nonnull private final URI uri;
+
+        /**
+         * Constructor.
+         * 
+         * @param requestUri the URI to fetch
+         */
+        private FetchTask(@Nonnull final URI requestUri) {
+            uri = requestUri;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String call() throws IOException {
+            remoteFetches.incrementAndGet();
+            final RequestConfig config = RequestConfig.custom().setConnectTimeout((int) fetchTimeout)
+                    .setConnectionRequestTimeout((int) fetchTimeout).setSocketTimeout((int) fetchTimeout).build();
+            final HttpUriRequest get = RequestBuilder.get().setUri(getCacheKey(uri)).setConfig(config).build();
+            final HttpClientContext clientContext = HttpClientContext.create();
+            HttpClientSecuritySupport.marshalSecurityParameters(clientContext, httpClientSecurityParameters, false);
+            HttpClientSecuritySupport.addDefaultTLSTrustEngineCriteria(clientContext, get);
+            final HttpResponse response = httpClient.execute(get, clientContext);
+            HttpClientSecuritySupport.checkTLSCredentialEvaluated(clientContext, get.getURI().getScheme());
+            final HttpEntity entity = response.getEntity();
+            try {
+                final int status = response.getStatusLine() != null ? response.getStatusLine().getStatusCode()
+                        : HttpStatus.SC_OK;
+                if (status != HttpStatus.SC_OK) {
+                    log.error("Could not get the request object from {}, HTTP status {}", uri, status);
+                    return null;
+                }
+                final String requestObject = readBody(entity);
+                if (requestObject == null) {
+                    return null;
+                }
+                final Long lifetime = RemoteJwkUtils.getFreshnessLifetime(response);
+                final long duration;
+                if (lifetime != null) {
+                    duration = Math.min(lifetime, maxCacheDuration);
+                } else if (uri.getRawFragment() != null) {
+                    // The fragment pins the content of the request object
+                    duration = maxCacheDuration;
+                } else {
+                    duration = Math.min(defaultCacheDuration, maxCacheDuration);
+                }
+                if (duration > 0) {
+                    log.debug("Caching the request object from {} for {} ms", uri, duration);
+                    cache.put(getCacheKey(uri), new CachedRequestObject(requestObject, uri.getRawFragment(),
+                            System.currentTimeMillis() + duration));
+                }
+                return requestObject;
+            } finally {
+                EntityUtils.consumeQuietly(entity);
+            }
+        }
+
+        /**
+         * Reads the response body, at most the maximum response size.
+         * 
+         * @param entity the response entity
+         * @return the response body, or null if there is none or it exceeds the maximum response size
+         * @throws IOException if the response body cannot be read
+         */
+        @Nullable private String readBody(@Nullable final HttpEntity entity) throws IOException {
+            if (entity == null) {
+                log.error("Could not get the request object from {}, empty response", uri);
+                return null;
+            }
+            if (entity.getContentLength() > maxResponseSize) {
+                log.error("Request object from {} exceeds the maximum size of {} bytes", uri, maxResponseSize);
+                return null;
+            }
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (final InputStream input = entity.getContent()) {
+                final byte[] buffer = new byte[4096];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    if (output.size() + read > maxResponseSize) {
+                        log.error("Request object from {} exceeds the maximum size of {} bytes", uri,
+                                maxResponseSize);
+                        return null;
+                    }
+                    output.write(buffer, 0, read);
+                }
+            }
+            return new String(output.toByteArray(), StandardCharsets.UTF_8).trim();
+        }
+    }
+
+    /**
+     * A fetched request object, the fragment of the URI it was fetched with, and its expiration.
+     */
+    private static class CachedRequestObject {
+
+        /** The request object. */
+        @Nonnull private final String requestObject;
+
+        /** The fragment of the URI the request object was fetched with. */
+        @Nullable private final String fragment;
+
+        /** Time (in milliseconds since beginning of epoch) when the value expires from the cache. */
+        private final long expiration;
+
+        /**
+         * Constructor.
+         * 
+         * @param value the request object
+         * @param frag the fragment of the URI the request object was fetched with
+         * @param exp time (in milliseconds since beginning of epoch) when the value expires from the cache
+         */
+        private CachedRequestObject(@Nonnull final String value, @Nullable final String frag, final long exp) {
+            requestObject = value;
+            fragment = frag;
+            expiration = exp;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.metadata.support;
+
+import javax.annotation.Nullable;
+
+import com.nimbusds.jose.jwk.JWKSet;
+
+/**
+ * The outcome of a remote JWK set fetch, including the HTTP caching information of the response.
+ */
+public class RemoteJwkSetResponse {
+
+    /** The fetched JWK set, null if the response was not modified. */
+    @Nullable private final JWKSet jwkSet;
+
+    /** Whether the endpoint responded that the set has not been modified. */
+    private final boolean notModified;
+
+    /** The freshness lifetime (in milliseconds) given by the response headers, null if not given. */
+    @Nullable private final Long freshnessLifetime;
+
+    /** The entity tag of the response. */
+    @Nullable private final String entityTag;
+
+    /** The last modification date of the response. */
+    @Nullable private final String lastModified;
+
+    /**
+     * Constructor.
+     * 
+     * @param set the fetched JWK set, null if the response was not modified
+     * @param unmodified whether the endpoint responded that the set has not been modified
+     * @param lifetime the freshness lifetime (in milliseconds) given by the response headers, null if not given
+     * @param etag the entity tag of the response
+     * @param modified the last modification date of the response
+     */
+    public RemoteJwkSetResponse(@Nullable final JWKSet set, final boolean unmodified, @Nullable final Long lifetime,
+            @Nullable final String etag, @Nullable final String modified) {
+        jwkSet = set;
+        notModified = unmodified;
+        freshnessLifetime = lifetime;
+        entityTag = etag;
+        lastModified = modified;
+    }
+
+    /**
+     * Get the fetched JWK set.
+     * 
+     * @return the fetched JWK set, null if the response was not modified
+     */
+    @Nullable public JWKSet getJwkSet() {
+        return jwkSet;
+    }
+
+    /**
+     * Whether the endpoint responded that the set has not been modified.
+     * 
+     * @return whether the endpoint responded that the set has not been modified
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * Get the freshness lifetime given by the Cache-Control or Expires response headers.
+     * 
+     * @return the freshness lifetime in milliseconds, null if not given
+     */
+    @Nullable public Long getFreshnessLifetime() {
+        return freshnessLifetime;
+    }
+
+    /**
+     * Get the entity tag of the response.
+     * 
+     * @return the entity tag of the response, null if not given
+     */
+    @Nullable public String getEntityTag() {
+        return entityTag;
+    }
+
+    /**
+     * Get the last modification date of the response.
+     * 
+     * @return the last modification date of the response, null if not given
+     */
+    @Nullable public String getLastModified() {
+        return lastModified;
+    }
+}
@@ -18,13 +18,21 @@ package org.geant.idpextension.oidc.metadata.support;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.Date;
 
+import javax.annotation.Nullable;
+
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.ParseException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.methods.RequestBuilder;
 import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.client.utils.DateUtils;
 import org.apache.http.util.EntityUtils;
 import org.opensaml.security.httpclient.HttpClientSecurityParameters;
 import org.opensaml.security.httpclient.HttpClientSecuritySupport;
@@ -55,10 +63,36 @@ public class RemoteJwkUtils {
      */
     public static JWKSet fetchRemoteJwkSet(final String logPrefix, final URI uri, final HttpClient httpClient, 
             final HttpClientSecurityParameters httpClientSecurityParameters) {
+        final RemoteJwkSetResponse response = fetchRemoteJwkSet(logPrefix, uri, httpClient,
+                httpClientSecurityParameters, null, null);
+        return response == null ? null : response.getJwkSet();
+    }
+
+    /**
+     * Fetches the JWK set from the given URI using the given client and security parameters. If the entity tag or
+     * the last modification date of the previous response is given, the request is made conditional.
+     * @param logPrefix The prefix for the log messages.
+     * @param uri The endpoint for the JWK set.
+     * @param httpClient The HTTP client used for fetching the JWK set.
+     * @param httpClientSecurityParameters The security parameters for the HTTP client, or null if not used.
+     * @param entityTag The entity tag of the previous response, sent in If-None-Match.
+     * @param lastModified The last modification date of the previous response, sent in If-Modified-Since.
+     * @return The response from the endpoint, or null if the JWK set couldn't be fetched.
+     */
+    public static RemoteJwkSetResponse fetchRemoteJwkSet(final String logPrefix, final URI uri,
+            final HttpClient httpClient, final HttpClientSecurityParameters httpClientSecurityParameters,
+            @Nullable final String entityTag, @Nullable final String lastModified) {
         final Logger log = LoggerFactory.getLogger(RemoteJwkUtils.class);
         final HttpResponse response;
         try {
-            final HttpUriRequest get = RequestBuilder.get().setUri(uri).build();
+            final RequestBuilder builder = RequestBuilder.get().setUri(uri);
+            if (entityTag != null) {
+                builder.addHeader(HttpHeaders.IF_NONE_MATCH, entityTag);
+            }
+            if (lastModified != null) {
+                builder.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+            }
+            final HttpUriRequest get = builder.build();
             final HttpClientContext clientContext = HttpClientContext.create();
             HttpClientSecuritySupport.marshalSecurityParameters(clientContext, httpClientSecurityParameters, true);
             HttpClientSecuritySupport.addDefaultTLSTrustEngineCriteria(clientContext, get);
@@ -72,6 +106,21 @@ public class RemoteJwkUtils {
             log.error("{} Could not get the JWK contents from {}", logPrefix, uri);
             return null;
         }
+        final int status = response.getStatusLine() != null ? response.getStatusLine().getStatusCode()
+                : HttpStatus.SC_OK;
+        final Long freshnessLifetime = getFreshnessLifetime(response);
+        final String responseEntityTag = getHeaderValue(response, HttpHeaders.ETAG);
+        final String responseLastModified = getHeaderValue(response, HttpHeaders.LAST_MODIFIED);
+        if (status == HttpStatus.SC_NOT_MODIFIED) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            log.debug("{} The JWK contents from {} have not been modified", logPrefix, uri);
+            return new RemoteJwkSetResponse(null, true, freshnessLifetime, responseEntityTag, responseLastModified);
+        }
+        if (status < 200 || status >= 300) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            log.error("{} Could not get the JWK contents from {}, status code {}", logPrefix, uri, status);
+            return null;
+        }
         final String output;
         try {
             output = EntityUtils.toString(response.getEntity(), "UTF-8");
@@ -95,7 +144,58 @@ public class RemoteJwkUtils {
             log.error("{} Could not parse the contents from {}", logPrefix, uri, e);
             return null;
         }
-        return jwkSet;
+        return new RemoteJwkSetResponse(jwkSet, false, freshnessLifetime, responseEntityTag, responseLastModified);
+    }
+
+    /**
+     * Gets the freshness lifetime of the response from its Cache-Control or Expires headers. The max-age directive
+     * takes precedence over the Expires header, and no-cache or no-store result in zero lifetime.
+     * @param response The HTTP response.
+     * @return The freshness lifetime in milliseconds, or null if not given by the headers.
+     */
+    public static Long getFreshnessLifetime(final HttpResponse response) {
+        final Header[] cacheControls = response.getHeaders(HttpHeaders.CACHE_CONTROL);
+        if (cacheControls != null) {
+            for (final Header cacheControl : cacheControls) {
+                for (final HeaderElement element : cacheControl.getElements()) {
+                    if ("no-cache".equalsIgnoreCase(element.getName())
+                            || "no-store".equalsIgnoreCase(element.getName())) {
+                        return 0L;
+                    }
+                    if ("max-age".equalsIgnoreCase(element.getName()) && element.getValue() != null) {
+                        try {
+                            return Math.max(0L, Long.parseLong(element.getValue().trim()) * 1000);
+                        } catch (NumberFormatException e) {
+                            return 0L;
+                        }
+                    }
+                }
+            }
+        }
+        final String expires = getHeaderValue(response, HttpHeaders.EXPIRES);
+        if (expires != null) {
+            final Date expiresDate = DateUtils.parseDate(expires);
+            if (expiresDate == null) {
+                // Invalid dates, such as 0, mean already expired
+                return 0L;
+            }
+            final String dateHeader = getHeaderValue(response, HttpHeaders.DATE);
+            final Date date = dateHeader != null ? DateUtils.parseDate(dateHeader) : null;
+            final long now = date != null ? date.getTime() : System.currentTimeMillis();
+            return Math.max(0L, expiresDate.getTime() - now);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the value of the first header with the given name.
+     * @param response The HTTP response.
+     * @param name The header name.
+     * @return The header value, or null if the header doesn't exist.
+     */
+    private static String getHeaderValue(final HttpResponse response, final String name) {
+        final Header header = response.getFirstHeader(name);
+        return header != null ? header.getValue() : null;
     }
 
 }
@@ -0,0 +1,363 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
+import net.shibboleth.utilities.java.support.component.AbstractIdentifiableInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+
+/**
+ * Caches the active token introspection responses in memory, so that the resource servers introspecting the same
+ * token repeatedly do not cause the token to be unwrapped and its revocation status to be checked on every call.
+ * 
+ * <p>
+ * The responses are keyed by the SHA-256 hash of the token and cached until the token expires, but at most for the
+ * maximum cache duration. The responses are invalidated by {@link #invalidate(String)} when the authorization code the
+ * token is derived from is revoked. Revocations made by the other nodes are seen only if a
+ * {@link RevocationEventChannel} is set, otherwise the maximum cache duration bounds the time a token revoked on an
+ * other node may still be reported active.
+ * </p>
+ * 
+ * <p>
+ * A response computed while a revocation took place may already be stale. The callers therefore take a stamp with
+ * {@link #getGeneration()} before checking the revocation status, and {@link #put} discards the response if any
+ * invalidation happened after the stamp was taken.
+ * </p>
+ */
+@ThreadSafeAfterInit
+public class IntrospectionCache extends AbstractIdentifiableInitializableComponent {
+
+    /** The default maximum number of cached responses. */
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /** Logger. */
+    @Nonnull
+    private final Logger log = LoggerFactory.getLogger(IntrospectionCache.class);
+
+    /** Maximum cache duration of a response. Default value: 1 minute. */
+    @Duration
+    @Positive
+    private long maxCacheDuration;
+
+    /** Maximum number of cached responses. */
+    @Positive
+    private long maximumSize;
+
+    /** Channel propagating the revocations from the other nodes, null if not used. */
+    @Nullable
+    private RevocationEventChannel eventChannel;
+
+    /** The cached responses, keyed by the token hash. */
+    @NonnullAfterInit
+    private Cache<String, CachedResponse> cache;
+
+    /** Number of invalidations, used for discarding the responses computed concurrently with an invalidation. */
+    @Nonnull
+    private final AtomicLong generation = new AtomicLong();
+
+    /** Number of lookups answered from the cache. */
+    @Nonnull
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /** Number of lookups not answered from the cache. */
+    @Nonnull
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * Constructor.
+     */
+    public IntrospectionCache() {
+        maxCacheDuration = 60 * 1000;
+        maximumSize = DEFAULT_MAXIMUM_SIZE;
+    }
+
+    /**
+     * Set the maximum cache duration of a response.
+     * 
+     * @param duration maximum cache duration in ms
+     */
+    @Duration
+    public void setMaxCacheDuration(@Duration @Positive final long duration) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        maxCacheDuration = Constraint.isGreaterThan(0, duration, "Maximum cache duration must be greater than 0");
+    }
+
+    /**
+     * Set the maximum number of cached responses.
+     * 
+     * @param size maximum number of cached responses
+     */
+    public void setMaximumSize(@Positive final long size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        maximumSize = Constraint.isGreaterThan(0, size, "Maximum size must be greater than 0");
+    }
+
+    /**
+     * Set the channel propagating the revocations from the other nodes.
+     * 
+     * @param channel the channel, null if not used
+     */
+    public void setEventChannel(@Nullable final RevocationEventChannel channel) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        eventChannel = channel;
+    }
+
+    /**
+     * Get the number of lookups answered from the cache.
+     * 
+     * @return number of lookups answered from the cache
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Get the number of lookups not answered from the cache.
+     * 
+     * @return number of lookups not answered from the cache
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        cache = CacheBuilder.newBuilder().maximumSize(maximumSize)
+                .expireAfterWrite(maxCacheDuration, TimeUnit.MILLISECONDS).build();
+        if (eventChannel != null) {
+            eventChannel.subscribe(new RevocationEventListener() {
+
+                @Override
+                public void onRevocation(@Nonnull final RevocationEvent event) {
+                    invalidate(event.getContext(), event.getValue());
+                }
+            });
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        super.doDestroy();
+    }
+
+    /**
+     * Get the stamp to be passed to {@link #put}, taken before the revocation status of the token is checked.
+     * 
+     * @return the current generation of the cache
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Get the cached response for the token.
+     * 
+     * @param token the introspected token
+     * @return the cached response, or null if there is none or the token has expired
+     */
+    @Nullable
+    public TokenIntrospectionSuccessResponse get(@Nonnull @NotEmpty final String token) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        final String key = DigestUtils.sha256Hex(token);
+        final CachedResponse cached = cache.getIfPresent(key);
+        if (cached == null) {
+            cacheMisses.incrementAndGet();
+            return null;
+        }
+        if (cached.getExpiration() <= System.currentTimeMillis()) {
+            cache.asMap().remove(key, cached);
+            cacheMisses.incrementAndGet();
+            return null;
+        }
+        cacheHits.incrementAndGet();
+        return cached.getResponse();
+    }
+
+    /**
+     * Cache the active response for the token. The response is not cached if the cache has been invalidated after the
+     * stamp was taken, or if the token has already expired.
+     * 
+     * @param token the introspected token
+     * @param authorizationCodeId the id of the authorization code the token is derived from
+     * @param response the response to cache
+     * @param expiration the expiration time of the token
+     * @param stamp the generation of the cache taken before the revocation status of the token was checked
+     */
+    public void put(@Nonnull @NotEmpty final String token, @Nonnull @NotEmpty final String authorizationCodeId,
+            @Nonnull final TokenIntrospectionSuccessResponse response, @Nullable final Date expiration,
+            final long stamp) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        if (!response.isActive() || expiration == null || expiration.getTime() <= System.currentTimeMillis()) {
+            return;
+        }
+        if (generation.get() != stamp) {
+            log.debug("Cache invalidated while introspecting token of authorization code {}, not caching",
+                    authorizationCodeId);
+            return;
+        }
+        final String key = DigestUtils.sha256Hex(token);
+        cache.put(key, new CachedResponse(authorizationCodeId, response, expiration.getTime()));
+        // An invalidation may have missed the entry just put.
+        if (generation.get() != stamp) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * Invalidate the cached responses for the tokens derived from the authorization code.
+     * 
+     * @param authorizationCodeId the id of the revoked authorization code
+     */
+    public void invalidate(@Nonnull @NotEmpty final String authorizationCodeId) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        generation.incrementAndGet();
+        final Iterator<Map.Entry<String, CachedResponse>> iterator = cache.asMap().entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (authorizationCodeId.equals(iterator.next().getValue().getAuthorizationCodeId())) {
+                iterator.remove();
+            }
+        }
+        log.debug("Invalidated the cached responses of authorization code {}", authorizationCodeId);
+    }
+
+    /**
+     * Invalidate the cached responses for the tokens revoked in the given revocation context: the tokens derived from
+     * the authorization code, or the tokens of the user principal or the client. Other contexts are ignored.
+     * 
+     * @param context the revocation context, see {@link RevocationCacheContexts}
+     * @param value the revoked value
+     */
+    public void invalidate(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String value) {
+        if (RevocationCacheContexts.AUTHORIZATION_CODE.equals(context)) {
+            invalidate(value);
+            return;
+        }
+        final boolean principal = RevocationCacheContexts.PRINCIPAL.equals(context);
+        if (!principal && !RevocationCacheContexts.CLIENT.equals(context)) {
+            return;
+        }
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        generation.incrementAndGet();
+        final Iterator<Map.Entry<String, CachedResponse>> iterator = cache.asMap().entrySet().iterator();
+        while (iterator.hasNext()) {
+            final TokenIntrospectionSuccessResponse response = iterator.next().getValue().getResponse();
+            final String cachedValue;
+            if (principal) {
+                cachedValue = response.getUsername();
+            } else {
+                cachedValue = response.getClientID() != null ? response.getClientID().getValue() : null;
+            }
+            if (value.equals(cachedValue)) {
+                iterator.remove();
+            }
+        }
+        log.debug("Invalidated the cached responses of {} in context {}", value, context);
+    }
+
+    /**
+     * A cached introspection response.
+     */
+    private static class CachedResponse {
+
+        /** The id of the authorization code the token is derived from. */
+        @Nonnull
+        private final String authorizationCodeId;
+
+        /** The cached response. */
+        @Nonnull
+        private final TokenIntrospectionSuccessResponse response;
+
+        /** The expiration time of the token. */
+        private final long expiration;
+
+        /**
+         * Constructor.
+         * 
+         * @param codeId the id of the authorization code the token is derived from
+         * @param resp the cached response
+         * @param exp the expiration time of the token
+         */
+        CachedResponse(@Nonnull final String codeId, @Nonnull final TokenIntrospectionSuccessResponse resp,
+                final long exp) {
+            authorizationCodeId = codeId;
+            response = resp;
+            expiration = exp;
+        }
+
+        /**
+         * Get the id of the authorization code the token is derived from.
+         * 
+         * @return the id of the authorization code
+         */
+        @Nonnull
+        public String getAuthorizationCodeId() {
+            return authorizationCodeId;
+        }
+
+        /**
+         * Get the cached response.
+         * 
+         * @return the cached response
+         */
+        @Nonnull
+        public TokenIntrospectionSuccessResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * Get the expiration time of the token.
+         * 
+         * @return the expiration time of the token
+         */
+        public long getExpiration() {
+            return expiration;
+        }
+    }
+}
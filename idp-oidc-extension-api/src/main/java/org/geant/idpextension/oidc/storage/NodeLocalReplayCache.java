@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
+import net.shibboleth.utilities.java.support.component.AbstractIdentifiableInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replay cache for the values issued and redeemed on this node only, kept in memory instead of a shared
+ * {@link org.opensaml.storage.StorageService}.
+ * 
+ * <p>
+ * The authorization codes issued while this cache is configured carry the node id and a readable routing hint, see
+ * {@link org.geant.idpextension.oidc.token.support.TokenClaimsSet#getRoutingHint(String)}. The load balancer must
+ * route the token requests to the issuing node by the routing hint of the code parameter in the POST body, as a code
+ * redeemed on an other node cannot be checked against this cache and is rejected. The codes without a node id are
+ * checked against the shared replay cache as before.
+ * </p>
+ * 
+ * <p>
+ * The values are kept in buckets by their expiration time. As a value always has the same expiration time, it is
+ * always found from the same bucket, and whole buckets are dropped once all the values in them have expired.
+ * </p>
+ * 
+ * <p>
+ * The cache does not survive a restart of the node, so it cannot tell whether a value issued before its
+ * initialization has been checked already. Such values are rejected: the codes issued by the node before a restart
+ * cannot be redeemed after it. The issue times are compared at the second precision of the JWT claims.
+ * </p>
+ */
+@ThreadSafeAfterInit
+public class NodeLocalReplayCache extends AbstractIdentifiableInitializableComponent {
+
+    /** Pattern of the node id, characters needing no encoding in URLs. */
+    private static final Pattern NODE_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]{1,32}");
+
+    /** Logger. */
+    @Nonnull
+    private final Logger log = LoggerFactory.getLogger(NodeLocalReplayCache.class);
+
+    /** Id of this node. */
+    @NonnullAfterInit
+    private String nodeId;
+
+    /** Time span of the expiration times in a bucket. Default value: 1 minute. */
+    @Duration
+    @Positive
+    private long bucketDuration;
+
+    /** The buckets of values, keyed by the expiration time divided by the bucket duration. */
+    @Nonnull
+    private final ConcurrentMap<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+
+    /** The time this cache was initialized, truncated to whole seconds. */
+    private long initializationTime;
+
+    /** The time of the next purge of the expired buckets. */
+    @Nonnull
+    private final AtomicLong nextPurge = new AtomicLong();
+
+    /**
+     * Constructor.
+     */
+    public NodeLocalReplayCache() {
+        bucketDuration = 60 * 1000;
+    }
+
+    /**
+     * Get the id of this node.
+     * 
+     * @return id of this node
+     */
+    @NonnullAfterInit
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Set the id of this node, unique among the nodes. At most 32 letters, digits, underscores or hyphens.
+     * 
+     * @param id id of this node
+     */
+    public void setNodeId(@Nonnull @NotEmpty final String id) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        nodeId = Constraint.isNotNull(id, "Node id cannot be null");
+        Constraint.isTrue(NODE_ID_PATTERN.matcher(nodeId).matches(),
+                "Node id must be 1-32 letters, digits, underscores or hyphens");
+    }
+
+    /**
+     * Set the time span of the expiration times in a bucket.
+     * 
+     * @param duration time span in ms
+     */
+    @Duration
+    public void setBucketDuration(@Duration @Positive final long duration) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        bucketDuration = Constraint.isGreaterThan(0, duration, "Bucket duration must be greater than 0");
+    }
+
+    /**
+     * Get the time this cache was initialized, truncated to whole seconds. The values issued before are rejected.
+     * 
+     * @return the initialization time in ms
+     */
+    public long getInitializationTime() {
+        return initializationTime;
+    }
+
+    /**
+     * Get the number of values currently kept.
+     * 
+     * @return number of values
+     */
+    public int size() {
+        int size = 0;
+        for (final Set<String> bucket : buckets.values()) {
+            size += bucket.size();
+        }
+        return size;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        if (nodeId == null) {
+            throw new ComponentInitializationException("Node id cannot be null");
+        }
+        initializationTime = System.currentTimeMillis() / 1000 * 1000;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        buckets.clear();
+        super.doDestroy();
+    }
+
+    /**
+     * Returns false if the value has already been checked in the context, or was issued before this cache was
+     * initialized and may have been checked before a restart, true otherwise.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param s value to check
+     * @param issued time the value was issued
+     * @param expires time for disposal of the value from the cache, always the same for a value
+     * 
+     * @return true if the value has not been checked before
+     */
+    public boolean check(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s,
+            final long issued, final long expires) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        if (issued < initializationTime) {
+            log.warn("Value '{}' in context '{}' was issued before the cache was initialized, rejecting it as a "
+                    + "possible replay", s, context);
+            return false;
+        }
+        purge(System.currentTimeMillis());
+        final Long index = expires / bucketDuration;
+        Set<String> bucket = buckets.get(index);
+        if (bucket == null) {
+            final Set<String> newBucket = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            bucket = buckets.putIfAbsent(index, newBucket);
+            if (bucket == null) {
+                bucket = newBucket;
+            }
+        }
+        if (!bucket.add(context + '!' + s)) {
+            log.warn("Replay of value '{}' in context '{}' detected", s, context);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Drops the buckets of expired values, at most once per bucket duration.
+     * 
+     * @param now the current time
+     */
+    private void purge(final long now) {
+        final long next = nextPurge.get();
+        if (now < next || !nextPurge.compareAndSet(next, now + bucketDuration)) {
+            return;
+        }
+        final Iterator<Long> iterator = buckets.keySet().iterator();
+        while (iterator.hasNext()) {
+            if ((iterator.next() + 1) * bucketDuration <= now) {
+                iterator.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.minidev.json.JSONObject;
+import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
+import net.shibboleth.utilities.java.support.component.AbstractIdentifiableInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import org.opensaml.storage.StorageCapabilities;
+import org.opensaml.storage.StorageCapabilitiesEx;
+import org.opensaml.storage.StorageRecord;
+import org.opensaml.storage.StorageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nimbusds.jose.util.Base64URL;
+import com.nimbusds.jwt.JWT;
+import com.nimbusds.jwt.JWTParser;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.oauth2.sdk.util.JSONObjectUtils;
+import com.nimbusds.oauth2.sdk.util.URLUtils;
+import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
+
+/**
+ * Stores the pushed authorization requests for the short time between the back-channel push and the authentication
+ * request referring to them with the returned request_uri.
+ * 
+ * <p>
+ * The request parameters are stored together with the request object that was already decrypted and validated when
+ * the request was pushed, so the authorization endpoint can use them without fetching or validating the request
+ * object again. The entries are kept in a {@link StorageService}, so the push and the authentication request may be
+ * served by different nodes if the storage is shared between them. Each entry is bound to the client that pushed it
+ * and may be consumed only once.
+ * </p>
+ */
+@ThreadSafeAfterInit
+public class PushedAuthorizationRequestStore extends AbstractIdentifiableInitializableComponent {
+
+    /** The prefix of the request_uri values referring to the pushed authorization requests. */
+    @Nonnull
+    public static final String REQUEST_URI_PREFIX = "urn:ietf:params:oauth:request_uri:";
+
+    /** The storage context of the pushed authorization requests. */
+    @Nonnull
+    public static final String CONTEXT_NAME = PushedAuthorizationRequestStore.class.getName();
+
+    /** Number of random bytes in the reference to the stored request. */
+    private static final int REFERENCE_LENGTH = 32;
+
+    /** Name of the client id field in the stored value. */
+    private static final String FIELD_CLIENT_ID = "client_id";
+
+    /** Name of the request parameters field in the stored value. */
+    private static final String FIELD_PARAMETERS = "parameters";
+
+    /** Name of the request object field in the stored value. */
+    private static final String FIELD_REQUEST_OBJECT = "request_object";
+
+    /** Logger. */
+    @Nonnull
+    private final Logger log = LoggerFactory.getLogger(PushedAuthorizationRequestStore.class);
+
+    /** Source of the references to the stored requests. */
+    @Nonnull
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    /** Backing storage for the pushed requests. */
+    @NonnullAfterInit
+    private StorageService storage;
+
+    /** Lifetime of the pushed request. Default value: 60 seconds. */
+    @Positive
+    @Duration
+    private long requestLifetime;
+
+    /**
+     * Constructor.
+     */
+    public PushedAuthorizationRequestStore() {
+        requestLifetime = 60 * 1000;
+    }
+
+    /**
+     * Get the backing store for the pushed requests.
+     * 
+     * @return the backing store.
+     */
+    @NonnullAfterInit
+    public StorageService getStorage() {
+        return storage;
+    }
+
+    /**
+     * Set the backing store for the pushed requests.
+     * 
+     * @param storageService backing store to use
+     */
+    public void setStorage(@Nonnull final StorageService storageService) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        storage = Constraint.isNotNull(storageService, "StorageService cannot be null");
+        final StorageCapabilities caps = storage.getCapabilities();
+        if (caps instanceof StorageCapabilitiesEx) {
+            Constraint.isTrue(((StorageCapabilitiesEx) caps).isServerSide(), "StorageService cannot be client-side");
+        }
+    }
+
+    /**
+     * Get the lifetime of the pushed request.
+     * 
+     * @return lifetime of the pushed request in ms
+     */
+    @Positive
+    @Duration
+    public long getRequestLifetime() {
+        return requestLifetime;
+    }
+
+    /**
+     * Set the lifetime of the pushed request.
+     * 
+     * @param lifetime lifetime of the pushed request in ms
+     */
+    @Duration
+    public void setRequestLifetime(@Positive @Duration final long lifetime) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        requestLifetime = Constraint.isGreaterThan(0, lifetime, "Request lifetime must be greater than 0");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        if (storage == null) {
+            throw new ComponentInitializationException("StorageService cannot be null");
+        }
+    }
+
+    /**
+     * Whether the given request_uri refers to a pushed authorization request.
+     * 
+     * @param requestUri the request_uri to check
+     * @return true if the request_uri refers to a pushed authorization request
+     */
+    public static boolean isPushedRequestURI(@Nullable final URI requestUri) {
+        return requestUri != null && requestUri.toString().startsWith(REQUEST_URI_PREFIX);
+    }
+
+    /**
+     * Store the pushed authorization request.
+     * 
+     * @param clientId the client that pushed the request
+     * @param request the pushed request
+     * @param requestObject the validated and decrypted request object of the request, if any
+     * @return the request_uri referring to the stored request, or null if it could not be stored
+     */
+    @Nullable
+    public URI store(@Nonnull final ClientID clientId, @Nonnull final AuthenticationRequest request,
+            @Nullable final JWT requestObject) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        final Map<String, List<String>> parameters = new HashMap<>(request.toParameters());
+        parameters.remove("request");
+        parameters.remove("request_uri");
+        final JSONObject value = new JSONObject();
+        value.put(FIELD_CLIENT_ID, clientId.getValue());
+        value.put(FIELD_PARAMETERS, URLUtils.serializeParameters(parameters));
+        if (requestObject != null) {
+            value.put(FIELD_REQUEST_OBJECT, requestObject.serialize());
+        }
+        final String serialized = value.toJSONString();
+        if (serialized.length() > storage.getCapabilities().getValueSize()) {
+            log.error("Pushed request of client {} too long for StorageService (limit {})", clientId.getValue(),
+                    storage.getCapabilities().getValueSize());
+            return null;
+        }
+        final byte[] reference = new byte[REFERENCE_LENGTH];
+        secureRandom.nextBytes(reference);
+        final String key = Base64URL.encode(reference).toString();
+        try {
+            if (!storage.create(CONTEXT_NAME, key, serialized, System.currentTimeMillis() + requestLifetime)) {
+                log.error("Pushed request reference {} already in use", key);
+                return null;
+            }
+        } catch (IOException e) {
+            log.error("Exception writing pushed request to storage service", e);
+            return null;
+        }
+        log.debug("Stored pushed request of client {} with reference {}", clientId.getValue(), key);
+        return URI.create(REQUEST_URI_PREFIX + key);
+    }
+
+    /**
+     * Get the pushed authorization request without consuming it.
+     * 
+     * @param requestUri the request_uri referring to the request
+     * @param clientId the client the request must have been pushed by
+     * @return the stored request, or null if there is no such request for the client
+     */
+    @Nullable
+    public PushedRequest get(@Nonnull final URI requestUri, @Nonnull final ClientID clientId) {
+        return read(requestUri, clientId, false);
+    }
+
+    /**
+     * Get and consume the pushed authorization request. Only one of the concurrent callers gets the request.
+     * 
+     * @param requestUri the request_uri referring to the request
+     * @param clientId the client the request must have been pushed by
+     * @return the stored request, or null if there is no such request for the client
+     */
+    @Nullable
+    public PushedRequest remove(@Nonnull final URI requestUri, @Nonnull final ClientID clientId) {
+        return read(requestUri, clientId, true);
+    }
+
+    /**
+     * Read the pushed authorization request from the storage.
+     * 
+     * @param requestUri the request_uri referring to the request
+     * @param clientId the client the request must have been pushed by
+     * @param consume whether the request is removed from the storage
+     * @return the stored request, or null if there is no such request for the client
+     */
+    @Nullable
+    private PushedRequest read(@Nonnull final URI requestUri, @Nonnull final ClientID clientId,
+            final boolean consume) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        if (!isPushedRequestURI(requestUri)) {
+            log.debug("{} does not refer to a pushed request", requestUri);
+            return null;
+        }
+        final String key = requestUri.toString().substring(REQUEST_URI_PREFIX.length());
+        if (key.isEmpty() || key.length() > storage.getCapabilities().getKeySize()) {
+            log.debug("Invalid pushed request reference in {}", requestUri);
+            return null;
+        }
+        try {
+            final StorageRecord record = storage.read(CONTEXT_NAME, key);
+            if (record == null) {
+                log.debug("No pushed request found for {}", requestUri);
+                return null;
+            }
+            final JSONObject value = JSONObjectUtils.parse(record.getValue());
+            if (!clientId.getValue().equals(value.get(FIELD_CLIENT_ID))) {
+                log.warn("Pushed request {} was not pushed by client {}", requestUri, clientId.getValue());
+                return null;
+            }
+            if (consume && !storage.delete(CONTEXT_NAME, key)) {
+                log.warn("Pushed request {} has already been used", requestUri);
+                return null;
+            }
+            final Object requestObject = value.get(FIELD_REQUEST_OBJECT);
+            return new PushedRequest(URLUtils.parseParameters((String) value.get(FIELD_PARAMETERS)),
+                    requestObject == null ? null : JWTParser.parse((String) requestObject));
+        } catch (IOException e) {
+            log.error("Exception reading pushed request from storage service", e);
+            return null;
+        } catch (ParseException | com.nimbusds.oauth2.sdk.ParseException e) {
+            log.error("Unable to parse pushed request {}: {}", requestUri, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * A pushed authorization request read from the store.
+     */
+    public static class PushedRequest {
+
+        /** The parameters of the pushed request, excluding request and request_uri. */
+        @Nonnull
+        private final Map<String, List<String>> parameters;
+
+        /** The validated and decrypted request object of the pushed request. */
+        @Nullable
+        private final JWT requestObject;
+
+        /**
+         * Constructor.
+         * 
+         * @param params the parameters of the pushed request
+         * @param jwt the validated and decrypted request object of the pushed request
+         */
+        public PushedRequest(@Nonnull final Map<String, List<String>> params, @Nullable final JWT jwt) {
+            parameters = Collections.unmodifiableMap(Constraint.isNotNull(params, "Parameters cannot be null"));
+            requestObject = jwt;
+        }
+
+        /**
+         * Get the parameters of the pushed request, excluding request and request_uri.
+         * 
+         * @return the parameters of the pushed request
+         */
+        @Nonnull
+        public Map<String, List<String>> getParameters() {
+            return parameters;
+        }
+
+        /**
+         * Get the validated and decrypted request object of the pushed request.
+         * 
+         * @return the request object, or null if the request had none
+         */
+        @Nullable
+        public JWT getRequestObject() {
+            return requestObject;
+        }
+    }
+}
@@ -17,8 +17,20 @@
 package org.geant.idpextension.oidc.storage;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import net.shibboleth.utilities.java.support.annotation.Duration;
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
@@ -31,6 +43,7 @@ import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 
 import org.apache.commons.codec.digest.DigestUtils;
+import org.geant.idpextension.oidc.token.support.TokenClaimsSet;
 import org.opensaml.storage.StorageCapabilities;
 import org.opensaml.storage.StorageCapabilitiesEx;
 import org.opensaml.storage.StorageRecord;
@@ -42,8 +55,37 @@ import org.slf4j.LoggerFactory;
  * Stores and checks for revocation entries.
  * 
  * <p>
- * This class is thread-safe and uses a synchronized method to prevent race conditions within the underlying store
- * (lacking an atomic "check and insert" operation).
+ * This class is thread-safe without locking. Revocation relies on the atomic create-if-absent semantics of
+ * {@link StorageService#create(String, String, String, Long)} and falls back to an update of the expiration only if
+ * the entry already exists, so concurrent revocations of the same value cannot race each other. Checking the
+ * revocation status is a plain read and runs fully concurrently.
+ * </p>
+ * 
+ * <p>
+ * Optionally a local {@link RevocationFilter} may be placed in front of the storage. The filter is populated by
+ * {@link #revoke(String, String)} and lets {@link #isRevoked(String, String)} answer without a storage round trip for
+ * values that have definitely not been revoked. As the storage cannot be enumerated, the filter knows only the
+ * revocations performed through this instance or propagated to it by the event channel, which is therefore required.
+ * The channel replays the revocations that have not expired on subscription, so the filter is complete, and used, as
+ * soon as the instance is initialized, also after a restart. A single instance must be shared by all the components
+ * revoking and checking the values on a node.
+ * </p>
+ * 
+ * <p>
+ * The batch variants {@link #revoke(String, Collection)} and {@link #getRevoked(String, Collection)} serve the batch
+ * endpoints. The storage API has no multi-key operations, so they issue one storage operation per distinct value, but
+ * duplicate values, typically the many tokens derived from the same authorization code, cost nothing.
+ * </p>
+ * 
+ * <p>
+ * Besides single values, all the tokens of a user principal or a client issued up to a point in time may be revoked
+ * with {@link #revokeIssuedBefore(String, String, Date)}, in the {@link RevocationCacheContexts#PRINCIPAL} and
+ * {@link RevocationCacheContexts#CLIENT} contexts. A single entry holding the point in time is stored, however many
+ * tokens were outstanding, and {@link #isRevoked(TokenClaimsSet)} compares it to the issue time of the token. As the
+ * issue times have a precision of a second, the tokens issued during the same second as the revocation are revoked
+ * too. The point in time is propagated by the event channel and kept with the locally known revocations, and the
+ * responses of the {@link IntrospectionCache}, if set, are invalidated. As checking a token then costs two more
+ * lookups, these revocations are disabled unless {@link #setIssuedBeforeRevocationEnabled(boolean)} is set.
  * </p>
  */
 @ThreadSafeAfterInit
@@ -63,11 +105,63 @@ public class RevocationCache extends AbstractIdentifiableInitializableComponent
     @Duration
     private long expires;
 
+    /** Whether the negative lookup filter is used. */
+    private boolean negativeLookupFilterEnabled;
+
+    /** Number of entries the negative lookup filter is sized for. */
+    @Positive
+    private int negativeLookupFilterExpectedEntries;
+
+    /** Targeted false positive probability of the negative lookup filter. */
+    private double negativeLookupFilterFalsePositiveProbability;
+
+    /** The negative lookup filter, null if not enabled. */
+    private RevocationFilter negativeLookupFilter;
+
+    /** Number of lookups answered by the filter without storage access. */
+    @Nonnull
+    private final AtomicLong filterNegatives = new AtomicLong();
+
+    /** Number of lookups the filter passed on to the storage. */
+    @Nonnull
+    private final AtomicLong filterPositives = new AtomicLong();
+
+    /** Number of lookups the filter passed on to the storage that were not found revoked. */
+    @Nonnull
+    private final AtomicLong filterFalsePositives = new AtomicLong();
+
+    /** Channel propagating the revocations between the nodes, null if not used. */
+    private RevocationEventChannel eventChannel;
+
+    /** Whether the revocation status is checked only from the locally known revocations. */
+    private boolean localLookupOnly;
+
+    /** Revocations known locally, mapped to their expiration times. */
+    @Nonnull
+    private final ConcurrentMap<String, Long> localRevocations = new ConcurrentHashMap<>();
+
+    /** Revocations of the tokens issued up to a point in time known locally, mapped to the points in time. */
+    @Nonnull
+    private final ConcurrentMap<String, Long> localRevocationsIssuedBefore = new ConcurrentHashMap<>();
+
+    /** Number of local revocations recorded since the expired ones were last purged. */
+    @Nonnull
+    private final AtomicInteger localRevocationsSincePurge = new AtomicInteger();
+
+    /** Whether the tokens may be revoked by user principal or client issued up to a point in time. */
+    private boolean issuedBeforeRevocationEnabled;
+
+    /** Cache for the active introspection responses invalidated on revocation by point in time, null if not used. */
+    @Nullable
+    private IntrospectionCache introspectionCache;
+
     /**
      * Constructor.
      */
     public RevocationCache() {
         expires = 6 * 60 * 60 * 1000;
+        negativeLookupFilterExpectedEntries = 100000;
+        negativeLookupFilterFalsePositiveProbability = 0.01;
     }
 
     /**
@@ -126,12 +220,273 @@ public class RevocationCache extends AbstractIdentifiableInitializableComponent
         strict = flag;
     }
 
+    /**
+     * Set whether the negative lookup filter is used. Requires an event channel, through which all the revocations in
+     * the deployment are propagated to this instance.
+     * 
+     * @param flag whether the negative lookup filter is used
+     */
+    public void setNegativeLookupFilterEnabled(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        negativeLookupFilterEnabled = flag;
+    }
+
+    /**
+     * Set the number of entries the negative lookup filter is sized for. Default value: 100000.
+     * 
+     * @param entries number of revocations expected within the entry lifetime
+     */
+    public void setNegativeLookupFilterExpectedEntries(@Positive final int entries) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        negativeLookupFilterExpectedEntries =
+                Constraint.isGreaterThan(0, entries, "negative lookup filter expected entries must be greater than 0");
+    }
+
+    /**
+     * Set the targeted false positive probability of the negative lookup filter. Default value: 0.01.
+     * 
+     * @param probability false positive probability, between 0 and 1
+     */
+    public void setNegativeLookupFilterFalsePositiveProbability(final double probability) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        negativeLookupFilterFalsePositiveProbability = Constraint.isGreaterThan(0, probability,
+                "negative lookup filter false positive probability must be greater than 0");
+    }
+
+    /**
+     * Get the number of lookups answered by the negative lookup filter without storage access.
+     * 
+     * @return number of lookups answered by the filter
+     */
+    public long getFilterNegatives() {
+        return filterNegatives.get();
+    }
+
+    /**
+     * Get the number of lookups the negative lookup filter passed on to the storage.
+     * 
+     * @return number of probable hits
+     */
+    public long getFilterPositives() {
+        return filterPositives.get();
+    }
+
+    /**
+     * Get the number of lookups the negative lookup filter passed on to the storage that were not found revoked.
+     * 
+     * @return number of false positives
+     */
+    public long getFilterFalsePositives() {
+        return filterFalsePositives.get();
+    }
+
+    /**
+     * Get the channel propagating the revocations between the nodes.
+     * 
+     * @return the channel, null if not used
+     */
+    @Nullable
+    public RevocationEventChannel getEventChannel() {
+        return eventChannel;
+    }
+
+    /**
+     * Set the channel propagating the revocations between the nodes.
+     * 
+     * @param channel the channel, null if not used
+     */
+    public void setEventChannel(@Nullable final RevocationEventChannel channel) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        eventChannel = channel;
+    }
+
+    /**
+     * Set whether the revocation status is checked only from the locally known revocations, without reading the
+     * storage. Requires an event channel.
+     * 
+     * @param flag whether the revocation status is checked only from the locally known revocations
+     */
+    public void setLocalLookupOnly(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        localLookupOnly = flag;
+    }
+
+    /**
+     * Get whether the revocation status is checked only from the locally known revocations.
+     * 
+     * @return whether the revocation status is checked only from the locally known revocations
+     */
+    public boolean isLocalLookupOnly() {
+        return localLookupOnly;
+    }
+
+    /**
+     * Set whether the tokens may be revoked by user principal or client issued up to a point in time. If not set,
+     * {@link #revokeIssuedBefore(String, String, Date)} fails and {@link #isRevoked(TokenClaimsSet)} checks only the
+     * authorization code the token is derived from. Default value: false.
+     * 
+     * @param flag whether the tokens may be revoked by user principal or client issued up to a point in time
+     */
+    public void setIssuedBeforeRevocationEnabled(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        issuedBeforeRevocationEnabled = flag;
+    }
+
+    /**
+     * Get whether the tokens may be revoked by user principal or client issued up to a point in time.
+     * 
+     * @return whether the tokens may be revoked by user principal or client issued up to a point in time
+     */
+    public boolean isIssuedBeforeRevocationEnabled() {
+        return issuedBeforeRevocationEnabled;
+    }
+
+    /**
+     * Set the cache for the active introspection responses, invalidated by
+     * {@link #revokeIssuedBefore(String, String, Date)}.
+     * 
+     * @param cache the introspection cache, null if not used
+     */
+    public void setIntrospectionCache(@Nullable final IntrospectionCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        introspectionCache = cache;
+    }
+
     /** {@inheritDoc} */
     @Override
     public void doInitialize() throws ComponentInitializationException {
         if (storage == null) {
             throw new ComponentInitializationException("StorageService cannot be null");
         }
+        if (negativeLookupFilterEnabled) {
+            if (negativeLookupFilterFalsePositiveProbability >= 1) {
+                throw new ComponentInitializationException(
+                        "Negative lookup filter false positive probability must be less than 1");
+            }
+            // Without the channel the filter misses the revocations stored by the other nodes, and those stored
+            // before a restart.
+            if (eventChannel == null) {
+                throw new ComponentInitializationException(
+                        "Negative lookup filter requires a revocation event channel");
+            }
+            negativeLookupFilter = new RevocationFilter(negativeLookupFilterExpectedEntries,
+                    negativeLookupFilterFalsePositiveProbability, expires);
+            log.debug("Negative lookup filter of {} bits and {} hash functions is populated by the event channel",
+                    negativeLookupFilter.getNumBits(), negativeLookupFilter.getNumHashes());
+        }
+        if (eventChannel != null) {
+            eventChannel.subscribe(new RevocationEventListener() {
+
+                @Override
+                public void onRevocation(@Nonnull final RevocationEvent event) {
+                    log.debug("Received revocation of entry '{}' of context '{}'", event.getValue(),
+                            event.getContext());
+                    recordLocalRevocation(event.getContext(), event.getValue(), event.getExpiration(),
+                            event.getIssuedBefore());
+                    if (negativeLookupFilter != null) {
+                        final String value = event.getValue();
+                        negativeLookupFilter.put(event.getContext(),
+                                value.length() > storage.getCapabilities().getKeySize() ? DigestUtils.sha1Hex(value)
+                                        : value);
+                    }
+                }
+            });
+        } else if (localLookupOnly) {
+            throw new ComponentInitializationException("Local lookup requires a revocation event channel");
+        }
+    }
+
+    /**
+     * Records a revocation to the locally known revocations.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param s the revoked value
+     * @param expiration expiration time of the revocation
+     * @param issuedBefore point in time up to which the tokens of the value are revoked, null if the value itself is
+     *            revoked
+     */
+    private void recordLocalRevocation(@Nonnull final String context, @Nonnull final String s,
+            final long expiration, @Nullable final Long issuedBefore) {
+        if (expiration <= System.currentTimeMillis()) {
+            return;
+        }
+        final String localKey = context + '!' + s;
+        if (issuedBefore != null) {
+            putLater(localRevocationsIssuedBefore, localKey, issuedBefore);
+        }
+        putLater(localRevocations, localKey, expiration);
+        if (localRevocationsSincePurge.incrementAndGet() >= 1024) {
+            localRevocationsSincePurge.set(0);
+            final long now = System.currentTimeMillis();
+            final Iterator<Map.Entry<String, Long>> iterator = localRevocations.entrySet().iterator();
+            while (iterator.hasNext()) {
+                final Map.Entry<String, Long> entry = iterator.next();
+                if (entry.getValue() <= now) {
+                    iterator.remove();
+                    localRevocationsIssuedBefore.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps the key to the time unless it is already mapped to a later one.
+     * 
+     * @param map the map to update
+     * @param key the key
+     * @param time the time
+     */
+    private static void putLater(@Nonnull final ConcurrentMap<String, Long> map, @Nonnull final String key,
+            final long time) {
+        Long current = map.putIfAbsent(key, time);
+        while (current != null && current < time) {
+            if (map.replace(key, current, time)) {
+                break;
+            }
+            current = map.putIfAbsent(key, time);
+        }
+    }
+
+    /**
+     * Checks whether the value is among the locally known revocations.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param s the value to check
+     * @return true if the value is revoked according to the locally known revocations
+     */
+    private boolean isLocallyRevoked(@Nonnull final String context, @Nonnull final String s) {
+        final String localKey = context + '!' + s;
+        final Long expiration = localRevocations.get(localKey);
+        if (expiration == null) {
+            return false;
+        }
+        if (expiration > System.currentTimeMillis()) {
+            return true;
+        }
+        localRevocations.remove(localKey, expiration);
+        return false;
+    }
+
+    /**
+     * Checks whether the tokens of the value issued at the given point in time are among the locally known
+     * revocations.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param s the value to check
+     * @param issuedAt the issue time of the token
+     * @return true if the token is revoked according to the locally known revocations
+     */
+    private boolean isLocallyRevokedIssuedBefore(@Nonnull final String context, @Nonnull final String s,
+            @Nonnull final Date issuedAt) {
+        final Long revokedBefore = localRevocationsIssuedBefore.get(context + '!' + s);
+        return revokedBefore != null && issuedAt.getTime() <= revokedBefore && isLocallyRevoked(context, s);
     }
 
     /**
@@ -143,7 +498,7 @@ public class RevocationCache extends AbstractIdentifiableInitializableComponent
      * @return true if value has successfully been listed as revoked in the cache.
      */
     @SuppressWarnings("rawtypes")
-    public synchronized boolean revoke(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s) {
+    public boolean revoke(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s) {
         String key;
 
         StorageCapabilities caps = storage.getCapabilities();
@@ -155,22 +510,49 @@ public class RevocationCache extends AbstractIdentifiableInitializableComponent
         } else {
             key = s;
         }
+        if (negativeLookupFilter != null) {
+            negativeLookupFilter.put(context, key);
+        }
+        final long expiration = System.currentTimeMillis() + expires;
+        if (eventChannel != null) {
+            recordLocalRevocation(context, s, expiration, null);
+        }
         try {
-            StorageRecord entry = storage.read(context, key);
-            if (entry == null) {
-                log.debug("Entry '{}' of context '{}' is not yet on list of revoked entries,"
-                        + " adding to cache with expiration time {}", key, context, expires);
-                storage.create(context, key, "y", System.currentTimeMillis() + expires);
-                return true;
+            if (storage.create(context, key, "y", expiration)) {
+                log.debug("Entry '{}' of context '{}' was not yet on list of revoked entries,"
+                        + " added to cache with expiration time {}", key, context, expires);
             } else {
-                storage.update(context, key, "y", System.currentTimeMillis() + expires);
+                // Entry exists already, created either earlier or by a concurrent revocation. If it expired in
+                // between the two calls it is simply created again.
+                if (!storage.update(context, key, "y", expiration)) {
+                    storage.create(context, key, "y", expiration);
+                }
                 log.debug("Entry '{}' of context '{}' was already revoked, updating expiration", key, context);
-                return true;
             }
         } catch (IOException e) {
             log.error("Exception reading/writing to storage service, returning {}", e, strict ? "failure" : "success");
             return !strict;
         }
+        publish(new RevocationEvent(context, s, expiration));
+        return true;
+    }
+
+    /**
+     * Publishes the revocation to the event channel, if any. A failure is only logged, as the revocation has already
+     * been stored and the peers still find it in the storage unless they check the local revocations only.
+     * 
+     * @param event the revocation event
+     */
+    private void publish(@Nonnull final RevocationEvent event) {
+        if (eventChannel == null) {
+            return;
+        }
+        try {
+            eventChannel.publish(event);
+        } catch (IOException e) {
+            log.error("Failed to publish revocation of entry '{}' of context '{}': {}", event.getValue(),
+                    event.getContext(), e.getMessage());
+        }
     }
 
     /**
@@ -182,7 +564,7 @@ public class RevocationCache extends AbstractIdentifiableInitializableComponent
      * @return false if the check value is not found in the cache
      */
     @SuppressWarnings("rawtypes")
-    public synchronized boolean isRevoked(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s) {
+    public boolean isRevoked(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s) {
         String key;
         StorageCapabilities caps = storage.getCapabilities();
         if (context.length() > caps.getContextSize()) {
@@ -194,10 +576,29 @@ public class RevocationCache extends AbstractIdentifiableInitializableComponent
             key = s;
         }
 
+        if (eventChannel != null) {
+            if (isLocallyRevoked(context, s)) {
+                log.debug("Entry '{}' is revoked according to the local revocations", s);
+                return true;
+            }
+            if (localLookupOnly) {
+                log.debug("Entry '{}' is not revoked according to the local revocations", s);
+                return false;
+            }
+        }
+        final Boolean filterResult = lookupNegativeLookupFilter(context, key);
+        if (Boolean.FALSE.equals(filterResult)) {
+            log.debug("Entry '{}' is not revoked according to the negative lookup filter", s);
+            return false;
+        }
+        final boolean probableHit = Boolean.TRUE.equals(filterResult);
         try {
             StorageRecord entry = storage.read(context, key);
             if (entry == null) {
-                log.debug("Entry '{}' is not revoked");
+                if (probableHit) {
+                    filterFalsePositives.incrementAndGet();
+                }
+                log.debug("Entry '{}' is not revoked", s);
                 return false;
             } else {
                 log.debug("Entry '{}' is revoked", s);
@@ -209,4 +610,239 @@ public class RevocationCache extends AbstractIdentifiableInitializableComponent
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * Consults the negative lookup filter, if any, and updates its counters.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param key the storage key of the value
+     * @return false if the value has definitely not been revoked, true if it might have been revoked, null if the
+     *         filter is not in use
+     */
+    @Nullable
+    private Boolean lookupNegativeLookupFilter(@Nonnull final String context, @Nonnull final String key) {
+        if (negativeLookupFilter == null) {
+            return null;
+        }
+        if (!negativeLookupFilter.mightContain(context, key)) {
+            filterNegatives.incrementAndGet();
+            return false;
+        }
+        filterPositives.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Revokes all the tokens of the value, a user principal or a client id, issued up to the given point in time. If
+     * the value has already been revoked, the later of the points in time is kept and the expiration is updated.
+     * 
+     * @param context a context label to subdivide the cache, {@link RevocationCacheContexts#PRINCIPAL} or
+     *            {@link RevocationCacheContexts#CLIENT}
+     * @param s value to revoke
+     * @param issuedBefore the tokens issued up to this point in time are revoked
+     * 
+     * @return true if value has successfully been listed as revoked in the cache, false also if these revocations
+     *         are not enabled
+     */
+    public boolean revokeIssuedBefore(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s,
+            @Nonnull final Date issuedBefore) {
+        if (!issuedBeforeRevocationEnabled) {
+            log.error("Revocation of the tokens of '{}' of context '{}' issued before a point in time is not enabled",
+                    s, context);
+            return false;
+        }
+        final StorageCapabilities caps = storage.getCapabilities();
+        if (context.length() > caps.getContextSize()) {
+            log.error("context {} too long for StorageService (limit {})", context, caps.getContextSize());
+            return false;
+        }
+        final String key = s.length() > caps.getKeySize() ? DigestUtils.sha1Hex(s) : s;
+        if (negativeLookupFilter != null) {
+            negativeLookupFilter.put(context, key);
+        }
+        final long expiration = System.currentTimeMillis() + expires;
+        long revokedBefore = issuedBefore.getTime();
+        if (eventChannel != null) {
+            recordLocalRevocation(context, s, expiration, revokedBefore);
+        }
+        try {
+            if (!storage.create(context, key, Long.toString(revokedBefore), expiration)) {
+                final Long current = getRevokedIssuedBefore(context, key);
+                if (current != null && current > revokedBefore) {
+                    revokedBefore = current;
+                }
+                if (!storage.update(context, key, Long.toString(revokedBefore), expiration)) {
+                    storage.create(context, key, Long.toString(revokedBefore), expiration);
+                }
+            }
+            log.debug("Tokens of '{}' of context '{}' issued before {} revoked", s, context, revokedBefore);
+        } catch (IOException e) {
+            log.error("Exception reading/writing to storage service, returning {}", e, strict ? "failure" : "success");
+            invalidateIntrospectionCache(context, s);
+            return !strict;
+        }
+        // Invalidated only once stored, so that no introspection can cache the response from a stale read.
+        invalidateIntrospectionCache(context, s);
+        publish(new RevocationEvent(context, s, expiration, revokedBefore));
+        return true;
+    }
+
+    /**
+     * Invalidates the responses of the introspection cache, if any, for the revoked value.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param s the revoked value
+     */
+    private void invalidateIntrospectionCache(@Nonnull final String context, @Nonnull final String s) {
+        if (introspectionCache != null) {
+            introspectionCache.invalidate(context, s);
+        }
+    }
+
+    /**
+     * Returns true if the tokens of the value issued at the given point in time have been revoked.
+     * 
+     * @param context a context label to subdivide the cache, {@link RevocationCacheContexts#PRINCIPAL} or
+     *            {@link RevocationCacheContexts#CLIENT}
+     * @param s value to check
+     * @param issuedAt the issue time of the token
+     * 
+     * @return false if the token has been confirmed as not revoked
+     */
+    public boolean isRevokedIssuedBefore(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s,
+            @Nonnull final Date issuedAt) {
+        final StorageCapabilities caps = storage.getCapabilities();
+        if (context.length() > caps.getContextSize()) {
+            log.error("context {} too long for StorageService (limit {})", context, caps.getContextSize());
+            return true;
+        }
+        final String key = s.length() > caps.getKeySize() ? DigestUtils.sha1Hex(s) : s;
+        if (eventChannel != null) {
+            if (isLocallyRevokedIssuedBefore(context, s, issuedAt)) {
+                log.debug("Tokens of '{}' issued at {} are revoked according to the local revocations", s,
+                        issuedAt.getTime());
+                return true;
+            }
+            if (localLookupOnly) {
+                log.debug("Tokens of '{}' issued at {} are not revoked according to the local revocations", s,
+                        issuedAt.getTime());
+                return false;
+            }
+        }
+        final Boolean filterResult = lookupNegativeLookupFilter(context, key);
+        if (Boolean.FALSE.equals(filterResult)) {
+            log.debug("Tokens of '{}' are not revoked according to the negative lookup filter", s);
+            return false;
+        }
+        try {
+            final Long revokedBefore = getRevokedIssuedBefore(context, key);
+            if (revokedBefore == null) {
+                if (Boolean.TRUE.equals(filterResult)) {
+                    filterFalsePositives.incrementAndGet();
+                }
+                return false;
+            }
+            // The issue times are truncated to seconds.
+            final boolean revoked = issuedAt.getTime() <= revokedBefore;
+            log.debug("Tokens of '{}' issued before {} are revoked, token issued at {} is {}", s, revokedBefore,
+                    issuedAt.getTime(), revoked ? "revoked" : "not revoked");
+            return revoked;
+        } catch (IOException e) {
+            log.error("Exception reading/writing to storage service, returning {}", e, strict ? "failure" : "success");
+            return !strict;
+        }
+    }
+
+    /**
+     * Reads the point in time up to which the tokens of the value are revoked.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param key the storage key of the value
+     * @return the point in time in milliseconds, or null if the tokens are not revoked
+     * @throws IOException if the storage cannot be read
+     */
+    @Nullable
+    private Long getRevokedIssuedBefore(@Nonnull final String context, @Nonnull final String key)
+            throws IOException {
+        final StorageRecord entry = storage.read(context, key);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return Long.valueOf(entry.getValue());
+        } catch (NumberFormatException e) {
+            log.error("Entry '{}' of context '{}' has an invalid value, treating all tokens as revoked", key, context);
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Returns true if the token has been revoked, either by the id of the authorization code it is derived from or by
+     * its user principal or client, as revoked by {@link #revokeIssuedBefore(String, String, Date)}.
+     * 
+     * @param tokenClaimsSet the token to check
+     * 
+     * @return false if the token has been confirmed as not revoked
+     */
+    public boolean isRevoked(@Nonnull final TokenClaimsSet tokenClaimsSet) {
+        return isRevoked(RevocationCacheContexts.AUTHORIZATION_CODE, tokenClaimsSet.getID())
+                || isRevokedIssuedBefore(tokenClaimsSet);
+    }
+
+    /**
+     * Returns true if the token has been revoked by its user principal or client, as revoked by
+     * {@link #revokeIssuedBefore(String, String, Date)}. Returns false without any lookup if these revocations are not
+     * enabled.
+     * 
+     * @param tokenClaimsSet the token to check
+     * 
+     * @return false if the token has been confirmed as not revoked
+     */
+    public boolean isRevokedIssuedBefore(@Nonnull final TokenClaimsSet tokenClaimsSet) {
+        if (!issuedBeforeRevocationEnabled) {
+            return false;
+        }
+        final Date issuedAt = tokenClaimsSet.getClaimsSet().getIssueTime();
+        return isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, tokenClaimsSet.getPrincipal(), issuedAt)
+                || isRevokedIssuedBefore(RevocationCacheContexts.CLIENT, tokenClaimsSet.getClientID().getValue(),
+                        issuedAt);
+    }
+
+    /**
+     * Revokes all the values. Each distinct value is revoked once, as by {@link #revoke(String, String)}.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param values values to revoke
+     * 
+     * @return true if all the values have successfully been listed as revoked in the cache.
+     */
+    public boolean revoke(@Nonnull @NotEmpty final String context, @Nonnull final Collection<String> values) {
+        boolean success = true;
+        for (final String value : new LinkedHashSet<>(values)) {
+            if (!revoke(context, value)) {
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * Returns the values that are revoked, or could not be confirmed as not revoked. Each distinct value is checked
+     * once, as by {@link #isRevoked(String, String)}.
+     * 
+     * @param context a context label to subdivide the cache
+     * @param values values to check
+     * 
+     * @return the values found in the cache
+     */
+    @Nonnull
+    public Set<String> getRevoked(@Nonnull @NotEmpty final String context, @Nonnull final Collection<String> values) {
+        final Set<String> revoked = new HashSet<>();
+        for (final String value : new HashSet<>(values)) {
+            if (isRevoked(context, value)) {
+                revoked.add(value);
+            }
+        }
+        return revoked;
+    }
+
+}
@@ -30,4 +30,18 @@ public class RevocationCacheContexts {
     @NotEmpty
     public static final String AUTHORIZATION_CODE = RevocationCacheContexts.class.getName() + ".AUTHORIZATION_CODE";
 
+    /**
+     * ID of context for revoking the tokens of a user principal issued before a point in time.
+     */
+    @Nonnull
+    @NotEmpty
+    public static final String PRINCIPAL = RevocationCacheContexts.class.getName() + ".PRINCIPAL";
+
+    /**
+     * ID of context for revoking the tokens of a client issued before a point in time.
+     */
+    @Nonnull
+    @NotEmpty
+    public static final String CLIENT = RevocationCacheContexts.class.getName() + ".CLIENT";
+
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/** Event of a value being revoked, propagated between the nodes of a clustered deployment. */
+public class RevocationEvent {
+
+    /** Context label of the revoked value. */
+    @Nonnull
+    @NotEmpty
+    private final String context;
+
+    /** The revoked value. */
+    @Nonnull
+    @NotEmpty
+    private final String value;
+
+    /** Expiration time of the revocation in milliseconds since the epoch. */
+    private final long expiration;
+
+    /** Point in time up to which the tokens of the value are revoked, null if the value itself is revoked. */
+    @Nullable
+    private final Long issuedBefore;
+
+    /**
+     * Constructor.
+     * 
+     * @param ctx context label of the revoked value
+     * @param revokedValue the revoked value
+     * @param exp expiration time of the revocation in milliseconds since the epoch
+     */
+    public RevocationEvent(@Nonnull @NotEmpty final String ctx, @Nonnull @NotEmpty final String revokedValue,
+            final long exp) {
+        this(ctx, revokedValue, exp, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param ctx context label of the revoked value
+     * @param revokedValue the revoked value
+     * @param exp expiration time of the revocation in milliseconds since the epoch
+     * @param before point in time up to which the tokens of the value are revoked in milliseconds since the epoch,
+     *            null if the value itself is revoked
+     */
+    public RevocationEvent(@Nonnull @NotEmpty final String ctx, @Nonnull @NotEmpty final String revokedValue,
+            final long exp, @Nullable final Long before) {
+        context = Constraint.isNotEmpty(ctx, "Context cannot be null or empty");
+        value = Constraint.isNotEmpty(revokedValue, "Value cannot be null or empty");
+        expiration = exp;
+        issuedBefore = before;
+    }
+
+    /**
+     * Get the context label of the revoked value.
+     * 
+     * @return context label of the revoked value
+     */
+    @Nonnull
+    @NotEmpty
+    public String getContext() {
+        return context;
+    }
+
+    /**
+     * Get the revoked value.
+     * 
+     * @return the revoked value
+     */
+    @Nonnull
+    @NotEmpty
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Get the expiration time of the revocation.
+     * 
+     * @return expiration time of the revocation in milliseconds since the epoch
+     */
+    public long getExpiration() {
+        return expiration;
+    }
+
+    /**
+     * Get the point in time up to which the tokens of the value are revoked.
+     * 
+     * @return point in time in milliseconds since the epoch, null if the value itself is revoked
+     */
+    @Nullable
+    public Long getIssuedBefore() {
+        return issuedBefore;
+    }
+
+}
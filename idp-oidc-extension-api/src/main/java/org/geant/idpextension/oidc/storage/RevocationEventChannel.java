@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Channel propagating revocation events between the nodes of a clustered deployment. Implementations are expected to
+ * deliver the events published by any node to the listeners subscribed on every node, the publishing one included,
+ * including the events published before the listener subscribed as long as they have not expired.
+ */
+public interface RevocationEventChannel {
+
+    /**
+     * Publishes a revocation event to the peers and to the local listeners.
+     * 
+     * @param event the revocation event
+     * @throws IOException if the event cannot be published
+     */
+    void publish(@Nonnull RevocationEvent event) throws IOException;
+
+    /**
+     * Subscribes a listener to the events published by the peers and by this node.
+     * 
+     * @param listener the listener
+     */
+    void subscribe(@Nonnull RevocationEventListener listener);
+
+}
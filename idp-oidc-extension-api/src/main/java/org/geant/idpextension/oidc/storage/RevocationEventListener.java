@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import javax.annotation.Nonnull;
+
+/** Receives revocation events propagated by a {@link RevocationEventChannel}. */
+public interface RevocationEventListener {
+
+    /**
+     * Called for each revocation event received from the channel.
+     * 
+     * @param event the revocation event
+     */
+    void onRevocation(@Nonnull RevocationEvent event);
+
+}
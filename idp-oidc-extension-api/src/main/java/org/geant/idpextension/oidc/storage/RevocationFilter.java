@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+
+import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+import com.google.common.hash.Hashing;
+
+/**
+ * Time rotated Bloom filter of revoked values. A negative answer from {@link #mightContain(String, String)} is
+ * definite for any value put to the filter within the rotation interval, a positive answer is probable.
+ * 
+ * <p>
+ * The filter consists of two generations. Values are put to the current generation and looked up from both. Once the
+ * current generation is older than the rotation interval it becomes the previous one and the former previous
+ * generation is dropped. With the rotation interval set to the lifetime of the revocation entries a value stays in the
+ * filter at least as long as the corresponding entry stays in the storage.
+ * </p>
+ * 
+ * <p>
+ * This class is thread-safe and lock-free.
+ * </p>
+ */
+public class RevocationFilter {
+
+    /** Number of bits in a single generation. */
+    private final int numBits;
+
+    /** Number of hash functions. */
+    private final int numHashes;
+
+    /** Interval of rotating the generations. */
+    @Duration
+    private final long rotationInterval;
+
+    /** Current and previous generations. */
+    @Nonnull
+    private final AtomicReference<Generations> generations;
+
+    /**
+     * Constructor.
+     * 
+     * @param expectedEntries number of entries expected in one generation
+     * @param falsePositiveProbability targeted false positive probability, between 0 and 1
+     * @param interval interval of rotating the generations in milliseconds
+     */
+    public RevocationFilter(@Positive final int expectedEntries, final double falsePositiveProbability,
+            @Positive @Duration final long interval) {
+        Constraint.isGreaterThan(0, expectedEntries, "Expected entries must be greater than 0");
+        Constraint.isTrue(falsePositiveProbability > 0 && falsePositiveProbability < 1,
+                "False positive probability must be between 0 and 1");
+        rotationInterval = Constraint.isGreaterThan(0, interval, "Rotation interval must be greater than 0");
+        final long bits =
+                (long) Math.ceil(-expectedEntries * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        numBits = (int) Math.max(64, Math.min(bits, Integer.MAX_VALUE - 63));
+        numHashes = Math.max(1, (int) Math.round((double) numBits / expectedEntries * Math.log(2)));
+        generations = new AtomicReference<>(new Generations(newGeneration(), null, System.currentTimeMillis()));
+    }
+
+    /**
+     * Get the number of bits in a single generation.
+     * 
+     * @return number of bits in a single generation
+     */
+    public int getNumBits() {
+        return numBits;
+    }
+
+    /**
+     * Get the number of hash functions.
+     * 
+     * @return number of hash functions
+     */
+    public int getNumHashes() {
+        return numHashes;
+    }
+
+    /**
+     * Put value to the filter.
+     * 
+     * @param context a context label to subdivide the filter
+     * @param value value to put
+     */
+    public void put(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String value) {
+        final AtomicLongArray bitArray = currentGenerations().current;
+        final long[] hashes = hash(context, value);
+        for (int i = 0; i < numHashes; i++) {
+            final int index = index(hashes, i);
+            final long mask = 1L << index;
+            long word;
+            do {
+                word = bitArray.get(index >>> 6);
+                if ((word & mask) != 0) {
+                    break;
+                }
+            } while (!bitArray.compareAndSet(index >>> 6, word, word | mask));
+        }
+    }
+
+    /**
+     * Check whether the value might have been put to the filter.
+     * 
+     * @param context a context label to subdivide the filter
+     * @param value value to check
+     * @return false if the value has definitely not been put to the filter, true if it probably has
+     */
+    public boolean mightContain(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String value) {
+        final Generations current = currentGenerations();
+        final long[] hashes = hash(context, value);
+        return contains(current.current, hashes) || (current.previous != null && contains(current.previous, hashes));
+    }
+
+    /**
+     * Check whether all the bits of the value are set in the bit array.
+     * 
+     * @param bitArray bit array to check
+     * @param hashes hashes of the value
+     * @return true if all the bits are set
+     */
+    private boolean contains(@Nonnull final AtomicLongArray bitArray, @Nonnull final long[] hashes) {
+        for (int i = 0; i < numHashes; i++) {
+            final int index = index(hashes, i);
+            if ((bitArray.get(index >>> 6) & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the generations, rotating them first if the current generation has outlived the rotation interval.
+     * 
+     * @return generations to use
+     */
+    @Nonnull
+    private Generations currentGenerations() {
+        final long now = System.currentTimeMillis();
+        Generations current = generations.get();
+        while (now - current.started >= rotationInterval) {
+            final Generations rotated;
+            if (now - current.started >= 2 * rotationInterval) {
+                // Both generations have outlived their entries.
+                rotated = new Generations(newGeneration(), null, now);
+            } else {
+                rotated = new Generations(newGeneration(), current.current, current.started + rotationInterval);
+            }
+            if (generations.compareAndSet(current, rotated)) {
+                return rotated;
+            }
+            current = generations.get();
+        }
+        return current;
+    }
+
+    /**
+     * Creates an empty generation.
+     * 
+     * @return empty bit array
+     */
+    @Nonnull
+    private AtomicLongArray newGeneration() {
+        return new AtomicLongArray((numBits + 63) >>> 6);
+    }
+
+    /**
+     * Calculates the bit index for the i:th hash function using double hashing.
+     * 
+     * @param hashes base hashes of the value
+     * @param i ordinal of the hash function
+     * @return bit index
+     */
+    private int index(@Nonnull final long[] hashes, final int i) {
+        return (int) (((hashes[0] + i * hashes[1]) & Long.MAX_VALUE) % numBits);
+    }
+
+    /**
+     * Calculates the two base hashes of the value.
+     * 
+     * @param context context of the value
+     * @param value the value
+     * @return two 64 bit hashes
+     */
+    @Nonnull
+    private static long[] hash(@Nonnull final String context, @Nonnull final String value) {
+        final ByteBuffer hash = ByteBuffer.wrap(Hashing.murmur3_128().newHasher()
+                .putString(context, StandardCharsets.UTF_8).putByte((byte) 0)
+                .putString(value, StandardCharsets.UTF_8).hash().asBytes());
+        return new long[] {hash.getLong(0), hash.getLong(8)};
+    }
+
+    /** Immutable holder of the filter generations. */
+    private static final class Generations {
+
+        /** Generation values are put to. */
+        @Nonnull
+        private final AtomicLongArray current;
+
+        /** Previous generation, only looked up. */
+        private final AtomicLongArray previous;
+
+        /** Start time of the current generation. */
+        private final long started;
+
+        /**
+         * Constructor.
+         * 
+         * @param currentGeneration generation values are put to
+         * @param previousGeneration previous generation, may be null
+         * @param startTime start time of the current generation
+         */
+        private Generations(@Nonnull final AtomicLongArray currentGeneration,
+                final AtomicLongArray previousGeneration, final long startTime) {
+            current = currentGeneration;
+            previous = previousGeneration;
+            started = startTime;
+        }
+    }
+
+}
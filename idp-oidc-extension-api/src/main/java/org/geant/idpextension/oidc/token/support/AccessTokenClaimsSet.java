@@ -43,7 +43,7 @@ import java.text.ParseException;
 public final class AccessTokenClaimsSet extends TokenClaimsSet {
 
     /** Value of access token claims set type. */
-    private static final String VALUE_TYPE_AT = "at";
+    public static final String VALUE_TYPE_AT = "at";
 
     /** Class logger. */
     @Nonnull
@@ -114,14 +114,14 @@ public final class AccessTokenClaimsSet extends TokenClaimsSet {
     }
 
     /**
-     * Parses access token from string (JSON).
+     * Parses access token from string (JSON or compact).
      * 
-     * @param accessTokenClaimsSet JSON String representation of the code
+     * @param accessTokenClaimsSet JSON or compact String representation of the code
      * @return AccessTokenClaimsSet instance if parsing is successful.
      * @throws ParseException if parsing fails for example due to incompatible types.
      */
     public static AccessTokenClaimsSet parse(String accessTokenClaimsSet) throws ParseException {
-        JWTClaimsSet atClaimsSet = JWTClaimsSet.parse(accessTokenClaimsSet);
+        JWTClaimsSet atClaimsSet = parseClaimsSet(accessTokenClaimsSet);
         // Throws exception if parsing result is not expected one.
         verifyParsedClaims(VALUE_TYPE_AT, atClaimsSet);
         return new AccessTokenClaimsSet(atClaimsSet);
@@ -133,12 +133,12 @@ public final class AccessTokenClaimsSet extends TokenClaimsSet {
      * @param wrappedAccessToken wrapped access token
      * @param dataSealer sealer to unwrap the access token
      * @return access token claims set.
-     * @throws ParseException is thrown if unwrapped access token is not understood
+     * @throws ParseException is thrown if the tag or the unwrapped access token is not understood
      * @throws DataSealerException is thrown if unwrapping fails
      */
     public static AccessTokenClaimsSet parse(@Nonnull String wrappedAccessToken, @Nonnull DataSealer dataSealer)
             throws ParseException, DataSealerException {
-        return parse(dataSealer.unwrap(wrappedAccessToken));
+        return parse(dataSealer.unwrap(untag(VALUE_TYPE_AT, wrappedAccessToken)));
     }
 
     /** Builder to create instance of AccessTokenClaimsSet. */
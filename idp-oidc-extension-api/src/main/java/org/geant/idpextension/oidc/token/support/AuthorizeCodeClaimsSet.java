@@ -71,6 +71,7 @@ public final class AuthorizeCodeClaimsSet extends TokenClaimsSet {
      * @param consentableClaims consentable claims. May be NULL.
      * @param consentedClaims consented claims. May be NULL.
      * @param codeChallenge Code Challenge. May be NULL.
+     * @param nodeId Id of the issuing node. May be NULL.
      * @throws RuntimeException if called with nonallowed null parameters
      */
     private AuthorizeCodeClaimsSet(@Nonnull IdentifierGenerationStrategy idGenerator, @Nonnull ClientID clientID,
@@ -78,10 +79,14 @@ public final class AuthorizeCodeClaimsSet extends TokenClaimsSet {
             @Nonnull Date iat, @Nonnull Date exp, @Nullable Nonce nonce, @Nonnull Date authTime,
             @Nonnull URI redirectURI, @Nonnull Scope scope, @Nullable ClaimsRequest claims,
             @Nullable ClaimsSet dlClaims, @Nullable ClaimsSet dlClaimsID, @Nullable ClaimsSet dlClaimsUI,
-            @Nullable JSONArray consentableClaims, @Nullable JSONArray consentedClaims, @Nullable String codeChallenge) {
+            @Nullable JSONArray consentableClaims, @Nullable JSONArray consentedClaims, @Nullable String codeChallenge,
+            @Nullable String nodeId) {
         super(VALUE_TYPE_AC, idGenerator.generateIdentifier(), clientID, issuer, userPrincipal, subject, acr, iat, exp,
                 nonce, authTime, redirectURI, scope, claims, dlClaims, dlClaimsID, dlClaimsUI, consentableClaims,
                 consentedClaims, codeChallenge);
+        if (nodeId != null) {
+            tokenClaimsSet = new JWTClaimsSet.Builder(tokenClaimsSet).claim(KEY_NODE_ID, nodeId).build();
+        }
     }
 
     /**
@@ -94,36 +99,45 @@ public final class AuthorizeCodeClaimsSet extends TokenClaimsSet {
     }
 
     /**
-     * Parses authz code from string (JSON).
+     * Parses authz code from string (JSON or compact).
      * 
-     * @param authorizeCodeClaimsSet JSON String representation of the code
+     * @param authorizeCodeClaimsSet JSON or compact String representation of the code
      * @return AuthorizeCodeClaimsSet instance if parsing is successful.
      * @throws ParseException if parsing fails for example due to incompatible types.
      */
     public static AuthorizeCodeClaimsSet parse(String authorizeCodeClaimsSet) throws ParseException {
-        JWTClaimsSet acClaimsSet = JWTClaimsSet.parse(authorizeCodeClaimsSet);
+        JWTClaimsSet acClaimsSet = parseClaimsSet(authorizeCodeClaimsSet);
         // Throws exception if parsing result is not expected one.
         verifyParsedClaims(VALUE_TYPE_AC, acClaimsSet);
         return new AuthorizeCodeClaimsSet(acClaimsSet);
     }
 
     /**
-     * Parses authz code from sealed authorization code.
+     * Parses authz code from sealed authorization code. The routing hint, if any, must match the node id of the code.
      * 
      * @param wrappedAuthCode wrapped code
      * @param dataSealer sealer to unwrap the code
      * @return authorize code
-     * @throws ParseException is thrown if unwrapped code is not understood
+     * @throws ParseException is thrown if the tag, the routing hint or the unwrapped code is not understood
      * @throws DataSealerException is thrown if unwrapping fails
      */
     public static AuthorizeCodeClaimsSet parse(@Nonnull String wrappedAuthCode, @Nonnull DataSealer dataSealer)
             throws ParseException, DataSealerException {
-        return parse(dataSealer.unwrap(wrappedAuthCode));
+        final AuthorizeCodeClaimsSet claimsSet = parse(dataSealer.unwrap(untag(VALUE_TYPE_AC, wrappedAuthCode)));
+        final String routingHint = getRoutingHint(wrappedAuthCode);
+        if (routingHint != null && !routingHint.equals(claimsSet.getNodeId())) {
+            throw new ParseException("Routing hint " + routingHint + " does not match the node id of the code", 0);
+        }
+        return claimsSet;
     }
 
     /** Builder to create instance of AuthorizeCodeClaimsSet. */
     public static class Builder extends TokenClaimsSet.Builder<AuthorizeCodeClaimsSet> {
 
+        /** Id of the issuing node. */
+        @Nullable
+        private String nodeId;
+
         /**
          * Constructor for authorize code builder.
          * 
@@ -146,6 +160,17 @@ public final class AuthorizeCodeClaimsSet extends TokenClaimsSet {
                     redirectURI, scope);
         }
 
+        /**
+         * Set the id of the issuing node, for the node-local replay check.
+         * 
+         * @param id id of the issuing node
+         * @return this builder
+         */
+        public Builder setNodeId(@Nullable String id) {
+            nodeId = id;
+            return this;
+        }
+
         /**
          * Builds AuthorizeCodeClaimsSet.
          * 
@@ -153,7 +178,8 @@ public final class AuthorizeCodeClaimsSet extends TokenClaimsSet {
          */
         public AuthorizeCodeClaimsSet build() {
             return new AuthorizeCodeClaimsSet(idGen, rpId, iss, usrPrincipal, sub, acr, iat, exp, nonce, authTime,
-                    redirect, reqScope, claims, dlClaims, dlClaimsID, dlClaimsUI, cnsntlClaims, cnsntdClaims, codeChallenge);
+                    redirect, reqScope, claims, dlClaims, dlClaimsID, dlClaimsUI, cnsntlClaims, cnsntdClaims,
+                    codeChallenge, nodeId);
         }
 
     }
@@ -0,0 +1,386 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.token.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.google.common.io.BaseEncoding;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.nimbusds.jwt.JWTClaimsSet;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+/**
+ * Compact binary serialization of token claims sets, an alternative to the JSON serialization.
+ * 
+ * <p>
+ * The serialization starts with {@link #PREFIX} followed by the base64url encoded binary form: a version byte and a
+ * sequence of field tags and values terminated by a zero tag. Strings are length prefixed UTF-8, timestamps are
+ * variable length seconds since the epoch, claim requests and delivery claims are embedded as JSON, and claims
+ * without a tag of their own are carried together as a single JSON object.
+ * </p>
+ * 
+ * <p>
+ * The binary form wrapped with a {@link net.shibboleth.utilities.java.support.security.DataSealer} starts with
+ * {@link #SEALED_PREFIX} instead, followed by the bytes as ISO-8859-1 characters. The sealer compresses and base64
+ * encodes the value itself: encoding the binary form as base64url first makes it nearly incompressible, and the
+ * sealed token ends up longer than the sealed JSON serialization.
+ * </p>
+ */
+public final class CompactTokenClaimsSetSerializer {
+
+    /** Prefix of the compact serialization, distinguishing it from the JSON serialization. */
+    public static final String PREFIX = "~";
+
+    /** Prefix of the compact serialization for wrapping with a data sealer. */
+    public static final String SEALED_PREFIX = "^";
+
+    /** Current version of the binary form. */
+    private static final int VERSION = 1;
+
+    /** Tag terminating the fields. */
+    private static final int TAG_END = 0;
+
+    /** Tag of the JSON object carrying the claims without a tag of their own. */
+    private static final int TAG_OTHER_CLAIMS = 127;
+
+    /** Value kind for strings. */
+    private static final int KIND_STRING = 0;
+
+    /** Value kind for timestamps. */
+    private static final int KIND_TIME = 1;
+
+    /** Value kind for JSON objects. */
+    private static final int KIND_JSON_OBJECT = 2;
+
+    /** Value kind for string arrays. */
+    private static final int KIND_STRING_ARRAY = 3;
+
+    /** Claim names indexed by their tags. Tags must never be reused for other claims. */
+    private static final String[] CLAIM_NAMES = {null, TokenClaimsSet.KEY_TYPE, TokenClaimsSet.KEY_AC_ID,
+            TokenClaimsSet.KEY_ISSUER, TokenClaimsSet.KEY_USER_PRINCIPAL, TokenClaimsSet.KEY_SUBJECT,
+            TokenClaimsSet.KEY_CLIENTID, TokenClaimsSet.KEY_EXPIRATION_TIME, TokenClaimsSet.KEY_ISSUED_AT,
+            TokenClaimsSet.KEY_ACR, TokenClaimsSet.KEY_NONCE, TokenClaimsSet.KEY_AUTH_TIME,
+            TokenClaimsSet.KEY_REDIRECT_URI, TokenClaimsSet.KEY_SCOPE, TokenClaimsSet.KEY_CLAIMS,
+            TokenClaimsSet.KEY_DELIVERY_CLAIMS, TokenClaimsSet.KEY_DELIVERY_CLAIMS_IDTOKEN,
+            TokenClaimsSet.KEY_DELIVERY_CLAIMS_USERINFO, TokenClaimsSet.KEY_CONSENTABLE_CLAIMS,
+            TokenClaimsSet.KEY_CONSENTED_CLAIMS, TokenClaimsSet.KEY_CODE_CHALLENGE};
+
+    /** Value kinds indexed by the claim tags. */
+    private static final int[] CLAIM_KINDS = {-1, KIND_STRING, KIND_STRING, KIND_STRING, KIND_STRING, KIND_STRING,
+            KIND_STRING, KIND_TIME, KIND_TIME, KIND_STRING, KIND_STRING, KIND_TIME, KIND_STRING, KIND_STRING,
+            KIND_JSON_OBJECT, KIND_JSON_OBJECT, KIND_JSON_OBJECT, KIND_JSON_OBJECT, KIND_STRING_ARRAY,
+            KIND_STRING_ARRAY, KIND_STRING};
+
+    /** Claim tags by claim names. */
+    private static final Map<String, Integer> CLAIM_TAGS = new HashMap<>();
+
+    static {
+        for (int i = 1; i < CLAIM_NAMES.length; i++) {
+            CLAIM_TAGS.put(CLAIM_NAMES[i], i);
+        }
+    }
+
+    /** Base64url encoding without padding. */
+    private static final BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+    /**
+     * Constructor.
+     */
+    private CompactTokenClaimsSetSerializer() {
+        // prevented
+    }
+
+    /**
+     * Check whether the given serialized token claims set is in the compact form.
+     * 
+     * @param serialized serialized token claims set
+     * @return true if the serialization is in the compact form, false otherwise
+     */
+    public static boolean isCompact(@Nonnull final String serialized) {
+        return serialized.startsWith(PREFIX) || serialized.startsWith(SEALED_PREFIX);
+    }
+
+    /**
+     * Serialize the claims set in the compact form.
+     * 
+     * @param claimsSet claims set to serialize
+     * @return claims set in the compact form
+     */
+    @Nonnull
+    public static String serialize(@Nonnull final JWTClaimsSet claimsSet) {
+        return PREFIX + ENCODING.encode(toBytes(claimsSet));
+    }
+
+    /**
+     * Serialize the claims set in the compact form for wrapping with a data sealer, which compresses and encodes the
+     * value itself. The result is not printable.
+     * 
+     * @param claimsSet claims set to serialize
+     * @return claims set in the compact form for sealing
+     */
+    @Nonnull
+    public static String serializeForSealing(@Nonnull final JWTClaimsSet claimsSet) {
+        return SEALED_PREFIX + new String(toBytes(claimsSet), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Serialize the claims set in the binary form.
+     * 
+     * @param claimsSet claims set to serialize
+     * @return claims set in the binary form
+     */
+    @Nonnull
+    private static byte[] toBytes(@Nonnull final JWTClaimsSet claimsSet) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        final JSONObject otherClaims = new JSONObject();
+        try (final DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            for (final Map.Entry<String, Object> claim : claimsSet.toJSONObject().entrySet()) {
+                if (claim.getValue() == null) {
+                    continue;
+                }
+                final Integer tag = CLAIM_TAGS.get(claim.getKey());
+                if (tag == null || !writeClaim(out, tag, claim.getValue())) {
+                    otherClaims.put(claim.getKey(), claim.getValue());
+                }
+            }
+            if (!otherClaims.isEmpty()) {
+                out.writeByte(TAG_OTHER_CLAIMS);
+                writeString(out, otherClaims.toJSONString());
+            }
+            out.writeByte(TAG_END);
+        } catch (IOException e) {
+            // should never happen with an in-memory stream
+            throw new IllegalStateException("Could not serialize the claims set", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Parse the claims set from the compact form.
+     * 
+     * @param serialized claims set in the compact form
+     * @return the parsed claims set
+     * @throws ParseException if the serialization is not a valid compact form
+     */
+    @Nonnull
+    public static JWTClaimsSet parse(@Nonnull final String serialized) throws ParseException {
+        if (!isCompact(serialized)) {
+            throw new ParseException("Not a compact token claims set", 0);
+        }
+        final byte[] bytes;
+        if (serialized.startsWith(SEALED_PREFIX)) {
+            bytes = serialized.substring(SEALED_PREFIX.length()).getBytes(StandardCharsets.ISO_8859_1);
+        } else {
+            try {
+                bytes = ENCODING.decode(serialized.substring(PREFIX.length()));
+            } catch (IllegalArgumentException e) {
+                throw new ParseException("Invalid encoding of the compact token claims set", 0);
+            }
+        }
+        final JWTClaimsSet.Builder builder = new JWTClaimsSet.Builder();
+        try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            final int version = in.readUnsignedByte();
+            if (version != VERSION) {
+                throw new ParseException("Unsupported compact token claims set version " + version, 0);
+            }
+            for (int tag = in.readUnsignedByte(); tag != TAG_END; tag = in.readUnsignedByte()) {
+                if (tag == TAG_OTHER_CLAIMS) {
+                    for (final Map.Entry<String, Object> claim : JSONObjectUtils.parse(readString(in)).entrySet()) {
+                        builder.claim(claim.getKey(), claim.getValue());
+                    }
+                } else if (tag < CLAIM_NAMES.length) {
+                    builder.claim(CLAIM_NAMES[tag], readClaim(in, CLAIM_KINDS[tag]));
+                } else {
+                    throw new ParseException("Unknown tag " + tag + " in the compact token claims set", 0);
+                }
+            }
+        } catch (IOException e) {
+            throw new ParseException("Truncated compact token claims set", 0);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Write the claim value with the given tag.
+     * 
+     * @param out output to write to
+     * @param tag tag of the claim
+     * @param value value of the claim
+     * @return true if the value was written, false if it is not of the kind of the tag
+     * @throws IOException if writing fails
+     */
+    private static boolean writeClaim(@Nonnull final DataOutputStream out, final int tag, @Nonnull final Object value)
+            throws IOException {
+        switch (CLAIM_KINDS[tag]) {
+            case KIND_STRING:
+                if (!(value instanceof String)) {
+                    return false;
+                }
+                out.writeByte(tag);
+                writeString(out, (String) value);
+                return true;
+            case KIND_TIME:
+                if (!(value instanceof Number) || ((Number) value).longValue() < 0) {
+                    return false;
+                }
+                out.writeByte(tag);
+                writeUnsignedLong(out, ((Number) value).longValue());
+                return true;
+            case KIND_JSON_OBJECT:
+                if (!(value instanceof JSONObject)) {
+                    return false;
+                }
+                out.writeByte(tag);
+                writeString(out, ((JSONObject) value).toJSONString());
+                return true;
+            case KIND_STRING_ARRAY:
+                if (!(value instanceof JSONArray)) {
+                    return false;
+                }
+                for (final Object item : (JSONArray) value) {
+                    if (!(item instanceof String)) {
+                        return false;
+                    }
+                }
+                out.writeByte(tag);
+                writeUnsignedLong(out, ((JSONArray) value).size());
+                for (final Object item : (JSONArray) value) {
+                    writeString(out, (String) item);
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Read a claim value of the given kind.
+     * 
+     * @param in input to read from
+     * @param kind kind of the value
+     * @return the claim value
+     * @throws IOException if reading fails
+     * @throws ParseException if the value cannot be parsed
+     */
+    @Nonnull
+    private static Object readClaim(@Nonnull final DataInputStream in, final int kind)
+            throws IOException, ParseException {
+        switch (kind) {
+            case KIND_STRING:
+                return readString(in);
+            case KIND_TIME:
+                return new Date(readUnsignedLong(in) * 1000);
+            case KIND_JSON_OBJECT:
+                return JSONObjectUtils.parse(readString(in));
+            case KIND_STRING_ARRAY:
+                final long size = readUnsignedLong(in);
+                if (size > in.available()) {
+                    throw new ParseException("Invalid array size in the compact token claims set", 0);
+                }
+                final JSONArray array = new JSONArray();
+                for (long i = 0; i < size; i++) {
+                    array.add(readString(in));
+                }
+                return array;
+            default:
+                throw new ParseException("Unknown value kind in the compact token claims set", 0);
+        }
+    }
+
+    /**
+     * Write a length prefixed UTF-8 string.
+     * 
+     * @param out output to write to
+     * @param value string to write
+     * @throws IOException if writing fails
+     */
+    private static void writeString(@Nonnull final DataOutputStream out, @Nonnull final String value)
+            throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeUnsignedLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a length prefixed UTF-8 string.
+     * 
+     * @param in input to read from
+     * @return the string
+     * @throws IOException if reading fails
+     * @throws ParseException if the length is invalid
+     */
+    @Nonnull
+    private static String readString(@Nonnull final DataInputStream in) throws IOException, ParseException {
+        final long length = readUnsignedLong(in);
+        if (length > in.available()) {
+            throw new ParseException("Invalid string length in the compact token claims set", 0);
+        }
+        final byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a non-negative long as a variable length quantity, seven bits per byte.
+     * 
+     * @param out output to write to
+     * @param value value to write
+     * @throws IOException if writing fails
+     */
+    private static void writeUnsignedLong(@Nonnull final DataOutputStream out, final long value) throws IOException {
+        long remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            out.writeByte((int) ((remaining & 0x7F) | 0x80));
+            remaining >>>= 7;
+        }
+        out.writeByte((int) remaining);
+    }
+
+    /**
+     * Read a non-negative long written as a variable length quantity.
+     * 
+     * @param in input to read from
+     * @return the value
+     * @throws IOException if reading fails
+     * @throws ParseException if the value is too long
+     */
+    private static long readUnsignedLong(@Nonnull final DataInputStream in) throws IOException, ParseException {
+        long value = 0;
+        for (int shift = 0; shift < 63; shift += 7) {
+            final int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ParseException("Invalid variable length value in the compact token claims set", 0);
+    }
+}
@@ -32,7 +32,7 @@ import java.text.ParseException;
 public final class RefreshTokenClaimsSet extends TokenClaimsSet {
 
     /** Value of refresh token claims set type. */
-    private static final String VALUE_TYPE_RF = "rf";
+    public static final String VALUE_TYPE_RF = "rf";
 
     /** Class logger. */
     @Nonnull
@@ -67,14 +67,14 @@ public final class RefreshTokenClaimsSet extends TokenClaimsSet {
     }
 
     /**
-     * Parses refresh token from string (JSON).
+     * Parses refresh token from string (JSON or compact).
      * 
-     * @param refreshTokenClaimsSet JSON String representation of the code
+     * @param refreshTokenClaimsSet JSON or compact String representation of the code
      * @return AccessTokenClaimsSet instance if parsing is successful.
      * @throws ParseException if parsing fails for example due to incompatible types.
      */
     public static RefreshTokenClaimsSet parse(String refreshTokenClaimsSet) throws ParseException {
-        JWTClaimsSet atClaimsSet = JWTClaimsSet.parse(refreshTokenClaimsSet);
+        JWTClaimsSet atClaimsSet = parseClaimsSet(refreshTokenClaimsSet);
         // Throws exception if parsing result is not expected one.
         verifyParsedClaims(VALUE_TYPE_RF, atClaimsSet);
         return new RefreshTokenClaimsSet(atClaimsSet);
@@ -86,12 +86,12 @@ public final class RefreshTokenClaimsSet extends TokenClaimsSet {
      * @param wrappedAccessToken wrapped refresh token
      * @param dataSealer sealer to unwrap the refresh token
      * @return refresh token claims set.
-     * @throws ParseException is thrown if unwrapped refresh token is not understood
+     * @throws ParseException is thrown if the tag or the unwrapped refresh token is not understood
      * @throws DataSealerException is thrown if unwrapping fails
      */
     public static RefreshTokenClaimsSet parse(@Nonnull String wrappedAccessToken, @Nonnull DataSealer dataSealer)
             throws ParseException, DataSealerException {
-        return parse(dataSealer.unwrap(wrappedAccessToken));
+        return parse(dataSealer.unwrap(untag(VALUE_TYPE_RF, wrappedAccessToken)));
     }
 
 }
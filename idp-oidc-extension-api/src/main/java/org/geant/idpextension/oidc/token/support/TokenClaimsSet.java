@@ -47,6 +47,24 @@ import java.text.ParseException;
  */
 public class TokenClaimsSet {
 
+    /** Version of the tag prepended to the sealed tokens. */
+    public static final char SEALED_TAG_VERSION = '1';
+
+    /**
+     * Separator between the tag and the sealed token. The base64 output of the data sealer never contains it, which
+     * tells the tagged tokens from the untagged legacy ones.
+     */
+    public static final char SEALED_TAG_SEPARATOR = '.';
+
+    /** Maximum length of the tag, including the version and the separator. */
+    private static final int MAX_SEALED_TAG_LENGTH = 8;
+
+    /**
+     * Separator between the readable routing hint, the id of the issuing node, and the tagged sealed token. Neither
+     * the tag nor the base64 output of the data sealer contains it, and it needs no encoding in URLs.
+     */
+    public static final char ROUTING_HINT_SEPARATOR = '~';
+
     /** Identifier for the token. */
     public static final String KEY_AC_ID = "jti";
 
@@ -107,6 +125,9 @@ public class TokenClaimsSet {
     /** Code Challenge. */
     public static final String KEY_CODE_CHALLENGE = "cc";
 
+    /** Id of the node that issued the token, for the node-local replay check. */
+    public static final String KEY_NODE_ID = "nid";
+
     /** Claims set for the claim. */
     protected JWTClaimsSet tokenClaimsSet;
 
@@ -175,6 +196,113 @@ public class TokenClaimsSet {
 
     // Checkstyle: CyclomaticComplexity ON
 
+    /**
+     * Helper to parse the claims set from either the JSON or the compact serialization.
+     * 
+     * @param serialized serialized claims set. Must not be NULL.
+     * @return the parsed claims set
+     * @throws ParseException if parsing fails
+     */
+    @Nonnull
+    protected static JWTClaimsSet parseClaimsSet(@Nonnull String serialized) throws ParseException {
+        if (CompactTokenClaimsSetSerializer.isCompact(serialized)) {
+            return CompactTokenClaimsSetSerializer.parse(serialized);
+        }
+        return JWTClaimsSet.parse(serialized);
+    }
+
+    /**
+     * Get the type of a sealed token from its tag, without unwrapping the token.
+     * 
+     * @param token sealed token, with or without the routing hint. Must not be NULL.
+     * @return the type of the token, or null if the token is an untagged legacy token
+     * @throws ParseException if the token cannot be a sealed token
+     */
+    @Nullable
+    public static String getSealedType(@Nonnull String token) throws ParseException {
+        final String sealedToken = stripRoutingHint(token);
+        final int separator = sealedToken.indexOf(SEALED_TAG_SEPARATOR);
+        if (sealedToken.isEmpty()) {
+            throw new ParseException("Token is empty", 0);
+        }
+        if (separator < 0) {
+            // Untagged tokens sealed before the tags were introduced are accepted until they have all expired. The
+            // sealer may use either the standard or the URL safe base64 alphabet.
+            for (int i = 0; i < sealedToken.length(); i++) {
+                final char c = sealedToken.charAt(i);
+                if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '+' || c == '/'
+                        || c == '=' || c == '-' || c == '_')) {
+                    throw new ParseException("Token is not a sealed token", i);
+                }
+            }
+            return null;
+        }
+        if (separator < 2 || separator >= MAX_SEALED_TAG_LENGTH || separator == sealedToken.length() - 1) {
+            throw new ParseException("Token has an invalid tag", separator);
+        }
+        if (sealedToken.charAt(0) != SEALED_TAG_VERSION) {
+            throw new ParseException("Token tag has an unsupported version " + sealedToken.charAt(0), 0);
+        }
+        return sealedToken.substring(1, separator);
+    }
+
+    /**
+     * Helper to strip the tag from a sealed token, verifying the tag before any unwrapping is attempted.
+     * 
+     * @param tokenType The type of the expected token. Must not be NULL.
+     * @param token sealed token, tagged or untagged legacy token, with or without the routing hint. Must not be NULL.
+     * @return the token to unwrap with the data sealer
+     * @throws ParseException if the token is not a sealed token of the expected type
+     */
+    @Nonnull
+    protected static String untag(@Nonnull String tokenType, @Nonnull String token) throws ParseException {
+        final String sealedToken = stripRoutingHint(token);
+        final String sealedType = getSealedType(sealedToken);
+        if (sealedType == null) {
+            return sealedToken;
+        }
+        if (!tokenType.equals(sealedType)) {
+            throw new ParseException("Token type " + sealedType + " is not the expected " + tokenType, 1);
+        }
+        return sealedToken.substring(sealedType.length() + 2);
+    }
+
+    /**
+     * Get the routing hint of a sealed token, the id of the node that issued it, without unwrapping the token.
+     * 
+     * @param token sealed token. Must not be NULL.
+     * @return the routing hint, or null if the token has none
+     */
+    @Nullable
+    public static String getRoutingHint(@Nonnull String token) {
+        final int separator = token.indexOf(ROUTING_HINT_SEPARATOR);
+        return separator > 0 ? token.substring(0, separator) : null;
+    }
+
+    /**
+     * Helper to strip the routing hint from a sealed token.
+     * 
+     * @param token sealed token, with or without the routing hint. Must not be NULL.
+     * @return the sealed token without the routing hint
+     */
+    @Nonnull
+    protected static String stripRoutingHint(@Nonnull String token) {
+        return token.substring(token.indexOf(ROUTING_HINT_SEPARATOR) + 1);
+    }
+
+    /**
+     * Helper to prepend the tag, and the routing hint if the token has a node id, to a sealed token.
+     * 
+     * @param wrapped token wrapped with the data sealer
+     * @return the tagged token
+     */
+    @Nonnull
+    private String tag(@Nonnull String wrapped) {
+        final String tagged = SEALED_TAG_VERSION + getType() + SEALED_TAG_SEPARATOR + wrapped;
+        final String nodeId = getNodeId();
+        return nodeId == null ? tagged : nodeId + ROUTING_HINT_SEPARATOR + tagged;
+    }
+
     /**
      * Helper to verify parsed claims are what is expected.
      * 
@@ -263,7 +391,7 @@ public class TokenClaimsSet {
     }
 
     /**
-     * Serialize the token as JSON String wrapped with sealer.
+     * Serialize the token as JSON String wrapped with sealer. The result is tagged with the type of the token.
      * 
      * @param dataSealer data sealer to wrap the JSON serialization
      * @return token as JSON String wrapped with sealer
@@ -271,7 +399,29 @@ public class TokenClaimsSet {
      */
     public String serialize(@Nonnull DataSealer dataSealer) throws DataSealerException {
         String wrapped = dataSealer.wrap(serialize(), tokenClaimsSet.getExpirationTime().getTime());
-        return wrapped;
+        return tag(wrapped);
+    }
+
+    /**
+     * Serialize the token in the compact binary form.
+     * 
+     * @return token in the compact binary form
+     */
+    public String serializeCompact() {
+        return CompactTokenClaimsSetSerializer.serialize(tokenClaimsSet);
+    }
+
+    /**
+     * Serialize the token in the compact binary form wrapped with sealer. The binary form is wrapped as is, not base64
+     * encoded, as the sealer compresses and encodes it. The result is tagged with the type of the token.
+     * 
+     * @param dataSealer data sealer to wrap the compact serialization
+     * @return token in the compact binary form wrapped with sealer
+     * @throws DataSealerException is thrown if wrapping fails
+     */
+    public String serializeCompact(@Nonnull DataSealer dataSealer) throws DataSealerException {
+        return tag(dataSealer.wrap(CompactTokenClaimsSetSerializer.serializeForSealing(tokenClaimsSet),
+                tokenClaimsSet.getExpirationTime().getTime()));
     }
 
     /**
@@ -505,6 +655,16 @@ public class TokenClaimsSet {
         return (String) tokenClaimsSet.getClaim(KEY_CODE_CHALLENGE);
     }
 
+    /**
+     * Get the id of the node that issued the token.
+     * 
+     * @return id of the issuing node, or null if the token is not bound to a node
+     */
+    @Nullable
+    public String getNodeId() {
+        return (String) tokenClaimsSet.getClaim(KEY_NODE_ID);
+    }
+
     /**
      * Get the id of the token.
      * 
@@ -17,18 +17,31 @@
 package org.geant.idpextension.oidc.metadata.resolver;
 
 import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.message.BasicHttpResponse;
 import org.apache.http.protocol.HttpContext;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.opensaml.core.config.InitializationException;
+import org.opensaml.storage.StorageRecord;
 import org.opensaml.storage.StorageService;
 import org.opensaml.storage.impl.MemoryStorageService;
 import org.testng.Assert;
@@ -102,6 +115,365 @@ public class RemoteJwkSetCacheTest {
         Assert.assertNull(jwkSet);
     }
 
+    @Test
+    public void testStaleValueOnFailure() throws ClientProtocolException, IOException,
+            ComponentInitializationException, URISyntaxException, InterruptedException {
+        HttpClient httpClient = createMockHttpClient(validJwkSet());
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createMockHttpResponse(validJwkSet())).thenThrow(new IOException("mock"));
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(httpClient);
+        jwkSetCache.setRefreshAheadInterval(0);
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 50));
+        Thread.sleep(51);
+        JWKSet jwkSet = jwkSetCache.fetch(uri, System.currentTimeMillis() + 50);
+        Assert.assertNotNull(jwkSet);
+        Assert.assertEquals(jwkSet.getKeys().size(), 2);
+        Mockito.verify(httpClient, Mockito.times(2)).execute((HttpUriRequest) Mockito.any(),
+                (HttpContext) Mockito.any());
+    }
+
+    @Test
+    public void testNoStaleValue() throws ClientProtocolException, IOException, ComponentInitializationException,
+            URISyntaxException, InterruptedException {
+        HttpClient httpClient = createMockHttpClient(validJwkSet());
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createMockHttpResponse(validJwkSet())).thenThrow(new IOException("mock"));
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(httpClient);
+        jwkSetCache.setRefreshAheadInterval(0);
+        jwkSetCache.setMaxStaleness(0);
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 50));
+        Thread.sleep(51);
+        Assert.assertNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 50));
+    }
+
+    @Test
+    public void testRefreshAhead() throws ClientProtocolException, IOException, ComponentInitializationException,
+            URISyntaxException {
+        HttpClient httpClient = createMockHttpClient(validJwkSet());
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(httpClient);
+        jwkSetCache.setRefreshAheadInterval(60000);
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 30000));
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 30000));
+        Mockito.verify(httpClient, Mockito.timeout(1000).times(2)).execute((HttpUriRequest) Mockito.any(),
+                (HttpContext) Mockito.any());
+    }
+
+    @Test
+    public void testRefreshAheadFailureBackoff() throws ClientProtocolException, IOException,
+            ComponentInitializationException, URISyntaxException, InterruptedException {
+        HttpClient httpClient = createMockHttpClient(validJwkSet());
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createMockHttpResponse(validJwkSet())).thenThrow(new IOException("mock"));
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(httpClient);
+        jwkSetCache.setRefreshAheadInterval(60000);
+        jwkSetCache.setRefreshThreads(1);
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 30000));
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 30000));
+        Mockito.verify(httpClient, Mockito.timeout(1000).times(2)).execute((HttpUriRequest) Mockito.any(),
+                (HttpContext) Mockito.any());
+        Thread.sleep(100);
+        // The failed refresh is not retried by the requests within the backoff
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 30000));
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 30000));
+        Thread.sleep(100);
+        Mockito.verify(httpClient, Mockito.times(2)).execute((HttpUriRequest) Mockito.any(),
+                (HttpContext) Mockito.any());
+    }
+
+    @Test
+    public void testTiers() throws ClientProtocolException, IOException, ComponentInitializationException,
+            URISyntaxException {
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(createMockHttpClient(validJwkSet()));
+        jwkSetCache.setRefreshAheadInterval(0);
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 60000));
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 60000));
+        Assert.assertEquals(jwkSetCache.getRemoteFetches(), 1);
+        Assert.assertEquals(jwkSetCache.getLocalHits(), 1);
+        Assert.assertEquals(jwkSetCache.getStorageHits(), 0);
+        RemoteJwkSetCache otherCache = new RemoteJwkSetCache();
+        otherCache.setStorage(storageService);
+        otherCache.setHttpClient(createMockHttpClient(validJwkSet()));
+        otherCache.initialize();
+        JWKSet jwkSet = otherCache.fetch(uri, System.currentTimeMillis() + 60000);
+        Assert.assertNotNull(jwkSet);
+        Assert.assertEquals(jwkSet.getKeys().size(), 2);
+        Assert.assertEquals(otherCache.getRemoteFetches(), 0);
+        Assert.assertEquals(otherCache.getStorageHits(), 1);
+        otherCache.destroy();
+    }
+
+    @Test
+    public void testConditionalRevalidation() throws ClientProtocolException, IOException,
+            ComponentInitializationException, URISyntaxException {
+        HttpResponse okResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        okResponse.setEntity(new StringEntity(validJwkSet()));
+        okResponse.addHeader(HttpHeaders.ETAG, "\"v1\"");
+        okResponse.addHeader(HttpHeaders.CACHE_CONTROL, "max-age=0");
+        HttpResponse notModifiedResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_MODIFIED,
+                "Not Modified");
+        notModifiedResponse.addHeader(HttpHeaders.CACHE_CONTROL, "max-age=60");
+        HttpClient httpClient = Mockito.mock(HttpClient.class);
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(okResponse).thenReturn(notModifiedResponse);
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(httpClient);
+        jwkSetCache.setRefreshAheadInterval(0);
+        jwkSetCache.setMinCacheDuration(0);
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 600000));
+        JWKSet jwkSet = jwkSetCache.fetch(uri, System.currentTimeMillis() + 600000);
+        Assert.assertNotNull(jwkSet);
+        Assert.assertEquals(jwkSet.getKeys().size(), 2);
+        ArgumentCaptor<HttpUriRequest> captor = ArgumentCaptor.forClass(HttpUriRequest.class);
+        Mockito.verify(httpClient, Mockito.times(2)).execute(captor.capture(), (HttpContext) Mockito.any());
+        Assert.assertNull(captor.getAllValues().get(0).getFirstHeader(HttpHeaders.IF_NONE_MATCH));
+        Assert.assertEquals(captor.getAllValues().get(1).getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue(),
+                "\"v1\"");
+        StorageRecord<?> record = storageService.read(RemoteJwkSetCache.CONTEXT_NAME, uri.toString());
+        Assert.assertNotNull(record);
+        Assert.assertTrue(record.getExpiration() > System.currentTimeMillis() + 50000);
+        Assert.assertTrue(record.getExpiration() <= System.currentTimeMillis() + 60000);
+    }
+
+    @Test
+    public void testConditionalRevalidationFromStorage() throws ClientProtocolException, IOException,
+            ComponentInitializationException, URISyntaxException {
+        HttpResponse okResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        okResponse.setEntity(new StringEntity(validJwkSet()));
+        okResponse.addHeader(HttpHeaders.ETAG, "\"v1\"");
+        okResponse.addHeader(HttpHeaders.LAST_MODIFIED, "Wed, 21 Oct 2015 07:28:00 GMT");
+        okResponse.addHeader(HttpHeaders.CACHE_CONTROL, "max-age=0");
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(createMockHttpClient(okResponse));
+        jwkSetCache.setRefreshAheadInterval(0);
+        jwkSetCache.setMinCacheDuration(60000);
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 600000));
+
+        HttpResponse notModifiedResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_MODIFIED,
+                "Not Modified");
+        HttpClient httpClient = createMockHttpClient(notModifiedResponse);
+        RemoteJwkSetCache otherCache = new RemoteJwkSetCache();
+        otherCache.setStorage(storageService);
+        otherCache.setHttpClient(httpClient);
+        otherCache.setRefreshAheadInterval(0);
+        otherCache.initialize();
+        // Expire the stored value, the stored validators are used for the refresh
+        storageService.updateExpiration(RemoteJwkSetCache.CONTEXT_NAME, uri.toString(),
+                System.currentTimeMillis() + 100);
+        Assert.assertNotNull(otherCache.fetch(uri, System.currentTimeMillis() + 600000));
+        Assert.assertEquals(otherCache.getStorageHits(), 1);
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        JWKSet jwkSet = otherCache.fetch(uri, System.currentTimeMillis() + 600000);
+        Assert.assertNotNull(jwkSet);
+        Assert.assertEquals(jwkSet.getKeys().size(), 2);
+        Assert.assertEquals(otherCache.getRemoteFetches(), 1);
+        ArgumentCaptor<HttpUriRequest> captor = ArgumentCaptor.forClass(HttpUriRequest.class);
+        Mockito.verify(httpClient).execute(captor.capture(), (HttpContext) Mockito.any());
+        Assert.assertEquals(captor.getValue().getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue(), "\"v1\"");
+        Assert.assertEquals(captor.getValue().getFirstHeader(HttpHeaders.IF_MODIFIED_SINCE).getValue(),
+                "Wed, 21 Oct 2015 07:28:00 GMT");
+        otherCache.destroy();
+    }
+
+    @Test
+    public void testStoredValueReadableAsPlainKeySet() throws ClientProtocolException, IOException,
+            ComponentInitializationException, URISyntaxException, ParseException {
+        HttpResponse okResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        okResponse.setEntity(new StringEntity(validJwkSet()));
+        okResponse.addHeader(HttpHeaders.ETAG, "\"v1\"");
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(createMockHttpClient(okResponse));
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 600000));
+        // The earlier versions sharing the storage parse the stored value as a plain key set
+        StorageRecord<?> record = storageService.read(RemoteJwkSetCache.CONTEXT_NAME, uri.toString());
+        Assert.assertEquals(JWKSet.parse(record.getValue()).getKeys().size(), 2);
+        StorageRecord<?> validators = storageService.read(RemoteJwkSetCache.CONTEXT_NAME,
+                RemoteJwkSetCache.VALIDATORS_KEY_PREFIX + uri.toString());
+        Assert.assertNotNull(validators);
+        Assert.assertTrue(validators.getValue().contains("\\\"v1\\\""));
+    }
+
+    @Test
+    public void testReadWrappedValue() throws ClientProtocolException, IOException,
+            ComponentInitializationException, URISyntaxException {
+        URI uri = new URI("http://example.org");
+        String wrapped = "{\"jwks\":" + validJwkSet() + ",\"etag\":\"\\\"v1\\\"\"}";
+        storageService.create(RemoteJwkSetCache.CONTEXT_NAME, uri.toString(), wrapped,
+                System.currentTimeMillis() + 100);
+        HttpResponse notModifiedResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_MODIFIED,
+                "Not Modified");
+        HttpClient httpClient = createMockHttpClient(notModifiedResponse);
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(httpClient);
+        jwkSetCache.setRefreshAheadInterval(0);
+        jwkSetCache.initialize();
+        JWKSet jwkSet = jwkSetCache.fetch(uri, System.currentTimeMillis() + 600000);
+        Assert.assertNotNull(jwkSet);
+        Assert.assertEquals(jwkSet.getKeys().size(), 2);
+        Assert.assertEquals(jwkSetCache.getStorageHits(), 1);
+        sleep(200);
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 600000));
+        ArgumentCaptor<HttpUriRequest> captor = ArgumentCaptor.forClass(HttpUriRequest.class);
+        Mockito.verify(httpClient).execute(captor.capture(), (HttpContext) Mockito.any());
+        Assert.assertEquals(captor.getValue().getFirstHeader(HttpHeaders.IF_NONE_MATCH).getValue(), "\"v1\"");
+        // Rewritten as a plain key set
+        StorageRecord<?> record = storageService.read(RemoteJwkSetCache.CONTEXT_NAME, uri.toString());
+        Assert.assertFalse(record.getValue().contains("\"jwks\""));
+    }
+
+    @Test
+    public void testValidatorsOfOtherKeySetIgnored() throws ClientProtocolException, IOException,
+            ComponentInitializationException, URISyntaxException {
+        URI uri = new URI("http://example.org");
+        // Stored by an earlier version after the validators of an other key set
+        storageService.create(RemoteJwkSetCache.CONTEXT_NAME, uri.toString(), validJwkSet(),
+                System.currentTimeMillis() + 100);
+        storageService.create(RemoteJwkSetCache.CONTEXT_NAME, RemoteJwkSetCache.VALIDATORS_KEY_PREFIX + uri,
+                "{\"jwksHash\":" + (validJwkSet().hashCode() + 1) + ",\"etag\":\"\\\"v0\\\"\"}",
+                System.currentTimeMillis() + 600000);
+        HttpResponse okResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        okResponse.setEntity(new StringEntity(validJwkSet()));
+        HttpClient httpClient = createMockHttpClient(okResponse);
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(httpClient);
+        jwkSetCache.setRefreshAheadInterval(0);
+        jwkSetCache.initialize();
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 600000));
+        Assert.assertEquals(jwkSetCache.getStorageHits(), 1);
+        sleep(200);
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 600000));
+        ArgumentCaptor<HttpUriRequest> captor = ArgumentCaptor.forClass(HttpUriRequest.class);
+        Mockito.verify(httpClient).execute(captor.capture(), (HttpContext) Mockito.any());
+        Assert.assertNull(captor.getValue().getFirstHeader(HttpHeaders.IF_NONE_MATCH));
+        // The response had no validators, the stale ones are removed
+        Assert.assertNull(storageService.read(RemoteJwkSetCache.CONTEXT_NAME,
+                RemoteJwkSetCache.VALIDATORS_KEY_PREFIX + uri));
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    public void testMaximumSize() throws ClientProtocolException, IOException, ComponentInitializationException,
+            URISyntaxException {
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(createMockHttpClient(validJwkSet()));
+        jwkSetCache.setRefreshAheadInterval(0);
+        jwkSetCache.setMaximumSize(1);
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        URI otherUri = new URI("http://example.org/other");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 60000));
+        Assert.assertNotNull(jwkSetCache.fetch(otherUri, System.currentTimeMillis() + 60000));
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 60000));
+        Assert.assertEquals(jwkSetCache.getRemoteFetches(), 2);
+        Assert.assertEquals(jwkSetCache.getLocalHits(), 0);
+        Assert.assertEquals(jwkSetCache.getStorageHits(), 1);
+    }
+
+    @Test
+    public void testMinCacheDuration() throws ClientProtocolException, IOException, ComponentInitializationException,
+            URISyntaxException {
+        HttpResponse okResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        okResponse.setEntity(new StringEntity(validJwkSet()));
+        okResponse.addHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        HttpClient httpClient = Mockito.mock(HttpClient.class);
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(okResponse);
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(httpClient);
+        jwkSetCache.setMinCacheDuration(120000);
+        jwkSetCache.initialize();
+        URI uri = new URI("http://example.org");
+        Assert.assertNotNull(jwkSetCache.fetch(uri, System.currentTimeMillis() + 600000));
+        StorageRecord<?> record = storageService.read(RemoteJwkSetCache.CONTEXT_NAME, uri.toString());
+        Assert.assertTrue(record.getExpiration() > System.currentTimeMillis() + 110000);
+        Assert.assertTrue(record.getExpiration() <= System.currentTimeMillis() + 120000);
+    }
+
+    @Test
+    public void testSingleFlight() throws Exception {
+        final HttpResponse httpResponse = createMockHttpResponse(validJwkSet());
+        HttpClient httpClient = Mockito.mock(HttpClient.class);
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenAnswer(new Answer<HttpResponse>() {
+
+                    @Override
+                    public HttpResponse answer(InvocationOnMock invocation) throws Throwable {
+                        Thread.sleep(200);
+                        return httpResponse;
+                    }
+                });
+        jwkSetCache.setStorage(storageService);
+        jwkSetCache.setHttpClient(httpClient);
+        jwkSetCache.initialize();
+        final URI uri = new URI("http://example.org");
+        final AtomicInteger found = new AtomicInteger();
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread() {
+
+                @Override
+                public void run() {
+                    if (jwkSetCache.fetch(uri, System.currentTimeMillis() + 60000) != null) {
+                        found.incrementAndGet();
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(found.get(), 4);
+        Mockito.verify(httpClient, Mockito.times(1)).execute((HttpUriRequest) Mockito.any(),
+                (HttpContext) Mockito.any());
+    }
+
+    protected HttpResponse createMockHttpResponse(String output) throws UnsupportedEncodingException {
+        HttpResponse httpResponse = Mockito.mock(HttpResponse.class);
+        Mockito.when(httpResponse.getEntity()).thenReturn(new StringEntity(output));
+        return httpResponse;
+    }
+
+    protected HttpClient createMockHttpClient(HttpResponse httpResponse) throws ClientProtocolException, IOException {
+        HttpClient httpClient = Mockito.mock(HttpClient.class);
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), 
+                (HttpContext) Mockito.any())).thenReturn(httpResponse);
+        return httpClient;
+    }
+
     protected HttpClient createMockHttpClient(String output) throws ClientProtocolException, IOException {
         HttpClient httpClient = Mockito.mock(HttpClient.class);
         HttpResponse httpResponse = Mockito.mock(HttpResponse.class);
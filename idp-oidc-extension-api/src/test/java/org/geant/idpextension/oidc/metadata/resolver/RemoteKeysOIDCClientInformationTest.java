@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.metadata.resolver;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientMetadata;
+
+/**
+ * Unit tests for {@link RemoteKeysOIDCClientInformation}.
+ */
+public class RemoteKeysOIDCClientInformationTest {
+
+    RemoteJwkSetCache jwkSetCache;
+
+    OIDCClientMetadata metadata;
+
+    JWKSet jwkSet;
+
+    URI uri;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        uri = new URI("https://client.example.org/jwks");
+        jwkSet = new JWKSet(new ArrayList<JWK>());
+        jwkSetCache = Mockito.mock(RemoteJwkSetCache.class);
+        Mockito.when(jwkSetCache.fetch(Mockito.eq(uri), Mockito.anyLong())).thenReturn(jwkSet);
+        metadata = new OIDCClientMetadata();
+        metadata.setJWKSetURI(uri);
+    }
+
+    @Test
+    public void testRemoteKeys() {
+        OIDCClientInformation clientInformation =
+                new OIDCClientInformation(new ClientID("clientId"), new Date(), metadata, null);
+        RemoteKeysOIDCClientInformation remoteKeys =
+                new RemoteKeysOIDCClientInformation(clientInformation, jwkSetCache, 60000);
+        Assert.assertEquals(remoteKeys.getID(), clientInformation.getID());
+        Mockito.verify(jwkSetCache, Mockito.never()).fetch(Mockito.eq(uri), Mockito.anyLong());
+        Assert.assertSame(RemoteKeysOIDCClientInformation.resolveJWKSet(remoteKeys), jwkSet);
+        Assert.assertNull(remoteKeys.getOIDCMetadata().getJWKSet());
+        Mockito.verify(jwkSetCache, Mockito.times(1)).fetch(Mockito.eq(uri), Mockito.anyLong());
+    }
+
+    @Test
+    public void testPlainClientInformation() {
+        metadata.setJWKSetURI(null);
+        metadata.setJWKSet(jwkSet);
+        OIDCClientInformation clientInformation =
+                new OIDCClientInformation(new ClientID("clientId"), new Date(), metadata, null);
+        Assert.assertSame(RemoteKeysOIDCClientInformation.resolveJWKSet(clientInformation), jwkSet);
+        Mockito.verify(jwkSetCache, Mockito.never()).fetch(Mockito.eq(uri), Mockito.anyLong());
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.resolver;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.HttpContext;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+/**
+ * Unit tests for {@link RemoteRequestObjectCache}.
+ */
+public class RemoteRequestObjectCacheTest {
+
+    private static final String REQUEST_OBJECT = "eyJhbGciOiJub25lIn0.eyJpc3MiOiJjbGllbnQifQ.";
+
+    RemoteRequestObjectCache cache;
+
+    HttpClient httpClient;
+
+    @BeforeMethod
+    public void setup() {
+        cache = new RemoteRequestObjectCache();
+        httpClient = Mockito.mock(HttpClient.class);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        cache.destroy();
+    }
+
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void testNoHttpClient() throws ComponentInitializationException {
+        cache.initialize();
+    }
+
+    @Test
+    public void testCached() throws Exception {
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createResponse(REQUEST_OBJECT, null), createResponse(REQUEST_OBJECT, null));
+        cache.setHttpClient(httpClient);
+        cache.initialize();
+        URI uri = new URI("https://client.example.org/request#abc");
+        Assert.assertEquals(cache.fetch(uri), REQUEST_OBJECT);
+        Assert.assertEquals(cache.fetch(uri), REQUEST_OBJECT);
+        Assert.assertEquals(cache.getRemoteFetches(), 1);
+        Assert.assertEquals(cache.getCacheHits(), 1);
+        ArgumentCaptor<HttpUriRequest> captor = ArgumentCaptor.forClass(HttpUriRequest.class);
+        Mockito.verify(httpClient).execute(captor.capture(), (HttpContext) Mockito.any());
+        Assert.assertEquals(captor.getValue().getURI().toString(), "https://client.example.org/request");
+    }
+
+    @Test
+    public void testFragmentChanged() throws Exception {
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createResponse(REQUEST_OBJECT, null), createResponse(REQUEST_OBJECT, null));
+        cache.setHttpClient(httpClient);
+        cache.initialize();
+        Assert.assertNotNull(cache.fetch(new URI("https://client.example.org/request#abc")));
+        Assert.assertNotNull(cache.fetch(new URI("https://client.example.org/request#def")));
+        Assert.assertEquals(cache.getRemoteFetches(), 2);
+        Assert.assertEquals(cache.getCacheHits(), 0);
+    }
+
+    @Test
+    public void testNoStore() throws Exception {
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createResponse(REQUEST_OBJECT, "no-store"), createResponse(REQUEST_OBJECT, null));
+        cache.setHttpClient(httpClient);
+        cache.initialize();
+        URI uri = new URI("https://client.example.org/request");
+        Assert.assertNotNull(cache.fetch(uri));
+        Assert.assertNotNull(cache.fetch(uri));
+        Assert.assertEquals(cache.getRemoteFetches(), 2);
+    }
+
+    @Test
+    public void testNoHeadersNoFragment() throws Exception {
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createResponse(REQUEST_OBJECT, null), createResponse(REQUEST_OBJECT, null));
+        cache.setHttpClient(httpClient);
+        cache.initialize();
+        URI uri = new URI("https://client.example.org/request");
+        Assert.assertNotNull(cache.fetch(uri));
+        Assert.assertNotNull(cache.fetch(uri));
+        Assert.assertEquals(cache.getRemoteFetches(), 2);
+        Assert.assertEquals(cache.getCacheHits(), 0);
+    }
+
+    @Test
+    public void testDefaultCacheDuration() throws Exception {
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createResponse(REQUEST_OBJECT, null));
+        cache.setHttpClient(httpClient);
+        cache.setDefaultCacheDuration(60000);
+        cache.initialize();
+        URI uri = new URI("https://client.example.org/request");
+        Assert.assertNotNull(cache.fetch(uri));
+        Assert.assertNotNull(cache.fetch(uri));
+        Assert.assertEquals(cache.getRemoteFetches(), 1);
+    }
+
+    @Test
+    public void testMaxAge() throws Exception {
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createResponse(REQUEST_OBJECT, "max-age=60"));
+        cache.setHttpClient(httpClient);
+        cache.setDefaultCacheDuration(0);
+        cache.initialize();
+        URI uri = new URI("https://client.example.org/request");
+        Assert.assertNotNull(cache.fetch(uri));
+        Assert.assertNotNull(cache.fetch(uri));
+        Assert.assertEquals(cache.getRemoteFetches(), 1);
+    }
+
+    @Test
+    public void testMaxResponseSize() throws Exception {
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createResponse(REQUEST_OBJECT, null));
+        cache.setHttpClient(httpClient);
+        cache.setMaxResponseSize(10);
+        cache.initialize();
+        Assert.assertNull(cache.fetch(new URI("https://client.example.org/request")));
+    }
+
+    @Test
+    public void testErrorStatus() throws Exception {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_NOT_FOUND, "Not Found");
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(response);
+        cache.setHttpClient(httpClient);
+        cache.initialize();
+        Assert.assertNull(cache.fetch(new URI("https://client.example.org/request")));
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenAnswer(new Answer<HttpResponse>() {
+
+                    @Override
+                    public HttpResponse answer(InvocationOnMock invocation) throws Throwable {
+                        latch.await();
+                        return createResponse(REQUEST_OBJECT, null);
+                    }
+                });
+        cache.setHttpClient(httpClient);
+        cache.setFetchTimeout(100);
+        cache.initialize();
+        URI uri = new URI("https://client.example.org/request");
+        long start = System.currentTimeMillis();
+        Assert.assertNull(cache.fetch(uri));
+        Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+        latch.countDown();
+        Mockito.verify(httpClient, Mockito.timeout(1000)).execute((HttpUriRequest) Mockito.any(),
+                (HttpContext) Mockito.any());
+        Thread.sleep(100);
+        Assert.assertEquals(cache.fetch(uri), REQUEST_OBJECT);
+        Assert.assertEquals(cache.getRemoteFetches(), 1);
+    }
+
+    @Test
+    public void testMaxConcurrentFetchesPerHost() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenAnswer(new Answer<HttpResponse>() {
+
+                    @Override
+                    public HttpResponse answer(InvocationOnMock invocation) throws Throwable {
+                        latch.await();
+                        return createResponse(REQUEST_OBJECT, null);
+                    }
+                });
+        cache.setHttpClient(httpClient);
+        cache.setMaxConcurrentFetchesPerHost(1);
+        cache.setFetchTimeout(100);
+        cache.initialize();
+        cache.prefetch(new URI("https://client.example.org/request1"));
+        Assert.assertNull(cache.fetch(new URI("https://client.example.org/request2")));
+        Assert.assertEquals(cache.getRejectedFetches(), 1);
+        latch.countDown();
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        Mockito.when(httpClient.execute((HttpUriRequest) Mockito.any(), (HttpContext) Mockito.any()))
+                .thenReturn(createResponse(REQUEST_OBJECT, null));
+        cache.setHttpClient(httpClient);
+        cache.initialize();
+        URI uri = new URI("https://client.example.org/request#abc");
+        cache.prefetch(uri);
+        Mockito.verify(httpClient, Mockito.timeout(1000)).execute((HttpUriRequest) Mockito.any(),
+                (HttpContext) Mockito.any());
+        Thread.sleep(100);
+        Assert.assertEquals(cache.fetch(uri), REQUEST_OBJECT);
+        Assert.assertEquals(cache.getRemoteFetches(), 1);
+        Assert.assertEquals(cache.getCacheHits(), 1);
+    }
+
+    protected HttpResponse createResponse(String body, String cacheControl) throws IOException {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        response.setEntity(new StringEntity(body));
+        if (cacheControl != null) {
+            response.addHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.metadata.support;
+
+import java.util.Date;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link RemoteJwkUtils}.
+ */
+public class RemoteJwkUtilsTest {
+
+    @Test
+    public void testNoCacheHeaders() {
+        Assert.assertNull(RemoteJwkUtils.getFreshnessLifetime(buildResponse()));
+    }
+
+    @Test
+    public void testMaxAge() {
+        HttpResponse response = buildResponse();
+        response.addHeader(HttpHeaders.CACHE_CONTROL, "public, max-age=3600");
+        response.addHeader(HttpHeaders.EXPIRES, DateUtils.formatDate(new Date()));
+        Assert.assertEquals(RemoteJwkUtils.getFreshnessLifetime(response), Long.valueOf(3600000));
+    }
+
+    @Test
+    public void testNoCache() {
+        HttpResponse response = buildResponse();
+        response.addHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        Assert.assertEquals(RemoteJwkUtils.getFreshnessLifetime(response), Long.valueOf(0));
+    }
+
+    @Test
+    public void testExpires() {
+        HttpResponse response = buildResponse();
+        Date now = new Date();
+        response.addHeader(HttpHeaders.DATE, DateUtils.formatDate(now));
+        response.addHeader(HttpHeaders.EXPIRES, DateUtils.formatDate(new Date(now.getTime() + 600000)));
+        Long lifetime = RemoteJwkUtils.getFreshnessLifetime(response);
+        Assert.assertTrue(lifetime > 598000 && lifetime <= 600000);
+    }
+
+    @Test
+    public void testInvalidExpires() {
+        HttpResponse response = buildResponse();
+        response.addHeader(HttpHeaders.EXPIRES, "0");
+        Assert.assertEquals(RemoteJwkUtils.getFreshnessLifetime(response), Long.valueOf(0));
+    }
+
+    protected HttpResponse buildResponse() {
+        return new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import java.util.Date;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+/**
+ * Tests for {@link IntrospectionCache}.
+ */
+public class IntrospectionCacheTest {
+
+    private IntrospectionCache cache;
+
+    private TokenIntrospectionSuccessResponse response;
+
+    private Date exp;
+
+    @BeforeMethod
+    protected void setUp() throws ComponentInitializationException {
+        cache = new IntrospectionCache();
+        cache.setId("test");
+        cache.initialize();
+        response = new TokenIntrospectionSuccessResponse.Builder(true).build();
+        exp = new Date(System.currentTimeMillis() + 60000);
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        cache.destroy();
+        cache = null;
+    }
+
+    @Test
+    public void testInit() {
+        cache = new IntrospectionCache();
+        try {
+            cache.setMaxCacheDuration(0);
+            Assert.fail("Zero duration should have caused constraint violation");
+        } catch (Exception e) {
+        }
+        try {
+            cache.setMaximumSize(0);
+            Assert.fail("Zero size should have caused constraint violation");
+        } catch (Exception e) {
+        }
+    }
+
+    @Test
+    public void testPutAndGet() {
+        Assert.assertNull(cache.get("token"));
+        cache.put("token", "code", response, exp, cache.getGeneration());
+        Assert.assertSame(cache.get("token"), response);
+        Assert.assertNull(cache.get("othertoken"));
+        Assert.assertEquals(cache.getCacheHits(), 1);
+        Assert.assertEquals(cache.getCacheMisses(), 2);
+    }
+
+    @Test
+    public void testInactiveNotCached() {
+        cache.put("token", "code", new TokenIntrospectionSuccessResponse.Builder(false).build(), exp,
+                cache.getGeneration());
+        Assert.assertNull(cache.get("token"));
+    }
+
+    @Test
+    public void testExpiredNotCached() throws InterruptedException {
+        cache.put("token", "code", response, new Date(System.currentTimeMillis() - 1), cache.getGeneration());
+        Assert.assertNull(cache.get("token"));
+        cache.put("token", "code", response, null, cache.getGeneration());
+        Assert.assertNull(cache.get("token"));
+        cache.put("token", "code", response, new Date(System.currentTimeMillis() + 50), cache.getGeneration());
+        Assert.assertNotNull(cache.get("token"));
+        Thread.sleep(100);
+        Assert.assertNull(cache.get("token"));
+    }
+
+    @Test
+    public void testMaxCacheDuration() throws ComponentInitializationException, InterruptedException {
+        cache = new IntrospectionCache();
+        cache.setId("test");
+        cache.setMaxCacheDuration(50);
+        cache.initialize();
+        cache.put("token", "code", response, exp, cache.getGeneration());
+        Assert.assertNotNull(cache.get("token"));
+        Thread.sleep(100);
+        Assert.assertNull(cache.get("token"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        cache.put("token1", "code", response, exp, cache.getGeneration());
+        cache.put("token2", "code", response, exp, cache.getGeneration());
+        cache.put("token3", "othercode", response, exp, cache.getGeneration());
+        cache.invalidate("code");
+        Assert.assertNull(cache.get("token1"));
+        Assert.assertNull(cache.get("token2"));
+        Assert.assertNotNull(cache.get("token3"));
+    }
+
+    @Test
+    public void testInvalidateContext() {
+        final TokenIntrospectionSuccessResponse userResponse = new TokenIntrospectionSuccessResponse.Builder(true)
+                .username("user").clientID(new ClientID("client")).build();
+        final TokenIntrospectionSuccessResponse otherResponse = new TokenIntrospectionSuccessResponse.Builder(true)
+                .username("otheruser").clientID(new ClientID("otherclient")).build();
+        cache.put("token1", "code1", userResponse, exp, cache.getGeneration());
+        cache.put("token2", "code2", otherResponse, exp, cache.getGeneration());
+        cache.invalidate("othercontext", "user");
+        Assert.assertNotNull(cache.get("token1"));
+        cache.invalidate(RevocationCacheContexts.PRINCIPAL, "user");
+        Assert.assertNull(cache.get("token1"));
+        Assert.assertNotNull(cache.get("token2"));
+        cache.invalidate(RevocationCacheContexts.CLIENT, "otherclient");
+        Assert.assertNull(cache.get("token2"));
+    }
+
+    @Test
+    public void testInvalidatedDuringIntrospection() {
+        final long stamp = cache.getGeneration();
+        cache.invalidate("code");
+        cache.put("token", "code", response, exp, stamp);
+        Assert.assertNull(cache.get("token"));
+    }
+
+    @Test
+    public void testEventChannel() throws ComponentInitializationException {
+        final RevocationEventListener[] listener = new RevocationEventListener[1];
+        cache = new IntrospectionCache();
+        cache.setId("test");
+        cache.setEventChannel(new RevocationEventChannel() {
+
+            @Override
+            public void publish(final RevocationEvent event) {
+            }
+
+            @Override
+            public void subscribe(final RevocationEventListener l) {
+                listener[0] = l;
+            }
+        });
+        cache.initialize();
+        cache.put("token1", "code", response, exp, cache.getGeneration());
+        cache.put("token2", "othercode", response, exp, cache.getGeneration());
+        listener[0].onRevocation(new RevocationEvent("othercontext", "code", exp.getTime()));
+        Assert.assertNotNull(cache.get("token1"));
+        listener[0].onRevocation(new RevocationEvent(RevocationCacheContexts.AUTHORIZATION_CODE, "code",
+                exp.getTime()));
+        Assert.assertNull(cache.get("token1"));
+        Assert.assertNotNull(cache.get("token2"));
+    }
+}
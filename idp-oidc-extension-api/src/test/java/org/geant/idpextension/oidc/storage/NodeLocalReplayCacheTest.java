@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.logic.ConstraintViolationException;
+
+/**
+ * Tests for {@link NodeLocalReplayCache}.
+ */
+public class NodeLocalReplayCacheTest {
+
+    private NodeLocalReplayCache cache;
+
+    @BeforeMethod
+    protected void setUp() throws ComponentInitializationException {
+        cache = new NodeLocalReplayCache();
+        cache.setId("test");
+        cache.setNodeId("node1");
+        cache.setBucketDuration(100);
+        cache.initialize();
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        cache.destroy();
+        cache = null;
+    }
+
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void testNoNodeId() throws ComponentInitializationException {
+        cache = new NodeLocalReplayCache();
+        cache.setId("test");
+        cache.initialize();
+    }
+
+    @Test(expectedExceptions = ConstraintViolationException.class)
+    public void testInvalidNodeId() {
+        new NodeLocalReplayCache().setNodeId("node~1");
+    }
+
+    @Test(expectedExceptions = ConstraintViolationException.class)
+    public void testInvalidBucketDuration() {
+        new NodeLocalReplayCache().setBucketDuration(0);
+    }
+
+    @Test
+    public void testCheck() {
+        Assert.assertEquals(cache.getNodeId(), "node1");
+        final long issued = System.currentTimeMillis();
+        final long expires = issued + 1000;
+        Assert.assertTrue(cache.check("context", "code", issued, expires));
+        Assert.assertFalse(cache.check("context", "code", issued, expires));
+        Assert.assertTrue(cache.check("othercontext", "code", issued, expires));
+        Assert.assertTrue(cache.check("context", "othercode", issued, expires + 500));
+        Assert.assertEquals(cache.size(), 3);
+    }
+
+    @Test
+    public void testIssuedBeforeInitialization() {
+        final long initialized = cache.getInitializationTime();
+        Assert.assertEquals(initialized % 1000, 0);
+        Assert.assertTrue(initialized <= System.currentTimeMillis());
+        // Issued in the second of the initialization, at the second precision of the claims
+        Assert.assertTrue(cache.check("context", "code", initialized, initialized + 60000));
+        // Issued before a restart, possibly redeemed already
+        Assert.assertFalse(cache.check("context", "oldcode", initialized - 1, initialized + 60000));
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testPurge() throws InterruptedException {
+        final long issued = System.currentTimeMillis();
+        Assert.assertTrue(cache.check("context", "code", issued, System.currentTimeMillis() + 50));
+        Assert.assertTrue(cache.check("context", "othercode", issued, System.currentTimeMillis() + 1000));
+        Thread.sleep(250L);
+        Assert.assertTrue(cache.check("context", "newcode", issued, System.currentTimeMillis() + 1000));
+        Assert.assertEquals(cache.size(), 2);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage;
+
+import java.net.URI;
+
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore.PushedRequest;
+import org.opensaml.storage.impl.MemoryStorageService;
+import org.opensaml.storage.impl.client.ClientStorageService;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+import com.nimbusds.oauth2.sdk.ResponseType;
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.oauth2.sdk.id.State;
+import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+/**
+ * Tests for {@link PushedAuthorizationRequestStore}.
+ */
+public class PushedAuthorizationRequestStoreTest {
+
+    private MemoryStorageService storageService;
+
+    private PushedAuthorizationRequestStore store;
+
+    private ClientID clientId;
+
+    private AuthenticationRequest request;
+
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        storageService = new MemoryStorageService();
+        storageService.setId("test");
+        storageService.initialize();
+
+        store = new PushedAuthorizationRequestStore();
+        store.setStorage(storageService);
+        store.initialize();
+
+        clientId = new ClientID("client");
+        request = new AuthenticationRequest.Builder(new ResponseType("code"), new Scope("openid"), clientId,
+                URI.create("https://example.com/callback")).state(new State("state"))
+                        .requestObject(new PlainJWT(new JWTClaimsSet.Builder().claim("nonce", "123").build()))
+                        .build();
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        store.destroy();
+        store = null;
+
+        storageService.destroy();
+        storageService = null;
+    }
+
+    @Test
+    public void testInit() {
+        store = new PushedAuthorizationRequestStore();
+        try {
+            store.setStorage(null);
+            Assert.fail("Null StorageService should have caused constraint violation");
+        } catch (Exception e) {
+        }
+        try {
+            store.setStorage(new ClientStorageService());
+            Assert.fail("ClientStorageService should have caused constraint violation");
+        } catch (Exception e) {
+        }
+        try {
+            store.setRequestLifetime(0);
+            Assert.fail("Zero lifetime should have caused constraint violation");
+        } catch (Exception e) {
+        }
+    }
+
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void testNoStorage() throws ComponentInitializationException {
+        store = new PushedAuthorizationRequestStore();
+        store.initialize();
+    }
+
+    @Test
+    public void testStoreAndGet() {
+        final URI requestUri = store.store(clientId, request, request.getRequestObject());
+        Assert.assertNotNull(requestUri);
+        Assert.assertTrue(PushedAuthorizationRequestStore.isPushedRequestURI(requestUri));
+        final PushedRequest pushedRequest = store.get(requestUri, clientId);
+        Assert.assertNotNull(pushedRequest);
+        Assert.assertEquals(pushedRequest.getParameters().get("state").get(0), "state");
+        Assert.assertEquals(pushedRequest.getParameters().get("client_id").get(0), "client");
+        Assert.assertFalse(pushedRequest.getParameters().containsKey("request"));
+        Assert.assertTrue(pushedRequest.getRequestObject() instanceof PlainJWT);
+        Assert.assertEquals(pushedRequest.getRequestObject().serialize(), request.getRequestObject().serialize());
+        // Peeking does not consume the request
+        Assert.assertNotNull(store.get(requestUri, clientId));
+    }
+
+    @Test
+    public void testRemoveOnce() {
+        final URI requestUri = store.store(clientId, request, null);
+        final PushedRequest pushedRequest = store.remove(requestUri, clientId);
+        Assert.assertNotNull(pushedRequest);
+        Assert.assertNull(pushedRequest.getRequestObject());
+        Assert.assertNull(store.remove(requestUri, clientId));
+        Assert.assertNull(store.get(requestUri, clientId));
+    }
+
+    @Test
+    public void testUniqueReferences() {
+        Assert.assertNotEquals(store.store(clientId, request, null), store.store(clientId, request, null));
+    }
+
+    @Test
+    public void testClientMismatch() {
+        final URI requestUri = store.store(clientId, request, null);
+        Assert.assertNull(store.get(requestUri, new ClientID("other")));
+        Assert.assertNull(store.remove(requestUri, new ClientID("other")));
+        Assert.assertNotNull(store.remove(requestUri, clientId));
+    }
+
+    @Test
+    public void testUnknownReferences() {
+        Assert.assertNull(store.get(URI.create(PushedAuthorizationRequestStore.REQUEST_URI_PREFIX + "abc"), clientId));
+        Assert.assertNull(store.get(URI.create(PushedAuthorizationRequestStore.REQUEST_URI_PREFIX), clientId));
+        Assert.assertNull(store.get(URI.create("https://example.com/request"), clientId));
+        Assert.assertFalse(PushedAuthorizationRequestStore.isPushedRequestURI(null));
+        Assert.assertFalse(PushedAuthorizationRequestStore.isPushedRequestURI(URI.create("https://example.com")));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        store = new PushedAuthorizationRequestStore();
+        store.setStorage(storageService);
+        store.setRequestLifetime(50);
+        store.initialize();
+        final URI requestUri = store.store(clientId, request, null);
+        Assert.assertNotNull(store.get(requestUri, clientId));
+        Thread.sleep(100);
+        Assert.assertNull(store.get(requestUri, clientId));
+    }
+}
@@ -16,8 +16,18 @@
 
 package org.geant.idpextension.oidc.storage;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
 
 import org.opensaml.storage.impl.client.ClientStorageService;
 import org.testng.annotations.AfterMethod;
@@ -50,6 +60,7 @@ public class RevocationCacheTest {
         revocationCache = new RevocationCache();
         revocationCache.setEntryExpiration(500);
         revocationCache.setStorage(storageService);
+        revocationCache.setIssuedBeforeRevocationEnabled(true);
         revocationCache.initialize();
     }
     
@@ -108,6 +119,96 @@ public class RevocationCacheTest {
         Assert.assertTrue(revocationCache.isRevoked("context", "item"));
     }
     
+    @Test
+    public void testBatchRevocation() {
+        Assert.assertTrue(revocationCache.getRevoked("context", Arrays.asList("item1", "item2", "item3")).isEmpty());
+        Assert.assertTrue(revocationCache.revoke("context", Arrays.asList("item1", "item2", "item1")));
+        Set<String> revoked = revocationCache.getRevoked("context", Arrays.asList("item1", "item2", "item3", "item2"));
+        Assert.assertEquals(revoked.size(), 2);
+        Assert.assertTrue(revoked.contains("item1"));
+        Assert.assertTrue(revoked.contains("item2"));
+        Assert.assertTrue(revocationCache.getRevoked("context2", Arrays.asList("item1")).isEmpty());
+    }
+
+    @Test
+    public void testRevocationIssuedBefore() {
+        final Date revoked = new Date(10000);
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(5000)));
+        Assert.assertTrue(revocationCache.revokeIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user", revoked));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(5000)));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user", revoked));
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(15000)));
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "otheruser",
+                new Date(5000)));
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.CLIENT, "user",
+                new Date(5000)));
+        // An earlier point in time does not override the later one.
+        Assert.assertTrue(revocationCache.revokeIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(1000)));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(5000)));
+        Assert.assertTrue(revocationCache.revokeIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(20000)));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(15000)));
+    }
+
+    @Test
+    public void testRevocationIssuedBeforeDisabled() throws ComponentInitializationException {
+        revocationCache = new RevocationCache();
+        revocationCache.setStorage(storageService);
+        revocationCache.initialize();
+        Assert.assertFalse(revocationCache.isIssuedBeforeRevocationEnabled());
+        Assert.assertFalse(revocationCache.revokeIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(10000)));
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(5000)));
+    }
+
+    @Test
+    public void testRevocationIssuedBeforeIntrospectionCache() throws ComponentInitializationException {
+        IntrospectionCache introspectionCache = new IntrospectionCache();
+        introspectionCache.setId("test");
+        introspectionCache.initialize();
+        revocationCache = new RevocationCache();
+        revocationCache.setStorage(storageService);
+        revocationCache.setIntrospectionCache(introspectionCache);
+        revocationCache.setIssuedBeforeRevocationEnabled(true);
+        revocationCache.initialize();
+        introspectionCache.put("token", "code",
+                new TokenIntrospectionSuccessResponse.Builder(true).username("user").build(),
+                new Date(System.currentTimeMillis() + 60000), introspectionCache.getGeneration());
+        Assert.assertNotNull(introspectionCache.get("token"));
+        Assert.assertTrue(revocationCache.revokeIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user", new Date()));
+        Assert.assertNull(introspectionCache.get("token"));
+        introspectionCache.destroy();
+    }
+
+    @Test
+    public void testRevocationIssuedBeforeNegativeLookupFilter()
+            throws ComponentInitializationException, InterruptedException {
+        revocationCache = new RevocationCache();
+        revocationCache.setEntryExpiration(200);
+        revocationCache.setStorage(storageService);
+        revocationCache.setNegativeLookupFilterEnabled(true);
+        revocationCache.setEventChannel(new ReplayingEventChannel());
+        revocationCache.setIssuedBeforeRevocationEnabled(true);
+        revocationCache.initialize();
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.CLIENT, "client",
+                new Date(5000)));
+        Assert.assertEquals(revocationCache.getFilterNegatives(), 1);
+        Assert.assertTrue(revocationCache.revokeIssuedBefore(RevocationCacheContexts.CLIENT, "client",
+                new Date(10000)));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.CLIENT, "client",
+                new Date(5000)));
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.CLIENT, "client",
+                new Date(15000)));
+        Assert.assertEquals(revocationCache.getFilterPositives(), 1);
+    }
+
     @Test 
     public void testRevocationSuccessLongContext() throws ComponentInitializationException {
         storageService = new MemoryStorageService();
@@ -159,4 +260,217 @@ public class RevocationCacheTest {
         Thread.sleep(300L);
         Assert.assertTrue(revocationCache.isRevoked("context", "item"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConcurrentRevocation() throws InterruptedException {
+        revocationCache.setEntryExpiration(60000);
+        final int threadCount = 8;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger failures = new AtomicInteger();
+        final Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < 100; j++) {
+                            if (!revocationCache.revoke("context", "item" + j % 10)
+                                    || !revocationCache.isRevoked("context", "item" + j % 10)) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(failures.get(), 0);
+        Assert.assertFalse(revocationCache.isRevoked("context", "item10"));
+    }
+
+    @Test
+    public void testNegativeLookupFilter() throws ComponentInitializationException, InterruptedException {
+        revocationCache = new RevocationCache();
+        revocationCache.setEntryExpiration(200);
+        revocationCache.setStorage(storageService);
+        revocationCache.setNegativeLookupFilterEnabled(true);
+        revocationCache.setNegativeLookupFilterExpectedEntries(1000);
+        revocationCache.setEventChannel(new ReplayingEventChannel());
+        revocationCache.initialize();
+        Assert.assertFalse(revocationCache.isRevoked("context", "item"));
+        Assert.assertEquals(revocationCache.getFilterNegatives(), 1);
+        Assert.assertTrue(revocationCache.revoke("context", "item"));
+        // Answered by the locally known revocations
+        Assert.assertTrue(revocationCache.isRevoked("context", "item"));
+        Assert.assertEquals(revocationCache.getFilterPositives(), 0);
+        // Entry expires, the filter still reports a probable hit
+        Thread.sleep(250L);
+        Assert.assertFalse(revocationCache.isRevoked("context", "item"));
+        Assert.assertEquals(revocationCache.getFilterPositives(), 1);
+        Assert.assertEquals(revocationCache.getFilterFalsePositives(), 1);
+    }
+
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void testNegativeLookupFilterWithoutChannel() throws ComponentInitializationException {
+        revocationCache = new RevocationCache();
+        revocationCache.setStorage(storageService);
+        revocationCache.setNegativeLookupFilterEnabled(true);
+        revocationCache.initialize();
+    }
+
+    @Test
+    public void testNegativeLookupFilterReplay() throws ComponentInitializationException, IOException {
+        ReplayingEventChannel channel = new ReplayingEventChannel();
+        // Revoked by an other node, or before a restart
+        channel.publish(new RevocationEvent("context", "item", System.currentTimeMillis() + 60000));
+        Assert.assertTrue(storageService.create("context", "item", "y", System.currentTimeMillis() + 60000));
+        revocationCache = new RevocationCache();
+        revocationCache.setStorage(storageService);
+        revocationCache.setNegativeLookupFilterEnabled(true);
+        revocationCache.setEventChannel(channel);
+        revocationCache.initialize();
+        // The filter is used right away
+        Assert.assertTrue(revocationCache.isRevoked("context", "item"));
+        Assert.assertFalse(revocationCache.isRevoked("context", "item2"));
+        Assert.assertEquals(revocationCache.getFilterNegatives(), 1);
+    }
+
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void testLocalLookupWithoutChannel() throws ComponentInitializationException {
+        revocationCache = new RevocationCache();
+        revocationCache.setStorage(storageService);
+        revocationCache.setLocalLookupOnly(true);
+        revocationCache.initialize();
+    }
+
+    @Test
+    public void testEventChannel() throws ComponentInitializationException, IOException {
+        final List<RevocationEvent> published = new ArrayList<>();
+        final List<RevocationEventListener> subscribed = new ArrayList<>();
+        RevocationEventChannel channel = new RevocationEventChannel() {
+
+            @Override
+            public void publish(RevocationEvent event) throws IOException {
+                published.add(event);
+            }
+
+            @Override
+            public void subscribe(RevocationEventListener listener) {
+                subscribed.add(listener);
+            }
+        };
+        revocationCache = new RevocationCache();
+        revocationCache.setStorage(storageService);
+        revocationCache.setEventChannel(channel);
+        revocationCache.setLocalLookupOnly(true);
+        revocationCache.initialize();
+        Assert.assertEquals(subscribed.size(), 1);
+        Assert.assertTrue(revocationCache.revoke("context", "item"));
+        Assert.assertEquals(published.size(), 1);
+        Assert.assertEquals(published.get(0).getValue(), "item");
+        Assert.assertTrue(revocationCache.isRevoked("context", "item"));
+        // Revocation received from a peer, not in the storage
+        Assert.assertFalse(revocationCache.isRevoked("context", "item2"));
+        subscribed.get(0).onRevocation(new RevocationEvent("context", "item2", System.currentTimeMillis() + 1000));
+        Assert.assertTrue(revocationCache.isRevoked("context", "item2"));
+        Assert.assertNull(storageService.read("context", "item2"));
+        // Expired revocation received from a peer
+        subscribed.get(0).onRevocation(new RevocationEvent("context", "item3", System.currentTimeMillis() - 1));
+        Assert.assertFalse(revocationCache.isRevoked("context", "item3"));
+    }
+
+    @Test
+    public void testEventChannelIssuedBefore() throws ComponentInitializationException, IOException {
+        final List<RevocationEvent> published = new ArrayList<>();
+        final List<RevocationEventListener> subscribed = new ArrayList<>();
+        RevocationEventChannel channel = new RevocationEventChannel() {
+
+            @Override
+            public void publish(RevocationEvent event) throws IOException {
+                published.add(event);
+            }
+
+            @Override
+            public void subscribe(RevocationEventListener listener) {
+                subscribed.add(listener);
+            }
+        };
+        revocationCache = new RevocationCache();
+        revocationCache.setStorage(storageService);
+        revocationCache.setEventChannel(channel);
+        revocationCache.setLocalLookupOnly(true);
+        revocationCache.setIssuedBeforeRevocationEnabled(true);
+        revocationCache.initialize();
+        Assert.assertTrue(revocationCache.revokeIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(10000)));
+        Assert.assertEquals(published.size(), 1);
+        Assert.assertEquals(published.get(0).getIssuedBefore(), Long.valueOf(10000));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(5000)));
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(15000)));
+        // Revocation received from a peer, not in the storage
+        subscribed.get(0).onRevocation(new RevocationEvent(RevocationCacheContexts.CLIENT, "client",
+                System.currentTimeMillis() + 1000, 10000L));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.CLIENT, "client",
+                new Date(5000)));
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.CLIENT, "client",
+                new Date(15000)));
+        Assert.assertNull(storageService.read(RevocationCacheContexts.CLIENT, "client"));
+    }
+
+    @Test
+    public void testEventChannelPublishFailure() throws ComponentInitializationException, IOException {
+        RevocationEventChannel channel = new RevocationEventChannel() {
+
+            @Override
+            public void publish(RevocationEvent event) throws IOException {
+                throw new IOException("mock failure");
+            }
+
+            @Override
+            public void subscribe(RevocationEventListener listener) {
+            }
+        };
+        revocationCache = new RevocationCache();
+        revocationCache.setStorage(storageService);
+        revocationCache.setStrict(true);
+        revocationCache.setEventChannel(channel);
+        revocationCache.initialize();
+        Assert.assertTrue(revocationCache.revoke("context", "item"));
+        Assert.assertNotNull(storageService.read("context", "item"));
+        Assert.assertTrue(revocationCache.isRevoked("context", "item"));
+    }
+
+    /**
+     * Event channel delivering the events locally and replaying them on subscription.
+     */
+    private static class ReplayingEventChannel implements RevocationEventChannel {
+
+        private final List<RevocationEvent> events = new ArrayList<>();
+
+        private final List<RevocationEventListener> listeners = new ArrayList<>();
+
+        @Override
+        public void publish(RevocationEvent event) throws IOException {
+            events.add(event);
+            for (RevocationEventListener listener : listeners) {
+                listener.onRevocation(event);
+            }
+        }
+
+        @Override
+        public void subscribe(RevocationEventListener listener) {
+            listeners.add(listener);
+            for (RevocationEvent event : events) {
+                listener.onRevocation(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.storage;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import net.shibboleth.utilities.java.support.logic.ConstraintViolationException;
+
+/**
+ * Tests for {@link RevocationFilter}.
+ */
+public class RevocationFilterTest {
+
+    @Test
+    public void testSizing() {
+        RevocationFilter filter = new RevocationFilter(1000, 0.01, 1000);
+        // ~9.6 bits per entry and 7 hash functions for 1%
+        Assert.assertTrue(filter.getNumBits() >= 9585 && filter.getNumBits() <= 9600);
+        Assert.assertEquals(filter.getNumHashes(), 7);
+    }
+
+    @Test(expectedExceptions = ConstraintViolationException.class)
+    public void testInvalidProbability() {
+        new RevocationFilter(1000, 1, 1000);
+    }
+
+    @Test
+    public void testNoFalseNegatives() {
+        RevocationFilter filter = new RevocationFilter(1000, 0.01, 60000);
+        for (int i = 0; i < 1000; i++) {
+            filter.put("context", "item" + i);
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(filter.mightContain("context", "item" + i));
+            if (filter.mightContain("context", "other" + i)) {
+                falsePositives++;
+            }
+        }
+        Assert.assertTrue(falsePositives < 50);
+        Assert.assertFalse(filter.mightContain("other", "item0") && filter.mightContain("other", "item1")
+                && filter.mightContain("other", "item2"));
+    }
+
+    @Test
+    public void testRotation() throws InterruptedException {
+        RevocationFilter filter = new RevocationFilter(1000, 0.01, 200);
+        filter.put("context", "item");
+        Thread.sleep(250L);
+        // Previous generation is still looked up
+        Assert.assertTrue(filter.mightContain("context", "item"));
+        Thread.sleep(200L);
+        Assert.assertFalse(filter.mightContain("context", "item"));
+    }
+}
@@ -16,10 +16,14 @@
 
 package org.geant.idpextension.oidc.token.support;
 
+import org.apache.commons.codec.binary.Base64;
 import org.testng.annotations.Test;
 
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.security.DataSealer;
 import net.shibboleth.utilities.java.support.security.DataSealerException;
 import net.shibboleth.utilities.java.support.security.SecureRandomIdentifierGenerationStrategy;
+import java.security.SecureRandom;
 import java.text.ParseException;
 
 import org.testng.Assert;
@@ -62,6 +66,56 @@ public class AccessTokenClaimsSetTest extends BaseTokenClaimsSetTest {
         Assert.assertEquals(acClaimsSet3.getACR(), acr.getValue());
     }
 
+    @Test
+    public void testCompactSerialization() throws ParseException, DataSealerException {
+        init();
+        AccessTokenClaimsSet acClaimsSet2 = AccessTokenClaimsSet.parse(atClaimsSet.serializeCompact());
+        Assert.assertEquals(acClaimsSet2.getACR(), acr.getValue());
+        Assert.assertEquals(acClaimsSet2.getClaimsSet().toJSONObject(), atClaimsSet.getClaimsSet().toJSONObject());
+        AccessTokenClaimsSet acClaimsSet3 = AccessTokenClaimsSet.parse(acClaimsSet2.serializeCompact(sealer), sealer);
+        Assert.assertEquals(acClaimsSet3.getACR(), acr.getValue());
+    }
+
+    @Test
+    public void testSealedTag() throws ParseException, DataSealerException {
+        init();
+        String sealed = atClaimsSet.serialize(sealer);
+        Assert.assertEquals(TokenClaimsSet.getSealedType(sealed), AccessTokenClaimsSet.VALUE_TYPE_AT);
+        // Untagged legacy token
+        String legacy = sealer.wrap(atClaimsSet.serialize(), exp.getTime());
+        Assert.assertNull(TokenClaimsSet.getSealedType(legacy));
+        Assert.assertEquals(AccessTokenClaimsSet.parse(legacy, sealer).getID(), atClaimsSet.getID());
+    }
+
+    @Test
+    public void testSealedTagUrlSafe() throws ParseException, DataSealerException, ComponentInitializationException {
+        init();
+        // The flows seal the tokens with the URL safe base64 alphabet
+        final Base64 codec = new Base64(0, null, true);
+        sealer = new DataSealer();
+        sealer.setKeyStrategy(keyStrategy);
+        sealer.setEncoder(codec);
+        sealer.setDecoder(codec);
+        sealer.setRandom(new SecureRandom());
+        sealer.initialize();
+        String legacy = null;
+        // Seal until the token contains characters that only exist in the URL safe alphabet
+        while (legacy == null || (legacy.indexOf('-') < 0 && legacy.indexOf('_') < 0)) {
+            legacy = sealer.wrap(atClaimsSet.serialize(), exp.getTime());
+        }
+        Assert.assertNull(TokenClaimsSet.getSealedType(legacy));
+        Assert.assertEquals(AccessTokenClaimsSet.parse(legacy, sealer).getID(), atClaimsSet.getID());
+        String sealed = atClaimsSet.serialize(sealer);
+        Assert.assertEquals(TokenClaimsSet.getSealedType(sealed), AccessTokenClaimsSet.VALUE_TYPE_AT);
+        Assert.assertEquals(AccessTokenClaimsSet.parse(sealed, sealer).getID(), atClaimsSet.getID());
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testSealedWrongType() throws ParseException, DataSealerException {
+        init();
+        RefreshTokenClaimsSet.parse(atClaimsSet.serialize(sealer), sealer);
+    }
+
     @Test(expectedExceptions = ParseException.class)
     public void testSerializationWrongType() throws ParseException {
         AuthorizeCodeClaimsSet accessnClaimsSet =
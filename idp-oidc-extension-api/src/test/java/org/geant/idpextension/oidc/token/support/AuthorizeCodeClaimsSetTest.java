@@ -44,6 +44,42 @@ public class AuthorizeCodeClaimsSetTest extends BaseTokenClaimsSetTest {
         Assert.assertEquals(acClaimsSet3.getACR(), acr.getValue());
     }
 
+    @Test
+    public void testCompactSerialization() throws ParseException, DataSealerException {
+        init();
+        AuthorizeCodeClaimsSet acClaimsSet2 = AuthorizeCodeClaimsSet.parse(acClaimsSet.serializeCompact());
+        Assert.assertEquals(acClaimsSet2.getACR(), acr.getValue());
+        Assert.assertEquals(acClaimsSet2.getClaimsSet().toJSONObject(), acClaimsSet.getClaimsSet().toJSONObject());
+        AuthorizeCodeClaimsSet acClaimsSet3 =
+                AuthorizeCodeClaimsSet.parse(acClaimsSet2.serializeCompact(sealer), sealer);
+        Assert.assertEquals(acClaimsSet3.getACR(), acr.getValue());
+    }
+
+    @Test
+    public void testNodeId() throws ParseException, DataSealerException {
+        acClaimsSet = new AuthorizeCodeClaimsSet.Builder(new SecureRandomIdentifierGenerationStrategy(), clientID,
+                issuer, userPrincipal, subject, iat, exp, authTime, redirectURI, scope).setNodeId("node1").build();
+        Assert.assertEquals(acClaimsSet.getNodeId(), "node1");
+        String code = acClaimsSet.serialize(sealer);
+        Assert.assertTrue(code.startsWith("node1~1ac."));
+        Assert.assertEquals(TokenClaimsSet.getRoutingHint(code), "node1");
+        Assert.assertEquals(TokenClaimsSet.getSealedType(code), AuthorizeCodeClaimsSet.VALUE_TYPE_AC);
+        Assert.assertEquals(AuthorizeCodeClaimsSet.parse(code, sealer).getNodeId(), "node1");
+        code = acClaimsSet.serializeCompact(sealer);
+        Assert.assertTrue(code.startsWith("node1~1ac."));
+        Assert.assertEquals(AuthorizeCodeClaimsSet.parse(code, sealer).getNodeId(), "node1");
+        init();
+        Assert.assertNull(acClaimsSet.getNodeId());
+        Assert.assertNull(TokenClaimsSet.getRoutingHint(acClaimsSet.serialize(sealer)));
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testRoutingHintMismatch() throws ParseException, DataSealerException {
+        acClaimsSet = new AuthorizeCodeClaimsSet.Builder(new SecureRandomIdentifierGenerationStrategy(), clientID,
+                issuer, userPrincipal, subject, iat, exp, authTime, redirectURI, scope).setNodeId("node1").build();
+        AuthorizeCodeClaimsSet.parse("node2" + acClaimsSet.serialize(sealer).substring(5), sealer);
+    }
+
     @Test(expectedExceptions = ParseException.class)
     public void testSerializationWrongType() throws ParseException {
         AccessTokenClaimsSet accessnClaimsSet =
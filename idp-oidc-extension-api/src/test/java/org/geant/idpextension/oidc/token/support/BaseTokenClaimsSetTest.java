@@ -42,6 +42,8 @@ public class BaseTokenClaimsSetTest {
 
     protected DataSealer sealer;
 
+    protected BasicKeystoreKeyStrategy keyStrategy;
+
     protected String subject = "sub";
 
     protected String userPrincipal = "userid";
@@ -91,6 +93,7 @@ public class BaseTokenClaimsSetTest {
         strategy.setKeyPassword("password");
         strategy.initialize();
         sealer.setKeyStrategy(strategy);
+        keyStrategy = strategy;
         sealer.setRandom(SecureRandom.getInstance("SHA1PRNG"));
         sealer.initialize();
     }
@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.token.support;
+
+import java.text.ParseException;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.google.common.io.BaseEncoding;
+import com.nimbusds.jwt.JWTClaimsSet;
+
+import net.minidev.json.JSONObject;
+import net.shibboleth.utilities.java.support.security.DataSealerException;
+
+/**
+ * Tests for {@link CompactTokenClaimsSetSerializer}.
+ */
+public class CompactTokenClaimsSetSerializerTest extends BaseTokenClaimsSetTest {
+
+    private TokenClaimsSet tokenClaimsSet;
+
+    protected void init() {
+        tokenClaimsSet = new TokenClaimsSet("myType", "1", clientID, issuer, userPrincipal, subject, acr, iat, exp,
+                nonce, authTime, redirectURI, scope, claims, dlClaims, dlClaimsID, dlClaimsUI, consentableClaims,
+                consentedClaims, codeChallenge);
+    }
+
+    @Test
+    public void testRoundTrip() throws ParseException {
+        init();
+        String compact = CompactTokenClaimsSetSerializer.serialize(tokenClaimsSet.getClaimsSet());
+        Assert.assertTrue(CompactTokenClaimsSetSerializer.isCompact(compact));
+        Assert.assertFalse(CompactTokenClaimsSetSerializer.isCompact(tokenClaimsSet.serialize()));
+        Assert.assertTrue(compact.length() < tokenClaimsSet.serialize().length());
+        JWTClaimsSet parsed = CompactTokenClaimsSetSerializer.parse(compact);
+        Assert.assertEquals(parsed.toJSONObject(), JWTClaimsSet.parse(tokenClaimsSet.serialize()).toJSONObject());
+    }
+
+    @Test
+    public void testSealedRoundTrip() throws ParseException, DataSealerException {
+        init();
+        String compact = CompactTokenClaimsSetSerializer.serializeForSealing(tokenClaimsSet.getClaimsSet());
+        Assert.assertTrue(CompactTokenClaimsSetSerializer.isCompact(compact));
+        String unwrapped = sealer.unwrap(sealer.wrap(compact, exp.getTime()));
+        Assert.assertEquals(unwrapped, compact);
+        JWTClaimsSet parsed = CompactTokenClaimsSetSerializer.parse(unwrapped);
+        Assert.assertEquals(parsed.toJSONObject(), JWTClaimsSet.parse(tokenClaimsSet.serialize()).toJSONObject());
+    }
+
+    @Test
+    public void testSealedLength() throws DataSealerException {
+        init();
+        int json = sealer.wrap(tokenClaimsSet.serialize(), exp.getTime()).length();
+        int base64url = sealer.wrap(CompactTokenClaimsSetSerializer.serialize(tokenClaimsSet.getClaimsSet()),
+                exp.getTime()).length();
+        int binary = sealer.wrap(CompactTokenClaimsSetSerializer.serializeForSealing(tokenClaimsSet.getClaimsSet()),
+                exp.getTime()).length();
+        // The sealer compresses before encoding, a base64url encoded value hardly compresses
+        Assert.assertTrue(binary < json, "sealed binary " + binary + " not shorter than sealed JSON " + json);
+        Assert.assertTrue(binary < base64url,
+                "sealed binary " + binary + " not shorter than sealed base64url " + base64url);
+        Assert.assertEquals(tokenClaimsSet.serializeCompact(sealer).length(),
+                tokenClaimsSet.serialize(sealer).length() - json + binary);
+    }
+
+    @Test
+    public void testOtherClaims() throws ParseException {
+        JSONObject object = new JSONObject();
+        object.put("key", "value");
+        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder().claim(TokenClaimsSet.KEY_TYPE, "myType")
+                .claim(TokenClaimsSet.KEY_ISSUER, 1L).claim("custom", object).claim("custom2", "value2").build();
+        JWTClaimsSet parsed =
+                CompactTokenClaimsSetSerializer.parse(CompactTokenClaimsSetSerializer.serialize(claimsSet));
+        Assert.assertEquals(parsed.toJSONObject(), claimsSet.toJSONObject());
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testNotCompact() throws ParseException {
+        init();
+        CompactTokenClaimsSetSerializer.parse(tokenClaimsSet.serialize());
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testUnsupportedVersion() throws ParseException {
+        String encoded = BaseEncoding.base64Url().omitPadding().encode(new byte[] {2, 0});
+        CompactTokenClaimsSetSerializer.parse(CompactTokenClaimsSetSerializer.PREFIX + encoded);
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testTruncated() throws ParseException {
+        init();
+        String compact = CompactTokenClaimsSetSerializer.serialize(tokenClaimsSet.getClaimsSet());
+        CompactTokenClaimsSetSerializer.parse(compact.substring(0, compact.length() / 2));
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testInvalidEncoding() throws ParseException {
+        CompactTokenClaimsSetSerializer.parse(CompactTokenClaimsSetSerializer.PREFIX + "!!");
+    }
+}
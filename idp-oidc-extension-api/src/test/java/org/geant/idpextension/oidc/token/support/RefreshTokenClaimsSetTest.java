@@ -46,6 +46,16 @@ public class RefreshTokenClaimsSetTest extends BaseTokenClaimsSetTest {
         Assert.assertEquals(rfClaimsSet3.getACR(), acr.getValue());
     }
 
+    @Test
+    public void testCompactSerialization() throws ParseException, DataSealerException {
+        init();
+        RefreshTokenClaimsSet rfClaimsSet2 = RefreshTokenClaimsSet.parse(rfClaimsSet.serializeCompact());
+        Assert.assertEquals(rfClaimsSet2.getACR(), acr.getValue());
+        Assert.assertEquals(rfClaimsSet2.getClaimsSet().toJSONObject(), rfClaimsSet.getClaimsSet().toJSONObject());
+        RefreshTokenClaimsSet rfClaimsSet3 = RefreshTokenClaimsSet.parse(rfClaimsSet2.serializeCompact(sealer), sealer);
+        Assert.assertEquals(rfClaimsSet3.getACR(), acr.getValue());
+    }
+
     @Test(expectedExceptions = ParseException.class)
     public void testSerializationWrongType() throws ParseException {
         AuthorizeCodeClaimsSet accessnClaimsSet =
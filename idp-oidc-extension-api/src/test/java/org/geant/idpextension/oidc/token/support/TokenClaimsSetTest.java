@@ -16,9 +16,13 @@
 
 package org.geant.idpextension.oidc.token.support;
 
+import java.text.ParseException;
+
 import org.testng.annotations.Test;
 import org.testng.Assert;
 
+import net.shibboleth.utilities.java.support.security.DataSealerException;
+
 /**
  * Tests for {@link TokenClaimsSet}
  */
@@ -73,4 +77,26 @@ public class TokenClaimsSetTest extends BaseTokenClaimsSetTest {
         Assert.assertNull(tokenClaimsSet.getNonce());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testSealedType() throws ParseException, DataSealerException {
+        init();
+        Assert.assertEquals(TokenClaimsSet.getSealedType(tokenClaimsSet.serialize(sealer)), tokenType);
+        Assert.assertEquals(TokenClaimsSet.getSealedType("1at.AAAA"), "at");
+        Assert.assertNull(TokenClaimsSet.getSealedType("AAAA+/=="));
+        Assert.assertNull(TokenClaimsSet.getSealedType("AAAA-_"));
+    }
+
+    @Test
+    public void testInvalidSealedType() {
+        for (String token : new String[] { "", "not sealed", "AAAA*", "2at.AAAA", "1.AAAA", "1at.",
+                "1toolongtype.AAAA", ".AAAA" }) {
+            try {
+                TokenClaimsSet.getSealedType(token);
+                Assert.fail("Token " + token + " should have been rejected");
+            } catch (ParseException e) {
+                // expected
+            }
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. Runs the benchmarks with the GC profiler attached so that the results contain
+ * throughput, sampled latency percentiles (p99 and friends) and allocation rate. Standard JMH command line options
+ * may be given to narrow the run, e.g. a benchmark name regexp or -rf/-rff for machine readable results.
+ */
+public final class BenchmarkRunner {
+
+    /** Constructor. */
+    private BenchmarkRunner() {
+
+    }
+
+    /**
+     * Runs the benchmarks.
+     * 
+     * @param args JMH command line options
+     * @throws RunnerException if the benchmark run fails
+     * @throws CommandLineOptionException if the command line options cannot be parsed
+     */
+    public static void main(final String[] args) throws RunnerException, CommandLineOptionException {
+        final Options options =
+                new OptionsBuilder().parent(new CommandLineOptions(args)).addProfiler(GCProfiler.class).build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.benchmark;
+
+import java.net.URI;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+
+import javax.annotation.Nonnull;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.geant.idpextension.oidc.messaging.context.OIDCAuthenticationResponseContext;
+import org.geant.idpextension.oidc.messaging.context.OIDCMetadataContext;
+import org.geant.idpextension.oidc.token.support.AuthorizeCodeClaimsSet;
+import org.geant.security.jwk.BasicJWKCredential;
+import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.springframework.webflow.execution.RequestContext;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.auth.Secret;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
+import com.nimbusds.openid.connect.sdk.AuthenticationResponse;
+import com.nimbusds.openid.connect.sdk.ClaimsRequest;
+import com.nimbusds.openid.connect.sdk.Nonce;
+import com.nimbusds.openid.connect.sdk.claims.ACR;
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientMetadata;
+
+import net.minidev.json.JSONArray;
+import net.shibboleth.idp.profile.RequestContextBuilder;
+import net.shibboleth.idp.profile.context.navigate.WebflowRequestContextProfileRequestContextLookup;
+import net.shibboleth.utilities.java.support.collection.Pair;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.security.DataSealer;
+import net.shibboleth.utilities.java.support.security.DataSealerKeyStrategy;
+import net.shibboleth.utilities.java.support.security.SecureRandomIdentifierGenerationStrategy;
+
+/**
+ * Fixtures shared by the benchmarks. Key material is generated in memory so that the harnesses do not depend on any
+ * deployment specific keystores.
+ */
+public final class BenchmarkSupport {
+
+    /** Client id used in the benchmarked tokens. */
+    public static final String CLIENT_ID = "s6BhdRkqt3";
+
+    /** Issuer used in the benchmarked tokens. */
+    public static final String ISSUER = "https://op.example.org";
+
+    /** Constructor. */
+    private BenchmarkSupport() {
+
+    }
+
+    /**
+     * Builds a data sealer backed by a freshly generated AES key.
+     * 
+     * @return initialized data sealer
+     * @throws NoSuchAlgorithmException if AES or SHA1PRNG is not available
+     * @throws ComponentInitializationException if the sealer fails to initialize
+     */
+    @Nonnull
+    public static DataSealer buildDataSealer() throws NoSuchAlgorithmException, ComponentInitializationException {
+        final KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(128);
+        final SecretKey key = keyGenerator.generateKey();
+        final DataSealer dataSealer = new DataSealer();
+        dataSealer.setKeyStrategy(new DataSealerKeyStrategy() {
+
+            @Override
+            public Pair<String, SecretKey> getDefaultKey() throws KeyException {
+                return new Pair<>("secret1", key);
+            }
+
+            @Override
+            public SecretKey getKey(final String name) throws KeyException {
+                if (!"secret1".equals(name)) {
+                    throw new KeyException("Unknown key " + name);
+                }
+                return key;
+            }
+        });
+        dataSealer.setRandom(SecureRandom.getInstance("SHA1PRNG"));
+        dataSealer.initialize();
+        return dataSealer;
+    }
+
+    /**
+     * Builds a webflow request context carrying the inbound authentication request, the OIDC response context and the
+     * client metadata context the response actions expect to find.
+     * 
+     * @return request context
+     * @throws ParseException if the authentication request cannot be parsed
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    @Nonnull
+    public static RequestContext buildRequestContext() throws ParseException {
+        final AuthenticationRequest request = AuthenticationRequest.parse("response_type=code&client_id=" + CLIENT_ID
+                + "&redirect_uri=https%3A%2F%2Fclient.example.org%2Fcb&scope=openid%20email&state=af0ifjsldkj");
+        final RequestContext requestCtx = new RequestContextBuilder().setInboundMessage(request).buildRequestContext();
+        final ProfileRequestContext prc = new WebflowRequestContextProfileRequestContextLookup().apply(requestCtx);
+        prc.setOutboundMessageContext(new MessageContext<AuthenticationResponse>());
+        prc.getOutboundMessageContext().addSubcontext(new OIDCAuthenticationResponseContext());
+        final OIDCMetadataContext metadataCtx =
+                (OIDCMetadataContext) prc.getInboundMessageContext().getSubcontext(OIDCMetadataContext.class, true);
+        metadataCtx.setClientInformation(new OIDCClientInformation(new ClientID(CLIENT_ID), new Date(),
+                new OIDCClientMetadata(), new Secret()));
+        return requestCtx;
+    }
+
+    /**
+     * Builds an authorization code resembling the ones issued by the token endpoint flows, including claims request,
+     * consent and token delivery claims.
+     * 
+     * @return authorization code claims set
+     */
+    @Nonnull
+    public static AuthorizeCodeClaimsSet buildAuthorizeCode() {
+        final Date now = new Date();
+        final JSONArray consentable = new JSONArray();
+        consentable.add("email");
+        consentable.add("name");
+        consentable.add("family_name");
+        final JSONArray consented = new JSONArray();
+        consented.add("email");
+        consented.add("name");
+        final ClaimsRequest claims = new ClaimsRequest();
+        claims.addIDTokenClaim("email");
+        claims.addUserInfoClaim("name");
+        claims.addUserInfoClaim("family_name");
+        return new AuthorizeCodeClaimsSet.Builder(
+                new SecureRandomIdentifierGenerationStrategy(), new ClientID(CLIENT_ID), ISSUER, "principal",
+                "subject", now, new Date(now.getTime() + 5 * 60 * 1000), now,
+                URI.create("https://client.example.org/cb"), new Scope("openid", "email", "profile"))
+                        .setACR(new ACR("urn:oasis:names:tc:SAML:2.0:ac:classes:PasswordProtectedTransport"))
+                        .setNonce(new Nonce()).setClaims(claims).setConsentableClaims(consentable)
+                        .setConsentedClaims(consented).build();
+    }
+
+    /**
+     * Generates RSA signing/encryption credential.
+     * 
+     * @return credential holding a 2048 bit RSA key pair
+     * @throws NoSuchAlgorithmException if RSA is not available
+     */
+    @Nonnull
+    public static BasicJWKCredential buildRSACredential() throws NoSuchAlgorithmException {
+        final KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        return buildCredential(kpg.generateKeyPair(), JWSAlgorithm.RS256, "rsa");
+    }
+
+    /**
+     * Generates EC P-256 signing/encryption credential.
+     * 
+     * @return credential holding a P-256 key pair
+     * @throws NoSuchAlgorithmException if EC is not available
+     * @throws InvalidAlgorithmParameterException if P-256 is not supported
+     */
+    @Nonnull
+    public static BasicJWKCredential buildECCredential()
+            throws NoSuchAlgorithmException, InvalidAlgorithmParameterException {
+        final KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+        kpg.initialize(new ECGenParameterSpec("secp256r1"));
+        return buildCredential(kpg.generateKeyPair(), JWSAlgorithm.ES256, "ec");
+    }
+
+    /**
+     * Generates HMAC credential with a 256 bit secret.
+     * 
+     * @return credential holding the shared secret
+     * @throws NoSuchAlgorithmException if HmacSHA256 is not available
+     */
+    @Nonnull
+    public static BasicJWKCredential buildHMACCredential() throws NoSuchAlgorithmException {
+        final KeyGenerator keyGenerator = KeyGenerator.getInstance("HmacSHA256");
+        keyGenerator.init(256);
+        final BasicJWKCredential credential = new BasicJWKCredential();
+        credential.setSecretKey(keyGenerator.generateKey());
+        credential.setAlgorithm(JWSAlgorithm.HS256);
+        credential.setKid("hmac");
+        return credential;
+    }
+
+    /**
+     * Wraps a key pair to credential.
+     * 
+     * @param keyPair key pair to wrap
+     * @param algorithm algorithm of the credential
+     * @param kid key id of the credential
+     * @return credential
+     */
+    private static BasicJWKCredential buildCredential(final KeyPair keyPair, final JWSAlgorithm algorithm,
+            final String kid) {
+        final BasicJWKCredential credential = new BasicJWKCredential();
+        credential.setPublicKey(keyPair.getPublic());
+        credential.setPrivateKey(keyPair.getPrivate());
+        credential.setAlgorithm(algorithm);
+        credential.setKid(kid);
+        return credential;
+    }
+
+}
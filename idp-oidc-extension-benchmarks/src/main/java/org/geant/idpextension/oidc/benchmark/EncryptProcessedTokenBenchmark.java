@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.geant.idpextension.oidc.messaging.context.OIDCAuthenticationResponseContext;
+import org.geant.idpextension.oidc.profile.impl.EncryptProcessedToken;
+import org.geant.security.jwk.BasicJWKCredential;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.opensaml.saml.saml2.profile.context.EncryptionContext;
+import org.opensaml.xmlsec.EncryptionParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.webflow.execution.Event;
+import org.springframework.webflow.execution.RequestContext;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import net.shibboleth.idp.profile.context.RelyingPartyContext;
+import net.shibboleth.idp.profile.context.navigate.WebflowRequestContextProfileRequestContextLookup;
+
+/**
+ * Benchmarks for encrypting signed tokens through {@link EncryptProcessedToken}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EncryptProcessedTokenBenchmark {
+
+    /** JWE key transport algorithm to encrypt with. */
+    @Param({"RSA-OAEP", "RSA-OAEP-256", "ECDH-ES"})
+    private String algorithm;
+
+    /** Action under test. */
+    private EncryptProcessedToken action;
+
+    /** Request context the action is executed with. */
+    private RequestContext requestCtx;
+
+    /** OIDC response context holding the token to encrypt. */
+    private OIDCAuthenticationResponseContext respCtx;
+
+    /** Signed token to encrypt. */
+    private SignedJWT signedToken;
+
+    /**
+     * Initializes the action, the encryption parameters and the signed token to encrypt.
+     * 
+     * @throws Exception if the fixtures cannot be created
+     */
+    @SuppressWarnings("rawtypes")
+    @Setup
+    public void setUp() throws Exception {
+        final BasicJWKCredential credential = algorithm.startsWith("RSA") ? BenchmarkSupport.buildRSACredential()
+                : BenchmarkSupport.buildECCredential();
+        requestCtx = BenchmarkSupport.buildRequestContext();
+        final ProfileRequestContext prc = new WebflowRequestContextProfileRequestContextLookup().apply(requestCtx);
+        final EncryptionParameters params = new EncryptionParameters();
+        params.setKeyTransportEncryptionCredential(credential);
+        params.setKeyTransportEncryptionAlgorithm(algorithm);
+        params.setDataEncryptionAlgorithm("A128CBC-HS256");
+        final RelyingPartyContext rpCtx = (RelyingPartyContext) prc.getSubcontext(RelyingPartyContext.class, true);
+        rpCtx.getSubcontext(EncryptionContext.class, true).setAssertionEncryptionParameters(params);
+        respCtx = (OIDCAuthenticationResponseContext) prc.getOutboundMessageContext()
+                .getSubcontext(OIDCAuthenticationResponseContext.class);
+        signedToken = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256),
+                new JWTClaimsSet.Builder().issuer(BenchmarkSupport.ISSUER).subject("subject")
+                        .audience(BenchmarkSupport.CLIENT_ID).build());
+        signedToken.sign(new RSASSASigner(BenchmarkSupport.buildRSACredential().getPrivateKey()));
+        action = new EncryptProcessedToken();
+        action.initialize();
+    }
+
+    /**
+     * Encrypts the signed token.
+     * 
+     * @return event of the action
+     */
+    @Benchmark
+    public Event encryptProcessedToken() {
+        // The action replaces the processed token with the encrypted one.
+        respCtx.setProcessedToken(signedToken);
+        return action.execute(requestCtx);
+    }
+
+}
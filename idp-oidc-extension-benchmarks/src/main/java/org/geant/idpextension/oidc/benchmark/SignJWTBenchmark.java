@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.geant.idpextension.oidc.messaging.context.OIDCAuthenticationResponseContext;
+import org.geant.idpextension.oidc.profile.impl.SignIDToken;
+import org.geant.security.jwk.BasicJWKCredential;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.opensaml.xmlsec.SignatureSigningParameters;
+import org.opensaml.xmlsec.context.SecurityParametersContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.webflow.execution.Event;
+import org.springframework.webflow.execution.RequestContext;
+
+import com.nimbusds.oauth2.sdk.id.Audience;
+import com.nimbusds.oauth2.sdk.id.Issuer;
+import com.nimbusds.oauth2.sdk.id.Subject;
+import com.nimbusds.openid.connect.sdk.claims.IDTokenClaimsSet;
+
+import net.shibboleth.idp.profile.context.navigate.WebflowRequestContextProfileRequestContextLookup;
+
+/**
+ * Benchmarks for ID token signing through {@link SignIDToken}, exercising the signer construction of
+ * {@link org.geant.idpextension.oidc.profile.impl.AbstractSignJWTAction}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SignJWTBenchmark {
+
+    /** JWS algorithm to sign with. */
+    @Param({"RS256", "ES256", "HS256"})
+    private String algorithm;
+
+    /** Action under test. */
+    private SignIDToken action;
+
+    /** Request context the action is executed with. */
+    private RequestContext requestCtx;
+
+    /** OIDC response context holding the id token. */
+    private OIDCAuthenticationResponseContext respCtx;
+
+    /**
+     * Initializes the action, the credential matching the algorithm and the id token to sign.
+     * 
+     * @throws Exception if the fixtures cannot be created
+     */
+    @SuppressWarnings("rawtypes")
+    @Setup
+    public void setUp() throws Exception {
+        final BasicJWKCredential credential;
+        if (algorithm.startsWith("RS")) {
+            credential = BenchmarkSupport.buildRSACredential();
+        } else if (algorithm.startsWith("ES")) {
+            credential = BenchmarkSupport.buildECCredential();
+        } else {
+            credential = BenchmarkSupport.buildHMACCredential();
+        }
+        requestCtx = BenchmarkSupport.buildRequestContext();
+        final ProfileRequestContext prc = new WebflowRequestContextProfileRequestContextLookup().apply(requestCtx);
+        final SignatureSigningParameters params = new SignatureSigningParameters();
+        params.setSigningCredential(credential);
+        params.setSignatureAlgorithm(algorithm);
+        ((SecurityParametersContext) prc.getSubcontext(SecurityParametersContext.class, true))
+                .setSignatureSigningParameters(params);
+        respCtx = (OIDCAuthenticationResponseContext) prc.getOutboundMessageContext()
+                .getSubcontext(OIDCAuthenticationResponseContext.class);
+        final List<Audience> audience = new ArrayList<>();
+        audience.add(new Audience(BenchmarkSupport.CLIENT_ID));
+        final Date now = new Date();
+        respCtx.setIDToken(new IDTokenClaimsSet(new Issuer(BenchmarkSupport.ISSUER), new Subject("subject"),
+                audience, new Date(now.getTime() + 5 * 60 * 1000), now));
+        action = new SignIDToken();
+        action.initialize();
+    }
+
+    /**
+     * Signs the id token.
+     * 
+     * @return event of the action
+     */
+    @Benchmark
+    public Event signIDToken() {
+        return action.execute(requestCtx);
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.benchmark;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.geant.idpextension.oidc.token.support.AccessTokenClaimsSet;
+import org.geant.idpextension.oidc.token.support.AuthorizeCodeClaimsSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.shibboleth.utilities.java.support.security.DataSealer;
+import net.shibboleth.utilities.java.support.security.DataSealerException;
+
+/**
+ * Benchmarks for sealing and unsealing the token claims sets, the path every token endpoint request goes through.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TokenClaimsSetBenchmark {
+
+    /** Whether the tokens are serialized in the compact binary form instead of JSON. */
+    @Param({"false", "true"})
+    public boolean compact;
+
+    /** Sealer used to wrap and unwrap the tokens. */
+    private DataSealer dataSealer;
+
+    /** Authorization code the access tokens are derived from. */
+    private AuthorizeCodeClaimsSet authorizeCode;
+
+    /** Sealed authorization code. */
+    private String sealedAuthorizeCode;
+
+    /**
+     * Initializes the sealer and the sealed authorization code.
+     * 
+     * @throws Exception if the fixtures cannot be created
+     */
+    @Setup
+    public void setUp() throws Exception {
+        dataSealer = BenchmarkSupport.buildDataSealer();
+        authorizeCode = BenchmarkSupport.buildAuthorizeCode();
+        sealedAuthorizeCode =
+                compact ? authorizeCode.serializeCompact(dataSealer) : authorizeCode.serialize(dataSealer);
+    }
+
+    /**
+     * Unseals and parses the authorization code as done in the token endpoint.
+     * 
+     * @return parsed authorization code
+     * @throws ParseException if parsing fails
+     * @throws DataSealerException if unsealing fails
+     */
+    @Benchmark
+    public AuthorizeCodeClaimsSet parseAuthorizeCode() throws ParseException, DataSealerException {
+        return AuthorizeCodeClaimsSet.parse(sealedAuthorizeCode, dataSealer);
+    }
+
+    /**
+     * Derives an access token from the authorization code.
+     * 
+     * @return access token claims set
+     */
+    @Benchmark
+    public AccessTokenClaimsSet buildAccessToken() {
+        final Date now = new Date();
+        return new AccessTokenClaimsSet(authorizeCode, authorizeCode.getScope(), authorizeCode.getDeliveryClaims(),
+                authorizeCode.getUserinfoDeliveryClaims(), now, new Date(now.getTime() + 10 * 60 * 1000));
+    }
+
+    /**
+     * Derives an access token from the authorization code and seals it.
+     * 
+     * @return sealed access token
+     * @throws DataSealerException if sealing fails
+     */
+    @Benchmark
+    public String buildAndSerializeAccessToken() throws DataSealerException {
+        final AccessTokenClaimsSet accessToken = buildAccessToken();
+        return compact ? accessToken.serializeCompact(dataSealer) : accessToken.serialize(dataSealer);
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.decoding.impl;
+
+import java.io.IOException;
+import javax.annotation.Nonnull;
+
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2BatchTokenRequest;
+import org.geant.idpextension.oidc.decoding.impl.RequestUtil;
+import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.messaging.decoder.MessageDecoder;
+import org.opensaml.messaging.decoder.MessageDecodingException;
+import org.opensaml.messaging.decoder.servlet.AbstractHttpServletRequestMessageDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.ServletUtils;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Message decoder decoding {@link OAuth2BatchTokenRequest}s.
+ */
+public class OAuth2BatchTokenRequestDecoder extends AbstractHttpServletRequestMessageDecoder<OAuth2BatchTokenRequest>
+        implements MessageDecoder<OAuth2BatchTokenRequest> {
+
+    /** The default maximum number of tokens in a request. */
+    public static final int DEFAULT_MAX_TOKENS = 1000;
+
+    /** Class logger. */
+    @Nonnull
+    private final Logger log = LoggerFactory.getLogger(OAuth2BatchTokenRequestDecoder.class);
+
+    /** The maximum number of tokens in a request. */
+    @Positive
+    private int maxTokens = DEFAULT_MAX_TOKENS;
+
+    /**
+     * Set the maximum number of tokens in a request.
+     * 
+     * @param max the maximum number of tokens in a request
+     */
+    public void setMaxTokens(@Positive final int max) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        maxTokens = (int) Constraint.isGreaterThan(0, max, "Maximum number of tokens must be greater than 0");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDecode() throws MessageDecodingException {
+        MessageContext<OAuth2BatchTokenRequest> messageContext = new MessageContext<>();
+        OAuth2BatchTokenRequest req = null;
+        try {
+            HTTPRequest httpReq = ServletUtils.createHTTPRequest(getHttpServletRequest());
+            log.debug("Inbound request {}", RequestUtil.toString(httpReq));
+            req = OAuth2BatchTokenRequest.parse(httpReq, maxTokens);
+        } catch (com.nimbusds.oauth2.sdk.ParseException | IOException e) {
+            log.error("Unable to decode inbound request: {}", e.getMessage());
+            throw new MessageDecodingException(e);
+        }
+        messageContext.setMessage(req);
+        setMessageContext(messageContext);
+    }
+
+}
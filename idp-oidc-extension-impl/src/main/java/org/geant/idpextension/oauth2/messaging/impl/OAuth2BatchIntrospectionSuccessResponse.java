@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.messaging.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import com.nimbusds.oauth2.sdk.SuccessResponse;
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+import com.nimbusds.oauth2.sdk.http.CommonContentTypes;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * OAuth2 batch token introspection success message class. The introspection responses are returned as the
+ * "responses" JSON array, in the order of the tokens in the request.
+ */
+public class OAuth2BatchIntrospectionSuccessResponse implements SuccessResponse {
+
+    /** The introspection responses, in the order of the tokens in the request. */
+    @Nonnull
+    private final List<TokenIntrospectionSuccessResponse> responses;
+
+    /**
+     * Constructor.
+     * 
+     * @param responseList the introspection responses, in the order of the tokens in the request
+     */
+    public OAuth2BatchIntrospectionSuccessResponse(
+            @Nonnull final List<TokenIntrospectionSuccessResponse> responseList) {
+        responses = Collections
+                .unmodifiableList(new ArrayList<>(Constraint.isNotNull(responseList, "Responses cannot be null")));
+    }
+
+    /**
+     * Get the introspection responses, in the order of the tokens in the request.
+     * 
+     * @return the introspection responses
+     */
+    @Nonnull
+    public List<TokenIntrospectionSuccessResponse> getResponses() {
+        return responses;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean indicatesSuccess() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HTTPResponse toHTTPResponse() {
+        final JSONArray array = new JSONArray();
+        for (final TokenIntrospectionSuccessResponse response : responses) {
+            array.add(response.toJSONObject());
+        }
+        final JSONObject content = new JSONObject();
+        content.put("responses", array);
+        final HTTPResponse httpResponse = new HTTPResponse(HTTPResponse.SC_OK);
+        httpResponse.setContentType(CommonContentTypes.APPLICATION_JSON);
+        httpResponse.setCacheControl("no-store");
+        httpResponse.setPragma("no-cache");
+        httpResponse.setContent(content.toJSONString());
+        return httpResponse;
+    }
+}
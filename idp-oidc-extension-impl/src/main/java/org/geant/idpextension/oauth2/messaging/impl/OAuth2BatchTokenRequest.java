@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.messaging.impl;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.nimbusds.oauth2.sdk.AbstractOptionallyIdentifiedRequest;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.SerializeException;
+import com.nimbusds.oauth2.sdk.auth.ClientAuthentication;
+import com.nimbusds.oauth2.sdk.http.CommonContentTypes;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.oauth2.sdk.util.URLUtils;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Batch token request, carrying the tokens to introspect or revoke at once as repeated token parameters, optionally
+ * together with client authentication.
+ */
+public class OAuth2BatchTokenRequest extends AbstractOptionallyIdentifiedRequest {
+
+    /** Name of the repeated parameter carrying the tokens. */
+    public static final String PARAMETER_TOKEN = "token";
+
+    /** The tokens. */
+    @Nonnull
+    private final List<String> tokens;
+
+    /**
+     * Constructor for an authenticated client.
+     * 
+     * @param uri the URI of the batch endpoint
+     * @param clientAuth the client authentication
+     * @param tokenList the tokens
+     */
+    public OAuth2BatchTokenRequest(final URI uri, @Nonnull final ClientAuthentication clientAuth,
+            @Nonnull final List<String> tokenList) {
+        super(uri, Constraint.isNotNull(clientAuth, "Client authentication cannot be null"));
+        tokens = Collections.unmodifiableList(new ArrayList<>(Constraint.isNotEmpty(tokenList,
+                "Tokens cannot be null or empty")));
+    }
+
+    /**
+     * Constructor for a public client.
+     * 
+     * @param uri the URI of the batch endpoint
+     * @param clientID the client id
+     * @param tokenList the tokens
+     */
+    public OAuth2BatchTokenRequest(final URI uri, @Nonnull final ClientID clientID,
+            @Nonnull final List<String> tokenList) {
+        super(uri, Constraint.isNotNull(clientID, "Client id cannot be null"));
+        tokens = Collections.unmodifiableList(new ArrayList<>(Constraint.isNotEmpty(tokenList,
+                "Tokens cannot be null or empty")));
+    }
+
+    /**
+     * Get the tokens, in the order of the request.
+     * 
+     * @return the tokens
+     */
+    @Nonnull
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HTTPRequest toHTTPRequest() {
+        if (getEndpointURI() == null) {
+            throw new SerializeException("The endpoint URI is not specified");
+        }
+        final HTTPRequest httpRequest;
+        try {
+            httpRequest = new HTTPRequest(HTTPRequest.Method.POST, getEndpointURI().toURL());
+        } catch (MalformedURLException e) {
+            throw new SerializeException(e.getMessage(), e);
+        }
+        httpRequest.setContentType(CommonContentTypes.APPLICATION_URLENCODED);
+        final Map<String, List<String>> params = new HashMap<>();
+        params.put(PARAMETER_TOKEN, tokens);
+        if (getClientAuthentication() == null) {
+            params.put("client_id", Collections.singletonList(getClientID().getValue()));
+        }
+        httpRequest.setQuery(URLUtils.serializeParameters(params));
+        if (getClientAuthentication() != null) {
+            getClientAuthentication().applyTo(httpRequest);
+        }
+        return httpRequest;
+    }
+
+    /**
+     * Parse a batch token request from the HTTP request. A public client must identify itself with the client_id
+     * parameter.
+     * 
+     * @param httpRequest the HTTP request to parse
+     * @param maxTokens the maximum number of tokens accepted in the request
+     * @return the parsed batch token request
+     * @throws ParseException if the HTTP request could not be parsed
+     */
+    @Nonnull
+    public static OAuth2BatchTokenRequest parse(@Nonnull final HTTPRequest httpRequest, final int maxTokens)
+            throws ParseException {
+        httpRequest.ensureMethod(HTTPRequest.Method.POST);
+        httpRequest.ensureContentType(CommonContentTypes.APPLICATION_URLENCODED);
+        final URI uri;
+        try {
+            uri = httpRequest.getURL().toURI();
+        } catch (URISyntaxException e) {
+            throw new ParseException(e.getMessage(), e);
+        }
+        final Map<String, List<String>> params = httpRequest.getQueryParameters();
+        final List<String> tokens = params.get(PARAMETER_TOKEN);
+        if (tokens == null || tokens.isEmpty()) {
+            throw new ParseException("Missing required token parameter");
+        }
+        if (tokens.size() > maxTokens) {
+            throw new ParseException("The request has more than " + maxTokens + " tokens");
+        }
+        for (final String token : tokens) {
+            if (token == null || token.isEmpty()) {
+                throw new ParseException("Empty token parameter");
+            }
+        }
+        final ClientAuthentication clientAuth = ClientAuthentication.parse(httpRequest);
+        if (clientAuth != null) {
+            return new OAuth2BatchTokenRequest(uri, clientAuth, tokens);
+        }
+        final List<String> clientID = params.get("client_id");
+        if (clientID == null || clientID.isEmpty() || clientID.get(0) == null || clientID.get(0).isEmpty()) {
+            throw new ParseException("Missing required client_id parameter");
+        }
+        return new OAuth2BatchTokenRequest(uri, new ClientID(clientID.get(0)), tokens);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.messaging.impl;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.nimbusds.oauth2.sdk.AbstractOptionallyIdentifiedRequest;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.SerializeException;
+import com.nimbusds.oauth2.sdk.auth.ClientAuthentication;
+import com.nimbusds.oauth2.sdk.http.CommonContentTypes;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.util.URLUtils;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+
+/**
+ * Request to revoke all the tokens of a user principal, of a client or of both issued so far, always carrying client
+ * authentication.
+ */
+public class OAuth2IssuedBeforeRevocationRequest extends AbstractOptionallyIdentifiedRequest {
+
+    /** Name of the parameter carrying the user principal. */
+    public static final String PARAMETER_PRINCIPAL = "principal";
+
+    /** Name of the parameter carrying the client id. */
+    public static final String PARAMETER_REVOKED_CLIENT_ID = "revoked_client_id";
+
+    /** The user principal whose tokens are revoked, null if not revoked by user principal. */
+    @Nullable
+    private final String principal;
+
+    /** The client id whose tokens are revoked, null if not revoked by client. */
+    @Nullable
+    private final String revokedClientID;
+
+    /**
+     * Constructor.
+     * 
+     * @param uri the URI of the endpoint
+     * @param clientAuth the client authentication
+     * @param revokedPrincipal the user principal whose tokens are revoked, null if not revoked by user principal
+     * @param clientID the client id whose tokens are revoked, null if not revoked by client
+     */
+    public OAuth2IssuedBeforeRevocationRequest(final URI uri, @Nonnull final ClientAuthentication clientAuth,
+            @Nullable final String revokedPrincipal, @Nullable final String clientID) {
+        super(uri, Constraint.isNotNull(clientAuth, "Client authentication cannot be null"));
+        principal = StringSupport.trimOrNull(revokedPrincipal);
+        revokedClientID = StringSupport.trimOrNull(clientID);
+        Constraint.isTrue(principal != null || revokedClientID != null,
+                "Either the principal or the revoked client id must be set");
+    }
+
+    /**
+     * Get the user principal whose tokens are revoked.
+     * 
+     * @return the user principal, null if not revoked by user principal
+     */
+    @Nullable
+    public String getPrincipal() {
+        return principal;
+    }
+
+    /**
+     * Get the client id whose tokens are revoked.
+     * 
+     * @return the client id, null if not revoked by client
+     */
+    @Nullable
+    public String getRevokedClientID() {
+        return revokedClientID;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HTTPRequest toHTTPRequest() {
+        if (getEndpointURI() == null) {
+            throw new SerializeException("The endpoint URI is not specified");
+        }
+        final HTTPRequest httpRequest;
+        try {
+            httpRequest = new HTTPRequest(HTTPRequest.Method.POST, getEndpointURI().toURL());
+        } catch (MalformedURLException e) {
+            throw new SerializeException(e.getMessage(), e);
+        }
+        httpRequest.setContentType(CommonContentTypes.APPLICATION_URLENCODED);
+        final Map<String, List<String>> params = new HashMap<>();
+        if (principal != null) {
+            params.put(PARAMETER_PRINCIPAL, Collections.singletonList(principal));
+        }
+        if (revokedClientID != null) {
+            params.put(PARAMETER_REVOKED_CLIENT_ID, Collections.singletonList(revokedClientID));
+        }
+        httpRequest.setQuery(URLUtils.serializeParameters(params));
+        getClientAuthentication().applyTo(httpRequest);
+        return httpRequest;
+    }
+
+    /**
+     * Parse a request to revoke the tokens issued so far from the HTTP request.
+     * 
+     * @param httpRequest the HTTP request to parse
+     * @return the parsed request
+     * @throws ParseException if the HTTP request could not be parsed
+     */
+    @Nonnull
+    public static OAuth2IssuedBeforeRevocationRequest parse(@Nonnull final HTTPRequest httpRequest)
+            throws ParseException {
+        httpRequest.ensureMethod(HTTPRequest.Method.POST);
+        httpRequest.ensureContentType(CommonContentTypes.APPLICATION_URLENCODED);
+        final URI uri;
+        try {
+            uri = httpRequest.getURL().toURI();
+        } catch (URISyntaxException e) {
+            throw new ParseException(e.getMessage(), e);
+        }
+        final Map<String, List<String>> params = httpRequest.getQueryParameters();
+        final String principal = StringSupport.trimOrNull(getFirstValue(params, PARAMETER_PRINCIPAL));
+        final String clientID = StringSupport.trimOrNull(getFirstValue(params, PARAMETER_REVOKED_CLIENT_ID));
+        if (principal == null && clientID == null) {
+            throw new ParseException(
+                    "Missing required " + PARAMETER_PRINCIPAL + " or " + PARAMETER_REVOKED_CLIENT_ID + " parameter");
+        }
+        final ClientAuthentication clientAuth = ClientAuthentication.parse(httpRequest);
+        if (clientAuth == null) {
+            throw new ParseException("Missing required client authentication");
+        }
+        return new OAuth2IssuedBeforeRevocationRequest(uri, clientAuth, principal, clientID);
+    }
+
+    /**
+     * Get the first value of the parameter.
+     * 
+     * @param params the parameters
+     * @param name the name of the parameter
+     * @return the first value of the parameter, or null if not present
+     */
+    @Nullable
+    private static String getFirstValue(@Nonnull final Map<String, List<String>> params, @Nonnull final String name) {
+        final List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+}
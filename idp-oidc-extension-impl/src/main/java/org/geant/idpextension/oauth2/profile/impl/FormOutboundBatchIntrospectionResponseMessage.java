@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.profile.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2BatchIntrospectionSuccessResponse;
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2BatchTokenRequest;
+import org.geant.idpextension.oidc.profile.impl.AbstractOIDCRequestAction;
+import org.geant.idpextension.oidc.storage.IntrospectionCache;
+import org.geant.idpextension.oidc.storage.RevocationCache;
+import org.geant.idpextension.oidc.token.support.TokenClaimsSet;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+import net.shibboleth.utilities.java.support.annotation.ParameterName;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.security.DataSealer;
+
+/**
+ * Action that forms outbound batch token introspection success message, introspecting all the tokens of the
+ * {@link OAuth2BatchTokenRequest}. The revocation status of each distinct token is checked once per request, as by
+ * {@link RevocationCache#isRevoked(TokenClaimsSet)}. Formed message is set to
+ * {@link ProfileRequestContext#getOutboundMessageContext()}.
+ */
+@SuppressWarnings("rawtypes")
+public class FormOutboundBatchIntrospectionResponseMessage extends AbstractOIDCRequestAction<OAuth2BatchTokenRequest> {
+
+    /** Class logger. */
+    @Nonnull
+    private Logger log = LoggerFactory.getLogger(FormOutboundBatchIntrospectionResponseMessage.class);
+
+    /** Data sealer for unwrapping token. */
+    @Nonnull
+    private final DataSealer dataSealer;
+
+    /** Message revocation cache instance to use. */
+    @NonnullAfterInit
+    private RevocationCache revocationCache;
+
+    /** Cache for the active introspection responses, null if not used. */
+    @Nullable
+    private IntrospectionCache introspectionCache;
+
+    /**
+     * Constructor.
+     * 
+     * @param sealer sealer to decrypt/hmac access token.
+     */
+    public FormOutboundBatchIntrospectionResponseMessage(
+            @Nonnull @ParameterName(name = "sealer") final DataSealer sealer) {
+        dataSealer = Constraint.isNotNull(sealer, "DataSealer cannot be null");
+    }
+
+    /**
+     * Set the revocation cache instance to use.
+     * 
+     * @param cache The revocationCache to set.
+     */
+    public void setRevocationCache(@Nonnull final RevocationCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        revocationCache = Constraint.isNotNull(cache, "RevocationCache cannot be null");
+    }
+
+    /**
+     * Set the cache for the active introspection responses.
+     * 
+     * @param cache The introspection cache to set, null if not used.
+     */
+    public void setIntrospectionCache(@Nullable final IntrospectionCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        introspectionCache = cache;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        Constraint.isNotNull(revocationCache, "RevocationCache cannot be null");
+    }
+
+    /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void doExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
+        final List<String> tokens = getRequest().getTokens();
+        log.debug("{} {} tokens to introspect", getLogPrefix(), tokens.size());
+        final TokenIntrospectionSuccessResponse inactive = new TokenIntrospectionSuccessResponse.Builder(false).build();
+        final List<TokenIntrospectionSuccessResponse> responses = new ArrayList<>(tokens.size());
+        final Map<String, TokenIntrospectionSuccessResponse> introspected = new HashMap<>();
+        final long stamp = introspectionCache != null ? introspectionCache.getGeneration() : 0;
+        for (final String token : tokens) {
+            TokenIntrospectionSuccessResponse response = introspected.get(token);
+            if (response == null) {
+                response = introspect(token, inactive, stamp);
+                introspected.put(token, response);
+            }
+            responses.add(response);
+        }
+        profileRequestContext.getOutboundMessageContext()
+                .setMessage(new OAuth2BatchIntrospectionSuccessResponse(responses));
+    }
+
+    /**
+     * Introspects a single token.
+     * 
+     * @param token the token to introspect
+     * @param inactive the response for an inactive token
+     * @param stamp the generation of the introspection cache taken before the revocation checks
+     * @return the introspection response
+     */
+    @Nonnull
+    private TokenIntrospectionSuccessResponse introspect(@Nonnull final String token,
+            @Nonnull final TokenIntrospectionSuccessResponse inactive, final long stamp) {
+        final TokenIntrospectionSuccessResponse cached =
+                introspectionCache != null ? introspectionCache.get(token) : null;
+        if (cached != null) {
+            return cached;
+        }
+        final TokenClaimsSet tokenClaimsSet = SealedTokenSupport.unwrap(token, dataSealer);
+        if (tokenClaimsSet == null || tokenClaimsSet.isExpired()) {
+            return inactive;
+        }
+        if (revocationCache.isRevoked(tokenClaimsSet)) {
+            log.debug("{} token derived from authorization code {} is revoked", getLogPrefix(),
+                    tokenClaimsSet.getID());
+            return inactive;
+        }
+        final TokenIntrospectionSuccessResponse response = SealedTokenSupport.buildActiveResponse(tokenClaimsSet);
+        if (introspectionCache != null) {
+            introspectionCache.put(token, tokenClaimsSet.getID(), response,
+                    tokenClaimsSet.getClaimsSet().getExpirationTime(), stamp);
+        }
+        return response;
+    }
+}
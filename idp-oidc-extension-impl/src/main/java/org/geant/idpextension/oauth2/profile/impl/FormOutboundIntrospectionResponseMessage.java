@@ -16,31 +16,24 @@
 
 package org.geant.idpextension.oauth2.profile.impl;
 
-import java.text.ParseException;
-
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.geant.idpextension.oidc.profile.impl.AbstractOIDCRequestAction;
+import org.geant.idpextension.oidc.storage.IntrospectionCache;
 import org.geant.idpextension.oidc.storage.RevocationCache;
-import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
-import org.geant.idpextension.oidc.token.support.AccessTokenClaimsSet;
-import org.geant.idpextension.oidc.token.support.RefreshTokenClaimsSet;
 import org.geant.idpextension.oidc.token.support.TokenClaimsSet;
 import org.opensaml.profile.context.ProfileRequestContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import com.nimbusds.oauth2.sdk.TokenIntrospectionRequest;
 import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
-import com.nimbusds.oauth2.sdk.id.Issuer;
-import com.nimbusds.oauth2.sdk.id.Subject;
-import com.nimbusds.oauth2.sdk.token.AccessTokenType;
 import net.shibboleth.utilities.java.support.annotation.ParameterName;
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.security.DataSealer;
-import net.shibboleth.utilities.java.support.security.DataSealerException;
 
 /**
  * Action that forms outbound token introspection success message. Formed message is set to
@@ -61,6 +54,10 @@ public class FormOutboundIntrospectionResponseMessage extends AbstractOIDCReques
     @NonnullAfterInit
     private RevocationCache revocationCache;
 
+    /** Cache for the active introspection responses, null if not used. */
+    @Nullable
+    private IntrospectionCache introspectionCache;
+
     /**
      * Constructor.
      * 
@@ -80,6 +77,16 @@ public class FormOutboundIntrospectionResponseMessage extends AbstractOIDCReques
         revocationCache = Constraint.isNotNull(cache, "RevocationCache cannot be null");
     }
 
+    /**
+     * Set the cache for the active introspection responses.
+     * 
+     * @param cache The introspection cache to set, null if not used.
+     */
+    public void setIntrospectionCache(@Nullable final IntrospectionCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        introspectionCache = cache;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void doInitialize() throws ComponentInitializationException {
@@ -91,32 +98,27 @@ public class FormOutboundIntrospectionResponseMessage extends AbstractOIDCReques
     @SuppressWarnings("unchecked")
     @Override
     protected void doExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
-        TokenClaimsSet tokenClaimsSet = null;
-        AccessTokenType tokenType = null;
         log.debug("{} token to introspect {}", getLogPrefix(), getRequest().getToken().getValue());
-        try {
-            tokenClaimsSet = AccessTokenClaimsSet.parse(getRequest().getToken().getValue(), dataSealer);
-            tokenType = AccessTokenType.BEARER;
-            log.debug("{} access token unwrapped {}", getLogPrefix(), tokenClaimsSet.serialize());
-        } catch (DataSealerException | ParseException e) {
-            log.debug("{} token to introspect is not valid access token", getLogPrefix());
-        }
-        if (tokenClaimsSet == null) {
-            try {
-                tokenClaimsSet = RefreshTokenClaimsSet.parse(getRequest().getToken().getValue(), dataSealer);
-                log.debug("{} refresh token unwrapped {}", getLogPrefix(), tokenClaimsSet.serialize());
-            } catch (DataSealerException | ParseException e) {
-                log.debug("{} token to introspect is not valid refresh token", getLogPrefix());
+        if (introspectionCache != null) {
+            final TokenIntrospectionSuccessResponse cached =
+                    introspectionCache.get(getRequest().getToken().getValue());
+            if (cached != null) {
+                log.debug("{} introspection response found from the cache", getLogPrefix());
+                profileRequestContext.getOutboundMessageContext().setMessage(cached);
+                return;
             }
         }
+        final TokenClaimsSet tokenClaimsSet =
+                SealedTokenSupport.unwrap(getRequest().getToken().getValue(), dataSealer);
         if (tokenClaimsSet == null) {
             log.debug("{} unable to decode token", getLogPrefix());
             profileRequestContext.getOutboundMessageContext()
                     .setMessage(new TokenIntrospectionSuccessResponse.Builder(false).build());
             return;
         }
-        if (revocationCache.isRevoked(RevocationCacheContexts.AUTHORIZATION_CODE, tokenClaimsSet.getID())) {
-            log.debug("{} tokens derived from authorization code {} are all revoked", getLogPrefix(),
+        final long stamp = introspectionCache != null ? introspectionCache.getGeneration() : 0;
+        if (revocationCache.isRevoked(tokenClaimsSet)) {
+            log.debug("{} token derived from authorization code {} has been revoked", getLogPrefix(),
                     tokenClaimsSet.getID());
             profileRequestContext.getOutboundMessageContext()
                     .setMessage(new TokenIntrospectionSuccessResponse.Builder(false).build());
@@ -128,16 +130,11 @@ public class FormOutboundIntrospectionResponseMessage extends AbstractOIDCReques
                     .setMessage(new TokenIntrospectionSuccessResponse.Builder(false).build());
             return;
         }
-        // TODO: We are not returning audience field at all. Audience would be useful for example in cases where
-        // Resource Server
-        // uses introspection to verify it is on the audience list before accepting the request.
-        // Audience information is not currently carried in tokens.
-        profileRequestContext.getOutboundMessageContext()
-                .setMessage(new TokenIntrospectionSuccessResponse.Builder(true).scope(tokenClaimsSet.getScope())
-                        .clientID(tokenClaimsSet.getClientID()).username(tokenClaimsSet.getPrincipal())
-                        .tokenType(tokenType).expirationTime(tokenClaimsSet.getClaimsSet().getExpirationTime())
-                        .issueTime(tokenClaimsSet.getClaimsSet().getIssueTime())
-                        .subject(new Subject(tokenClaimsSet.getClaimsSet().getSubject()))
-                        .issuer(new Issuer(tokenClaimsSet.getClaimsSet().getIssuer())).build());
+        final TokenIntrospectionSuccessResponse response = SealedTokenSupport.buildActiveResponse(tokenClaimsSet);
+        if (introspectionCache != null) {
+            introspectionCache.put(getRequest().getToken().getValue(), tokenClaimsSet.getID(), response,
+                    tokenClaimsSet.getClaimsSet().getExpirationTime(), stamp);
+        }
+        profileRequestContext.getOutboundMessageContext().setMessage(response);
     }
 }
\ No newline at end of file
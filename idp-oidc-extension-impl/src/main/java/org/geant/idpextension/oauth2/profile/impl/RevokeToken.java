@@ -16,13 +16,12 @@
 
 package org.geant.idpextension.oauth2.profile.impl;
 
-import java.text.ParseException;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.geant.idpextension.oidc.profile.impl.AbstractOIDCRequestAction;
+import org.geant.idpextension.oidc.storage.IntrospectionCache;
 import org.geant.idpextension.oidc.storage.RevocationCache;
 import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
-import org.geant.idpextension.oidc.token.support.AccessTokenClaimsSet;
-import org.geant.idpextension.oidc.token.support.RefreshTokenClaimsSet;
 import org.geant.idpextension.oidc.token.support.TokenClaimsSet;
 import org.opensaml.profile.context.ProfileRequestContext;
 import org.slf4j.Logger;
@@ -34,7 +33,6 @@ import net.shibboleth.utilities.java.support.component.ComponentInitializationEx
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.security.DataSealer;
-import net.shibboleth.utilities.java.support.security.DataSealerException;
 
 /**
  * Action revokes all tokens based on authorization grant of the token to be revoked. If token is access token or
@@ -58,6 +56,10 @@ public class RevokeToken extends AbstractOIDCRequestAction<TokenRevocationReques
     @NonnullAfterInit
     private RevocationCache revocationCache;
 
+    /** Cache for the active introspection responses, null if not used. */
+    @Nullable
+    private IntrospectionCache introspectionCache;
+
     /**
      * Constructor.
      * 
@@ -77,6 +79,16 @@ public class RevokeToken extends AbstractOIDCRequestAction<TokenRevocationReques
         revocationCache = Constraint.isNotNull(cache, "RevocationCache cannot be null");
     }
 
+    /**
+     * Set the cache for the active introspection responses, invalidated on revocation.
+     * 
+     * @param cache The introspection cache to set, null if not used.
+     */
+    public void setIntrospectionCache(@Nullable final IntrospectionCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        introspectionCache = cache;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void doInitialize() throws ComponentInitializationException {
@@ -87,22 +99,9 @@ public class RevokeToken extends AbstractOIDCRequestAction<TokenRevocationReques
     /** {@inheritDoc} */
     @Override
     protected void doExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
-        TokenClaimsSet tokenClaimsSet = null;
         log.debug("{} token to revoke {}", getLogPrefix(), getRequest().getToken().getValue());
-        try {
-            tokenClaimsSet = AccessTokenClaimsSet.parse(getRequest().getToken().getValue(), dataSealer);
-            log.debug("{} access token unwrapped {}", getLogPrefix(), tokenClaimsSet.serialize());
-        } catch (DataSealerException | ParseException e) {
-            log.debug("{} token to revoke is not valid access token", getLogPrefix());
-        }
-        if (tokenClaimsSet == null) {
-            try {
-                tokenClaimsSet = RefreshTokenClaimsSet.parse(getRequest().getToken().getValue(), dataSealer);
-                log.debug("{} refresh token unwrapped {}", getLogPrefix(), tokenClaimsSet.serialize());
-            } catch (DataSealerException | ParseException e) {
-                log.debug("{} token to revoke is not valid refresh token", getLogPrefix());
-            }
-        }
+        final TokenClaimsSet tokenClaimsSet =
+                SealedTokenSupport.unwrap(getRequest().getToken().getValue(), dataSealer);
         if (tokenClaimsSet == null) {
             log.debug("{} unable to decode token to revoke, nothing to do", getLogPrefix());
             return;
@@ -112,5 +111,8 @@ public class RevokeToken extends AbstractOIDCRequestAction<TokenRevocationReques
         } else {
             log.warn("{} failed to revoke tokens based on authorize code {}", getLogPrefix(), tokenClaimsSet.getID());
         }
+        if (introspectionCache != null) {
+            introspectionCache.invalidate(tokenClaimsSet.getID());
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.profile.impl;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2BatchTokenRequest;
+import org.geant.idpextension.oidc.profile.impl.AbstractOIDCRequestAction;
+import org.geant.idpextension.oidc.storage.IntrospectionCache;
+import org.geant.idpextension.oidc.storage.RevocationCache;
+import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
+import org.geant.idpextension.oidc.token.support.TokenClaimsSet;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.shibboleth.utilities.java.support.annotation.ParameterName;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.security.DataSealer;
+
+/**
+ * Action revokes all tokens based on the authorization grants of the tokens of the {@link OAuth2BatchTokenRequest}.
+ * The id of each distinct authorization code the access and refresh tokens are derived from is marked as revoked
+ * once, so invalidating all tokens based on them.
+ * 
+ * Tokens that are not decodable are skipped, and the actions still returns success status if the revocation fails.
+ */
+@SuppressWarnings("rawtypes")
+public class RevokeTokens extends AbstractOIDCRequestAction<OAuth2BatchTokenRequest> {
+
+    /** Class logger. */
+    @Nonnull
+    private Logger log = LoggerFactory.getLogger(RevokeTokens.class);
+
+    /** Data sealer for unwrapping token. */
+    @Nonnull
+    private final DataSealer dataSealer;
+
+    /** Message revocation cache instance to use. */
+    @NonnullAfterInit
+    private RevocationCache revocationCache;
+
+    /** Cache for the active introspection responses, null if not used. */
+    @Nullable
+    private IntrospectionCache introspectionCache;
+
+    /**
+     * Constructor.
+     * 
+     * @param sealer sealer to decrypt/hmac access token.
+     */
+    public RevokeTokens(@Nonnull @ParameterName(name = "sealer") final DataSealer sealer) {
+        dataSealer = Constraint.isNotNull(sealer, "DataSealer cannot be null");
+    }
+
+    /**
+     * Set the revocation cache instance to use.
+     * 
+     * @param cache The revocationCache to set.
+     */
+    public void setRevocationCache(@Nonnull final RevocationCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        revocationCache = Constraint.isNotNull(cache, "RevocationCache cannot be null");
+    }
+
+    /**
+     * Set the cache for the active introspection responses, invalidated on revocation.
+     * 
+     * @param cache The introspection cache to set, null if not used.
+     */
+    public void setIntrospectionCache(@Nullable final IntrospectionCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        introspectionCache = cache;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        Constraint.isNotNull(revocationCache, "RevocationCache cannot be null");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
+        log.debug("{} {} tokens to revoke", getLogPrefix(), getRequest().getTokens().size());
+        final Set<String> authorizationCodeIds = new LinkedHashSet<>();
+        for (final String token : getRequest().getTokens()) {
+            final TokenClaimsSet tokenClaimsSet = SealedTokenSupport.unwrap(token, dataSealer);
+            if (tokenClaimsSet == null) {
+                log.debug("{} unable to decode token to revoke, skipping it", getLogPrefix());
+                continue;
+            }
+            authorizationCodeIds.add(tokenClaimsSet.getID());
+        }
+        if (authorizationCodeIds.isEmpty()) {
+            log.debug("{} no decodable tokens to revoke, nothing to do", getLogPrefix());
+            return;
+        }
+        if (revocationCache.revoke(RevocationCacheContexts.AUTHORIZATION_CODE, authorizationCodeIds)) {
+            log.debug("{} revoked all tokens based on authorize codes {}", getLogPrefix(), authorizationCodeIds);
+        } else {
+            log.warn("{} failed to revoke some of the tokens based on authorize codes {}", getLogPrefix(),
+                    authorizationCodeIds);
+        }
+        if (introspectionCache != null) {
+            for (final String authorizationCodeId : authorizationCodeIds) {
+                introspectionCache.invalidate(authorizationCodeId);
+            }
+        }
+    }
+}
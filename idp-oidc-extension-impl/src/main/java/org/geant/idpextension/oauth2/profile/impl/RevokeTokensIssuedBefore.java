@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.profile.impl;
+
+import java.util.Date;
+
+import javax.annotation.Nonnull;
+
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2IssuedBeforeRevocationRequest;
+import org.geant.idpextension.oidc.profile.impl.AbstractOIDCRequestAction;
+import org.geant.idpextension.oidc.storage.RevocationCache;
+import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
+import org.opensaml.profile.action.ActionSupport;
+import org.opensaml.profile.action.EventIds;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Action revokes all the tokens of the user principal and of the client of the
+ * {@link OAuth2IssuedBeforeRevocationRequest} issued up to the current time, as by
+ * {@link RevocationCache#revokeIssuedBefore(String, String, Date)}. The cached introspection responses are invalidated
+ * by the revocation cache.
+ * 
+ * Unlike the single token revocation, the action fails with {@link EventIds#IO_ERROR} if the revocation fails, so that
+ * the caller knows to retry.
+ */
+@SuppressWarnings("rawtypes")
+public class RevokeTokensIssuedBefore extends AbstractOIDCRequestAction<OAuth2IssuedBeforeRevocationRequest> {
+
+    /** Class logger. */
+    @Nonnull
+    private Logger log = LoggerFactory.getLogger(RevokeTokensIssuedBefore.class);
+
+    /** Message revocation cache instance to use. */
+    @NonnullAfterInit
+    private RevocationCache revocationCache;
+
+    /**
+     * Set the revocation cache instance to use.
+     * 
+     * @param cache The revocationCache to set.
+     */
+    public void setRevocationCache(@Nonnull final RevocationCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        revocationCache = Constraint.isNotNull(cache, "RevocationCache cannot be null");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        Constraint.isNotNull(revocationCache, "RevocationCache cannot be null");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
+        final Date issuedBefore = new Date();
+        final String principal = getRequest().getPrincipal();
+        if (principal != null) {
+            if (!revocationCache.revokeIssuedBefore(RevocationCacheContexts.PRINCIPAL, principal, issuedBefore)) {
+                log.error("{} failed to revoke the tokens of principal {}", getLogPrefix(), principal);
+                ActionSupport.buildEvent(profileRequestContext, EventIds.IO_ERROR);
+                return;
+            }
+            log.info("{} revoked the tokens of principal {} issued before {}", getLogPrefix(), principal,
+                    issuedBefore);
+        }
+        final String clientID = getRequest().getRevokedClientID();
+        if (clientID != null) {
+            if (!revocationCache.revokeIssuedBefore(RevocationCacheContexts.CLIENT, clientID, issuedBefore)) {
+                log.error("{} failed to revoke the tokens of client {}", getLogPrefix(), clientID);
+                ActionSupport.buildEvent(profileRequestContext, EventIds.IO_ERROR);
+                return;
+            }
+            log.info("{} revoked the tokens of client {} issued before {}", getLogPrefix(), clientID, issuedBefore);
+        }
+    }
+}
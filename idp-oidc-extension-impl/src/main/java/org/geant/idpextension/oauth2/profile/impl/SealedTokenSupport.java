@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.profile.impl;
+
+import java.text.ParseException;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.geant.idpextension.oidc.token.support.AccessTokenClaimsSet;
+import org.geant.idpextension.oidc.token.support.RefreshTokenClaimsSet;
+import org.geant.idpextension.oidc.token.support.TokenClaimsSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+import com.nimbusds.oauth2.sdk.id.Issuer;
+import com.nimbusds.oauth2.sdk.id.Subject;
+import com.nimbusds.oauth2.sdk.token.AccessTokenType;
+
+import net.shibboleth.utilities.java.support.security.DataSealer;
+import net.shibboleth.utilities.java.support.security.DataSealerException;
+
+/**
+ * Helpers for the revocation and introspection actions handling sealed access and refresh tokens.
+ */
+final class SealedTokenSupport {
+
+    /** Class logger. */
+    @Nonnull
+    private static final Logger LOG = LoggerFactory.getLogger(SealedTokenSupport.class);
+
+    /** Constructor. */
+    private SealedTokenSupport() {
+    }
+
+    /**
+     * Unwrap a sealed access or refresh token. The tag of the sealed token tells which parser to use, untagged legacy
+     * tokens are tried with both.
+     * 
+     * @param token the sealed token
+     * @param dataSealer sealer to unwrap the token
+     * @return the access or refresh token claims set, or null if the token is neither
+     */
+    @Nullable
+    static TokenClaimsSet unwrap(@Nonnull final String token, @Nonnull final DataSealer dataSealer) {
+        final String sealedType;
+        try {
+            sealedType = TokenClaimsSet.getSealedType(token);
+        } catch (ParseException e) {
+            LOG.debug("Token is not a sealed token: {}", e.getMessage());
+            return null;
+        }
+        if (sealedType == null || AccessTokenClaimsSet.VALUE_TYPE_AT.equals(sealedType)) {
+            try {
+                final TokenClaimsSet tokenClaimsSet = AccessTokenClaimsSet.parse(token, dataSealer);
+                LOG.debug("Access token unwrapped {}", tokenClaimsSet.serialize());
+                return tokenClaimsSet;
+            } catch (DataSealerException | ParseException e) {
+                LOG.debug("Token is not valid access token");
+            }
+        }
+        if (sealedType == null || RefreshTokenClaimsSet.VALUE_TYPE_RF.equals(sealedType)) {
+            try {
+                final TokenClaimsSet tokenClaimsSet = RefreshTokenClaimsSet.parse(token, dataSealer);
+                LOG.debug("Refresh token unwrapped {}", tokenClaimsSet.serialize());
+                return tokenClaimsSet;
+            } catch (DataSealerException | ParseException e) {
+                LOG.debug("Token is not valid refresh token");
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Build the active introspection response for an unwrapped token.
+     * 
+     * @param tokenClaimsSet the access or refresh token claims set
+     * @return the active introspection response
+     */
+    @Nonnull
+    static TokenIntrospectionSuccessResponse buildActiveResponse(@Nonnull final TokenClaimsSet tokenClaimsSet) {
+        // TODO: We are not returning audience field at all. Audience would be useful for example in cases where
+        // Resource Server
+        // uses introspection to verify it is on the audience list before accepting the request.
+        // Audience information is not currently carried in tokens.
+        return new TokenIntrospectionSuccessResponse.Builder(true).scope(tokenClaimsSet.getScope())
+                .clientID(tokenClaimsSet.getClientID()).username(tokenClaimsSet.getPrincipal())
+                .tokenType(tokenClaimsSet instanceof AccessTokenClaimsSet ? AccessTokenType.BEARER : null)
+                .expirationTime(tokenClaimsSet.getClaimsSet().getExpirationTime())
+                .issueTime(tokenClaimsSet.getClaimsSet().getIssueTime())
+                .subject(new Subject(tokenClaimsSet.getClaimsSet().getSubject()))
+                .issuer(new Issuer(tokenClaimsSet.getClaimsSet().getIssuer())).build();
+    }
+}
@@ -137,6 +137,9 @@ public class OIDCCoreProtocolConfiguration extends AbstractOIDCFlowAwareProfileC
     /** Whether client is allowed to use PKCE code challenge method plain. */
     private boolean allowPKCEPlain;
 
+    /** Whether authorization codes and tokens are serialized in the compact binary form instead of JSON. */
+    private boolean compactTokenFormat;
+
     /**
      * Constructor.
      */
@@ -474,4 +477,22 @@ public class OIDCCoreProtocolConfiguration extends AbstractOIDCFlowAwareProfileC
     public boolean getAllowPKCEPlain() {
         return allowPKCEPlain;
     }
+
+    /**
+     * Set whether authorization codes and tokens are serialized in the compact binary form instead of JSON.
+     * 
+     * @param compact whether authorization codes and tokens are serialized in the compact binary form
+     */
+    public void setCompactTokenFormat(boolean compact) {
+        compactTokenFormat = compact;
+    }
+
+    /**
+     * Get whether authorization codes and tokens are serialized in the compact binary form instead of JSON.
+     * 
+     * @return whether authorization codes and tokens are serialized in the compact binary form
+     */
+    public boolean getCompactTokenFormat() {
+        return compactTokenFormat;
+    }
 }
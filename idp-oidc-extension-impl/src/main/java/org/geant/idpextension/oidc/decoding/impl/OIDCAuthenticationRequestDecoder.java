@@ -17,8 +17,18 @@
 package org.geant.idpextension.oidc.decoding.impl;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore;
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore.PushedRequest;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.decoder.MessageDecoder;
 import org.opensaml.messaging.decoder.MessageDecodingException;
@@ -26,12 +36,20 @@ import org.opensaml.messaging.decoder.servlet.AbstractHttpServletRequestMessageD
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.http.HTTPRequest;
 import com.nimbusds.oauth2.sdk.http.ServletUtils;
+import com.nimbusds.oauth2.sdk.id.ClientID;
 import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
 
 /**
  * Message decoder decoding OpenID Connect {@link AuthenticationRequest}s.
+ * 
+ * <p>
+ * If a {@link PushedAuthorizationRequestStore} is set and the request refers to a pushed authorization request with
+ * the request_uri parameter, the request is decoded from the parameters of the pushed request. The request_uri is
+ * kept in the decoded request, the pushed request is consumed later when its request object is resolved.
+ * </p>
  */
 public class OIDCAuthenticationRequestDecoder extends AbstractHttpServletRequestMessageDecoder<AuthenticationRequest>
         implements MessageDecoder<AuthenticationRequest> {
@@ -40,6 +58,19 @@ public class OIDCAuthenticationRequestDecoder extends AbstractHttpServletRequest
     @Nonnull
     private final Logger log = LoggerFactory.getLogger(OIDCAuthenticationRequestDecoder.class);
 
+    /** The store for the pushed authorization requests. */
+    @Nullable
+    private PushedAuthorizationRequestStore requestStore;
+
+    /**
+     * Set the store for the pushed authorization requests.
+     * 
+     * @param store the store for the pushed authorization requests
+     */
+    public void setRequestStore(@Nullable final PushedAuthorizationRequestStore store) {
+        requestStore = store;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void doDecode() throws MessageDecodingException {
@@ -48,7 +79,10 @@ public class OIDCAuthenticationRequestDecoder extends AbstractHttpServletRequest
         try {
             HTTPRequest httpReq = ServletUtils.createHTTPRequest(getHttpServletRequest());
             log.debug("Inbound request {}", RequestUtil.toString(httpReq));
-            req = AuthenticationRequest.parse(httpReq);
+            req = decodePushedRequest(httpReq);
+            if (req == null) {
+                req = AuthenticationRequest.parse(httpReq);
+            }
         } catch (com.nimbusds.oauth2.sdk.ParseException | IOException e) {
             log.error("Unable to decode inbound request: {}", e.getMessage());
             throw new MessageDecodingException(e);
@@ -58,4 +92,52 @@ public class OIDCAuthenticationRequestDecoder extends AbstractHttpServletRequest
         setMessageContext(messageContext);
     }
 
-}
\ No newline at end of file
+    /**
+     * Decode the request from the parameters of the pushed authorization request it refers to.
+     * 
+     * @param httpReq the inbound HTTP request
+     * @return the decoded request, or null if the request does not refer to a stored pushed request
+     * @throws ParseException if the pushed request could not be parsed
+     */
+    @Nullable
+    private AuthenticationRequest decodePushedRequest(@Nonnull final HTTPRequest httpReq) throws ParseException {
+        if (requestStore == null) {
+            return null;
+        }
+        final Map<String, List<String>> params = httpReq.getQueryParameters();
+        final String requestUri = getFirstValue(params, "request_uri");
+        final String clientId = getFirstValue(params, "client_id");
+        if (requestUri == null || clientId == null
+                || !requestUri.startsWith(PushedAuthorizationRequestStore.REQUEST_URI_PREFIX)) {
+            return null;
+        }
+        final PushedRequest pushedRequest;
+        try {
+            pushedRequest = requestStore.get(new URI(requestUri), new ClientID(clientId));
+        } catch (URISyntaxException e) {
+            throw new ParseException("Invalid request_uri parameter: " + e.getMessage(), e);
+        }
+        if (pushedRequest == null) {
+            log.debug("No pushed request found for {}", requestUri);
+            return null;
+        }
+        final Map<String, List<String>> pushedParams = new HashMap<>(pushedRequest.getParameters());
+        pushedParams.put("request_uri", Collections.singletonList(requestUri));
+        log.debug("Decoding request from the pushed request {}", requestUri);
+        return AuthenticationRequest.parse(pushedParams);
+    }
+
+    /**
+     * Get the first value of the parameter.
+     * 
+     * @param params the parameters
+     * @param name the name of the parameter
+     * @return the first value of the parameter, or null if not present
+     */
+    @Nullable
+    private String getFirstValue(@Nonnull final Map<String, List<String>> params, @Nonnull final String name) {
+        final List<String> values = params.get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+}
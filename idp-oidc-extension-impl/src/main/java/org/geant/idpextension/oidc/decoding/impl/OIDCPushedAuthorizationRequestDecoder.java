@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.decoding.impl;
+
+import java.io.IOException;
+
+import javax.annotation.Nonnull;
+
+import org.geant.idpextension.oidc.messaging.impl.OIDCPushedAuthorizationRequest;
+import org.opensaml.messaging.context.MessageContext;
+import org.opensaml.messaging.decoder.MessageDecoder;
+import org.opensaml.messaging.decoder.MessageDecodingException;
+import org.opensaml.messaging.decoder.servlet.AbstractHttpServletRequestMessageDecoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.http.ServletUtils;
+
+/**
+ * Message decoder decoding {@link OIDCPushedAuthorizationRequest}s.
+ */
+public class OIDCPushedAuthorizationRequestDecoder
+        extends AbstractHttpServletRequestMessageDecoder<OIDCPushedAuthorizationRequest>
+        implements MessageDecoder<OIDCPushedAuthorizationRequest> {
+
+    /** Class logger. */
+    @Nonnull
+    private final Logger log = LoggerFactory.getLogger(OIDCPushedAuthorizationRequestDecoder.class);
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDecode() throws MessageDecodingException {
+        MessageContext<OIDCPushedAuthorizationRequest> messageContext = new MessageContext<>();
+        OIDCPushedAuthorizationRequest req = null;
+        try {
+            HTTPRequest httpReq = ServletUtils.createHTTPRequest(getHttpServletRequest());
+            log.debug("Inbound request {}", RequestUtil.toString(httpReq));
+            req = OIDCPushedAuthorizationRequest.parse(httpReq);
+        } catch (com.nimbusds.oauth2.sdk.ParseException | IOException e) {
+            log.error("Unable to decode inbound request: {}", e.getMessage());
+            throw new MessageDecodingException(e);
+        }
+        messageContext.setMessage(req);
+        log.debug("Decoded pushed request query string {}", req.getAuthenticationRequest().toQueryString());
+        setMessageContext(messageContext);
+    }
+
+}
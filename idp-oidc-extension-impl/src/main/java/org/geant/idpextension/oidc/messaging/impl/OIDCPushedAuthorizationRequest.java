@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.messaging.impl;
+
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+
+import com.nimbusds.oauth2.sdk.AbstractOptionallyIdentifiedRequest;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.SerializeException;
+import com.nimbusds.oauth2.sdk.auth.ClientAuthentication;
+import com.nimbusds.oauth2.sdk.http.CommonContentTypes;
+import com.nimbusds.oauth2.sdk.http.HTTPRequest;
+import com.nimbusds.oauth2.sdk.util.URLUtils;
+import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Pushed authorization request, an OpenID Connect {@link AuthenticationRequest} posted directly to the pushed
+ * authorization request endpoint by the client, optionally together with client authentication.
+ */
+public class OIDCPushedAuthorizationRequest extends AbstractOptionallyIdentifiedRequest {
+
+    /** The client authentication parameters removed before the authentication request is parsed. */
+    private static final List<String> CLIENT_AUTHENTICATION_PARAMETERS =
+            Arrays.asList("client_secret", "client_assertion", "client_assertion_type");
+
+    /** The pushed authentication request. */
+    @Nonnull
+    private final AuthenticationRequest authenticationRequest;
+
+    /**
+     * Constructor for an authenticated client.
+     * 
+     * @param uri the URI of the pushed authorization request endpoint
+     * @param clientAuth the client authentication
+     * @param request the pushed authentication request
+     */
+    public OIDCPushedAuthorizationRequest(final URI uri, @Nonnull final ClientAuthentication clientAuth,
+            @Nonnull final AuthenticationRequest request) {
+        super(uri, Constraint.isNotNull(clientAuth, "Client authentication cannot be null"));
+        authenticationRequest = Constraint.isNotNull(request, "Authentication request cannot be null");
+    }
+
+    /**
+     * Constructor for a public client.
+     * 
+     * @param uri the URI of the pushed authorization request endpoint
+     * @param request the pushed authentication request
+     */
+    public OIDCPushedAuthorizationRequest(final URI uri, @Nonnull final AuthenticationRequest request) {
+        super(uri, Constraint.isNotNull(request, "Authentication request cannot be null").getClientID());
+        authenticationRequest = request;
+    }
+
+    /**
+     * Get the pushed authentication request.
+     * 
+     * @return the pushed authentication request
+     */
+    @Nonnull
+    public AuthenticationRequest getAuthenticationRequest() {
+        return authenticationRequest;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HTTPRequest toHTTPRequest() {
+        if (getEndpointURI() == null) {
+            throw new SerializeException("The endpoint URI is not specified");
+        }
+        final HTTPRequest httpRequest;
+        try {
+            httpRequest = new HTTPRequest(HTTPRequest.Method.POST, getEndpointURI().toURL());
+        } catch (MalformedURLException e) {
+            throw new SerializeException(e.getMessage(), e);
+        }
+        httpRequest.setContentType(CommonContentTypes.APPLICATION_URLENCODED);
+        httpRequest.setQuery(URLUtils.serializeParameters(authenticationRequest.toParameters()));
+        if (getClientAuthentication() != null) {
+            getClientAuthentication().applyTo(httpRequest);
+        }
+        return httpRequest;
+    }
+
+    /**
+     * Parse a pushed authorization request from the HTTP request. The client_id parameter of the authentication
+     * request must match the client authentication, if present.
+     * 
+     * @param httpRequest the HTTP request to parse
+     * @return the parsed pushed authorization request
+     * @throws ParseException if the HTTP request could not be parsed
+     */
+    @Nonnull
+    public static OIDCPushedAuthorizationRequest parse(@Nonnull final HTTPRequest httpRequest)
+            throws ParseException {
+        httpRequest.ensureMethod(HTTPRequest.Method.POST);
+        httpRequest.ensureContentType(CommonContentTypes.APPLICATION_URLENCODED);
+        final URI uri;
+        try {
+            uri = httpRequest.getURL().toURI();
+        } catch (URISyntaxException e) {
+            throw new ParseException(e.getMessage(), e);
+        }
+        final ClientAuthentication clientAuth = ClientAuthentication.parse(httpRequest);
+        final Map<String, List<String>> params = new HashMap<>(httpRequest.getQueryParameters());
+        for (final String name : CLIENT_AUTHENTICATION_PARAMETERS) {
+            params.remove(name);
+        }
+        final AuthenticationRequest request = AuthenticationRequest.parse(uri, params);
+        if (clientAuth == null) {
+            return new OIDCPushedAuthorizationRequest(uri, request);
+        }
+        if (!clientAuth.getClientID().equals(request.getClientID())) {
+            throw new ParseException("The client_id parameter does not match the authenticated client");
+        }
+        return new OIDCPushedAuthorizationRequest(uri, clientAuth, request);
+    }
+}
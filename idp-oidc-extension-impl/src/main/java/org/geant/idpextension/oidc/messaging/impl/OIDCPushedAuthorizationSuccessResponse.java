@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.messaging.impl;
+
+import java.net.URI;
+
+import javax.annotation.Nonnull;
+
+import com.nimbusds.oauth2.sdk.SuccessResponse;
+import com.nimbusds.oauth2.sdk.http.CommonContentTypes;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+
+import net.minidev.json.JSONObject;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/** Pushed authorization request success message class, carrying the request_uri of the stored request. */
+public class OIDCPushedAuthorizationSuccessResponse implements SuccessResponse {
+
+    /** The request_uri referring to the stored request. */
+    @Nonnull
+    private final URI requestURI;
+
+    /** The lifetime of the request_uri in seconds. */
+    private final long expiresIn;
+
+    /**
+     * Constructor.
+     * 
+     * @param uri the request_uri referring to the stored request
+     * @param lifetime the lifetime of the request_uri in seconds
+     */
+    public OIDCPushedAuthorizationSuccessResponse(@Nonnull final URI uri, final long lifetime) {
+        requestURI = Constraint.isNotNull(uri, "Request URI cannot be null");
+        expiresIn = lifetime;
+    }
+
+    /**
+     * Get the request_uri referring to the stored request.
+     * 
+     * @return the request_uri
+     */
+    @Nonnull
+    public URI getRequestURI() {
+        return requestURI;
+    }
+
+    /**
+     * Get the lifetime of the request_uri in seconds.
+     * 
+     * @return the lifetime of the request_uri in seconds
+     */
+    public long getExpiresIn() {
+        return expiresIn;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public boolean indicatesSuccess() {
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public HTTPResponse toHTTPResponse() {
+        final JSONObject content = new JSONObject();
+        content.put("request_uri", requestURI.toString());
+        content.put("expires_in", expiresIn);
+        final HTTPResponse httpResponse = new HTTPResponse(HTTPResponse.SC_CREATED);
+        httpResponse.setContentType(CommonContentTypes.APPLICATION_JSON);
+        httpResponse.setCacheControl("no-store");
+        httpResponse.setPragma("no-cache");
+        httpResponse.setContent(content.toJSONString());
+        return httpResponse;
+    }
+}
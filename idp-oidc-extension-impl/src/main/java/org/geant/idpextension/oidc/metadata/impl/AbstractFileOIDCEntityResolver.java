@@ -16,9 +16,12 @@
 
 package org.geant.idpextension.oidc.metadata.impl;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.util.Timer;
 
 import javax.annotation.Nonnull;
@@ -99,6 +102,12 @@ public abstract class AbstractFileOIDCEntityResolver<Key extends Identifier, Val
     protected String getMetadataIdentifier() {
         return metadataFile.getAbsolutePath();
     }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Path getWatchedPath() {
+        return metadataFile.toPath();
+    }
     
     /**
      * Get the time for the last update/modification of the metadata file.
@@ -111,12 +120,19 @@ public abstract class AbstractFileOIDCEntityResolver<Key extends Identifier, Val
     /** {@inheritDoc} */
     @Override
     protected byte[] fetchMetadata() throws ResolverException {
+        final InputStream stream = fetchMetadataStream();
+        return stream == null ? null : ResolverHelper.inputstreamToByteArray(stream);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected InputStream fetchMetadataStream() throws ResolverException {
         try {
             ResolverHelper.validateMetadataFile(metadataFile);
             DateTime metadataUpdateTime = getMetadataUpdateTime();
             if (getLastRefresh() == null || getLastUpdate() == null || metadataUpdateTime.isAfter(getLastRefresh())) {
-                log.debug("Returning the contents of {} as byte array", metadataFile.toPath());
-                return ResolverHelper.inputstreamToByteArray(new FileInputStream(metadataFile));
+                log.debug("Returning the contents of {} as stream", metadataFile.toPath());
+                return new BufferedInputStream(new FileInputStream(metadataFile));
             }
             return null;
         } catch (IOException e) {
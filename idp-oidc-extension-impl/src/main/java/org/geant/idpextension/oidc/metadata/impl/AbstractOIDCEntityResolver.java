@@ -18,11 +18,12 @@ package org.geant.idpextension.oidc.metadata.impl;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,6 +33,7 @@ import com.nimbusds.oauth2.sdk.id.Identifier;
 
 import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
 import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Unmodifiable;
 import net.shibboleth.utilities.java.support.component.AbstractIdentifiableInitializableComponent;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.logic.Constraint;
@@ -49,8 +51,8 @@ public abstract class AbstractOIDCEntityResolver<Key extends Identifier, Value>
     /** Class logger. */
     private final Logger log = LoggerFactory.getLogger(AbstractOIDCEntityResolver.class);
     
-    /** Backing store for runtime JSON data. */
-    private JsonBackingStore jsonBackingStore;
+    /** Backing store for runtime JSON data, frozen before it is published. */
+    private volatile JsonBackingStore jsonBackingStore;
     
     /** {@inheritDoc} */
     @Override protected void doInitialize() throws ComponentInitializationException {
@@ -67,7 +69,7 @@ public abstract class AbstractOIDCEntityResolver<Key extends Identifier, Value>
      * @throws ComponentInitializationException
      */
     protected void initOIDCResolver() throws ComponentInitializationException {
-        jsonBackingStore = createNewBackingStore();
+        setBackingStore(createNewBackingStore());
     }
 
     /**
@@ -98,18 +100,18 @@ public abstract class AbstractOIDCEntityResolver<Key extends Identifier, Value>
     }
 
     /**
-     * Lookup the specified identifier from the index. The returned list will be a copy of what is stored in the 
-     * backing index, and is safe to be manipulated by callers.
+     * Lookup the specified identifier from the index. The returned list is the unmodifiable list stored in the
+     * frozen backing index, so that the lookup does not allocate.
      * 
      * @param identifier the identifier to lookup
      * 
-     * @return list copy of indexed identifiers, may be empty, will never be null
+     * @return unmodifiable list of indexed identifiers, may be empty, will never be null
      */
-    @Nonnull @NonnullElements protected List<Value> lookupIndexedIdentifier(
+    @Nonnull @NonnullElements @Unmodifiable protected List<Value> lookupIndexedIdentifier(
             @Nonnull @NotEmpty final Key identifier) {
-        List<Value> allInformation = getBackingStore().getIndexedInformation().get(identifier);
+        final List<Value> allInformation = getBackingStore().lookup(identifier);
         if (allInformation != null) {
-            return new ArrayList<>(allInformation);
+            return allInformation;
         } else {
             return Collections.emptyList();
         }
@@ -185,17 +187,24 @@ public abstract class AbstractOIDCEntityResolver<Key extends Identifier, Value>
     }
 
     /**
-     * Set the entity backing store currently in use by the metadata resolver.
+     * Set the entity backing store currently in use by the metadata resolver. The backing store is frozen before it is
+     * published, so the lookups never observe it while it is being built, and it cannot be modified afterwards.
      * 
      * @param newBackingStore the new entity backing store
      */
     protected void setBackingStore(@Nonnull JsonBackingStore newBackingStore) {
-        jsonBackingStore = Constraint.isNotNull(newBackingStore, "JsonBackingStore may not be null");
+        Constraint.isNotNull(newBackingStore, "JsonBackingStore may not be null").freeze();
+        jsonBackingStore = newBackingStore;
     }
 
     
     /**
      * The collection of data which provides the backing store for the processed metadata.
+     * 
+     * <p>
+     * The backing store is built by a single thread and then frozen by {@link #setBackingStore(JsonBackingStore)}:
+     * the collections become unmodifiable and the lookups use an open-addressing index built once.
+     * </p>
      */
     protected class JsonBackingStore {
 
@@ -205,10 +214,53 @@ public abstract class AbstractOIDCEntityResolver<Key extends Identifier, Value>
         /** Ordered list of entity information. */
         private List<Value> orderedEntitiess;
 
+        /** Entity information keyed by the hash of its raw form, for reuse by incremental refresh. */
+        private Map<String, Value> hashedEntities;
+
+        /** Lookup index of the frozen backing store, null until frozen. */
+        private FrozenIndex<Key, List<Value>> lookupIndex;
+
         /** Constructor. */
         protected JsonBackingStore() {
-            indexedEntities = new ConcurrentHashMap<>();
+            indexedEntities = new HashMap<>();
             orderedEntitiess = new ArrayList<>();
+            hashedEntities = new HashMap<>();
+        }
+
+        /**
+         * Make the backing store unmodifiable and build its lookup index. Does nothing if already frozen.
+         */
+        protected void freeze() {
+            if (lookupIndex != null) {
+                return;
+            }
+            final Map<Key, List<Value>> frozenEntities = new HashMap<>(indexedEntities.size() * 2);
+            for (final Map.Entry<Key, List<Value>> entry : indexedEntities.entrySet()) {
+                frozenEntities.put(entry.getKey(), Collections.unmodifiableList(new ArrayList<>(entry.getValue())));
+            }
+            indexedEntities = Collections.unmodifiableMap(frozenEntities);
+            orderedEntitiess = Collections.unmodifiableList(new ArrayList<>(orderedEntitiess));
+            hashedEntities = Collections.unmodifiableMap(hashedEntities);
+            lookupIndex = new FrozenIndex<>(indexedEntities);
+        }
+
+        /**
+         * Whether the backing store has been frozen.
+         * 
+         * @return whether the backing store is unmodifiable
+         */
+        public boolean isFrozen() {
+            return lookupIndex != null;
+        }
+
+        /**
+         * Get the entity information for the identifier.
+         * 
+         * @param key the identifier
+         * @return the entity information, null if none
+         */
+        @Nullable public List<Value> lookup(@Nonnull final Key key) {
+            return lookupIndex != null ? lookupIndex.get(key) : indexedEntities.get(key);
         }
 
         /**
@@ -229,5 +281,95 @@ public abstract class AbstractOIDCEntityResolver<Key extends Identifier, Value>
             return orderedEntitiess;
         }
 
+        /**
+         * Get the entity information keyed by the hash of its raw form. Only the entities parsed from a hashed raw
+         * form are included.
+         * 
+         * @return the hashed entity information.
+         */
+        @Nonnull public Map<String, Value> getHashedInformation() {
+            return hashedEntities;
+        }
+
+    }
+
+    /**
+     * Read-only hash index with open addressing and linear probing over parallel arrays. The cached hash codes are
+     * compared before the keys, and the lookups do not allocate.
+     * 
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    private static final class FrozenIndex<K, V> {
+
+        /** The keys, null for the empty slots. */
+        private final Object[] keys;
+
+        /** The values in the slots of their keys. */
+        private final Object[] values;
+
+        /** The spread hash codes of the keys in their slots. */
+        private final int[] hashes;
+
+        /** The mask of the slot index, the capacity being a power of two. */
+        private final int mask;
+
+        /**
+         * Constructor.
+         * 
+         * @param map the indexed entries
+         */
+        FrozenIndex(@Nonnull final Map<K, V> map) {
+            // At most half of the slots are used, so that the probing always reaches an empty slot.
+            int capacity = 2;
+            while (capacity < map.size() * 2) {
+                capacity <<= 1;
+            }
+            keys = new Object[capacity];
+            values = new Object[capacity];
+            hashes = new int[capacity];
+            mask = capacity - 1;
+            for (final Map.Entry<K, V> entry : map.entrySet()) {
+                final int hash = spread(entry.getKey().hashCode());
+                int slot = hash & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = entry.getKey();
+                values[slot] = entry.getValue();
+                hashes[slot] = hash;
+            }
+        }
+
+        /**
+         * Get the value of the key.
+         * 
+         * @param key the key
+         * @return the value, null if none
+         */
+        @Nullable @SuppressWarnings("unchecked") V get(@Nonnull final Object key) {
+            final int hash = spread(key.hashCode());
+            int slot = hash & mask;
+            Object candidate = keys[slot];
+            while (candidate != null) {
+                if (hashes[slot] == hash && candidate.equals(key)) {
+                    return (V) values[slot];
+                }
+                slot = (slot + 1) & mask;
+                candidate = keys[slot];
+            }
+            return null;
+        }
+
+        /**
+         * Spread the hash code so that the keys with similar hash codes do not cluster.
+         * 
+         * @param hashCode the hash code of the key
+         * @return the spread hash code
+         */
+        private static int spread(final int hashCode) {
+            final int hash = hashCode * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
     }
 }
@@ -16,23 +16,44 @@
 
 package org.geant.idpextension.oidc.metadata.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.apache.commons.codec.digest.DigestUtils;
+import org.geant.idpextension.oidc.metadata.resolver.EntityChangeListener;
+import org.geant.idpextension.oidc.metadata.resolver.EntityChangeSet;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.chrono.ISOChronology;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Predicates;
+import com.google.common.collect.Collections2;
 import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.id.Identifier;
 
 import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullElements;
 import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
@@ -47,14 +68,47 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
     /** Class logger. */
     private final Logger log = LoggerFactory.getLogger(AbstractReloadingOIDCEntityResolver.class);
     
-    /** Timer used to schedule background metadata update tasks. */
-    private Timer taskTimer;
-    
-    /** Whether we created our own task timer during object construction. */
-    private boolean createdOwnTaskTimer;
-        
+    /** Timer used to schedule background metadata update tasks, null if the refresh scheduler is used. */
+    @Nullable private Timer taskTimer;
+
+    /** Scheduler of the background metadata update tasks, used if no timer is given. */
+    @Nullable private ResolverRefreshScheduler refreshScheduler;
+
     /** Current task to refresh metadata. */
     private RefreshMetadataTask refreshMetadataTask;
+
+    /** The current task to refresh metadata, as scheduled by the refresh scheduler. */
+    @Nullable private ScheduledFuture<?> scheduledRefresh;
+
+    /** Lock guarding the scheduling of the refresh tasks. */
+    @Nonnull private final Object scheduleLock = new Object();
+
+    /** Delay, in milliseconds, of the refresh following a change notification. Default value: 1000ms */
+    @Duration @NonNegative private long changeNotificationDelay = 1000;
+
+    /** The path watched for changes, null if none. */
+    @Nullable private Path watchedPath;
+
+    /** The listener of the changes in the watched path. */
+    @Nullable private Runnable changeNotificationListener;
+
+    /** Whether a change has been notified since the current refresh cycle started. */
+    @Nonnull private final AtomicBoolean changePending = new AtomicBoolean();
+
+    /** Number of refresh cycles. */
+    @Nonnull private final AtomicLong refreshCount = new AtomicLong();
+
+    /** Number of failed refresh cycles. */
+    @Nonnull private final AtomicLong refreshFailureCount = new AtomicLong();
+
+    /** Total duration of the refresh cycles in milliseconds. */
+    @Nonnull private final AtomicLong totalRefreshDuration = new AtomicLong();
+
+    /** Duration of the last refresh cycle in milliseconds. */
+    private volatile long lastRefreshDuration;
+
+    /** Whether the last refresh cycle succeeded. */
+    private volatile boolean lastRefreshSuccessful;
     
     /**
      * Refresh interval used when metadata does not contain any validUntil or cacheDuration information. Default value:
@@ -65,6 +119,15 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
     /** Floor, in milliseconds, for the refresh interval. Default value: 300000ms */
     @Duration @Positive private long minRefreshDelay = 300000;
 
+    /** Whether the entities whose raw form is unchanged are reused instead of parsed again. */
+    private boolean incrementalRefresh;
+
+    /** The listeners notified of the changes made by a refresh. */
+    @Nonnull @NonnullElements private List<EntityChangeListener<Key>> changeListeners = Collections.emptyList();
+
+    /** The changes made by the last refresh that updated the metadata. */
+    @Nullable private EntityChangeSet<Key> lastChangeSet;
+
     /** Last time the metadata was updated. */
     private DateTime lastUpdate;
 
@@ -82,21 +145,23 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
     /**
      * Constructor.
      * 
-     * @param backgroundTaskTimer time used to schedule background refresh tasks
+     * @param backgroundTaskTimer time used to schedule background refresh tasks, null to use the refresh scheduler
      */
     protected AbstractReloadingOIDCEntityResolver(@Nullable final Timer backgroundTaskTimer) {
         super();
         
-        if (backgroundTaskTimer == null) {
-            taskTimer = new Timer(true);
-            createdOwnTaskTimer = true;
-        } else {
-            taskTimer = backgroundTaskTimer;
-        }
+        taskTimer = backgroundTaskTimer;
     }
 
     protected void initOIDCResolver() throws ComponentInitializationException {
         super.initOIDCResolver();
+        if (taskTimer == null && refreshScheduler == null) {
+            refreshScheduler = ResolverRefreshScheduler.getDefault();
+        }
+        final Path path = getWatchedPath();
+        if (path != null) {
+            watchForChanges(path);
+        }
         try {
             refresh();
         } catch (ResolverException e) {
@@ -115,6 +180,103 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
         return lastRefresh;
     }
     
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        synchronized (scheduleLock) {
+            cancelScheduledRefresh();
+        }
+        if (refreshScheduler != null && watchedPath != null) {
+            refreshScheduler.unwatch(watchedPath, changeNotificationListener);
+        }
+        watchedPath = null;
+        changeNotificationListener = null;
+        super.doDestroy();
+    }
+
+    /**
+     * Sets the scheduler of the background refreshes, shared with the other resolvers. Not used if a timer was given
+     * to the constructor. By default {@link ResolverRefreshScheduler#getDefault()} is used.
+     * 
+     * @param scheduler the refresh scheduler
+     */
+    public void setRefreshScheduler(@Nullable final ResolverRefreshScheduler scheduler) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        refreshScheduler = scheduler;
+    }
+
+    /**
+     * Sets the delay, in milliseconds, of the refresh following a change notification. The changes notified during
+     * the delay are covered by the same refresh.
+     * 
+     * @param delay the delay in milliseconds
+     */
+    @Duration public void setChangeNotificationDelay(@Duration @NonNegative final long delay) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        if (delay < 0) {
+            throw new IllegalArgumentException("Change notification delay cannot be negative");
+        }
+        changeNotificationDelay = delay;
+    }
+
+    /**
+     * Gets the number of refresh cycles.
+     * 
+     * @return the number of refresh cycles
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    /**
+     * Gets the number of failed refresh cycles.
+     * 
+     * @return the number of failed refresh cycles
+     */
+    public long getRefreshFailureCount() {
+        return refreshFailureCount.get();
+    }
+
+    /**
+     * Gets the total duration of the refresh cycles.
+     * 
+     * @return the total duration in milliseconds
+     */
+    public long getTotalRefreshDuration() {
+        return totalRefreshDuration.get();
+    }
+
+    /**
+     * Gets the duration of the last refresh cycle.
+     * 
+     * @return the duration in milliseconds
+     */
+    public long getLastRefreshDuration() {
+        return lastRefreshDuration;
+    }
+
+    /**
+     * Gets whether the last refresh cycle succeeded.
+     * 
+     * @return whether the last refresh cycle succeeded, false if none has occurred
+     */
+    public boolean isLastRefreshSuccessful() {
+        return lastRefreshSuccessful;
+    }
+
+    /**
+     * Gets the time the next refresh cycle is scheduled to occur at the latest.
+     * 
+     * @return the time of the next refresh cycle, null if none is scheduled
+     */
+    @Nullable public DateTime getNextRefresh() {
+        return nextRefresh;
+    }
+
     /**
      * Sets the minimum amount of time, in milliseconds, between refreshes.
      * 
@@ -145,6 +307,55 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
         maxRefreshDelay = delay;
     }
     
+    /**
+     * Sets whether the entities whose raw form is unchanged since the previous refresh are reused instead of parsed
+     * again. Only the resolvers reading the entities one at a time support it, see
+     * {@link #lookupUnchanged(String)}.
+     * 
+     * @param flag whether incremental refresh is enabled
+     */
+    public void setIncrementalRefresh(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        incrementalRefresh = flag;
+    }
+
+    /**
+     * Gets whether the entities whose raw form is unchanged since the previous refresh are reused.
+     * 
+     * @return whether incremental refresh is enabled
+     */
+    public boolean isIncrementalRefresh() {
+        return incrementalRefresh;
+    }
+
+    /**
+     * Sets the listeners notified of the entities added, updated and removed by a refresh.
+     * 
+     * @param listeners the listeners
+     */
+    public void setChangeListeners(
+            @Nullable @NonnullElements final Collection<? extends EntityChangeListener<Key>> listeners) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        if (listeners == null) {
+            changeListeners = Collections.emptyList();
+        } else {
+            changeListeners = new ArrayList<>(Collections2.filter(listeners, Predicates.notNull()));
+        }
+    }
+
+    /**
+     * Gets the changes made by the last refresh that updated the metadata.
+     * 
+     * @return the changes, null if the metadata has never been updated
+     */
+    @Nullable public EntityChangeSet<Key> getLastChangeSet() {
+        return lastChangeSet;
+    }
+
     /**
      * Refreshes the metadata from its source.
      * 
@@ -155,25 +366,22 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
         final String mdId = getMetadataIdentifier();
 
         long refreshDelay = 0;
-        
+        final long start = System.currentTimeMillis();
+        boolean success = false;
+
         log.debug("Beginning refresh of metadata from '{}'", mdId);
+        changePending.set(false);
         try {
-            byte[] mdBytes = fetchMetadata();
-            if (mdBytes == null) {
+            final JsonBackingStore oldBackingStore = getBackingStore();
+            final JsonBackingStore newBackingStore = fetchBackingStore();
+            if (newBackingStore == null) {
                 log.debug("Metadata from '{}' has not changed since last refresh", mdId);
             } else {
-                log.debug("Processing new metadata from '{}'", mdId);
-                final List<Value> resolvedInformation = parse(mdBytes);
-                final JsonBackingStore newBackingStore = new JsonBackingStore();
-                for (Value information : resolvedInformation) {
-                    final Key id = getKey(information);
-                    log.info("Parsed entity information for {}", id);
-                    newBackingStore.getIndexedInformation().put(id, Arrays.asList(information));
-                    newBackingStore.getOrderedInformation().add(information);                    
-                }
                 setBackingStore(newBackingStore);
                 lastUpdate = now;
+                publishChanges(oldBackingStore, newBackingStore);
             }
+            success = true;
         } catch (Throwable t) {
             log.error("Error occurred while attempting to refresh metadata from '" + mdId + "'", t);
             refreshDelay = minRefreshDelay;
@@ -184,7 +392,17 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
                         t.getClass().getName(), t.getMessage()));
             }
         } finally {
-            scheduleNextRefresh(refreshDelay);
+            final long duration = System.currentTimeMillis() - start;
+            refreshCount.incrementAndGet();
+            if (!success) {
+                refreshFailureCount.incrementAndGet();
+            }
+            totalRefreshDuration.addAndGet(duration);
+            lastRefreshDuration = duration;
+            lastRefreshSuccessful = success;
+            log.debug("Refresh of metadata from '{}' took {} ms", mdId, duration);
+            // A change notified during the refresh may not have been seen by it.
+            scheduleNextRefresh(changePending.get() ? Math.max(1, changeNotificationDelay) : refreshDelay);
             lastRefresh = now;
         }
     }
@@ -194,20 +412,259 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
      * @param delay The delay before the next refresh.
      */
     protected void scheduleNextRefresh(final long delay) {
-        refreshMetadataTask = new RefreshMetadataTask();
         long refreshDelay = delay;
         if (delay == 0) {
             refreshDelay = maxRefreshDelay;
         }
-        nextRefresh = new DateTime(ISOChronology.getInstanceUTC()).plus(refreshDelay);
-        final long nextRefreshDelay = nextRefresh.getMillis() - System.currentTimeMillis();
-
-        taskTimer.schedule(refreshMetadataTask, nextRefreshDelay);
-        log.info("Next refresh cycle for metadata provider '{}' will occur on '{}' ('{}' local time)",
+        scheduleRefresh(refreshDelay);
+        if (nextRefresh == null) {
+            return;
+        }
+        log.info("Next refresh cycle for metadata provider '{}' will occur by '{}' ('{}' local time)",
                 new Object[] {getMetadataIdentifier(), nextRefresh, 
                         nextRefresh.toDateTime(DateTimeZone.getDefault()),});
     }
+
+    /**
+     * Replaces the scheduled refresh with one after the given delay. The refresh scheduler shortens the delay by its
+     * jitter.
+     * 
+     * @param delay The delay before the refresh.
+     */
+    private void scheduleRefresh(final long delay) {
+        synchronized (scheduleLock) {
+            cancelScheduledRefresh();
+            if (isDestroyed()) {
+                return;
+            }
+            refreshMetadataTask = new RefreshMetadataTask();
+            nextRefresh = new DateTime(ISOChronology.getInstanceUTC()).plus(delay);
+            if (taskTimer != null) {
+                taskTimer.schedule(refreshMetadataTask, delay);
+            } else {
+                if (refreshScheduler == null) {
+                    refreshScheduler = ResolverRefreshScheduler.getDefault();
+                }
+                scheduledRefresh = refreshScheduler.schedule(refreshMetadataTask, delay);
+            }
+        }
+    }
+
+    /**
+     * Cancels the scheduled refresh, if any. Called while holding the schedule lock.
+     */
+    private void cancelScheduledRefresh() {
+        if (refreshMetadataTask != null) {
+            refreshMetadataTask.cancel();
+            refreshMetadataTask = null;
+        }
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+            scheduledRefresh = null;
+        }
+        nextRefresh = null;
+    }
+
+    /**
+     * Gets the path whose changes trigger a refresh. The default implementation returns null, the resolvers reading a
+     * file or a directory return it so that their changes are picked up without waiting for the periodic refresh.
+     * 
+     * @return The watched file or directory, null if none.
+     */
+    @Nullable
+    protected Path getWatchedPath() {
+        return null;
+    }
+
+    /**
+     * Watches the path with the refresh scheduler, and schedules a refresh after the change notification delay when
+     * it changes. The changes are picked up only by the periodic refresh if a timer is used or the path cannot be
+     * watched.
+     * 
+     * @param path The watched file or directory.
+     */
+    private void watchForChanges(@Nonnull final Path path) {
+        if (refreshScheduler == null) {
+            return;
+        }
+        final Runnable listener = new Runnable() {
+
+            /** {@inheritDoc} */
+            @Override
+            public void run() {
+                log.debug("Change notified in '{}', refreshing in {} ms", path, changeNotificationDelay);
+                changePending.set(true);
+                scheduleRefresh(changeNotificationDelay);
+            }
+        };
+        try {
+            refreshScheduler.watch(path, listener);
+            watchedPath = path;
+            changeNotificationListener = listener;
+        } catch (final IOException e) {
+            log.warn("Could not watch '{}' for changes, relying on the periodic refresh", path, e);
+        }
+    }
     
+    /**
+     * Computes the changes between the backing stores and notifies the listeners of them. An entity is updated if its
+     * parsed information was not reused from the old backing store.
+     * 
+     * @param oldBackingStore The backing store replaced by the refresh, null if none.
+     * @param newBackingStore The backing store made available by the refresh.
+     */
+    private void publishChanges(@Nullable final JsonBackingStore oldBackingStore,
+            @Nonnull final JsonBackingStore newBackingStore) {
+        final Map<Key, List<Value>> oldIndex = oldBackingStore != null
+                ? oldBackingStore.getIndexedInformation() : Collections.<Key, List<Value>>emptyMap();
+        final Map<Key, List<Value>> newIndex = newBackingStore.getIndexedInformation();
+        final Set<Key> added = new LinkedHashSet<>();
+        final Set<Key> updated = new LinkedHashSet<>();
+        final Set<Key> removed = new LinkedHashSet<>();
+        for (final Map.Entry<Key, List<Value>> entry : newIndex.entrySet()) {
+            final List<Value> oldValues = oldIndex.get(entry.getKey());
+            if (oldValues == null) {
+                added.add(entry.getKey());
+            } else if (!sameInstances(oldValues, entry.getValue())) {
+                updated.add(entry.getKey());
+            }
+        }
+        for (final Key key : oldIndex.keySet()) {
+            if (!newIndex.containsKey(key)) {
+                removed.add(key);
+            }
+        }
+        lastChangeSet = new EntityChangeSet<>(getId(), added, updated, removed);
+        log.info("Refresh of metadata from '{}' changed {} entities: {} added, {} updated, {} removed",
+                getMetadataIdentifier(), added.size() + updated.size() + removed.size(), added.size(),
+                updated.size(), removed.size());
+        for (final EntityChangeListener<Key> listener : changeListeners) {
+            try {
+                listener.onChange(lastChangeSet);
+            } catch (final RuntimeException e) {
+                log.error("Change listener failed to process the changes of metadata from '{}'",
+                        getMetadataIdentifier(), e);
+            }
+        }
+    }
+
+    /**
+     * Whether the lists contain the same instances in the same order.
+     * 
+     * @param first The first list.
+     * @param second The second list.
+     * @return true if the lists contain the same instances
+     */
+    private boolean sameInstances(@Nonnull final List<Value> first, @Nonnull final List<Value> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int i = 0; i < first.size(); i++) {
+            if (first.get(i) != second.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the raw form of an entity for {@link #lookupUnchanged(String)}.
+     * 
+     * @param rawEntity The raw form of the entity.
+     * @return The hash of the raw form.
+     */
+    @Nonnull
+    protected static String hashRawEntity(@Nonnull final String rawEntity) {
+        return DigestUtils.sha256Hex(rawEntity);
+    }
+
+    /**
+     * Gets the entity parsed from an identical raw form during the previous refresh, if incremental refresh is
+     * enabled.
+     * 
+     * @param hash The hash of the raw form of the entity, see {@link #hashRawEntity(String)}.
+     * @return The previously parsed entity, or null if there is none or incremental refresh is disabled.
+     */
+    @Nullable
+    protected Value lookupUnchanged(@Nonnull final String hash) {
+        final JsonBackingStore backingStore = getBackingStore();
+        if (!incrementalRefresh || backingStore == null) {
+            return null;
+        }
+        return backingStore.getHashedInformation().get(hash);
+    }
+
+    /**
+     * Fetches the metadata and parses it into a new backing store. The default implementation parses the stream
+     * returned by {@link #fetchMetadataStream()}, subclasses reading several sources may override it to parse only the
+     * sources that have changed.
+     * 
+     * @return The new backing store, or null if the metadata is known not to have changed since the last retrieval.
+     * @throws ResolverException if the metadata cannot be fetched
+     * @throws ParseException if the metadata cannot be parsed
+     * @throws IOException if the metadata cannot be read
+     */
+    @Nullable
+    protected JsonBackingStore fetchBackingStore() throws ResolverException, ParseException, IOException {
+        final InputStream mdStream = fetchMetadataStream();
+        if (mdStream == null) {
+            return null;
+        }
+        log.debug("Processing new metadata from '{}'", getMetadataIdentifier());
+        final JsonBackingStore newBackingStore = new JsonBackingStore();
+        try {
+            parse(mdStream, newBackingStore);
+        } finally {
+            mdStream.close();
+        }
+        return newBackingStore;
+    }
+
+    /**
+     * Parses the entities from the stream into the new backing store. The default implementation reads the whole
+     * stream and parses it with {@link #parse(byte[])}, subclasses may override to process the entities one at a time.
+     * 
+     * @param stream The encoded entities.
+     * @param backingStore The new backing store to add the entities to.
+     * @throws ParseException if the entities cannot be parsed
+     * @throws IOException if the stream cannot be read
+     * @throws ResolverException if the stream cannot be read
+     */
+    protected void parse(@Nonnull final InputStream stream, @Nonnull final JsonBackingStore backingStore)
+            throws ParseException, IOException, ResolverException {
+        for (final Value information : parse(ResolverHelper.inputstreamToByteArray(stream))) {
+            addToBackingStore(information, backingStore);
+        }
+    }
+
+    /**
+     * Adds a parsed entity to the new backing store, replacing an earlier entity with the same identifier.
+     * 
+     * @param information The parsed entity.
+     * @param backingStore The new backing store.
+     */
+    protected void addToBackingStore(@Nonnull final Value information, @Nonnull final JsonBackingStore backingStore) {
+        addToBackingStore(information, null, backingStore);
+    }
+
+    /**
+     * Adds a parsed entity to the new backing store, replacing an earlier entity with the same identifier.
+     * 
+     * @param information The parsed entity.
+     * @param hash The hash of the raw form of the entity, null if not available.
+     * @param backingStore The new backing store.
+     */
+    protected void addToBackingStore(@Nonnull final Value information, @Nullable final String hash,
+            @Nonnull final JsonBackingStore backingStore) {
+        final Key id = getKey(information);
+        log.debug("Parsed entity information for {}", id);
+        backingStore.getIndexedInformation().put(id, Arrays.asList(information));
+        backingStore.getOrderedInformation().add(information);
+        if (hash != null) {
+            backingStore.getHashedInformation().put(hash, information);
+        }
+    }
+
     /**
      * Parses an entity from the byte array.
      * 
@@ -239,6 +696,20 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
      * @throws ResolverException thrown if there is a problem fetching the metadata
      */
     protected abstract byte[] fetchMetadata() throws ResolverException;
+
+    /**
+     * Fetches metadata from a source as a stream. The default implementation wraps {@link #fetchMetadata()},
+     * subclasses may override to avoid reading the whole metadata into memory.
+     * 
+     * @return the fetched metadata, or null if the metadata is known not to have changed since the last retrieval
+     * 
+     * @throws ResolverException thrown if there is a problem fetching the metadata
+     */
+    @Nullable
+    protected InputStream fetchMetadataStream() throws ResolverException {
+        final byte[] bytes = fetchMetadata();
+        return bytes == null ? null : new ByteArrayInputStream(bytes);
+    }
     
     /** Background task that refreshes metadata. */
     private class RefreshMetadataTask extends TimerTask {
@@ -247,7 +718,7 @@ public abstract class AbstractReloadingOIDCEntityResolver<Key extends Identifier
         @Override
         public void run() {
             try {
-                if (!isInitialized()) {
+                if (!isInitialized() || isDestroyed()) {
                     // just in case the metadata provider was destroyed before this task runs
                     return;
                 }
@@ -0,0 +1,515 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.geant.idpextension.oidc.criterion.ClientIDCriterion;
+import org.geant.idpextension.oidc.metadata.resolver.ClientInformationResolver;
+import org.geant.idpextension.oidc.metadata.resolver.RefreshableClientInformationResolver;
+import org.geant.idpextension.oidc.metadata.resolver.RemoteJwkSetCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
+
+import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
+
+/**
+ * A client information resolver reading the client informations from the JSON files of a directory, each file
+ * containing a single or an array of client informations, for instance one file per client or per tenant.
+ * 
+ * <p>
+ * A refresh re-parses only the files created, modified or deleted since the previous refresh, detected by their last
+ * modification time and size. The directory is watched by the {@link ResolverRefreshScheduler}, so that a change
+ * triggers a refresh without waiting for the refresh delay. The files are loaded in parallel, for instance all the
+ * files on startup, on a pool of daemon threads owned by the resolver, whose idle threads are released between the
+ * refreshes. A file that cannot be parsed is logged, its previously loaded client informations are kept, and it is
+ * parsed again on the next refresh. A client ID defined in several files is resolved from the first file in file
+ * name order.
+ * </p>
+ */
+public class DirectoryClientInformationResolver
+        extends AbstractReloadingOIDCEntityResolver<ClientID, OIDCClientInformation>
+        implements ClientInformationResolver, RefreshableClientInformationResolver {
+
+    /** The default interval, in milliseconds, between the checks for changed files. */
+    public static final long DEFAULT_REFRESH_DELAY = 30000;
+
+    /** The suffix of the client information files. */
+    public static final String FILE_SUFFIX = ".json";
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(DirectoryClientInformationResolver.class);
+
+    /** The directory containing the client information files. */
+    @Nonnull private File metadataDirectory;
+
+    /** The cache for remote JWK key sets. */
+    private RemoteJwkSetCache remoteJwkSetCache;
+
+    /** The remote key refresh interval in milliseconds. Default value: 1800000ms */
+    @Duration
+    @Positive
+    private long keyFetchInterval = 1800000;
+
+    /** Whether an invalid client information in an array fails the whole file. Default value: false */
+    private boolean failOnInvalidEntry;
+
+    /** The number of files loaded in parallel on startup. Default value: the number of available processors. */
+    @Positive
+    private int loadParallelism = Runtime.getRuntime().availableProcessors();
+
+    /** The client informations loaded from each file, keyed by the file name. */
+    @Nonnull private final Map<String, List<OIDCClientInformation>> shards = new TreeMap<>();
+
+    /** The last modification time and size of each file when it was last loaded, keyed by the file name. */
+    @Nonnull private final Map<String, FileVersion> fileVersions = new HashMap<>();
+
+    /** The pool of threads loading the files. */
+    @NonnullAfterInit private ThreadPoolExecutor loadExecutor;
+
+    /**
+     * Constructor.
+     * 
+     * @param directory the directory containing the client information files
+     * 
+     * @throws IOException If the directory cannot be resolved.
+     */
+    public DirectoryClientInformationResolver(@Nonnull final Resource directory) throws IOException {
+        this(null, directory);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param backgroundTaskTimer timer used to refresh metadata in the background
+     * @param directory the directory containing the client information files
+     * 
+     * @throws IOException If the directory cannot be resolved.
+     */
+    public DirectoryClientInformationResolver(@Nullable final Timer backgroundTaskTimer,
+            @Nonnull final Resource directory) throws IOException {
+        super(backgroundTaskTimer);
+        metadataDirectory = Constraint.isNotNull(directory.getFile(), "Metadata directory cannot be null");
+        setMinRefreshDelay(DEFAULT_REFRESH_DELAY);
+        setMaxRefreshDelay(DEFAULT_REFRESH_DELAY);
+    }
+
+    /**
+     * Set the cache for remote JWK key sets.
+     * 
+     * @param jwkSetCache What to set.
+     */
+    public void setRemoteJwkSetCache(final RemoteJwkSetCache jwkSetCache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        remoteJwkSetCache = Constraint.isNotNull(jwkSetCache, "The remote JWK set cache cannot be null");
+    }
+
+    /**
+     * Set the remote key refresh interval (in milliseconds).
+     * 
+     * @param interval What to set.
+     */
+    public void setKeyFetchInterval(@Duration @Positive final long interval) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        keyFetchInterval = Constraint.isGreaterThan(0, interval, "Remote key refresh must be greater than 0");
+    }
+
+    /**
+     * Set whether an invalid client information in an array fails the whole file. By default the invalid client
+     * informations are skipped and logged, and the valid ones are loaded.
+     * 
+     * @param flag What to set.
+     */
+    public void setFailOnInvalidEntry(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        failOnInvalidEntry = flag;
+    }
+
+    /**
+     * Set the number of files loaded in parallel on startup.
+     * 
+     * @param parallelism What to set.
+     */
+    public void setLoadParallelism(@Positive final int parallelism) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        loadParallelism = (int) Constraint.isGreaterThan(0, parallelism, "Load parallelism must be greater than 0");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        loadExecutor = new ThreadPoolExecutor(loadParallelism, loadParallelism, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactoryBuilder().setDaemon(true)
+                        .setNameFormat("DirectoryClientInformationResolver-%d").build());
+        loadExecutor.allowCoreThreadTimeOut(true);
+        super.doInitialize();
+        if (remoteJwkSetCache == null) {
+            log.warn("The RemoteJwkSetCache is not defined, the remote keys are not fetched automatically");
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        if (loadExecutor != null) {
+            loadExecutor.shutdownNow();
+        }
+        shards.clear();
+        fileVersions.clear();
+        super.doDestroy();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Iterable<OIDCClientInformation> resolve(CriteriaSet criteria) throws ResolverException {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        final ClientIDCriterion clientIdCriterion = criteria.get(ClientIDCriterion.class);
+        if (clientIdCriterion == null || clientIdCriterion.getClientID() == null) {
+            log.trace("No client ID criteria found, returning all");
+            return getBackingStore().getOrderedInformation();
+        }
+        return lookupIdentifier(clientIdCriterion.getClientID());
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public OIDCClientInformation resolveSingle(CriteriaSet criteria) throws ResolverException {
+        final Iterable<OIDCClientInformation> iterable = resolve(criteria);
+        if (iterable != null) {
+            final Iterator<OIDCClientInformation> iterator = iterable.iterator();
+            if (iterator != null && iterator.hasNext()) {
+                return iterator.next();
+            }
+        }
+        log.warn("Could not find any clients with the given criteria");
+        return null;
+    }
+
+    /**
+     * Re-parses the files changed since the previous refresh, and builds the new backing store from the client
+     * informations of all the files.
+     * 
+     * @return The new backing store, or null if no file has changed.
+     * @throws ResolverException if the directory cannot be read
+     */
+    @Override
+    @Nullable
+    protected JsonBackingStore fetchBackingStore() throws ResolverException {
+        if (!listChangedFiles()) {
+            return null;
+        }
+        final JsonBackingStore backingStore = new JsonBackingStore();
+        for (final Map.Entry<String, List<OIDCClientInformation>> shard : shards.entrySet()) {
+            for (final OIDCClientInformation information : shard.getValue()) {
+                if (backingStore.getIndexedInformation().containsKey(information.getID())) {
+                    log.warn("Client {} in {} is already defined in an earlier file, ignoring it", information.getID(),
+                            shard.getKey());
+                } else {
+                    addToBackingStore(information, backingStore);
+                }
+            }
+        }
+        return backingStore;
+    }
+
+    /**
+     * Compares the client information files of the directory to the ones loaded previously, loads the created and
+     * modified files in parallel and forgets the deleted ones.
+     * 
+     * @return true if any file has been deleted, or created or modified and loaded, since the previous refresh
+     * @throws ResolverException if the directory cannot be listed
+     */
+    private boolean listChangedFiles() throws ResolverException {
+        if (!metadataDirectory.isDirectory() || !metadataDirectory.canRead()) {
+            throw new ResolverException("Metadata directory '" + getMetadataIdentifier()
+                    + "' does not exist or is not readable");
+        }
+        final Map<String, FileVersion> versions = new HashMap<>();
+        final Map<String, Path> changedFiles = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(metadataDirectory.toPath())) {
+            for (final Path file : stream) {
+                if (!isClientInformationFile(file)) {
+                    continue;
+                }
+                final BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (IOException e) {
+                    log.debug("Client information file {} could not be read, it may have been removed",
+                            file.getFileName(), e);
+                    continue;
+                }
+                if (attributes.isRegularFile()) {
+                    final String fileName = file.getFileName().toString();
+                    final FileVersion version = new FileVersion(attributes.lastModifiedTime().toMillis(),
+                            attributes.size());
+                    versions.put(fileName, version);
+                    if (!version.equals(fileVersions.get(fileName))) {
+                        changedFiles.put(fileName, file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new ResolverException("Could not list the metadata directory " + getMetadataIdentifier(), e);
+        }
+        boolean changed = false;
+        for (final String fileName : new ArrayList<>(fileVersions.keySet())) {
+            if (!versions.containsKey(fileName)) {
+                log.debug("Client information file {} has been removed", fileName);
+                fileVersions.remove(fileName);
+                changed |= shards.remove(fileName) != null;
+            }
+        }
+        if (!changedFiles.isEmpty()) {
+            changed |= loadFiles(changedFiles, versions);
+        }
+        return changed;
+    }
+
+    /**
+     * Loads the client information files in parallel. The version of a file is only recorded once it has been
+     * parsed, the files that cannot be parsed keep their previously loaded client informations and are parsed again
+     * on the next refresh.
+     * 
+     * @param files The files to load, keyed by the file name.
+     * @param versions The last modification time and size of the files, keyed by the file name.
+     * @return true if any file has been loaded
+     * @throws ResolverException if interrupted while loading the files, or if the resolver is being destroyed
+     */
+    private boolean loadFiles(@Nonnull final Map<String, Path> files,
+            @Nonnull final Map<String, FileVersion> versions) throws ResolverException {
+        log.debug("Loading {} files from {}", files.size(), getMetadataIdentifier());
+        final Map<String, Future<List<OIDCClientInformation>>> loads = new TreeMap<>();
+        boolean loaded = false;
+        try {
+            for (final Map.Entry<String, Path> file : files.entrySet()) {
+                loads.put(file.getKey(), loadExecutor.submit(new Callable<List<OIDCClientInformation>>() {
+
+                    @Override
+                    public List<OIDCClientInformation> call() throws ParseException, IOException {
+                        return parseFile(file.getValue());
+                    }
+                }));
+            }
+            for (final Map.Entry<String, Future<List<OIDCClientInformation>>> load : loads.entrySet()) {
+                try {
+                    shards.put(load.getKey(), load.getValue().get());
+                    fileVersions.put(load.getKey(), versions.get(load.getKey()));
+                    loaded = true;
+                } catch (ExecutionException e) {
+                    log.error("Could not load the client information(s) from {}, keeping the previous ones",
+                            load.getKey(), e.getCause());
+                }
+            }
+            return loaded;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(loads);
+            throw new ResolverException("Interrupted while loading the metadata directory "
+                    + getMetadataIdentifier(), e);
+        } catch (RejectedExecutionException e) {
+            cancel(loads);
+            throw new ResolverException("Could not load the metadata directory " + getMetadataIdentifier(), e);
+        }
+    }
+
+    /**
+     * Cancels the loads of the files.
+     * 
+     * @param loads The loads to cancel, keyed by the file name.
+     */
+    private void cancel(@Nonnull final Map<String, Future<List<OIDCClientInformation>>> loads) {
+        for (final Future<List<OIDCClientInformation>> load : loads.values()) {
+            load.cancel(true);
+        }
+    }
+
+    /**
+     * Parses the client informations from a file.
+     * 
+     * @param file The file containing a single or an array of client informations.
+     * @return The parsed client informations.
+     * @throws ParseException if the client informations cannot be parsed
+     * @throws IOException if the file cannot be read
+     */
+    @Nonnull
+    private List<OIDCClientInformation> parseFile(@Nonnull final Path file) throws ParseException, IOException {
+        try (InputStream stream = Files.newInputStream(file)) {
+            final List<OIDCClientInformation> result = read(stream);
+            log.debug("Parsed {} client information(s) from {}", result.size(), file.getFileName());
+            return result;
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected List<OIDCClientInformation> parse(byte[] bytes) throws ParseException {
+        try {
+            return read(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            throw new ParseException("Could not parse a single or an array of OIDC client information object(s).", e);
+        }
+    }
+
+    /**
+     * Reads the client informations from the stream with the configured error policy.
+     * 
+     * @param stream The encoded client informations.
+     * @return The parsed client informations.
+     * @throws ParseException if the client informations cannot be parsed
+     * @throws IOException if the stream cannot be read
+     */
+    @Nonnull
+    private List<OIDCClientInformation> read(@Nonnull final InputStream stream) throws ParseException, IOException {
+        final List<OIDCClientInformation> result = new ArrayList<>();
+        ResolverHelper.readEntities(stream, new StreamingJsonEntityReader.EntryHandler() {
+
+            @Override
+            public void handle(@Nonnull final String entry) throws ParseException {
+                result.add(ResolverHelper.withRemoteKeys(
+                        OIDCClientInformation.parse(StreamingJsonEntityReader.toJSONObject(entry)),
+                        remoteJwkSetCache, keyFetchInterval));
+            }
+        }, failOnInvalidEntry, getMetadataIdentifier());
+        return result;
+    }
+
+    /**
+     * Whether the path is named like a client information file.
+     * 
+     * @param path The path.
+     * @return true if the file name has the client information file suffix and is not hidden
+     */
+    private boolean isClientInformationFile(@Nonnull final Path path) {
+        final String fileName = path.getFileName().toString();
+        return fileName.endsWith(FILE_SUFFIX) && !fileName.startsWith(".");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected ClientID getKey(OIDCClientInformation value) {
+        return value.getID();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected String getMetadataIdentifier() {
+        return metadataDirectory.getAbsolutePath();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected Path getWatchedPath() {
+        return metadataDirectory.toPath();
+    }
+
+    /**
+     * Not used, the directory is read file by file, see {@link #fetchBackingStore()}.
+     * 
+     * @return null
+     */
+    @Override
+    protected byte[] fetchMetadata() {
+        return null;
+    }
+
+    /**
+     * The last modification time and size of a file, by which its changes are detected.
+     */
+    private static final class FileVersion {
+
+        /** The last modification time in milliseconds. */
+        private final long lastModified;
+
+        /** The size in bytes. */
+        private final long size;
+
+        /**
+         * Constructor.
+         * 
+         * @param modified The last modification time in milliseconds.
+         * @param length The size in bytes.
+         */
+        private FileVersion(final long modified, final long length) {
+            lastModified = modified;
+            size = length;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FileVersion)) {
+                return false;
+            }
+            final FileVersion other = (FileVersion) obj;
+            return lastModified == other.lastModified && size == other.size;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode() {
+            return (int) (lastModified ^ (lastModified >>> 32)) * 31 + (int) (size ^ (size >>> 32));
+        }
+    }
+}
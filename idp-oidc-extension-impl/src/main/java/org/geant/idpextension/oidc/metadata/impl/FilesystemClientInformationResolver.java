@@ -16,9 +16,10 @@
 
 package org.geant.idpextension.oidc.metadata.impl;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Timer;
@@ -36,12 +37,8 @@ import org.springframework.core.io.Resource;
 
 import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.id.ClientID;
-import com.nimbusds.oauth2.sdk.util.JSONArrayUtils;
-import com.nimbusds.oauth2.sdk.util.JSONObjectUtils;
 import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
 
-import net.minidev.json.JSONArray;
-import net.minidev.json.JSONObject;
 import net.shibboleth.utilities.java.support.annotation.Duration;
 import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
@@ -67,6 +64,9 @@ public class FilesystemClientInformationResolver extends AbstractFileOIDCEntityR
     @Positive
     private long keyFetchInterval = 1800000;
 
+    /** Whether an invalid client information in an array fails the whole reload. Default value: false */
+    private boolean failOnInvalidEntry;
+
     /**
      * Constructor.
      * 
@@ -110,6 +110,18 @@ public class FilesystemClientInformationResolver extends AbstractFileOIDCEntityR
         remoteJwkSetCache = Constraint.isNotNull(jwkSetCache, "The remote JWK set cache cannot be null");
     }
 
+    /**
+     * Set whether an invalid client information in an array fails the whole reload. By default the invalid client
+     * informations are skipped and logged, and the valid ones are loaded.
+     * 
+     * @param flag What to set.
+     */
+    public void setFailOnInvalidEntry(final boolean flag) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+        failOnInvalidEntry = flag;
+    }
+
     /**
      * Set the remote key refresh interval (in milliseconds).
      * 
@@ -134,30 +146,10 @@ public class FilesystemClientInformationResolver extends AbstractFileOIDCEntityR
         final ClientIDCriterion clientIdCriterion = criteria.get(ClientIDCriterion.class);
         if (clientIdCriterion == null || clientIdCriterion.getClientID() == null) {
             log.trace("No client ID criteria found, returning all");
-            return updateKeys(getBackingStore().getOrderedInformation());
+            return getBackingStore().getOrderedInformation();
         }
         // TODO: support other criterion
-        return updateKeys(lookupIdentifier(clientIdCriterion.getClientID()));
-    }
-
-    /**
-     * Updates the key set in the given list of OIDC client informations. The configured remote JWK set cache is
-     * exploited.
-     * 
-     * @param clientInformations The OIDC client informations whose keys are going to be updated.
-     * 
-     * @return The OIDC client informations, containing contents of getJWKSetURI() in getJWKSet().
-     */
-    protected List<OIDCClientInformation> updateKeys(final List<OIDCClientInformation> clientInformations) {
-        final List<OIDCClientInformation> result = new ArrayList<>();
-        for (final OIDCClientInformation clientInformation : clientInformations) {
-            if (clientInformation.getOIDCMetadata().getJWKSetURI() != null && remoteJwkSetCache != null) {
-                clientInformation.getOIDCMetadata().setJWKSet(
-                        remoteJwkSetCache.fetch(clientInformation.getOIDCMetadata().getJWKSetURI(), keyFetchInterval));
-            }
-            result.add(clientInformation);
-        }
-        return result;
+        return lookupIdentifier(clientIdCriterion.getClientID());
     }
 
     /** {@inheritDoc} */
@@ -177,25 +169,50 @@ public class FilesystemClientInformationResolver extends AbstractFileOIDCEntityR
     /** {@inheritDoc} */
     @Override
     protected List<OIDCClientInformation> parse(byte[] bytes) throws ParseException {
-        final String rawString = new String(bytes);
+        final List<OIDCClientInformation> result = new ArrayList<OIDCClientInformation>();
         try {
-            final OIDCClientInformation single = OIDCClientInformation.parse(JSONObjectUtils.parse(rawString));
-            log.debug("Found single client information from the file");
-            return Arrays.asList(single);
-        } catch (ParseException e) {
-            log.debug("Could not parse single client information from the file, checking for array");
+            ResolverHelper.readEntities(new ByteArrayInputStream(bytes), new StreamingJsonEntityReader.EntryHandler() {
+
+                @Override
+                public void handle(@Nonnull final String entry) throws ParseException {
+                    result.add(ResolverHelper.withRemoteKeys(
+                            OIDCClientInformation.parse(StreamingJsonEntityReader.toJSONObject(entry)),
+                            remoteJwkSetCache, keyFetchInterval));
+                }
+            }, failOnInvalidEntry, getMetadataIdentifier());
+        } catch (IOException e) {
+            throw new ParseException("Could not parse a single or an array of OIDC client information object(s).", e);
         }
-        try {
-            final JSONArray parsedArray = JSONArrayUtils.parse(rawString);
-            final List<OIDCClientInformation> result = new ArrayList<OIDCClientInformation>();
-            for (final Object object : parsedArray) {
-                final OIDCClientInformation client = OIDCClientInformation.parse((JSONObject) object);
-                result.add(client);
+        return result;
+    }
+
+    /**
+     * Parses the client informations one at a time from the stream into the new backing store, without holding the
+     * whole file in memory. With incremental refresh the client informations unchanged since the previous refresh are
+     * reused instead of parsed again.
+     * 
+     * @param stream The encoded client informations.
+     * @param backingStore The new backing store to add the client informations to.
+     * @throws ParseException if the client informations cannot be parsed
+     * @throws IOException if the stream cannot be read
+     */
+    @Override
+    protected void parse(@Nonnull final InputStream stream, @Nonnull final JsonBackingStore backingStore)
+            throws ParseException, IOException {
+        ResolverHelper.readEntities(stream, new StreamingJsonEntityReader.EntryHandler() {
+
+            @Override
+            public void handle(@Nonnull final String entry) throws ParseException {
+                final String hash = isIncrementalRefresh() ? hashRawEntity(entry) : null;
+                OIDCClientInformation information = hash != null ? lookupUnchanged(hash) : null;
+                if (information == null) {
+                    information = ResolverHelper.withRemoteKeys(
+                            OIDCClientInformation.parse(StreamingJsonEntityReader.toJSONObject(entry)),
+                            remoteJwkSetCache, keyFetchInterval);
+                }
+                addToBackingStore(information, hash, backingStore);
             }
-            return result;
-        } catch (ParseException e) {
-            throw new ParseException("Could not parse a single or an array of OIDC client information object(s).");
-        }
+        }, failOnInvalidEntry, getMetadataIdentifier());
     }
 
     /** {@inheritDoc} */
@@ -20,8 +20,19 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.geant.idpextension.oidc.metadata.resolver.RemoteJwkSetCache;
+import org.geant.idpextension.oidc.metadata.resolver.RemoteKeysOIDCClientInformation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
 
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
@@ -31,6 +42,9 @@ import net.shibboleth.utilities.java.support.resolver.ResolverException;
  * Based on {@link org.opensaml.saml.metadata.resolver.impl.FilesystemMetadataResolver} and its parent classes.
  */
 public final class ResolverHelper {
+
+    /** Class logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(ResolverHelper.class);
     
     /**
      * Constructor.
@@ -86,4 +100,44 @@ public final class ResolverHelper {
             throw new ResolverException("Metadata file '" + file.getAbsolutePath() + "' is not readable");
         }
     }
+
+    /**
+     * Reads a single or an array of JSON objects from the stream, one at a time. The number of invalid objects
+     * skipped is logged.
+     * 
+     * @param stream The encoded JSON object(s).
+     * @param handler The handler of the JSON objects.
+     * @param failOnInvalidEntry Whether an invalid object in an array fails the whole stream instead of being skipped.
+     * @param metadataIdentifier The identifier of the metadata source, for logging.
+     * @throws ParseException if the stream cannot be parsed
+     * @throws IOException if the stream cannot be read
+     */
+    public static void readEntities(@Nonnull final InputStream stream,
+            @Nonnull final StreamingJsonEntityReader.EntryHandler handler, final boolean failOnInvalidEntry,
+            @Nonnull final String metadataIdentifier) throws ParseException, IOException {
+        final int skipped = StreamingJsonEntityReader.read(new InputStreamReader(stream, StandardCharsets.UTF_8),
+                handler, failOnInvalidEntry);
+        if (skipped > 0) {
+            LOG.warn("Skipped {} invalid client information(s) in {}", skipped, metadataIdentifier);
+        }
+    }
+
+    /**
+     * Wraps the given client information so that its remote keys are resolved through the given remote JWK set
+     * cache when they are needed.
+     * 
+     * @param clientInformation The OIDC client information.
+     * @param remoteJwkSetCache The cache for remote JWK key sets, null if not defined.
+     * @param keyFetchInterval The remote key refresh interval in milliseconds.
+     * 
+     * @return The wrapped client information, or the given one if it has no jwks_uri or the cache is not defined.
+     */
+    @Nonnull
+    public static OIDCClientInformation withRemoteKeys(@Nonnull final OIDCClientInformation clientInformation,
+            @Nullable final RemoteJwkSetCache remoteJwkSetCache, final long keyFetchInterval) {
+        if (clientInformation.getOIDCMetadata().getJWKSetURI() != null && remoteJwkSetCache != null) {
+            return new RemoteKeysOIDCClientInformation(clientInformation, remoteJwkSetCache, keyFetchInterval);
+        }
+        return clientInformation;
+    }
 }
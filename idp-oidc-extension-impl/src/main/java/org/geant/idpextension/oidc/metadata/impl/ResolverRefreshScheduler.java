@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.impl;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.annotation.constraint.ThreadSafeAfterInit;
+import net.shibboleth.utilities.java.support.component.AbstractIdentifiableInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Schedules the background refreshes of the reloading resolvers on a bounded pool of threads shared by the resolvers,
+ * and notifies the resolvers of the changes in the files they are read from.
+ * 
+ * <p>
+ * The delays are shortened by a random jitter so that the resolvers configured with the same refresh interval do not
+ * all refresh at the same time. The file changes are watched with a single {@link WatchService} thread, and the
+ * listeners are run on the refresh pool.
+ * </p>
+ * 
+ * <p>
+ * The resolvers not given a scheduler use the one returned by {@link #getDefault()}.
+ * </p>
+ */
+@ThreadSafeAfterInit
+public class ResolverRefreshScheduler extends AbstractIdentifiableInitializableComponent {
+
+    /** The default number of refresh threads. */
+    public static final int DEFAULT_POOL_SIZE = 2;
+
+    /** The default jitter, as the maximum fraction of a delay it is shortened by. */
+    public static final double DEFAULT_JITTER = 0.1;
+
+    /** The scheduler shared by the resolvers not given one, created when first needed. */
+    @Nullable private static ResolverRefreshScheduler defaultScheduler;
+
+    /** Class logger. */
+    @Nonnull private final Logger log = LoggerFactory.getLogger(ResolverRefreshScheduler.class);
+
+    /** The number of refresh threads. */
+    @Positive private int poolSize;
+
+    /** The maximum fraction of a delay it is shortened by. */
+    @NonNegative private double jitter;
+
+    /** The executor running the refreshes. */
+    @NonnullAfterInit private ScheduledThreadPoolExecutor executor;
+
+    /** The listeners of the watched files and directories, keyed by the absolute path. */
+    @Nonnull private final ConcurrentMap<Path, List<Runnable>> watchListeners;
+
+    /** The watch service, created when the first path is watched. */
+    @Nullable private WatchService watchService;
+
+    /** Constructor. */
+    public ResolverRefreshScheduler() {
+        poolSize = DEFAULT_POOL_SIZE;
+        jitter = DEFAULT_JITTER;
+        watchListeners = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the scheduler shared by the resolvers not given one.
+     * 
+     * @return the default scheduler
+     */
+    @Nonnull public static synchronized ResolverRefreshScheduler getDefault() {
+        if (defaultScheduler == null || defaultScheduler.isDestroyed()) {
+            final ResolverRefreshScheduler scheduler = new ResolverRefreshScheduler();
+            scheduler.setId("DefaultResolverRefreshScheduler");
+            try {
+                scheduler.initialize();
+            } catch (final ComponentInitializationException e) {
+                throw new IllegalStateException("Could not initialize the default refresh scheduler", e);
+            }
+            defaultScheduler = scheduler;
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * Set the number of refresh threads.
+     * 
+     * @param size the number of refresh threads
+     */
+    public void setPoolSize(@Positive final int size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        poolSize = (int) Constraint.isGreaterThan(0, size, "Pool size must be greater than 0");
+    }
+
+    /**
+     * Set the maximum fraction of a delay it is shortened by, between 0 and 1.
+     * 
+     * @param fraction the jitter
+     */
+    public void setJitter(@NonNegative final double fraction) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        if (fraction < 0 || fraction >= 1) {
+            throw new IllegalArgumentException("Jitter must be between 0 and 1");
+        }
+        jitter = fraction;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        executor = new ScheduledThreadPoolExecutor(poolSize,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ResolverRefreshScheduler-%d").build());
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        synchronized (this) {
+            if (watchService != null) {
+                try {
+                    watchService.close();
+                } catch (final IOException e) {
+                    log.warn("Could not close the watch service", e);
+                }
+                watchService = null;
+            }
+        }
+        watchListeners.clear();
+        super.doDestroy();
+    }
+
+    /**
+     * Schedule a task to be run once after the given delay, shortened by the jitter.
+     * 
+     * @param task the task
+     * @param delay the delay in milliseconds
+     * @return the scheduled task, null if the scheduler has been shut down
+     */
+    @Nullable public ScheduledFuture<?> schedule(@Nonnull final Runnable task, @NonNegative final long delay) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+
+        final long jittered = delay - (long) (ThreadLocalRandom.current().nextDouble() * jitter * delay);
+        try {
+            return executor.schedule(task, Math.max(0, jittered), TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException e) {
+            log.warn("{} Scheduler has been shut down, task not scheduled", getLogPrefix());
+            return null;
+        }
+    }
+
+    /**
+     * Watch a file or a directory for changes. The listener of a file is run when the file is created, modified or
+     * deleted, and the listener of a directory when any file in it is.
+     * 
+     * @param path the file or directory
+     * @param listener the listener run on the refresh pool
+     * @throws IOException if the path cannot be watched
+     */
+    public void watch(@Nonnull final Path path, @Nonnull final Runnable listener) throws IOException {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+
+        final Path absolute = path.toAbsolutePath().normalize();
+        final Path directory = Files.isDirectory(absolute) ? absolute : absolute.getParent();
+        if (directory == null) {
+            throw new IOException("No directory to watch for " + path);
+        }
+        synchronized (this) {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ResolverRefreshScheduler-watch-%d").build()
+                        .newThread(new WatchTask(watchService)).start();
+            }
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+        List<Runnable> listeners = watchListeners.get(absolute);
+        if (listeners == null) {
+            final List<Runnable> newListeners = new CopyOnWriteArrayList<>();
+            listeners = watchListeners.putIfAbsent(absolute, newListeners);
+            if (listeners == null) {
+                listeners = newListeners;
+            }
+        }
+        listeners.add(listener);
+        log.debug("{} Watching {} for changes", getLogPrefix(), absolute);
+    }
+
+    /**
+     * Stop running the listener on the changes of a file or a directory.
+     * 
+     * @param path the file or directory
+     * @param listener the listener
+     */
+    public void unwatch(@Nonnull final Path path, @Nonnull final Runnable listener) {
+        final List<Runnable> listeners = watchListeners.get(path.toAbsolutePath().normalize());
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Run the listeners of the path on the refresh pool.
+     * 
+     * @param path the changed file or directory
+     */
+    private void notifyListeners(@Nonnull final Path path) {
+        final List<Runnable> listeners = watchListeners.get(path);
+        if (listeners == null) {
+            return;
+        }
+        for (final Runnable listener : listeners) {
+            try {
+                executor.execute(listener);
+            } catch (final RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get the prefix for the log messages.
+     * 
+     * @return the prefix
+     */
+    @Nonnull private String getLogPrefix() {
+        return "Resolver refresh scheduler " + getId() + ":";
+    }
+
+    /** Task dispatching the events of the watch service to the listeners until the watch service is closed. */
+    private class WatchTask implements Runnable {
+
+        /** The watch service. */
+        @Nonnull private final WatchService service;
+
+        /**
+         * Constructor.
+         * 
+         * @param watcher the watch service
+         */
+        WatchTask(@Nonnull final WatchService watcher) {
+            service = watcher;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    final WatchKey key = service.take();
+                    final Path directory = (Path) key.watchable();
+                    for (final WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() != StandardWatchEventKinds.OVERFLOW) {
+                            notifyListeners(directory.resolve((Path) event.context()));
+                        } else {
+                            for (final Path path : watchListeners.keySet()) {
+                                if (directory.equals(path.getParent())) {
+                                    notifyListeners(path);
+                                }
+                            }
+                        }
+                    }
+                    notifyListeners(directory);
+                    key.reset();
+                }
+            } catch (final InterruptedException | ClosedWatchServiceException e) {
+                log.debug("{} Stopped watching for changes", getLogPrefix());
+            }
+        }
+    }
+}
@@ -27,15 +27,19 @@ import javax.annotation.Nonnull;
 import org.geant.idpextension.oidc.criterion.ClientIDCriterion;
 import org.geant.idpextension.oidc.metadata.resolver.ClientInformationResolver;
 import org.geant.idpextension.oidc.metadata.resolver.RemoteJwkSetCache;
+import org.geant.idpextension.oidc.metadata.resolver.RemoteKeysOIDCClientInformation;
 import org.opensaml.storage.StorageRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.nimbusds.oauth2.sdk.ParseException;
 import com.nimbusds.oauth2.sdk.util.JSONObjectUtils;
 import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
 
 import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
 import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
 import net.shibboleth.utilities.java.support.component.ComponentSupport;
@@ -45,6 +49,13 @@ import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
 /**
  * A {@link ClientInformationResolver} exploiting {@link StorageService} for fetching the stored data.
+ * 
+ * <p>
+ * The parsed client informations are kept in a bounded in-memory cache. The storage record is still read on each
+ * resolve, and the cached value is only used if the version and the value of the record are unchanged, so that
+ * updates and deletions made by any {@link StorageServiceClientInformationManager} or cluster node take effect
+ * immediately.
+ * </p>
  */
 public class StorageServiceClientInformationResolver extends BaseStorageServiceClientInformationComponent
         implements ClientInformationResolver {
@@ -61,6 +72,13 @@ public class StorageServiceClientInformationResolver extends BaseStorageServiceC
     @Positive
     private long keyFetchInterval = 1800000;
 
+    /** The maximum number of parsed client informations kept in memory. Default value: 10000 */
+    @NonNegative
+    private long clientInformationCacheSize = 10000;
+
+    /** The parsed client informations, keyed by client ID. */
+    private Cache<String, CachedClientInformation> clientInformationCache;
+
     /** Constructor. */
     public StorageServiceClientInformationResolver() {
         super();
@@ -72,6 +90,18 @@ public class StorageServiceClientInformationResolver extends BaseStorageServiceC
         if (remoteJwkSetCache == null) {
             log.warn("The RemoteJwkSetCache is not defined, the remote keys are not fetched automatically");
         }
+        if (clientInformationCacheSize > 0) {
+            clientInformationCache = CacheBuilder.newBuilder().maximumSize(clientInformationCacheSize).build();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        if (clientInformationCache != null) {
+            clientInformationCache.invalidateAll();
+        }
+        super.doDestroy();
     }
 
     /**
@@ -100,6 +130,19 @@ public class StorageServiceClientInformationResolver extends BaseStorageServiceC
         keyFetchInterval = interval;
     }
 
+    /**
+     * Set the maximum number of parsed client informations kept in memory. Zero disables the cache.
+     * 
+     * @param size What to set.
+     */
+    public void setClientInformationCacheSize(@NonNegative final long size) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        ComponentSupport.ifDestroyedThrowDestroyedComponentException(this);
+
+        clientInformationCacheSize = Constraint.isGreaterThanOrEqual(0, size,
+                "The client information cache size must be greater than or equal to 0");
+    }
+
     /** {@inheritDoc} */
     @Override
     public Iterable<OIDCClientInformation> resolve(CriteriaSet criteria) throws ResolverException {
@@ -118,15 +161,25 @@ public class StorageServiceClientInformationResolver extends BaseStorageServiceC
             final StorageRecord record = getStorageService().read(CONTEXT_NAME, clientId);
             if (record == null) {
                 log.debug("Could not find any records with clientId {}", clientId);
+                if (clientInformationCache != null) {
+                    clientInformationCache.invalidate(clientId);
+                }
             } else {
-                final OIDCClientInformation clientInformation =
-                        OIDCClientInformation.parse(JSONObjectUtils.parse(record.getValue()));
                 log.debug("Found a record with clientId {}", clientId);
-                if (clientInformation.getOIDCMetadata().getJWKSetURI() != null && remoteJwkSetCache != null) {
-                    clientInformation.getOIDCMetadata().setJWKSet(remoteJwkSetCache
-                            .fetch(clientInformation.getOIDCMetadata().getJWKSetURI(), keyFetchInterval));
+                final CachedClientInformation cached =
+                        clientInformationCache != null ? clientInformationCache.getIfPresent(clientId) : null;
+                if (cached != null && cached.version == record.getVersion()
+                        && cached.value.equals(record.getValue())) {
+                    log.trace("Using the parsed client information for clientId {} from the cache", clientId);
+                    result.add(cached.clientInformation);
+                } else {
+                    final OIDCClientInformation clientInformation = parse(record.getValue());
+                    if (clientInformationCache != null) {
+                        clientInformationCache.put(clientId,
+                                new CachedClientInformation(record.getVersion(), record.getValue(), clientInformation));
+                    }
+                    result.add(clientInformation);
                 }
-                result.add(clientInformation);
             }
         } catch (IOException | ParseException e) {
             log.error("Could not read the storage data", e);
@@ -134,6 +187,23 @@ public class StorageServiceClientInformationResolver extends BaseStorageServiceC
         return result;
     }
 
+    /**
+     * Parses the client information from the given storage record value.
+     * 
+     * @param value The storage record value.
+     * 
+     * @return The client information, wrapped for resolving its remote keys if it has a jwks_uri.
+     * 
+     * @throws ParseException If the value cannot be parsed.
+     */
+    protected OIDCClientInformation parse(final String value) throws ParseException {
+        final OIDCClientInformation clientInformation = OIDCClientInformation.parse(JSONObjectUtils.parse(value));
+        if (clientInformation.getOIDCMetadata().getJWKSetURI() != null && remoteJwkSetCache != null) {
+            return new RemoteKeysOIDCClientInformation(clientInformation, remoteJwkSetCache, keyFetchInterval);
+        }
+        return clientInformation;
+    }
+
     /** {@inheritDoc} */
     @Override
     public OIDCClientInformation resolveSingle(CriteriaSet criteria) throws ResolverException {
@@ -147,4 +217,33 @@ public class StorageServiceClientInformationResolver extends BaseStorageServiceC
         log.warn("Could not find any clients with the given criteria");
         return null;
     }
+
+    /**
+     * A parsed client information and the storage record it was parsed from.
+     */
+    private static class CachedClientInformation {
+
+        /** The version of the storage record. */
+        private final long version;
+
+        /** The value of the storage record. */
+        private final String value;
+
+        /** The parsed client information. */
+        private final OIDCClientInformation clientInformation;
+
+        /**
+         * Constructor.
+         * 
+         * @param recordVersion The version of the storage record.
+         * @param recordValue The value of the storage record.
+         * @param information The parsed client information.
+         */
+        private CachedClientInformation(final long recordVersion, final String recordValue,
+                final OIDCClientInformation information) {
+            version = recordVersion;
+            value = recordValue;
+            clientInformation = information;
+        }
+    }
 }
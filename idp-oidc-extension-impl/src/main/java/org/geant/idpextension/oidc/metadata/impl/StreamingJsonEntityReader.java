@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.util.JSONObjectUtils;
+
+import net.minidev.json.JSONObject;
+
+/**
+ * Reads the entries of a JSON metadata source one at a time, without holding the whole source in memory.
+ * The entries are passed on as compact JSON text, which the handler may hash or compare before parsing it.
+ * 
+ * <p>
+ * The source is either a single JSON object or an array of JSON objects, told apart by the first token. Only one entry
+ * is held in memory at a time. A syntax error in the source always fails the reading, as the rest of the source cannot
+ * be trusted, whereas an entry of an array not accepted by the {@link EntryHandler} is either skipped or fails the
+ * reading, depending on the error policy.
+ * </p>
+ */
+public final class StreamingJsonEntityReader {
+
+    /** Class logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(StreamingJsonEntityReader.class);
+
+    /**
+     * Constructor.
+     */
+    private StreamingJsonEntityReader() {
+        // no op
+    }
+
+    /**
+     * Handler of the entries read from the source.
+     */
+    public interface EntryHandler {
+
+        /**
+         * Handles an entry.
+         * 
+         * @param entry the entry as compact JSON object text, see {@link StreamingJsonEntityReader#toJSONObject}
+         * @throws ParseException if the entry is not valid
+         */
+        void handle(@Nonnull String entry) throws ParseException;
+    }
+
+    /**
+     * Reads the entries from the source and passes them to the handler in order.
+     * 
+     * @param source the source, closed by the caller
+     * @param handler the handler of the entries
+     * @param failOnInvalidEntry whether an invalid entry of an array fails the reading, instead of being skipped
+     * @return the number of skipped invalid entries
+     * @throws ParseException if the source is not a JSON object or an array, or if an invalid entry fails the reading
+     * @throws IOException if the source cannot be read
+     */
+    public static int read(@Nonnull final Reader source, @Nonnull final EntryHandler handler,
+            final boolean failOnInvalidEntry) throws ParseException, IOException {
+        final JsonReader reader = new JsonReader(source);
+        try {
+            final JsonToken first = reader.peek();
+            int skipped = 0;
+            if (first == JsonToken.BEGIN_OBJECT) {
+                handler.handle(JsonParser.parseReader(reader).toString());
+            } else if (first == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                int index = 0;
+                while (reader.hasNext()) {
+                    final JsonElement element = JsonParser.parseReader(reader);
+                    try {
+                        if (!element.isJsonObject()) {
+                            throw new ParseException("Entry is not a JSON object");
+                        }
+                        handler.handle(element.toString());
+                    } catch (final ParseException e) {
+                        if (failOnInvalidEntry) {
+                            throw new ParseException("Invalid entry at index " + index + ": " + e.getMessage(), e);
+                        }
+                        LOG.warn("Skipping invalid entry at index {}: {}", index, e.getMessage());
+                        skipped++;
+                    }
+                    index++;
+                }
+                reader.endArray();
+            } else {
+                throw new ParseException("Expected a JSON object or an array, found " + first);
+            }
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new ParseException("Unexpected content after the JSON " + first);
+            }
+            return skipped;
+        } catch (final JsonIOException e) {
+            throw new IOException(e.getMessage(), e);
+        } catch (final JsonParseException | MalformedJsonException | EOFException e) {
+            throw new ParseException("Invalid JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses an entry to the representation used by the SDK.
+     * 
+     * @param entry the entry as compact JSON object text
+     * @return the JSON object
+     * @throws ParseException if the parsing fails
+     */
+    @Nonnull
+    public static JSONObject toJSONObject(@Nonnull final String entry) throws ParseException {
+        return JSONObjectUtils.parse(entry);
+    }
+}
@@ -16,11 +16,11 @@
 
 package org.geant.idpextension.oidc.profile.impl;
 
-import java.security.interfaces.ECPrivateKey;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.geant.idpextension.oidc.security.impl.CredentialConversionUtil;
+import org.geant.idpextension.oidc.security.impl.CredentialCryptoRegistry;
 import org.geant.security.jwk.JWKCredential;
 import org.opensaml.profile.action.ActionSupport;
 import org.opensaml.profile.action.EventIds;
@@ -33,9 +33,6 @@ import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSSigner;
-import com.nimbusds.jose.crypto.ECDSASigner;
-import com.nimbusds.jose.crypto.MACSigner;
-import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 
@@ -73,16 +70,11 @@ public abstract class AbstractSignJWTAction extends AbstractOIDCSigningResponseA
      * @throws JOSEException if algorithm cannot be supported
      */
     private JWSSigner getSigner(Algorithm jwsAlgorithm) throws JOSEException {
-        if (JWSAlgorithm.Family.EC.contains(jwsAlgorithm)) {
-            return new ECDSASigner((ECPrivateKey) credential.getPrivateKey());
+        final JWSSigner signer = CredentialCryptoRegistry.getSigner(credential, jwsAlgorithm);
+        if (signer == null) {
+            throw new JOSEException("Unsupported algorithm " + jwsAlgorithm.getName());
         }
-        if (JWSAlgorithm.Family.RSA.contains(jwsAlgorithm)) {
-            return new RSASSASigner(credential.getPrivateKey());
-        }
-        if (JWSAlgorithm.Family.HMAC_SHA.contains(jwsAlgorithm)) {
-            return new MACSigner(credential.getSecretKey());
-        }
-        throw new JOSEException("Unsupported algorithm " + jwsAlgorithm.getName());
+        return signer;
     }
 
     /**
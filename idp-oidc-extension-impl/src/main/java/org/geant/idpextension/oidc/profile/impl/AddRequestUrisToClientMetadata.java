@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.profile.impl;
+
+import java.net.URI;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.geant.idpextension.oidc.metadata.resolver.RemoteRequestObjectCache;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This action adds the request_uris to the client metadata. If a {@link RemoteRequestObjectCache} is set, the request
+ * objects behind the URIs are prefetched in the background.
+ */
+public class AddRequestUrisToClientMetadata extends AbstractOIDCClientMetadataPopulationAction {
+
+    /** Class logger. */
+    @Nonnull
+    private final Logger log = LoggerFactory.getLogger(AddRequestUrisToClientMetadata.class);
+
+    /** Cache used for prefetching the request objects. */
+    @Nullable
+    private RemoteRequestObjectCache requestObjectCache;
+
+    /**
+     * Set the optional cache used for prefetching the request objects.
+     * 
+     * @param cache the cache used for prefetching the request objects
+     */
+    public void setRequestObjectCache(@Nullable final RemoteRequestObjectCache cache) {
+        requestObjectCache = cache;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
+        final Set<URI> uris = getInputMetadata().getRequestObjectURIs();
+        if (uris == null || uris.isEmpty()) {
+            log.debug("{} No request uris defined in the request", getLogPrefix());
+            return;
+        }
+        getOutputMetadata().setRequestObjectURIs(uris);
+        log.debug("{} Added the request uris {}", getLogPrefix(), uris);
+        if (requestObjectCache != null) {
+            for (final URI uri : uris) {
+                requestObjectCache.prefetch(uri);
+            }
+        }
+    }
+}
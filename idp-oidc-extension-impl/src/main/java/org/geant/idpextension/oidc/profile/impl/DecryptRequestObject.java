@@ -16,15 +16,13 @@
 
 package org.geant.idpextension.oidc.profile.impl;
 
-import java.security.PrivateKey;
-import java.security.interfaces.ECPrivateKey;
 import java.text.ParseException;
 import java.util.Iterator;
 
 import javax.annotation.Nonnull;
-import javax.crypto.SecretKey;
 
 import org.geant.idpextension.oidc.profile.OidcEventIds;
+import org.geant.idpextension.oidc.security.impl.CredentialCryptoRegistry;
 import org.geant.idpextension.oidc.security.impl.OIDCDecryptionParameters;
 import org.opensaml.messaging.context.navigate.ChildContextLookup;
 import org.opensaml.profile.action.ActionSupport;
@@ -40,9 +38,6 @@ import com.google.common.base.Functions;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWEAlgorithm;
 import com.nimbusds.jose.JWEDecrypter;
-import com.nimbusds.jose.crypto.AESDecrypter;
-import com.nimbusds.jose.crypto.ECDHDecrypter;
-import com.nimbusds.jose.crypto.RSADecrypter;
 import com.nimbusds.jwt.EncryptedJWT;
 import com.nimbusds.jwt.JWT;
 import com.nimbusds.jwt.JWTParser;
@@ -141,20 +136,13 @@ public class DecryptRequestObject extends AbstractOIDCAuthenticationResponseActi
             return null;
         }
         JWEAlgorithm encAlg = requestObject.getHeader().getAlgorithm();
-        Iterator it = params.getKeyTransportDecryptionCredentials().iterator();
+        // Only the credentials with the kid of the header are tried if there are such, otherwise all of them
+        Iterator it = params.selectKeyTransportDecryptionCredentials(requestObject.getHeader().getKeyID(), encAlg)
+                .iterator();
         while (it.hasNext()) {
             Credential credential = (Credential) it.next();
-            JWEDecrypter decrypter = null;
             try {
-                if (JWEAlgorithm.Family.RSA.contains(encAlg)) {
-                    decrypter = new RSADecrypter((PrivateKey) credential.getPrivateKey());
-                }
-                if (JWEAlgorithm.Family.ECDH_ES.contains(encAlg)) {
-                    decrypter = new ECDHDecrypter((ECPrivateKey) credential.getPrivateKey());
-                }
-                if (JWEAlgorithm.Family.AES_GCM_KW.contains(encAlg) || JWEAlgorithm.Family.AES_KW.contains(encAlg)) {
-                    decrypter = new AESDecrypter((SecretKey) credential.getSecretKey());
-                }
+                final JWEDecrypter decrypter = CredentialCryptoRegistry.getDecrypter(credential, encAlg);
                 if (decrypter == null) {
                     log.error("{} No decrypter for request object for encAlg {}", getLogPrefix(),
                             requestObject.getHeader().getEncryptionMethod().getName());
@@ -16,12 +16,11 @@
 
 package org.geant.idpextension.oidc.profile.impl;
 
-import java.security.interfaces.ECPublicKey;
-import java.security.interfaces.RSAPublicKey;
 import java.text.ParseException;
 import javax.annotation.Nonnull;
 
 import org.geant.idpextension.oidc.security.impl.CredentialConversionUtil;
+import org.geant.idpextension.oidc.security.impl.CredentialCryptoRegistry;
 import org.opensaml.messaging.context.navigate.ChildContextLookup;
 import org.opensaml.profile.action.ActionSupport;
 import org.opensaml.profile.action.EventIds;
@@ -36,12 +35,10 @@ import com.google.common.base.Functions;
 import com.nimbusds.jose.EncryptionMethod;
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEEncrypter;
 import com.nimbusds.jose.JWEHeader;
 import com.nimbusds.jose.JWEObject;
 import com.nimbusds.jose.Payload;
-import com.nimbusds.jose.crypto.AESEncrypter;
-import com.nimbusds.jose.crypto.ECDHEncrypter;
-import com.nimbusds.jose.crypto.RSAEncrypter;
 import com.nimbusds.jwt.EncryptedJWT;
 import com.nimbusds.jwt.SignedJWT;
 import net.shibboleth.idp.profile.context.RelyingPartyContext;
@@ -139,12 +136,9 @@ public class EncryptProcessedToken extends AbstractOIDCResponseAction {
         JWEObject jweObject =
                 new JWEObject(new JWEHeader.Builder(encAlg, encEnc).contentType("JWT").keyID(kid).build(), payload);
         try {
-            if (JWEAlgorithm.Family.RSA.contains(encAlg)) {
-                jweObject.encrypt(new RSAEncrypter((RSAPublicKey) credential.getPublicKey()));
-            } else if (JWEAlgorithm.Family.ECDH_ES.contains(encAlg)) {
-                jweObject.encrypt(new ECDHEncrypter((ECPublicKey) credential.getPublicKey()));
-            } else if (JWEAlgorithm.Family.SYMMETRIC.contains(encAlg)) {
-                jweObject.encrypt(new AESEncrypter(credential.getSecretKey()));
+            final JWEEncrypter encrypter = CredentialCryptoRegistry.getEncrypter(credential, encAlg);
+            if (encrypter != null) {
+                jweObject.encrypt(encrypter);
             } else {
                 log.error("{} Unsupported algorithm {}", getLogPrefix(), encAlg.getName());
                 ActionSupport.buildEvent(profileRequestContext, EventIds.UNABLE_TO_ENCRYPT);
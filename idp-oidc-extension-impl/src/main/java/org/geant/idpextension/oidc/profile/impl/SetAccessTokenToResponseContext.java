@@ -71,6 +71,9 @@ public class SetAccessTokenToResponseContext extends AbstractOIDCResponseAction
     /** Access Token lifetime. */
     private long accessTokenLifetime;
 
+    /** Whether the access token is serialized in the compact binary form. */
+    private boolean compactTokenFormat;
+
     /** Data sealer for handling access token. */
     @Nonnull
     private final DataSealer dataSealer;
@@ -212,6 +215,7 @@ public class SetAccessTokenToResponseContext extends AbstractOIDCResponseAction
         final ProfileConfiguration pc = rpCtx.getProfileConfig();
         if (pc != null && pc instanceof OIDCCoreProtocolConfiguration) {
             accessTokenLifetime = ((OIDCCoreProtocolConfiguration) pc).getAccessTokenLifetime();
+            compactTokenFormat = ((OIDCCoreProtocolConfiguration) pc).getCompactTokenFormat();
         } else {
             log.error("{} No oidc profile configuration associated with this profile request", getLogPrefix());
             ActionSupport.buildEvent(profileRequestContext, IdPEventIds.INVALID_RELYING_PARTY_CTX);
@@ -291,7 +295,8 @@ public class SetAccessTokenToResponseContext extends AbstractOIDCResponseAction
                             .setDlClaimsUI(claimsUI).setNonce(authenticationRequest.getNonce()).build();
         }
         try {
-            getOidcResponseContext().setAccessToken(claimsSet.serialize(dataSealer), accessTokenLifetime / 1000);
+            getOidcResponseContext().setAccessToken(compactTokenFormat ? claimsSet.serializeCompact(dataSealer)
+                    : claimsSet.serialize(dataSealer), accessTokenLifetime / 1000);
             log.debug("{} Setting access token {} as {} to response context ", getLogPrefix(), claimsSet.serialize(),
                     getOidcResponseContext().getAccessToken());
         } catch (DataSealerException e) {
@@ -40,6 +40,7 @@ import org.geant.idpextension.oidc.profile.context.navigate.DefaultRequestCodeCh
 import org.geant.idpextension.oidc.profile.context.navigate.DefaultRequestCodeChallengeMethodLookupFunction;
 import org.geant.idpextension.oidc.profile.context.navigate.DefaultRequestNonceLookupFunction;
 import org.geant.idpextension.oidc.profile.context.navigate.OIDCAuthenticationResponseContextLookupFunction;
+import org.geant.idpextension.oidc.storage.NodeLocalReplayCache;
 import org.geant.idpextension.oidc.token.support.AuthorizeCodeClaimsSet;
 import org.opensaml.messaging.context.navigate.ChildContextLookup;
 import org.opensaml.profile.action.ActionSupport;
@@ -74,6 +75,13 @@ public class SetAuthorizationCodeToResponseContext extends AbstractOIDCAuthentic
     /** Authorization code lifetime. */
     private long authCodeLifetime;
 
+    /** Whether the authorization code is serialized in the compact binary form. */
+    private boolean compactTokenFormat;
+
+    /** Node-local replay cache whose node id is embedded in the authorization code, null if not used. */
+    @Nullable
+    private NodeLocalReplayCache nodeLocalReplayCache;
+
     /** Data sealer for handling authorization code. */
     @Nonnull
     private final DataSealer dataSealer;
@@ -136,6 +144,17 @@ public class SetAuthorizationCodeToResponseContext extends AbstractOIDCAuthentic
         };
     }
 
+    /**
+     * Set the node-local replay cache. The node id of the cache is embedded in the authorization code, binding the
+     * code to be redeemed on this node.
+     * 
+     * @param cache The node-local replay cache to set, null if not used.
+     */
+    public void setNodeLocalReplayCache(@Nullable final NodeLocalReplayCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        nodeLocalReplayCache = cache;
+    }
+
     /**
      * Set the strategy used to locate the Code Challenge of the request.
      * 
@@ -247,6 +266,7 @@ public class SetAuthorizationCodeToResponseContext extends AbstractOIDCAuthentic
         final ProfileConfiguration pc = rpCtx.getProfileConfig();
         if (pc != null && pc instanceof OIDCCoreProtocolConfiguration) {
             authCodeLifetime = ((OIDCCoreProtocolConfiguration) pc).getAuthorizeCodeLifetime();
+            compactTokenFormat = ((OIDCCoreProtocolConfiguration) pc).getCompactTokenFormat();
         } else {
             log.debug("{} No oidc profile configuration associated with this profile request", getLogPrefix());
             ActionSupport.buildEvent(profileRequestContext, IdPEventIds.INVALID_RELYING_PARTY_CTX);
@@ -289,7 +309,9 @@ public class SetAuthorizationCodeToResponseContext extends AbstractOIDCAuthentic
                 getAuthenticationRequest().getClientID(), issuerLookupStrategy.apply(profileRequestContext),
                 subjectCtx.getPrincipalName(), getOidcResponseContext().getSubject(), new Date(), dateExp,
                 getOidcResponseContext().getAuthTime(), getOidcResponseContext().getRedirectURI(),
-                getOidcResponseContext().getScope()).setACR(getOidcResponseContext().getAcr())
+                getOidcResponseContext().getScope())
+                        .setNodeId(nodeLocalReplayCache != null ? nodeLocalReplayCache.getNodeId() : null)
+                        .setACR(getOidcResponseContext().getAcr())
                         .setNonce(new DefaultRequestNonceLookupFunction().apply(profileRequestContext))
                         .setClaims(getOidcResponseContext().getRequestedClaims()).setDlClaims(claims)
                         .setDlClaimsID(claimsID).setDlClaimsUI(claimsUI).setConsentableClaims(consentable)
@@ -298,7 +320,8 @@ public class SetAuthorizationCodeToResponseContext extends AbstractOIDCAuthentic
         // We set token claims set to response context for possible access token generation.
         getOidcResponseContext().setTokenClaimsSet(claimsSet);
         try {
-            getOidcResponseContext().setAuthorizationCode(claimsSet.serialize(dataSealer));
+            getOidcResponseContext().setAuthorizationCode(compactTokenFormat ? claimsSet.serializeCompact(dataSealer)
+                    : claimsSet.serialize(dataSealer));
             log.debug("{} Setting authz code {} as {} to response context ", getLogPrefix(), claimsSet.serialize(),
                     getOidcResponseContext().getAuthorizationCode());
         } catch (DataSealerException e) {
@@ -57,6 +57,9 @@ public class SetRefreshTokenToResponseContext extends AbstractOIDCResponseAction
     /** Refresh Token lifetime. */
     private long refreshTokenLifetime;
 
+    /** Whether the refresh token is serialized in the compact binary form. */
+    private boolean compactTokenFormat;
+
     /** Data sealer for handling access token. */
     @Nonnull
     private final DataSealer dataSealer;
@@ -115,6 +118,7 @@ public class SetRefreshTokenToResponseContext extends AbstractOIDCResponseAction
         final ProfileConfiguration pc = rpCtx.getProfileConfig();
         if (pc != null && pc instanceof OIDCCoreProtocolConfiguration) {
             refreshTokenLifetime = ((OIDCCoreProtocolConfiguration) pc).getRefreshTokenLifetime();
+            compactTokenFormat = ((OIDCCoreProtocolConfiguration) pc).getCompactTokenFormat();
         } else {
             log.error("{} No oidc profile configuration associated with this profile request", getLogPrefix());
             ActionSupport.buildEvent(profileRequestContext, IdPEventIds.INVALID_RELYING_PARTY_CTX);
@@ -137,7 +141,8 @@ public class SetRefreshTokenToResponseContext extends AbstractOIDCResponseAction
         RefreshTokenClaimsSet claimsSet;
         claimsSet = new RefreshTokenClaimsSet(tokenClaimsSet, new Date(), dateExp);
         try {
-            getOidcResponseContext().setRefreshToken(claimsSet.serialize(dataSealer));
+            getOidcResponseContext().setRefreshToken(compactTokenFormat ? claimsSet.serializeCompact(dataSealer)
+                    : claimsSet.serialize(dataSealer));
             log.debug("{} Setting refresh token {} as {} to response context ", getLogPrefix(), claimsSet.serialize(),
                     getOidcResponseContext().getRefreshToken());
         } catch (DataSealerException e) {
@@ -27,7 +27,10 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.util.EntityUtils;
+import org.geant.idpextension.oidc.metadata.resolver.RemoteRequestObjectCache;
 import org.geant.idpextension.oidc.profile.OidcEventIds;
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore;
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore.PushedRequest;
 import org.opensaml.profile.action.ActionSupport;
 import org.opensaml.profile.context.ProfileRequestContext;
 import org.opensaml.security.httpclient.HttpClientSecurityParameters;
@@ -42,7 +45,11 @@ import net.shibboleth.utilities.java.support.logic.Constraint;
 /**
  * Action that stored request object to {@link OidcResponseContext}. The request
  * object may be given by value with request parameter or by reference with
- * request_uri parameter.
+ * request_uri parameter. The request object given by reference is fetched
+ * through the {@link RemoteRequestObjectCache} if one is set, otherwise directly
+ * with the HTTP client. A request_uri referring to a pushed authorization request
+ * is resolved locally from the {@link PushedAuthorizationRequestStore}, consuming
+ * the pushed request.
  */
 
 @SuppressWarnings("rawtypes")
@@ -60,6 +67,14 @@ public class SetRequestObjectToResponseContext extends AbstractOIDCAuthenticatio
 	@Nullable
 	private HttpClientSecurityParameters httpClientSecurityParameters;
 
+	/** Cache used for fetching the request objects given by reference. */
+	@Nullable
+	private RemoteRequestObjectCache requestObjectCache;
+
+	/** Store for the pushed authorization requests. */
+	@Nullable
+	private PushedAuthorizationRequestStore requestStore;
+
 	/**
 	 * Set the {@link HttpClient} to use.
 	 * 
@@ -80,6 +95,27 @@ public class SetRequestObjectToResponseContext extends AbstractOIDCAuthenticatio
 		httpClientSecurityParameters = params;
 	}
 
+	/**
+	 * Set the optional cache used for fetching the request objects given by
+	 * reference.
+	 * 
+	 * @param cache
+	 *            the cache used for fetching the request objects
+	 */
+	public void setRequestObjectCache(@Nullable final RemoteRequestObjectCache cache) {
+		requestObjectCache = cache;
+	}
+
+	/**
+	 * Set the optional store for the pushed authorization requests.
+	 * 
+	 * @param store
+	 *            the store for the pushed authorization requests
+	 */
+	public void setRequestStore(@Nullable final PushedAuthorizationRequestStore store) {
+		requestStore = store;
+	}
+
 	/**
 	 * Build the {@link HttpClientContext} instance to be used by the HttpClient.
 	 * 
@@ -130,23 +166,39 @@ public class SetRequestObjectToResponseContext extends AbstractOIDCAuthenticatio
 					getOidcResponseContext().getRequestObject().serialize());
 			return;
 		}
+		if (PushedAuthorizationRequestStore.isPushedRequestURI(getAuthenticationRequest().getRequestURI())) {
+			final PushedRequest pushedRequest = requestStore == null ? null
+					: requestStore.remove(getAuthenticationRequest().getRequestURI(),
+							getAuthenticationRequest().getClientID());
+			if (pushedRequest == null) {
+				log.error("{} No pushed request found for request_uri {}", getLogPrefix(),
+						getAuthenticationRequest().getRequestURI());
+				ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_REQUEST_URI);
+				return;
+			}
+			getOidcResponseContext().setRequestObject(pushedRequest.getRequestObject());
+			log.debug("{} Pushed request {} resolved locally", getLogPrefix(),
+					getAuthenticationRequest().getRequestURI());
+			return;
+		}
+		if (requestObjectCache != null) {
+			final String requestObject = requestObjectCache.fetch(getAuthenticationRequest().getRequestURI());
+			if (requestObject == null) {
+				log.error("{} Unable to get request object from request_uri", getLogPrefix());
+				ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_REQUEST_URI);
+				return;
+			}
+			storeRequestObject(profileRequestContext, requestObject);
+			return;
+		}
 		final HttpGet httpRequest = new HttpGet(getAuthenticationRequest().getRequestURI());
 		final HttpClientContext httpContext = buildHttpContext(httpRequest);
 		try {
 			final HttpResponse response = httpClient.execute(httpRequest, httpContext);
 			HttpClientSecuritySupport.checkTLSCredentialEvaluated(httpContext, httpRequest.getURI().getScheme());
 			if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-				String requestObject = EntityUtils.toString(response.getEntity());
-				try {
-					getOidcResponseContext().setRequestObject(JWTParser.parse(requestObject));
-					log.debug("{} Request object {} by reference stored to oidc response context", getLogPrefix(),
-							getOidcResponseContext().getRequestObject().serialize());
-					return;
-				} catch (ParseException e) {
-					log.error("{} Unable to parse request object from request_uri, {}", getLogPrefix(), e.getMessage());
-					ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_REQUEST_URI);
-					return;
-				}
+				storeRequestObject(profileRequestContext, EntityUtils.toString(response.getEntity()));
+				return;
 			} else {
 				log.error("{} Unable to get request object from request_uri, HTTP status {}", getLogPrefix(),
 						response.getStatusLine().getStatusCode());
@@ -159,4 +211,25 @@ public class SetRequestObjectToResponseContext extends AbstractOIDCAuthenticatio
 			return;
 		}
 	}
+
+	/**
+	 * Parses the request object given by reference and stores it to
+	 * {@link OidcResponseContext}.
+	 * 
+	 * @param profileRequestContext
+	 *            the current profile request context
+	 * @param requestObject
+	 *            the request object fetched from request_uri
+	 */
+	private void storeRequestObject(@Nonnull final ProfileRequestContext profileRequestContext,
+			@Nonnull final String requestObject) {
+		try {
+			getOidcResponseContext().setRequestObject(JWTParser.parse(requestObject));
+			log.debug("{} Request object {} by reference stored to oidc response context", getLogPrefix(),
+					getOidcResponseContext().getRequestObject().serialize());
+		} catch (ParseException e) {
+			log.error("{} Unable to parse request object from request_uri, {}", getLogPrefix(), e.getMessage());
+			ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_REQUEST_URI);
+		}
+	}
 }
@@ -16,7 +16,6 @@
 
 package org.geant.idpextension.oidc.profile.impl;
 
-import java.security.interfaces.ECPrivateKey;
 import java.text.ParseException;
 import java.util.Map;
 
@@ -26,6 +25,7 @@ import javax.annotation.Nullable;
 import org.geant.idpextension.oidc.messaging.context.navigate.OIDCClientRegistrationResponseMetadataLookupFunction;
 import org.geant.idpextension.oidc.profile.context.navigate.MetadataStatementsLookupFunction;
 import org.geant.idpextension.oidc.security.impl.CredentialConversionUtil;
+import org.geant.idpextension.oidc.security.impl.CredentialCryptoRegistry;
 import org.geant.security.jwk.JWKCredential;
 import org.joda.time.DateTime;
 import org.opensaml.messaging.context.navigate.ChildContextLookup;
@@ -44,9 +44,6 @@ import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSSigner;
-import com.nimbusds.jose.crypto.ECDSASigner;
-import com.nimbusds.jose.crypto.MACSigner;
-import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
 import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformationResponse;
@@ -186,16 +183,11 @@ public class SignRegistrationResponse extends AbstractProfileAction {
      *             if algorithm cannot be supported
      */
     private JWSSigner getSigner(Algorithm jwsAlgorithm) throws JOSEException {
-        if (JWSAlgorithm.Family.EC.contains(jwsAlgorithm)) {
-            return new ECDSASigner((ECPrivateKey) credential.getPrivateKey());
+        final JWSSigner signer = CredentialCryptoRegistry.getSigner(credential, jwsAlgorithm);
+        if (signer == null) {
+            throw new JOSEException("Unsupported algorithm " + jwsAlgorithm.getName());
         }
-        if (JWSAlgorithm.Family.RSA.contains(jwsAlgorithm)) {
-            return new RSASSASigner(credential.getPrivateKey());
-        }
-        if (JWSAlgorithm.Family.HMAC_SHA.contains(jwsAlgorithm)) {
-            return new MACSigner(credential.getSecretKey());
-        }
-        throw new JOSEException("Unsupported algorithm " + jwsAlgorithm.getName());
+        return signer;
     }
 
     /**
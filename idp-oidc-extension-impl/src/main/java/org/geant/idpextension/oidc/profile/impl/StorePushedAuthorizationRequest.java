@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.profile.impl;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.geant.idpextension.oidc.messaging.impl.OIDCPushedAuthorizationSuccessResponse;
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore;
+import org.opensaml.profile.action.ActionSupport;
+import org.opensaml.profile.action.EventIds;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * Action that stores the validated pushed authorization request, together with its decrypted and validated request
+ * object, to the {@link PushedAuthorizationRequestStore}. The success message carrying the request_uri referring to
+ * the stored request is set to {@link ProfileRequestContext#getOutboundMessageContext()}.
+ * 
+ * @event {@link org.opensaml.profile.action.EventIds#PROCEED_EVENT_ID}
+ * @event {@link org.opensaml.profile.action.EventIds#INVALID_MSG_CTX}
+ * @event {@link org.opensaml.profile.action.EventIds#IO_ERROR}
+ */
+@SuppressWarnings("rawtypes")
+public class StorePushedAuthorizationRequest extends AbstractOIDCAuthenticationResponseAction {
+
+    /** Class logger. */
+    @Nonnull
+    private Logger log = LoggerFactory.getLogger(StorePushedAuthorizationRequest.class);
+
+    /** Store for the pushed authorization requests. */
+    @NonnullAfterInit
+    private PushedAuthorizationRequestStore requestStore;
+
+    /**
+     * Set the store for the pushed authorization requests.
+     * 
+     * @param store the store for the pushed authorization requests
+     */
+    public void setRequestStore(@Nonnull final PushedAuthorizationRequestStore store) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        requestStore = Constraint.isNotNull(store, "Pushed authorization request store cannot be null");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        if (requestStore == null) {
+            throw new ComponentInitializationException("Pushed authorization request store cannot be null");
+        }
+    }
+
+    /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void doExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
+        final URI requestUri = requestStore.store(getAuthenticationRequest().getClientID(),
+                getAuthenticationRequest(), getOidcResponseContext().getRequestObject());
+        if (requestUri == null) {
+            log.error("{} Unable to store the pushed request", getLogPrefix());
+            ActionSupport.buildEvent(profileRequestContext, EventIds.IO_ERROR);
+            return;
+        }
+        log.debug("{} Pushed request stored, request_uri {}", getLogPrefix(), requestUri);
+        profileRequestContext.getOutboundMessageContext().setMessage(new OIDCPushedAuthorizationSuccessResponse(
+                requestUri, TimeUnit.MILLISECONDS.toSeconds(requestStore.getRequestLifetime())));
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.profile.impl;
+
+import javax.annotation.Nonnull;
+
+import org.geant.idpextension.oidc.messaging.impl.OIDCPushedAuthorizationRequest;
+import org.geant.idpextension.oidc.profile.OidcEventIds;
+import org.opensaml.profile.action.ActionSupport;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
+
+/**
+ * Action that replaces the inbound {@link OIDCPushedAuthorizationRequest} with the {@link AuthenticationRequest} it
+ * contains, after the client has been authenticated. This lets the pushed request be processed by the same actions
+ * as the requests to the authorization endpoint. A pushed request may not itself refer to a request object with
+ * request_uri.
+ * 
+ * @event {@link org.opensaml.profile.action.EventIds#PROCEED_EVENT_ID}
+ * @event {@link org.opensaml.profile.action.EventIds#INVALID_MSG_CTX}
+ * @event {@link OidcEventIds#INVALID_REQUEST_URI}
+ */
+@SuppressWarnings("rawtypes")
+public class UnwrapPushedAuthorizationRequest extends AbstractOIDCRequestAction<OIDCPushedAuthorizationRequest> {
+
+    /** Class logger. */
+    @Nonnull
+    private Logger log = LoggerFactory.getLogger(UnwrapPushedAuthorizationRequest.class);
+
+    /** {@inheritDoc} */
+    @SuppressWarnings("unchecked")
+    @Override
+    protected void doExecute(@Nonnull final ProfileRequestContext profileRequestContext) {
+        final AuthenticationRequest request = getRequest().getAuthenticationRequest();
+        if (request.getRequestURI() != null) {
+            log.error("{} request_uri is not allowed in a pushed request", getLogPrefix());
+            ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_REQUEST_URI);
+            return;
+        }
+        profileRequestContext.getInboundMessageContext().setMessage(request);
+        log.debug("{} Pushed request of client {} unwrapped", getLogPrefix(), request.getClientID());
+    }
+}
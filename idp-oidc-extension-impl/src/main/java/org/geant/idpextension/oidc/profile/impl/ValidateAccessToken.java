@@ -20,7 +20,6 @@ import java.text.ParseException;
 import javax.annotation.Nonnull;
 import org.geant.idpextension.oidc.profile.OidcEventIds;
 import org.geant.idpextension.oidc.storage.RevocationCache;
-import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
 import org.geant.idpextension.oidc.token.support.AccessTokenClaimsSet;
 import org.opensaml.profile.action.ActionSupport;
 import org.opensaml.profile.context.ProfileRequestContext;
@@ -99,8 +98,8 @@ public class ValidateAccessToken extends AbstractOIDCUserInfoValidationResponseA
             ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_GRANT);
             return;
         }
-        if (revocationCache.isRevoked(RevocationCacheContexts.AUTHORIZATION_CODE, accessTokenClaimsSet.getID())) {
-            log.error("{} authorize code {} and all derived tokens have been revoked", getLogPrefix(),
+        if (revocationCache.isRevoked(accessTokenClaimsSet)) {
+            log.error("{} access token derived from authorize code {} has been revoked", getLogPrefix(),
                     accessTokenClaimsSet.getID());
             ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_GRANT);
             return;
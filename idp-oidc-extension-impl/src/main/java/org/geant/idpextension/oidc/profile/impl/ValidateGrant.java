@@ -21,6 +21,8 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 import org.geant.idpextension.oidc.profile.OidcEventIds;
+import org.geant.idpextension.oidc.storage.IntrospectionCache;
+import org.geant.idpextension.oidc.storage.NodeLocalReplayCache;
 import org.geant.idpextension.oidc.storage.RevocationCache;
 import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
 import org.geant.idpextension.oidc.token.support.AuthorizeCodeClaimsSet;
@@ -70,10 +72,18 @@ public class ValidateGrant extends AbstractOIDCTokenResponseAction {
     @NonnullAfterInit
     private ReplayCache replayCache;
 
+    /** Node-local replay cache for the authorization codes issued by this node, null if not used. */
+    @Nullable
+    private NodeLocalReplayCache nodeLocalReplayCache;
+
     /** Message revocation cache instance to use. */
     @NonnullAfterInit
     private RevocationCache revocationCache;
 
+    /** Cache for the active introspection responses, null if not used. */
+    @Nullable
+    private IntrospectionCache introspectionCache;
+
     /**
      * Strategy used to locate the {@link RelyingPartyContext} associated with a given {@link ProfileRequestContext}.
      */
@@ -119,6 +129,18 @@ public class ValidateGrant extends AbstractOIDCTokenResponseAction {
         replayCache = Constraint.isNotNull(cache, "ReplayCache cannot be null");
     }
 
+    /**
+     * Set the node-local replay cache for the authorization codes issued by this node. The codes issued by an other
+     * node, or by this node before the cache was initialized, are rejected, and the codes without a node id are
+     * checked against the shared replay cache.
+     * 
+     * @param cache The node-local replay cache to set, null if not used.
+     */
+    public void setNodeLocalReplayCache(@Nullable final NodeLocalReplayCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        nodeLocalReplayCache = cache;
+    }
+
     /**
      * Set the revocation cache instance to use.
      * 
@@ -129,6 +151,16 @@ public class ValidateGrant extends AbstractOIDCTokenResponseAction {
         revocationCache = Constraint.isNotNull(cache, "ReplayCache cannot be null");
     }
 
+    /**
+     * Set the cache for the active introspection responses, invalidated on revocation.
+     * 
+     * @param cache The introspection cache to set, null if not used.
+     */
+    public void setIntrospectionCache(@Nullable final IntrospectionCache cache) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+        introspectionCache = cache;
+    }
+
     /** {@inheritDoc} */
     @Override
     protected void doInitialize() throws ComponentInitializationException {
@@ -162,13 +194,38 @@ public class ValidateGrant extends AbstractOIDCTokenResponseAction {
                     AuthorizeCodeClaimsSet authzCodeClaimsSet =
                             AuthorizeCodeClaimsSet.parse(codeGrant.getAuthorizationCode().getValue(), dataSealer);
                     log.debug("{} authz code unwrapped {}", getLogPrefix(), authzCodeClaimsSet.serialize());
-                    if (!replayCache.check(getClass().getName(), authzCodeClaimsSet.getID(),
-                            authzCodeClaimsSet.getExp().getTime())) {
+                    final String nodeId = authzCodeClaimsSet.getNodeId();
+                    final boolean nodeLocal = nodeId != null && nodeLocalReplayCache != null;
+                    // Only the issuing node knows whether the code has been redeemed, the token requests must be
+                    // routed to it by the node id of the code
+                    if (nodeLocal && !nodeId.equals(nodeLocalReplayCache.getNodeId())) {
+                        log.error("{} authz code {} issued by node {} cannot be redeemed on node {}", getLogPrefix(),
+                                authzCodeClaimsSet.getID(), nodeId, nodeLocalReplayCache.getNodeId());
+                        ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_GRANT);
+                        return;
+                    }
+                    final boolean firstUse = nodeLocal
+                            ? nodeLocalReplayCache.check(getClass().getName(), authzCodeClaimsSet.getID(),
+                                    authzCodeClaimsSet.getClaimsSet().getIssueTime().getTime(),
+                                    authzCodeClaimsSet.getExp().getTime())
+                            : replayCache.check(getClass().getName(), authzCodeClaimsSet.getID(),
+                                    authzCodeClaimsSet.getExp().getTime());
+                    if (!firstUse) {
                         log.error("{} Replay detected of authz code {}", getLogPrefix(), authzCodeClaimsSet.getID());
                         if (!revocationCache.revoke(RevocationCacheContexts.AUTHORIZATION_CODE,
                                 authzCodeClaimsSet.getID())) {
                             log.error("{} Fatal error! Unable to set entry to revocation cache", getLogPrefix());
                         }
+                        if (introspectionCache != null) {
+                            introspectionCache.invalidate(authzCodeClaimsSet.getID());
+                        }
+                        ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_GRANT);
+                        return;
+                    }
+                    // A redeemed code is never revoked by its id, the replay check above covers it. Only the
+                    // revocation of the tokens of the principal or the client may apply, if enabled.
+                    if (revocationCache.isRevokedIssuedBefore(authzCodeClaimsSet)) {
+                        log.error("{} authorize code {} has been revoked", getLogPrefix(), authzCodeClaimsSet.getID());
                         ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_GRANT);
                         return;
                     }
@@ -186,9 +243,8 @@ public class ValidateGrant extends AbstractOIDCTokenResponseAction {
                 try {
                     RefreshTokenClaimsSet refreshTokenClaimsSet = RefreshTokenClaimsSet
                             .parse(refreshTokentokenGrant.getRefreshToken().getValue(), dataSealer);
-                    if (revocationCache.isRevoked(RevocationCacheContexts.AUTHORIZATION_CODE,
-                            refreshTokenClaimsSet.getID())) {
-                        log.error("{} authorize code {} and all derived tokens have been revoked", getLogPrefix(),
+                    if (revocationCache.isRevoked(refreshTokenClaimsSet)) {
+                        log.error("{} refresh token derived from authorize code {} has been revoked", getLogPrefix(),
                                 refreshTokenClaimsSet.getID());
                         ActionSupport.buildEvent(profileRequestContext, OidcEventIds.INVALID_GRANT);
                         return;
@@ -24,6 +24,7 @@ import javax.annotation.Nullable;
 import org.geant.idpextension.oidc.profile.OidcEventIds;
 import org.geant.idpextension.oidc.security.impl.JWTSignatureValidationUtil;
 import org.geant.idpextension.oidc.security.impl.OIDCSignatureValidationParameters;
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore;
 import org.opensaml.messaging.context.navigate.ChildContextLookup;
 import org.opensaml.profile.action.ActionSupport;
 import org.opensaml.profile.context.ProfileRequestContext;
@@ -42,7 +43,8 @@ import net.shibboleth.utilities.java.support.component.ComponentSupport;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 
 /**
- * Action validates request object in response context.
+ * Action validates request object in response context. The request object of a pushed authorization request has
+ * already been validated when the request was pushed and is not validated again.
  */
 
 @SuppressWarnings("rawtypes")
@@ -94,6 +96,11 @@ public class ValidateRequestObject extends AbstractOIDCAuthenticationResponseAct
             log.debug("{} No request object, nothing to do", getLogPrefix());
             return false;
         }
+        if (PushedAuthorizationRequestStore.isPushedRequestURI(getAuthenticationRequest().getRequestURI())) {
+            log.debug("{} Request object of a pushed request was validated when pushed, nothing to do",
+                    getLogPrefix());
+            return false;
+        }
         return true;
     }
 
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.profile.spring.factory;
+
+import javax.annotation.Nonnull;
+
+import org.geant.idpextension.oidc.storage.RevocationCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.config.AbstractFactoryBean;
+
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+
+/**
+ * Factory bean for the {@link RevocationCache} of the flows. The cache shared by all the flows is used if it is
+ * defined, otherwise the fallback cache of the flow, as defined by the configurations predating the shared one. The
+ * cache in use is logged. The factory does not destroy the cache it returns, the context defining it does.
+ */
+public class RevocationCacheFactoryBean extends AbstractFactoryBean<RevocationCache> {
+
+    /** Class logger. */
+    private final Logger log = LoggerFactory.getLogger(RevocationCacheFactoryBean.class);
+
+    /** Name of the cache shared by all the flows. */
+    @Nonnull private String sharedCacheName;
+
+    /** Name of the cache of the flow used if the shared one is not defined. */
+    @Nonnull private String fallbackCacheName;
+
+    /** Constructor. */
+    public RevocationCacheFactoryBean() {
+        sharedCacheName = "shibboleth.oidc.RevocationCache";
+        fallbackCacheName = "shibboleth.oidc.DefaultRevocationCache";
+    }
+
+    /**
+     * Set the name of the cache shared by all the flows.
+     *
+     * @param name bean name of the shared cache
+     */
+    public void setSharedCacheName(@Nonnull final String name) {
+        sharedCacheName = Constraint.isNotNull(StringSupport.trimOrNull(name), "Shared cache name cannot be null");
+    }
+
+    /**
+     * Set the name of the cache of the flow used if the shared one is not defined.
+     *
+     * @param name bean name of the fallback cache
+     */
+    public void setFallbackCacheName(@Nonnull final String name) {
+        fallbackCacheName = Constraint.isNotNull(StringSupport.trimOrNull(name), "Fallback cache name cannot be null");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected RevocationCache createInstance() throws Exception {
+        final BeanFactory beanFactory = getBeanFactory();
+        if (beanFactory == null) {
+            throw new BeanCreationException("No bean factory to look up the revocation cache from");
+        }
+        if (beanFactory.containsBean(sharedCacheName)) {
+            log.info("Using the shared revocation cache '{}'", sharedCacheName);
+            return beanFactory.getBean(sharedCacheName, RevocationCache.class);
+        }
+        log.warn("Shared revocation cache '{}' is not defined, using the revocation cache '{}' of the flow, without "
+                + "negative lookup filter nor event channel. Define '{}' in global-oidc.xml to share one cache "
+                + "across the flows.", sharedCacheName, fallbackCacheName, sharedCacheName);
+        return beanFactory.getBean(fallbackCacheName, RevocationCache.class);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Class<?> getObjectType() {
+        return RevocationCache.class;
+    }
+
+}
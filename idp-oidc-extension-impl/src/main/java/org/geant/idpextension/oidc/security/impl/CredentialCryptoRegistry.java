@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.security.impl;
+
+import java.security.PrivateKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.opensaml.security.credential.Credential;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.nimbusds.jose.Algorithm;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEDecrypter;
+import com.nimbusds.jose.JWEEncrypter;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.AESDecrypter;
+import com.nimbusds.jose.crypto.AESEncrypter;
+import com.nimbusds.jose.crypto.ECDHDecrypter;
+import com.nimbusds.jose.crypto.ECDHEncrypter;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jose.crypto.RSADecrypter;
+import com.nimbusds.jose.crypto.RSAEncrypter;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+
+/**
+ * Registry of the JWS signers and verifiers and the JWE encrypters and decrypters built for the credentials.
+ * 
+ * <p>
+ * The instances are built once per credential and reused, which saves the key conversions done when they are built.
+ * The credentials are compared by identity and held weakly, so that the instances are released together with the
+ * credentials they were built for. The JOSE implementations are thread-safe and are shared between the requests. An
+ * instance not supporting the requested algorithm is replaced by a new one.
+ * </p>
+ */
+public final class CredentialCryptoRegistry {
+
+    /** The maximum number of instances of each kind kept in the registry. */
+    private static final long MAXIMUM_SIZE = 10000;
+
+    /** The signers by credential. */
+    private static final Cache<Credential, JWSSigner> SIGNERS =
+            CacheBuilder.newBuilder().weakKeys().maximumSize(MAXIMUM_SIZE).build();
+
+    /** The verifiers by credential. */
+    private static final Cache<Credential, JWSVerifier> VERIFIERS =
+            CacheBuilder.newBuilder().weakKeys().maximumSize(MAXIMUM_SIZE).build();
+
+    /** The encrypters by credential. */
+    private static final Cache<Credential, JWEEncrypter> ENCRYPTERS =
+            CacheBuilder.newBuilder().weakKeys().maximumSize(MAXIMUM_SIZE).build();
+
+    /** The decrypters by credential. */
+    private static final Cache<Credential, JWEDecrypter> DECRYPTERS =
+            CacheBuilder.newBuilder().weakKeys().maximumSize(MAXIMUM_SIZE).build();
+
+    /**
+     * Constructor.
+     */
+    private CredentialCryptoRegistry() {
+        // no op
+    }
+
+    /**
+     * Get the signer for the credential and the algorithm.
+     * 
+     * @param credential credential holding the private or secret key
+     * @param algorithm JWS algorithm
+     * @return signer, null if the algorithm family is not supported
+     * @throws JOSEException if the signer cannot be built from the credential
+     */
+    @Nullable
+    public static JWSSigner getSigner(@Nonnull final Credential credential, @Nonnull final Algorithm algorithm)
+            throws JOSEException {
+        JWSSigner signer = SIGNERS.getIfPresent(credential);
+        if (signer != null && signer.supportedJWSAlgorithms().contains(algorithm)) {
+            return signer;
+        }
+        if (JWSAlgorithm.Family.EC.contains(algorithm)) {
+            signer = new ECDSASigner((ECPrivateKey) credential.getPrivateKey());
+        } else if (JWSAlgorithm.Family.RSA.contains(algorithm)) {
+            signer = new RSASSASigner(credential.getPrivateKey());
+        } else if (JWSAlgorithm.Family.HMAC_SHA.contains(algorithm)) {
+            signer = new MACSigner(credential.getSecretKey());
+        } else {
+            return null;
+        }
+        SIGNERS.put(credential, signer);
+        return signer;
+    }
+
+    /**
+     * Get the verifier for the credential and the algorithm.
+     * 
+     * @param credential credential holding the public or secret key
+     * @param algorithm JWS algorithm
+     * @return verifier, null if the algorithm family is not supported
+     * @throws JOSEException if the verifier cannot be built from the credential
+     */
+    @Nullable
+    public static JWSVerifier getVerifier(@Nonnull final Credential credential, @Nonnull final Algorithm algorithm)
+            throws JOSEException {
+        JWSVerifier verifier = VERIFIERS.getIfPresent(credential);
+        if (verifier != null && verifier.supportedJWSAlgorithms().contains(algorithm)) {
+            return verifier;
+        }
+        if (JWSAlgorithm.Family.HMAC_SHA.contains(algorithm)) {
+            verifier = new MACVerifier(credential.getSecretKey());
+        } else if (JWSAlgorithm.Family.RSA.contains(algorithm)) {
+            verifier = new RSASSAVerifier((RSAPublicKey) credential.getPublicKey());
+        } else if (JWSAlgorithm.Family.EC.contains(algorithm)) {
+            verifier = new ECDSAVerifier((ECPublicKey) credential.getPublicKey());
+        } else {
+            return null;
+        }
+        VERIFIERS.put(credential, verifier);
+        return verifier;
+    }
+
+    /**
+     * Get the encrypter for the credential and the key transport algorithm.
+     * 
+     * @param credential credential holding the public or secret key
+     * @param algorithm JWE key transport algorithm
+     * @return encrypter, null if the algorithm family is not supported
+     * @throws JOSEException if the encrypter cannot be built from the credential
+     */
+    @Nullable
+    public static JWEEncrypter getEncrypter(@Nonnull final Credential credential, @Nonnull final Algorithm algorithm)
+            throws JOSEException {
+        JWEEncrypter encrypter = ENCRYPTERS.getIfPresent(credential);
+        if (encrypter != null && encrypter.supportedJWEAlgorithms().contains(algorithm)) {
+            return encrypter;
+        }
+        if (JWEAlgorithm.Family.RSA.contains(algorithm)) {
+            encrypter = new RSAEncrypter((RSAPublicKey) credential.getPublicKey());
+        } else if (JWEAlgorithm.Family.ECDH_ES.contains(algorithm)) {
+            encrypter = new ECDHEncrypter((ECPublicKey) credential.getPublicKey());
+        } else if (JWEAlgorithm.Family.SYMMETRIC.contains(algorithm)) {
+            encrypter = new AESEncrypter(credential.getSecretKey());
+        } else {
+            return null;
+        }
+        ENCRYPTERS.put(credential, encrypter);
+        return encrypter;
+    }
+
+    /**
+     * Get the decrypter for the credential and the key transport algorithm.
+     * 
+     * @param credential credential holding the private or secret key
+     * @param algorithm JWE key transport algorithm
+     * @return decrypter, null if the algorithm family is not supported
+     * @throws JOSEException if the decrypter cannot be built from the credential
+     */
+    @Nullable
+    public static JWEDecrypter getDecrypter(@Nonnull final Credential credential, @Nonnull final Algorithm algorithm)
+            throws JOSEException {
+        JWEDecrypter decrypter = DECRYPTERS.getIfPresent(credential);
+        if (decrypter != null && decrypter.supportedJWEAlgorithms().contains(algorithm)) {
+            return decrypter;
+        }
+        if (JWEAlgorithm.Family.RSA.contains(algorithm)) {
+            decrypter = new RSADecrypter((PrivateKey) credential.getPrivateKey());
+        } else if (JWEAlgorithm.Family.ECDH_ES.contains(algorithm)) {
+            decrypter = new ECDHDecrypter((ECPrivateKey) credential.getPrivateKey());
+        } else if (JWEAlgorithm.Family.AES_GCM_KW.contains(algorithm)
+                || JWEAlgorithm.Family.AES_KW.contains(algorithm)) {
+            decrypter = new AESDecrypter(credential.getSecretKey());
+        } else {
+            return null;
+        }
+        DECRYPTERS.put(credential, decrypter);
+        return decrypter;
+    }
+}
@@ -16,8 +16,6 @@
 
 package org.geant.idpextension.oidc.security.impl;
 
-import java.security.interfaces.ECPublicKey;
-import java.security.interfaces.RSAPublicKey;
 import java.util.Iterator;
 
 import javax.annotation.Nonnull;
@@ -30,11 +28,7 @@ import org.slf4j.LoggerFactory;
 
 import com.nimbusds.jose.Algorithm;
 import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSVerifier;
-import com.nimbusds.jose.crypto.ECDSAVerifier;
-import com.nimbusds.jose.crypto.MACVerifier;
-import com.nimbusds.jose.crypto.RSASSAVerifier;
 import com.nimbusds.jwt.SignedJWT;
 
 /**
@@ -74,7 +68,9 @@ public class JWTSignatureValidationUtil {
         final OIDCSignatureValidationParameters signatureValidationParameters =
                 (OIDCSignatureValidationParameters) secParamCtx.getSignatureSigningParameters();
         final Algorithm algorithm = signedJwt.getHeader().getAlgorithm();
-        final Iterator<?> it = signatureValidationParameters.getValidationCredentials().iterator();
+        // Only the credentials with the kid of the header are tried if there are such, otherwise all of them
+        final Iterator<?> it = signatureValidationParameters
+                .selectValidationCredentials(signedJwt.getHeader().getKeyID(), algorithm).iterator();
         boolean verified = false;
         while (it.hasNext()) {
             final JWKCredential credential = (JWKCredential) it.next();
@@ -89,17 +85,8 @@ public class JWTSignatureValidationUtil {
                     return invalidJwtEventId;
                 }
             }
-            JWSVerifier verifier = null;
             try {
-                if (JWSAlgorithm.Family.HMAC_SHA.contains(algorithm)) {
-                    verifier = new MACVerifier(credential.getSecretKey());
-                }
-                if (JWSAlgorithm.Family.RSA.contains(algorithm)) {
-                    verifier = new RSASSAVerifier((RSAPublicKey) credential.getPublicKey());
-                }
-                if (JWSAlgorithm.Family.EC.contains(algorithm)) {
-                    verifier = new ECDSAVerifier((ECPublicKey) credential.getPublicKey());
-                }
+                final JWSVerifier verifier = CredentialCryptoRegistry.getVerifier(credential, algorithm);
                 if (verifier == null) {
                     log.error("No verifier for given JWT for alg {}", algorithm.getName());
                     return EventIds.INVALID_SEC_CFG;
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.security.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.geant.security.jwk.JWKCredential;
+import org.opensaml.security.credential.Credential;
+
+import com.nimbusds.jose.Algorithm;
+
+/**
+ * A list of credentials indexed by the key ID and algorithm, for selecting the credentials to try for a JWS or JWE
+ * carrying a kid header.
+ * 
+ * <p>
+ * If the header has a kid and credentials with that key ID exist, only those are selected, narrowed down to the ones
+ * for the header algorithm when the credentials are {@link JWKCredential}s with an algorithm. Otherwise all the
+ * credentials are selected for trial in order. The number of both kinds of selections is counted per instance.
+ * </p>
+ * 
+ * @param <C> The type of the credentials.
+ */
+public class KidIndexedCredentials<C extends Credential> {
+
+    /** The number of selections served by the index. */
+    @Nonnull
+    private final AtomicLong indexedSelections = new AtomicLong();
+
+    /** The number of selections falling back to all the credentials. */
+    @Nonnull
+    private final AtomicLong fallbackSelections = new AtomicLong();
+
+    /** All the credentials in their original order. */
+    @Nonnull
+    private final List<C> credentials;
+
+    /** The credentials by key ID, in their original order. */
+    @Nonnull
+    private final Map<String, List<C>> credentialsByKid;
+
+    /** The credentials by key ID and algorithm, in their original order. */
+    @Nonnull
+    private final Map<String, List<C>> credentialsByKidAndAlgorithm;
+
+    /**
+     * Constructor.
+     * 
+     * @param allCredentials All the credentials in the order they are tried.
+     */
+    public KidIndexedCredentials(@Nonnull final List<C> allCredentials) {
+        credentials = Collections.unmodifiableList(new ArrayList<>(allCredentials));
+        credentialsByKid = new HashMap<>();
+        credentialsByKidAndAlgorithm = new HashMap<>();
+        for (final C credential : credentials) {
+            final String kid = CredentialConversionUtil.resolveKid(credential);
+            if (kid != null) {
+                addToIndex(credentialsByKid, kid, credential);
+                if (credential instanceof JWKCredential && ((JWKCredential) credential).getAlgorithm() != null) {
+                    addToIndex(credentialsByKidAndAlgorithm,
+                            indexKey(kid, ((JWKCredential) credential).getAlgorithm()), credential);
+                }
+            }
+        }
+        freeze(credentialsByKid);
+        freeze(credentialsByKidAndAlgorithm);
+    }
+
+    /**
+     * Make the lists of the index unmodifiable.
+     * 
+     * @param index The index.
+     */
+    private void freeze(@Nonnull final Map<String, List<C>> index) {
+        for (final Map.Entry<String, List<C>> entry : index.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+    }
+
+    /**
+     * Add the credential to the index.
+     * 
+     * @param index The index to add to.
+     * @param key The index key.
+     * @param credential The credential to add.
+     */
+    private void addToIndex(@Nonnull final Map<String, List<C>> index, @Nonnull final String key,
+            @Nonnull final C credential) {
+        List<C> indexed = index.get(key);
+        if (indexed == null) {
+            indexed = new ArrayList<>(1);
+            index.put(key, indexed);
+        }
+        indexed.add(credential);
+    }
+
+    /**
+     * Build the key of the key ID and algorithm index.
+     * 
+     * @param kid The key ID.
+     * @param algorithm The algorithm.
+     * @return The index key.
+     */
+    @Nonnull
+    private static String indexKey(@Nonnull final String kid, @Nonnull final Algorithm algorithm) {
+        return kid + ' ' + algorithm.getName();
+    }
+
+    /**
+     * Get the number of indexed credentials.
+     * 
+     * @return The number of indexed credentials.
+     */
+    public int size() {
+        return credentials.size();
+    }
+
+    /**
+     * Check whether this index was built from the given credentials, that is whether the list holds the very same
+     * credential instances in the same order. A list modified in place since, even with its size unchanged, is not
+     * indexed by this instance.
+     * 
+     * @param allCredentials The credentials to check.
+     * @return Whether this index was built from the given credentials.
+     */
+    public boolean isIndexOf(@Nonnull final List<? extends C> allCredentials) {
+        if (allCredentials.size() != credentials.size()) {
+            return false;
+        }
+        for (int i = 0; i < credentials.size(); i++) {
+            if (allCredentials.get(i) != credentials.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Select the credentials to try for the given key ID and algorithm.
+     * 
+     * @param kid The kid header value, may be null.
+     * @param algorithm The alg header value, may be null.
+     * @return The credentials with the key ID if there are such, otherwise all the credentials.
+     */
+    @Nonnull
+    public List<C> select(@Nullable final String kid, @Nullable final Algorithm algorithm) {
+        List<C> withKid = null;
+        if (kid != null) {
+            if (algorithm != null) {
+                withKid = credentialsByKidAndAlgorithm.get(indexKey(kid, algorithm));
+            }
+            if (withKid == null) {
+                withKid = credentialsByKid.get(kid);
+            }
+        }
+        if (withKid != null) {
+            indexedSelections.incrementAndGet();
+            return withKid;
+        }
+        fallbackSelections.incrementAndGet();
+        return credentials;
+    }
+
+    /**
+     * Get the number of selections served by the key ID index.
+     * 
+     * @return The number of selections served by the key ID index.
+     */
+    public long getIndexedSelections() {
+        return indexedSelections.get();
+    }
+
+    /**
+     * Get the number of selections falling back to trying all the credentials, because the header has no kid or no
+     * credential has the key ID.
+     * 
+     * @return The number of selections falling back to trying all the credentials.
+     */
+    public long getFallbackSelections() {
+        return fallbackSelections.get();
+    }
+}
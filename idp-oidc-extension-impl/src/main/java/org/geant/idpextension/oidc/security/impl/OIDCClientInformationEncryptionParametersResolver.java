@@ -27,11 +27,14 @@ import javax.annotation.Nullable;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
 import org.geant.idpextension.oidc.criterion.ClientInformationCriterion;
+import org.geant.idpextension.oidc.metadata.resolver.RemoteKeysOIDCClientInformation;
+import org.geant.idpextension.oidc.security.impl.ResolvedParametersCache.CachedParameters;
 import org.geant.security.jwk.BasicJWKCredential;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.xmlsec.EncryptionConfiguration;
@@ -84,6 +87,12 @@ public class OIDCClientInformationEncryptionParametersResolver extends BasicEncr
      */
     private ParameterType target = ParameterType.IDTOKEN_ENCRYPTION;
 
+    /** The cache of the resolved parameters, null if the parameters are not cached. */
+    @Nullable
+    private ResolvedParametersCache<EncryptionParameters> parametersCache =
+            new ResolvedParametersCache<>(ResolvedParametersCache.DEFAULT_MAXIMUM_SIZE,
+                    ParametersCopyUtil.ENCRYPTION_PARAMETERS_COPIER);
+
     /**
      * Whether to create parameters for request object decryption, id token encryption or userinfo response encryption.
      * 
@@ -92,6 +101,20 @@ public class OIDCClientInformationEncryptionParametersResolver extends BasicEncr
      */
     public void setParameterType(ParameterType value) {
         target = value;
+        if (parametersCache != null) {
+            parametersCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Set the maximum number of resolved parameters cached per client. Zero disables the cache.
+     * 
+     * @param size What to set.
+     */
+    public void setParametersCacheSize(@NonNegative final long size) {
+        Constraint.isGreaterThanOrEqual(0, size, "The parameters cache size must be greater than or equal to 0");
+        parametersCache = size > 0 ? new ResolvedParametersCache<EncryptionParameters>(size,
+                ParametersCopyUtil.ENCRYPTION_PARAMETERS_COPIER) : null;
     }
 
     /** {@inheritDoc} */
@@ -102,6 +125,24 @@ public class OIDCClientInformationEncryptionParametersResolver extends BasicEncr
         Constraint.isNotNull(criteria.get(EncryptionConfigurationCriterion.class),
                 "Resolver requires an instance of EncryptionConfigurationCriterion");
 
+        final OIDCClientInformation clientInformation = criteria.contains(ClientInformationCriterion.class)
+                ? criteria.get(ClientInformationCriterion.class).getOidcClientInformation() : null;
+        final List<EncryptionConfiguration> configurations =
+                criteria.get(EncryptionConfigurationCriterion.class).getConfigurations();
+        final JWKSet keySet = clientInformation != null && isKeySetDependent(clientInformation)
+                ? RemoteKeysOIDCClientInformation.resolveJWKSet(clientInformation) : null;
+        if (parametersCache != null && clientInformation != null) {
+            final CachedParameters<EncryptionParameters> cached =
+                    parametersCache.get(clientInformation, keySet, configurations);
+            if (cached != null) {
+                log.trace("Using cached EncryptionParameters for client {}", clientInformation.getID());
+                if (cached.isEncryptionOptional()) {
+                    criteria.add(new EncryptionOptionalCriterion(true));
+                }
+                return cached.getParameters();
+            }
+        }
+
         final Predicate<String> whitelistBlacklistPredicate = getWhitelistBlacklistPredicate(criteria);
 
         // For decryption we need to list all the located keys and need the extended EncryptionParameters
@@ -116,13 +157,32 @@ public class OIDCClientInformationEncryptionParametersResolver extends BasicEncr
             encryptionOptional = encryptionOptionalCrit.isEncryptionOptional();
         }
 
+        EncryptionParameters result = null;
         if (validate(params, encryptionOptional)) {
             logResult(params);
-            return params;
-        } else {
-            return null;
+            result = params;
         }
+        if (parametersCache != null && clientInformation != null) {
+            parametersCache.put(clientInformation, keySet, configurations, result, encryptionOptional);
+        }
+        return result;
+    }
 
+    /**
+     * Check whether the parameters for the client depend on the key set of the client. That is the case when the
+     * client has registered an asymmetric key transport algorithm for encryption.
+     * 
+     * @param clientInformation client information
+     * @return true if the parameters depend on the key set of the client, otherwise false
+     */
+    private boolean isKeySetDependent(@Nonnull final OIDCClientInformation clientInformation) {
+        if (target == ParameterType.REQUEST_OBJECT_DECRYPTION) {
+            return false;
+        }
+        final JWEAlgorithm keyTransportAlgorithm = target == ParameterType.USERINFO_ENCRYPTION
+                ? clientInformation.getOIDCMetadata().getUserInfoJWEAlg()
+                : clientInformation.getOIDCMetadata().getIDTokenJWEAlg();
+        return keyTransportAlgorithm != null && !JWEAlgorithm.Family.SYMMETRIC.contains(keyTransportAlgorithm);
     }
 
     /** {@inheritDoc} */
@@ -226,7 +286,7 @@ public class OIDCClientInformationEncryptionParametersResolver extends BasicEncr
         }
         // For RSA & EC based encryption we pick one encryption key from client's registration data
         if (target != ParameterType.REQUEST_OBJECT_DECRYPTION) {
-            JWKSet keySet = clientInformation.getOIDCMetadata().getJWKSet();
+            JWKSet keySet = RemoteKeysOIDCClientInformation.resolveJWKSet(clientInformation);
             if (keySet == null) {
                 log.warn("No keyset available");
                 super.resolveAndPopulateCredentialsAndAlgorithms(params, criteria, whitelistBlacklistPredicate);
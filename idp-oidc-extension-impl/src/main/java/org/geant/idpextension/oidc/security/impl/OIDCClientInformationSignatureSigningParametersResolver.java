@@ -24,13 +24,16 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.crypto.spec.SecretKeySpec;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
 import org.geant.idpextension.oidc.criterion.ClientInformationCriterion;
+import org.geant.idpextension.oidc.security.impl.ResolvedParametersCache.CachedParameters;
 import org.geant.security.jwk.BasicJWKCredential;
 import org.opensaml.security.credential.Credential;
+import org.opensaml.xmlsec.SignatureSigningConfiguration;
 import org.opensaml.xmlsec.SignatureSigningParameters;
 import org.opensaml.xmlsec.criterion.SignatureSigningConfigurationCriterion;
 import org.opensaml.xmlsec.impl.BasicSignatureSigningParametersResolver;
@@ -69,6 +72,12 @@ public class OIDCClientInformationSignatureSigningParametersResolver extends Bas
 
     private ParameterType target = ParameterType.IDTOKEN_SIGNING;
 
+    /** The cache of the resolved parameters, null if the parameters are not cached. */
+    @Nullable
+    private ResolvedParametersCache<SignatureSigningParameters> parametersCache =
+            new ResolvedParametersCache<>(ResolvedParametersCache.DEFAULT_MAXIMUM_SIZE,
+                    ParametersCopyUtil.SIGNATURE_PARAMETERS_COPIER);
+
     /**
      * Whether to create parameters for id token signing or userinfo response signing.
      * 
@@ -78,6 +87,20 @@ public class OIDCClientInformationSignatureSigningParametersResolver extends Bas
      */
     public void setParameterType(ParameterType value) {
         target = value;
+        if (parametersCache != null) {
+            parametersCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Set the maximum number of resolved parameters cached per client. Zero disables the cache.
+     * 
+     * @param size What to set.
+     */
+    public void setParametersCacheSize(@NonNegative final long size) {
+        Constraint.isGreaterThanOrEqual(0, size, "The parameters cache size must be greater than or equal to 0");
+        parametersCache = size > 0 ? new ResolvedParametersCache<SignatureSigningParameters>(size,
+                ParametersCopyUtil.SIGNATURE_PARAMETERS_COPIER) : null;
     }
 
     /** {@inheritDoc} */
@@ -87,17 +110,33 @@ public class OIDCClientInformationSignatureSigningParametersResolver extends Bas
         Constraint.isNotNull(criteria.get(SignatureSigningConfigurationCriterion.class),
                 "Resolver requires an instance of SignatureSigningConfigurationCriterion");
 
+        final OIDCClientInformation clientInformation = criteria.contains(ClientInformationCriterion.class)
+                ? criteria.get(ClientInformationCriterion.class).getOidcClientInformation() : null;
+        final List<SignatureSigningConfiguration> configurations =
+                criteria.get(SignatureSigningConfigurationCriterion.class).getConfigurations();
+        if (parametersCache != null && clientInformation != null) {
+            final CachedParameters<SignatureSigningParameters> cached =
+                    parametersCache.get(clientInformation, null, configurations);
+            if (cached != null) {
+                log.trace("Using cached SignatureSigningParameters for client {}", clientInformation.getID());
+                return cached.getParameters();
+            }
+        }
+
         final Predicate<String> whitelistBlacklistPredicate = getWhitelistBlacklistPredicate(criteria);
         final SignatureSigningParameters params = new SignatureSigningParameters();
 
         resolveAndPopulateCredentialAndSignatureAlgorithm(params, criteria, whitelistBlacklistPredicate);
 
+        SignatureSigningParameters result = null;
         if (validate(params)) {
             logResult(params);
-            return params;
-        } else {
-            return null;
+            result = params;
+        }
+        if (parametersCache != null && clientInformation != null) {
+            parametersCache.put(clientInformation, null, configurations, result, false);
         }
+        return result;
     }
 
     /**
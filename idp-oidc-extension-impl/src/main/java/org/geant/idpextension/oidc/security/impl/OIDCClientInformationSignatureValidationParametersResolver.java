@@ -24,12 +24,16 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.crypto.spec.SecretKeySpec;
 
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
 import net.shibboleth.utilities.java.support.logic.Constraint;
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
 import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
 import org.geant.idpextension.oidc.criterion.ClientInformationCriterion;
+import org.geant.idpextension.oidc.metadata.resolver.RemoteKeysOIDCClientInformation;
+import org.geant.idpextension.oidc.security.impl.ResolvedParametersCache.CachedParameters;
 import org.geant.security.jwk.BasicJWKCredential;
+import org.opensaml.xmlsec.SignatureSigningConfiguration;
 import org.opensaml.xmlsec.SignatureSigningParameters;
 import org.opensaml.xmlsec.criterion.SignatureSigningConfigurationCriterion;
 import org.opensaml.xmlsec.impl.BasicSignatureSigningParametersResolver;
@@ -76,6 +80,12 @@ public class OIDCClientInformationSignatureValidationParametersResolver
 
     private ParameterType target = ParameterType.REQUEST_OBJECT_VALIDATION;
 
+    /** The cache of the resolved parameters, null if the parameters are not cached. */
+    @Nullable
+    private ResolvedParametersCache<SignatureSigningParameters> parametersCache =
+            new ResolvedParametersCache<>(ResolvedParametersCache.DEFAULT_MAXIMUM_SIZE,
+                    ParametersCopyUtil.SIGNATURE_PARAMETERS_COPIER);
+
     /**
      * Whether to create parameters for request object signature validation or token endpoint jwt validation.
      * 
@@ -85,6 +95,20 @@ public class OIDCClientInformationSignatureValidationParametersResolver
      */
     public void setParameterType(ParameterType value) {
         target = value;
+        if (parametersCache != null) {
+            parametersCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Set the maximum number of resolved parameters cached per client. Zero disables the cache.
+     * 
+     * @param size What to set.
+     */
+    public void setParametersCacheSize(@NonNegative final long size) {
+        Constraint.isGreaterThanOrEqual(0, size, "The parameters cache size must be greater than or equal to 0");
+        parametersCache = size > 0 ? new ResolvedParametersCache<SignatureSigningParameters>(size,
+                ParametersCopyUtil.SIGNATURE_PARAMETERS_COPIER) : null;
     }
 
     /** {@inheritDoc} */
@@ -94,6 +118,21 @@ public class OIDCClientInformationSignatureValidationParametersResolver
         Constraint.isNotNull(criteria.get(SignatureSigningConfigurationCriterion.class),
                 "Resolver requires an instance of SignatureSigningConfigurationCriterion");
 
+        final OIDCClientInformation clientInformation = criteria.contains(ClientInformationCriterion.class)
+                ? criteria.get(ClientInformationCriterion.class).getOidcClientInformation() : null;
+        final List<SignatureSigningConfiguration> configurations =
+                criteria.get(SignatureSigningConfigurationCriterion.class).getConfigurations();
+        final JWKSet keySet =
+                clientInformation != null ? RemoteKeysOIDCClientInformation.resolveJWKSet(clientInformation) : null;
+        if (parametersCache != null && clientInformation != null) {
+            final CachedParameters<SignatureSigningParameters> cached =
+                    parametersCache.get(clientInformation, keySet, configurations);
+            if (cached != null) {
+                log.trace("Using cached signature validation parameters for client {}", clientInformation.getID());
+                return cached.getParameters();
+            }
+        }
+
         final Predicate<String> whitelistBlacklistPredicate = getWhitelistBlacklistPredicate(criteria);
 
         // For signature validation we need to list all the located keys and need the extended
@@ -102,6 +141,7 @@ public class OIDCClientInformationSignatureValidationParametersResolver
 
         resolveAndPopulateCredentialAndSignatureAlgorithm(params, criteria, whitelistBlacklistPredicate);
 
+        SignatureSigningParameters result = null;
         if (validate(params)) {
             if (((OIDCSignatureValidationParameters) params).getValidationCredentials().size() == 0) {
                 // Super class has resolved single credential, try resorting to that
@@ -111,10 +151,12 @@ public class OIDCClientInformationSignatureValidationParametersResolver
                 ((OIDCSignatureValidationParameters) params).getValidationCredentials().add(jwkCredential);
             }
             logResult(params);
-            return params;
-        } else {
-            return null;
+            result = params;
+        }
+        if (parametersCache != null && clientInformation != null) {
+            parametersCache.put(clientInformation, keySet, configurations, result, false);
         }
+        return result;
     }
 
     /**
@@ -191,7 +233,7 @@ public class OIDCClientInformationSignatureValidationParametersResolver
             }
         }
         // For EC&RSA family signature validation we pick all suitable keys from client's registration data
-        JWKSet keySet = clientInformation.getOIDCMetadata().getJWKSet();
+        JWKSet keySet = RemoteKeysOIDCClientInformation.resolveJWKSet(clientInformation);
         if (keySet == null) {
             log.debug("No keyset available");
         } else {
@@ -22,12 +22,35 @@ import java.util.List;
 import org.opensaml.security.credential.Credential;
 import org.opensaml.xmlsec.EncryptionParameters;
 
+import com.nimbusds.jose.Algorithm;
+
 /** OIDC Decryption Parameters. Steals a bit EncryptionParameters as extending it for decryption purposes. */
 public class OIDCDecryptionParameters extends EncryptionParameters {
 
     /** The list of decryption credentials. */
     private List<Credential> keyTransportDecryptionCredentials = new ArrayList<Credential>();
 
+    /** The decryption credentials indexed by key ID, built on first use. */
+    private volatile KidIndexedCredentials<Credential> indexedDecryptionCredentials;
+
+    /** Constructor. */
+    public OIDCDecryptionParameters() {
+    }
+
+    /**
+     * Copy constructor. The copy has its own list of decryption credentials and shares the key ID index of the source,
+     * which is built here if the source has none for its current credentials. The source is not modified.
+     * 
+     * @param source the parameters to copy
+     */
+    public OIDCDecryptionParameters(final OIDCDecryptionParameters source) {
+        ParametersCopyUtil.copyEncryptionParameters(source, this);
+        keyTransportDecryptionCredentials.addAll(source.getKeyTransportDecryptionCredentials());
+        final KidIndexedCredentials<Credential> index = source.indexedDecryptionCredentials;
+        indexedDecryptionCredentials = index != null && index.isIndexOf(keyTransportDecryptionCredentials) ? index
+                : new KidIndexedCredentials<>(keyTransportDecryptionCredentials);
+    }
+
     /**
      * Get the list of decryption credentials.
      * 
@@ -36,4 +59,21 @@ public class OIDCDecryptionParameters extends EncryptionParameters {
     public List<Credential> getKeyTransportDecryptionCredentials() {
         return keyTransportDecryptionCredentials;
     }
+
+    /**
+     * Select the decryption credentials to try for a JWE with the given kid and alg headers. The key ID index is built
+     * on first use and rebuilt if the list of decryption credentials no longer holds the indexed credentials.
+     * 
+     * @param kid the kid header value, may be null
+     * @param algorithm the alg header value, may be null
+     * @return the decryption credentials with the key ID if there are such, otherwise all the decryption credentials
+     */
+    public List<Credential> selectKeyTransportDecryptionCredentials(final String kid, final Algorithm algorithm) {
+        KidIndexedCredentials<Credential> index = indexedDecryptionCredentials;
+        if (index == null || !index.isIndexOf(keyTransportDecryptionCredentials)) {
+            index = new KidIndexedCredentials<>(keyTransportDecryptionCredentials);
+            indexedDecryptionCredentials = index;
+        }
+        return index.select(kid, algorithm);
+    }
 }
@@ -20,10 +20,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 import org.geant.security.jwk.JWKCredential;
 import org.opensaml.xmlsec.SignatureSigningParameters;
 
+import com.nimbusds.jose.Algorithm;
+
 /**
  * OIDC Signature Validation Parameters. Steals a bit SignatureSigningParameters as extending it also for validation
  * purposes.
@@ -34,6 +37,28 @@ public class OIDCSignatureValidationParameters extends SignatureSigningParameter
     @Nonnull
     final private List<JWKCredential> validationCredentials = new ArrayList<JWKCredential>();
 
+    /** The validation credentials indexed by key ID, built on first use. */
+    @Nullable
+    private volatile KidIndexedCredentials<JWKCredential> indexedValidationCredentials;
+
+    /** Constructor. */
+    public OIDCSignatureValidationParameters() {
+    }
+
+    /**
+     * Copy constructor. The copy has its own list of validation credentials and shares the key ID index of the source,
+     * which is built here if the source has none for its current credentials. The source is not modified.
+     * 
+     * @param source the parameters to copy
+     */
+    public OIDCSignatureValidationParameters(@Nonnull final OIDCSignatureValidationParameters source) {
+        ParametersCopyUtil.copySignatureParameters(source, this);
+        validationCredentials.addAll(source.getValidationCredentials());
+        final KidIndexedCredentials<JWKCredential> index = source.indexedValidationCredentials;
+        indexedValidationCredentials = index != null && index.isIndexOf(validationCredentials) ? index
+                : new KidIndexedCredentials<>(validationCredentials);
+    }
+
     /**
      * Get the list of validation credentials.
      * 
@@ -43,4 +68,23 @@ public class OIDCSignatureValidationParameters extends SignatureSigningParameter
     public List<JWKCredential> getValidationCredentials() {
         return validationCredentials;
     }
+
+    /**
+     * Select the validation credentials to try for a JWS with the given kid and alg headers. The key ID index is built
+     * on first use and rebuilt if the list of validation credentials no longer holds the indexed credentials.
+     * 
+     * @param kid the kid header value, may be null
+     * @param algorithm the alg header value, may be null
+     * @return the validation credentials with the key ID if there are such, otherwise all the validation credentials
+     */
+    @Nonnull
+    public List<JWKCredential> selectValidationCredentials(@Nullable final String kid,
+            @Nullable final Algorithm algorithm) {
+        KidIndexedCredentials<JWKCredential> index = indexedValidationCredentials;
+        if (index == null || !index.isIndexOf(validationCredentials)) {
+            index = new KidIndexedCredentials<>(validationCredentials);
+            indexedValidationCredentials = index;
+        }
+        return index.select(kid, algorithm);
+    }
 }
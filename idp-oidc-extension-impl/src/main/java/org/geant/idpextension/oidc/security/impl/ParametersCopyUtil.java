@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.security.impl;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.opensaml.xmlsec.EncryptionParameters;
+import org.opensaml.xmlsec.SignatureSigningParameters;
+
+import com.google.common.base.Function;
+
+/**
+ * Generic tool methods for copying the resolved security parameters, so that parameters cached across the requests
+ * are never handed out for modification.
+ */
+public final class ParametersCopyUtil {
+
+    /** Function copying signature signing and validation parameters. */
+    @Nonnull
+    public static final Function<SignatureSigningParameters, SignatureSigningParameters> SIGNATURE_PARAMETERS_COPIER =
+            new Function<SignatureSigningParameters, SignatureSigningParameters>() {
+                @Nullable
+                public SignatureSigningParameters apply(@Nullable final SignatureSigningParameters input) {
+                    return copySignatureParameters(input);
+                }
+            };
+
+    /** Function copying encryption and decryption parameters. */
+    @Nonnull
+    public static final Function<EncryptionParameters, EncryptionParameters> ENCRYPTION_PARAMETERS_COPIER =
+            new Function<EncryptionParameters, EncryptionParameters>() {
+                @Nullable
+                public EncryptionParameters apply(@Nullable final EncryptionParameters input) {
+                    return copyEncryptionParameters(input);
+                }
+            };
+
+    /** Constructor. */
+    private ParametersCopyUtil() {
+    }
+
+    /**
+     * Copy signature signing parameters, or signature validation parameters with their validation credentials.
+     * 
+     * @param source The parameters to copy, may be null.
+     * @return A copy of the parameters, null if the source is null.
+     */
+    @Nullable
+    public static SignatureSigningParameters copySignatureParameters(
+            @Nullable final SignatureSigningParameters source) {
+        if (source == null) {
+            return null;
+        }
+        if (source instanceof OIDCSignatureValidationParameters) {
+            return new OIDCSignatureValidationParameters((OIDCSignatureValidationParameters) source);
+        }
+        final SignatureSigningParameters copy = new SignatureSigningParameters();
+        copySignatureParameters(source, copy);
+        return copy;
+    }
+
+    /**
+     * Copy encryption parameters, or decryption parameters with their decryption credentials.
+     * 
+     * @param source The parameters to copy, may be null.
+     * @return A copy of the parameters, null if the source is null.
+     */
+    @Nullable
+    public static EncryptionParameters copyEncryptionParameters(@Nullable final EncryptionParameters source) {
+        if (source == null) {
+            return null;
+        }
+        if (source instanceof OIDCDecryptionParameters) {
+            return new OIDCDecryptionParameters((OIDCDecryptionParameters) source);
+        }
+        final EncryptionParameters copy = new EncryptionParameters();
+        copyEncryptionParameters(source, copy);
+        return copy;
+    }
+
+    /**
+     * Copy the properties of signature signing parameters to another.
+     * 
+     * @param source The parameters to copy from.
+     * @param target The parameters to copy to.
+     */
+    public static void copySignatureParameters(@Nonnull final SignatureSigningParameters source,
+            @Nonnull final SignatureSigningParameters target) {
+        target.setSigningCredential(source.getSigningCredential());
+        target.setSignatureAlgorithm(source.getSignatureAlgorithm());
+        target.setSignatureReferenceDigestMethod(source.getSignatureReferenceDigestMethod());
+        target.setSignatureReferenceCanonicalizationAlgorithm(source.getSignatureReferenceCanonicalizationAlgorithm());
+        target.setSignatureCanonicalizationAlgorithm(source.getSignatureCanonicalizationAlgorithm());
+        target.setSignatureHMACOutputLength(source.getSignatureHMACOutputLength());
+        target.setKeyInfoGenerator(source.getKeyInfoGenerator());
+    }
+
+    /**
+     * Copy the properties of encryption parameters to another.
+     * 
+     * @param source The parameters to copy from.
+     * @param target The parameters to copy to.
+     */
+    public static void copyEncryptionParameters(@Nonnull final EncryptionParameters source,
+            @Nonnull final EncryptionParameters target) {
+        target.setDataEncryptionCredential(source.getDataEncryptionCredential());
+        target.setDataEncryptionAlgorithm(source.getDataEncryptionAlgorithm());
+        target.setDataKeyInfoGenerator(source.getDataKeyInfoGenerator());
+        target.setKeyTransportEncryptionCredential(source.getKeyTransportEncryptionCredential());
+        target.setKeyTransportEncryptionAlgorithm(source.getKeyTransportEncryptionAlgorithm());
+        target.setKeyTransportKeyInfoGenerator(source.getKeyTransportKeyInfoGenerator());
+        target.setRSAOAEPParameters(source.getRSAOAEPParameters());
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.security.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
+
+import net.shibboleth.utilities.java.support.annotation.constraint.NonNegative;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+
+/**
+ * A bounded cache of the parameters resolved for the clients by a single parameters resolver, and therefore for a
+ * single parameter type.
+ * 
+ * <p>
+ * The parameters are cached by the client ID. A cached value is only used if it was resolved for the same client
+ * information instance, the same key set instance and the same security configurations. The client information
+ * resolvers hand out the same instance until the client metadata changes, and the remote key set cache hands out the
+ * same key set until the keys are rotated, so metadata refreshes and key rotations invalidate the cached value.
+ * </p>
+ * 
+ * <p>
+ * The parameter objects are mutable, so the cache stores a snapshot copied from the parameters put to it and hands
+ * out a fresh copy of the snapshot on every lookup. The snapshot itself is never handed out, and the copies only
+ * share immutable state with it, such as the key ID index of the credentials.
+ * </p>
+ * 
+ * @param <T> The type of the cached parameters.
+ */
+public class ResolvedParametersCache<T> {
+
+    /** The default maximum number of cached parameters. */
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    /** The cached parameters by client ID. */
+    @Nonnull
+    private final Cache<String, CachedParameters<T>> cache;
+
+    /** The function copying the parameters in and out of the cache. */
+    @Nonnull
+    private final Function<T, T> copier;
+
+    /**
+     * Constructor.
+     * 
+     * @param maximumSize The maximum number of cached parameters.
+     * @param parametersCopier The function copying the parameters in and out of the cache.
+     */
+    public ResolvedParametersCache(@NonNegative final long maximumSize,
+            @Nonnull final Function<T, T> parametersCopier) {
+        cache = CacheBuilder.newBuilder().maximumSize(Constraint.isGreaterThanOrEqual(0, maximumSize,
+                "The maximum size must be greater than or equal to 0")).build();
+        copier = Constraint.isNotNull(parametersCopier, "The parameters copier cannot be null");
+    }
+
+    /**
+     * Get the parameters cached for the client.
+     * 
+     * @param clientInformation The client information the parameters are resolved for.
+     * @param keySet The key set of the client the parameters depend on, null if they do not depend on it.
+     * @param configurations The security configurations the parameters are resolved with.
+     * @return The cached parameters, holding a copy of the snapshot owned by the caller, null if there are none for the
+     *         given inputs.
+     */
+    @Nullable
+    public CachedParameters<T> get(@Nonnull final OIDCClientInformation clientInformation,
+            @Nullable final JWKSet keySet, @Nonnull final List<?> configurations) {
+        final CachedParameters<T> cached = cache.getIfPresent(clientInformation.getID().getValue());
+        if (cached != null && cached.clientInformation == clientInformation && cached.keySet == keySet
+                && cached.configurations.equals(configurations)) {
+            return new CachedParameters<>(cached.clientInformation, cached.keySet, cached.configurations,
+                    copier.apply(cached.parameters), cached.encryptionOptional);
+        }
+        return null;
+    }
+
+    /**
+     * Cache the parameters resolved for the client. A snapshot of the parameters is cached, so the caller keeps
+     * ownership of the given parameters.
+     * 
+     * @param clientInformation The client information the parameters were resolved for.
+     * @param keySet The key set of the client the parameters depend on, null if they do not depend on it.
+     * @param configurations The security configurations the parameters were resolved with.
+     * @param parameters The resolved parameters, null if they could not be resolved.
+     * @param encryptionOptional Whether the resolution found the encryption to be optional.
+     */
+    public void put(@Nonnull final OIDCClientInformation clientInformation, @Nullable final JWKSet keySet,
+            @Nonnull final List<?> configurations, @Nullable final T parameters, final boolean encryptionOptional) {
+        cache.put(clientInformation.getID().getValue(), new CachedParameters<>(clientInformation, keySet,
+                new ArrayList<Object>(configurations), copier.apply(parameters), encryptionOptional));
+    }
+
+    /**
+     * Remove all the cached parameters.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * The parameters resolved for a client and the inputs they were resolved from.
+     * 
+     * @param <T> The type of the cached parameters.
+     */
+    public static final class CachedParameters<T> {
+
+        /** The client information the parameters were resolved for. */
+        private final OIDCClientInformation clientInformation;
+
+        /** The key set the parameters depend on. */
+        private final JWKSet keySet;
+
+        /** The security configurations the parameters were resolved with. */
+        private final List<Object> configurations;
+
+        /** The resolved parameters. */
+        private final T parameters;
+
+        /** Whether the resolution found the encryption to be optional. */
+        private final boolean encryptionOptional;
+
+        /**
+         * Constructor.
+         * 
+         * @param information The client information the parameters were resolved for.
+         * @param jwkSet The key set the parameters depend on.
+         * @param configs The security configurations the parameters were resolved with.
+         * @param params The resolved parameters.
+         * @param optional Whether the resolution found the encryption to be optional.
+         */
+        private CachedParameters(final OIDCClientInformation information, final JWKSet jwkSet,
+                final List<Object> configs, final T params, final boolean optional) {
+            clientInformation = information;
+            keySet = jwkSet;
+            configurations = configs;
+            parameters = params;
+            encryptionOptional = optional;
+        }
+
+        /**
+         * Get the resolved parameters.
+         * 
+         * @return The resolved parameters, null if they could not be resolved.
+         */
+        @Nullable
+        public T getParameters() {
+            return parameters;
+        }
+
+        /**
+         * Get whether the resolution found the encryption to be optional.
+         * 
+         * @return Whether the resolution found the encryption to be optional.
+         */
+        public boolean isEncryptionOptional() {
+            return encryptionOptional;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.storage.impl;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.geant.idpextension.oidc.storage.RevocationEvent;
+import org.geant.idpextension.oidc.storage.RevocationEventChannel;
+import org.geant.idpextension.oidc.storage.RevocationEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.shibboleth.utilities.java.support.annotation.Duration;
+import net.shibboleth.utilities.java.support.annotation.constraint.NonnullAfterInit;
+import net.shibboleth.utilities.java.support.annotation.constraint.NotEmpty;
+import net.shibboleth.utilities.java.support.annotation.constraint.Positive;
+import net.shibboleth.utilities.java.support.component.AbstractIdentifiableInitializableComponent;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.component.ComponentSupport;
+import net.shibboleth.utilities.java.support.logic.Constraint;
+import net.shibboleth.utilities.java.support.primitive.StringSupport;
+
+/**
+ * {@link RevocationEventChannel} exchanging the revocation events through a directory shared by the nodes, for
+ * instance over a network file system.
+ * 
+ * <p>
+ * Each node appends its events, one per line holding the expiration time, the context, the value and the point in time
+ * the tokens of the value are revoked up to, if any, to a log file of its own in the directory and polls the log files
+ * of the other nodes for new lines. The events published by a node are delivered to its own listeners directly as they
+ * are published, without polling its own log files. The log files are read from the beginning when a listener
+ * subscribes, so that the events published before the node was started are not missed. A node rolls over to a new log
+ * file once its current one is older than the retention time, and log files not modified within the retention time are
+ * removed. The retention time should therefore be at least the lifetime of the revocation entries.
+ * </p>
+ */
+public class FileRevocationEventChannel extends AbstractIdentifiableInitializableComponent
+        implements RevocationEventChannel {
+
+    /** Suffix of the log files. */
+    private static final String LOG_SUFFIX = ".log";
+
+    /** Maximum length of a log line, longer lines are ignored. */
+    private static final int MAX_LINE_LENGTH = 65536;
+
+    /** Class logger. */
+    @Nonnull
+    private final Logger log = LoggerFactory.getLogger(FileRevocationEventChannel.class);
+
+    /** Directory shared by the nodes. */
+    @NonnullAfterInit
+    private File directory;
+
+    /** Identifier of this node, unique within the nodes sharing the directory. */
+    @NonnullAfterInit
+    private String nodeId;
+
+    /** Interval of polling the log files of the peers. Default value: 1 second. */
+    @Positive
+    @Duration
+    private long pollInterval;
+
+    /** Retention time of the log files. Default value: 6 hours. */
+    @Positive
+    @Duration
+    private long retention;
+
+    /** Timer used to schedule the polling. */
+    @Nullable
+    private Timer taskTimer;
+
+    /** Whether we created our own task timer. */
+    private boolean createdOwnTaskTimer;
+
+    /** Subscribed listeners. */
+    @Nonnull
+    private final List<RevocationEventListener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Read offsets of the log files, accessed only while holding the lock of the map. */
+    @Nonnull
+    private final Map<String, Long> readOffsets = new HashMap<>();
+
+    /** Log file this node currently appends to. */
+    @Nullable
+    private File currentLogFile;
+
+    /** Creation time of the current log file. */
+    private long currentLogFileCreated;
+
+    /** Stream appending to the current log file. */
+    @Nullable
+    private OutputStream currentLogStream;
+
+    /** Constructor. */
+    public FileRevocationEventChannel() {
+        this(null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param backgroundTaskTimer timer used to schedule the polling, null to create one
+     */
+    public FileRevocationEventChannel(@Nullable final Timer backgroundTaskTimer) {
+        pollInterval = 1000;
+        retention = 6 * 60 * 60 * 1000;
+        taskTimer = backgroundTaskTimer;
+    }
+
+    /**
+     * Set the directory shared by the nodes.
+     * 
+     * @param dir directory shared by the nodes
+     */
+    public void setDirectory(@Nonnull final File dir) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        directory = Constraint.isNotNull(dir, "Directory cannot be null");
+    }
+
+    /**
+     * Set the identifier of this node, unique within the nodes sharing the directory.
+     * 
+     * @param id identifier of this node
+     */
+    public void setNodeId(@Nonnull @NotEmpty final String id) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        nodeId = Constraint.isNotNull(StringSupport.trimOrNull(id), "Node id cannot be null or empty");
+    }
+
+    /**
+     * Set the interval of polling the log files of the peers.
+     * 
+     * @param interval interval of polling in milliseconds
+     */
+    @Duration
+    public void setPollInterval(@Positive @Duration final long interval) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        pollInterval = Constraint.isGreaterThan(0, interval, "Poll interval must be greater than 0");
+    }
+
+    /**
+     * Set the retention time of the log files.
+     * 
+     * @param time retention time in milliseconds
+     */
+    @Duration
+    public void setRetention(@Positive @Duration final long time) {
+        ComponentSupport.ifInitializedThrowUnmodifiabledComponentException(this);
+
+        retention = Constraint.isGreaterThan(0, time, "Retention must be greater than 0");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doInitialize() throws ComponentInitializationException {
+        super.doInitialize();
+        if (directory == null) {
+            throw new ComponentInitializationException("Directory cannot be null");
+        }
+        if (nodeId == null) {
+            throw new ComponentInitializationException("Node id cannot be null");
+        }
+        if (nodeId.contains(".") || nodeId.contains(File.separator)) {
+            throw new ComponentInitializationException("Node id cannot contain '.' or path separators");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new ComponentInitializationException("Directory " + directory + " cannot be created");
+        }
+        if (taskTimer == null) {
+            taskTimer = new Timer("RevocationEventChannel-" + nodeId, true);
+            createdOwnTaskTimer = true;
+        }
+        taskTimer.schedule(new PollTask(), pollInterval, pollInterval);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void doDestroy() {
+        if (createdOwnTaskTimer) {
+            taskTimer.cancel();
+        }
+        synchronized (this) {
+            closeCurrentLogStream();
+        }
+        super.doDestroy();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void publish(@Nonnull final RevocationEvent event) throws IOException {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+
+        try {
+            append(event);
+        } finally {
+            // The own log files are not polled, the local listeners are notified even if the peers cannot be.
+            if (event.getExpiration() > System.currentTimeMillis()) {
+                for (final RevocationEventListener subscribed : listeners) {
+                    subscribed.onRevocation(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the event to the current log file of this node.
+     * 
+     * @param event the revocation event
+     * @throws IOException if the event cannot be appended
+     */
+    private synchronized void append(@Nonnull final RevocationEvent event) throws IOException {
+        final long now = System.currentTimeMillis();
+        if (currentLogStream == null || now - currentLogFileCreated >= retention) {
+            closeCurrentLogStream();
+            currentLogFile = new File(directory, nodeId + "." + now + LOG_SUFFIX);
+            currentLogFileCreated = now;
+            currentLogStream = new FileOutputStream(currentLogFile, true);
+            log.debug("Publishing revocation events to {}", currentLogFile);
+        }
+        final String line = event.getExpiration() + " " + URLEncoder.encode(event.getContext(), "UTF-8") + " "
+                + URLEncoder.encode(event.getValue(), "UTF-8")
+                + (event.getIssuedBefore() != null ? " " + event.getIssuedBefore() : "") + "\n";
+        // A single write per line keeps the line intact for readers polling the file concurrently.
+        currentLogStream.write(line.getBytes(StandardCharsets.UTF_8));
+        currentLogStream.flush();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void subscribe(@Nonnull final RevocationEventListener listener) {
+        ComponentSupport.ifNotInitializedThrowUninitializedComponentException(this);
+
+        Constraint.isNotNull(listener, "Listener cannot be null");
+        final File[] logFiles = listLogFiles();
+        synchronized (readOffsets) {
+            listeners.add(listener);
+            // Replay to the new listener what has already been delivered to the others, including the logs of this
+            // node written before a restart. The rest is delivered to all by the poll below.
+            if (logFiles != null) {
+                for (final File logFile : logFiles) {
+                    if (isOwnLogFile(logFile)) {
+                        readEvents(logFile, 0, Long.MAX_VALUE, listener);
+                    } else if (readOffsets.containsKey(logFile.getName())) {
+                        readEvents(logFile, 0, readOffsets.get(logFile.getName()), listener);
+                    }
+                }
+            }
+        }
+        poll();
+    }
+
+    /** Closes the stream appending to the current log file. */
+    private void closeCurrentLogStream() {
+        if (currentLogStream != null) {
+            try {
+                currentLogStream.close();
+            } catch (IOException e) {
+                log.warn("Failed to close revocation event log {}: {}", currentLogFile, e.getMessage());
+            }
+            currentLogStream = null;
+        }
+    }
+
+    /**
+     * Lists the log files in the directory.
+     * 
+     * @return log files, null if the directory cannot be listed
+     */
+    @Nullable
+    private File[] listLogFiles() {
+        return directory.listFiles(new FileFilter() {
+
+            @Override
+            public boolean accept(final File file) {
+                return file.isFile() && file.getName().endsWith(LOG_SUFFIX);
+            }
+        });
+    }
+
+    /**
+     * Checks whether the log file is written by this node.
+     * 
+     * @param logFile the log file
+     * @return true if the log file is written by this node
+     */
+    private boolean isOwnLogFile(@Nonnull final File logFile) {
+        return logFile.getName().startsWith(nodeId + ".");
+    }
+
+    /** Polls the log files of the peers for new events and removes the expired log files. */
+    protected void poll() {
+        final File[] logFiles = listLogFiles();
+        if (logFiles == null) {
+            log.warn("Failed to list revocation event logs in {}", directory);
+            return;
+        }
+        final long now = System.currentTimeMillis();
+        synchronized (readOffsets) {
+            for (final File logFile : logFiles) {
+                if (now - logFile.lastModified() > retention && !logFile.equals(currentLogFile)) {
+                    log.debug("Removing expired revocation event log {}", logFile);
+                    if (!logFile.delete()) {
+                        log.debug("Failed to remove revocation event log {}", logFile);
+                    }
+                    readOffsets.remove(logFile.getName());
+                    continue;
+                }
+                if (isOwnLogFile(logFile)) {
+                    continue;
+                }
+                final Long offset = readOffsets.get(logFile.getName());
+                final long newOffset = readEvents(logFile, offset == null ? 0 : offset, Long.MAX_VALUE, null);
+                readOffsets.put(logFile.getName(), newOffset);
+            }
+        }
+    }
+
+    /**
+     * Reads the complete lines of the log file between the offsets and delivers the events. The file is streamed
+     * one line at a time, so that the memory used does not depend on the number of unread events.
+     * 
+     * @param logFile the log file
+     * @param offset offset to start reading from
+     * @param limit offset to stop reading at
+     * @param listener listener to deliver the events to, null to deliver to all the subscribed listeners
+     * @return offset following the last complete line
+     */
+    private long readEvents(@Nonnull final File logFile, final long offset, final long limit,
+            @Nullable final RevocationEventListener listener) {
+        try (final FileInputStream file = new FileInputStream(logFile)) {
+            final long end = Math.min(file.getChannel().size(), limit);
+            if (end <= offset) {
+                return offset;
+            }
+            file.getChannel().position(offset);
+            final InputStream input = new BufferedInputStream(file);
+            long position = offset;
+            long consumed = offset;
+            boolean oversized = false;
+            final ByteArrayOutputStream line = new ByteArrayOutputStream();
+            while (position < end) {
+                final int b = input.read();
+                if (b < 0) {
+                    break;
+                }
+                position++;
+                if (b == '\n') {
+                    consumed = position;
+                    if (oversized) {
+                        log.warn("Ignoring revocation event longer than {} bytes in {}", MAX_LINE_LENGTH, logFile);
+                        oversized = false;
+                    } else {
+                        deliver(new String(line.toByteArray(), StandardCharsets.UTF_8), listener);
+                    }
+                    line.reset();
+                } else if (!oversized) {
+                    if (line.size() < MAX_LINE_LENGTH) {
+                        line.write(b);
+                    } else {
+                        oversized = true;
+                        line.reset();
+                    }
+                }
+            }
+            return consumed;
+        } catch (IOException e) {
+            log.warn("Failed to read revocation event log {}: {}", logFile, e.getMessage());
+            return offset;
+        }
+    }
+
+    /**
+     * Parses the event from the log line and delivers it unless expired.
+     * 
+     * @param line the log line
+     * @param listener listener to deliver the event to, null to deliver to all the subscribed listeners
+     */
+    private void deliver(@Nonnull final String line, @Nullable final RevocationEventListener listener) {
+        final String[] fields = line.split(" ");
+        if (fields.length != 3 && fields.length != 4) {
+            log.warn("Ignoring malformed revocation event '{}'", line);
+            return;
+        }
+        final RevocationEvent event;
+        try {
+            final long expiration = Long.parseLong(fields[0]);
+            if (expiration <= System.currentTimeMillis()) {
+                return;
+            }
+            event = new RevocationEvent(URLDecoder.decode(fields[1], "UTF-8"), URLDecoder.decode(fields[2], "UTF-8"),
+                    expiration, fields.length == 4 ? Long.valueOf(fields[3]) : null);
+        } catch (UnsupportedEncodingException | RuntimeException e) {
+            log.warn("Ignoring malformed revocation event '{}'", line);
+            return;
+        }
+        if (listener != null) {
+            listener.onRevocation(event);
+        } else {
+            for (final RevocationEventListener subscribed : listeners) {
+                subscribed.onRevocation(event);
+            }
+        }
+    }
+
+    /** Background task polling the log files. */
+    private class PollTask extends TimerTask {
+
+        /** {@inheritDoc} */
+        @Override
+        public void run() {
+            if (!isInitialized() || isDestroyed()) {
+                return;
+            }
+            try {
+                poll();
+            } catch (RuntimeException e) {
+                log.error("Polling of revocation event logs failed", e);
+            }
+        }
+    }
+
+}
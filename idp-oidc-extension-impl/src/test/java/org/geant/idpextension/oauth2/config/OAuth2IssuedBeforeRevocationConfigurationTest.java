@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.config;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Tests for {@link OAuth2IssuedBeforeRevocationConfiguration}, tests only constructors.
+ */
+public class OAuth2IssuedBeforeRevocationConfigurationTest {
+
+    @Test
+    public void test() {
+        OAuth2IssuedBeforeRevocationConfiguration conf = new OAuth2IssuedBeforeRevocationConfiguration();
+        Assert.assertEquals(conf.getId(), OAuth2IssuedBeforeRevocationConfiguration.PROFILE_ID);
+        conf = new OAuth2IssuedBeforeRevocationConfiguration("somethingelse");
+        Assert.assertEquals(conf.getId(), "somethingelse");
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.messaging.impl;
+
+import java.util.Arrays;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.nimbusds.oauth2.sdk.ParseException;
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+import com.nimbusds.oauth2.sdk.http.HTTPResponse;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+
+/**
+ * Tests for {@link OAuth2BatchIntrospectionSuccessResponse}.
+ */
+public class OAuth2BatchIntrospectionSuccessResponseTest {
+
+    @Test
+    public void test() throws ParseException {
+        OAuth2BatchIntrospectionSuccessResponse resp = new OAuth2BatchIntrospectionSuccessResponse(Arrays.asList(
+                new TokenIntrospectionSuccessResponse.Builder(true).clientID(new ClientID("client")).build(),
+                new TokenIntrospectionSuccessResponse.Builder(false).build()));
+        Assert.assertTrue(resp.indicatesSuccess());
+        Assert.assertEquals(resp.getResponses().size(), 2);
+        HTTPResponse httpResponse = resp.toHTTPResponse();
+        Assert.assertEquals(httpResponse.getStatusCode(), 200);
+        Assert.assertEquals(httpResponse.getCacheControl(), "no-store");
+        JSONArray responses = (JSONArray) httpResponse.getContentAsJSONObject().get("responses");
+        Assert.assertEquals(responses.size(), 2);
+        Assert.assertEquals(((JSONObject) responses.get(0)).get("active"), true);
+        Assert.assertEquals(((JSONObject) responses.get(0)).get("client_id"), "client");
+        Assert.assertEquals(((JSONObject) responses.get(1)).get("active"), false);
+    }
+
+}
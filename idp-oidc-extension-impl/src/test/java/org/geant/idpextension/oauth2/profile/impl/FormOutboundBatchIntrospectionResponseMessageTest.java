@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.profile.impl;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2BatchIntrospectionSuccessResponse;
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2BatchTokenRequest;
+import org.geant.idpextension.oidc.storage.IntrospectionCache;
+import org.geant.idpextension.oidc.storage.RevocationCache;
+import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
+import org.geant.idpextension.oidc.token.support.AccessTokenClaimsSet;
+import org.geant.idpextension.oidc.token.support.AuthorizeCodeClaimsSet;
+import org.geant.idpextension.oidc.token.support.BaseTokenClaimsSetTest;
+import org.geant.idpextension.oidc.token.support.RefreshTokenClaimsSet;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.opensaml.storage.impl.MemoryStorageService;
+import org.springframework.webflow.execution.RequestContext;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.oauth2.sdk.token.AccessTokenType;
+
+import net.shibboleth.idp.profile.ActionTestingSupport;
+import net.shibboleth.idp.profile.RequestContextBuilder;
+import net.shibboleth.idp.profile.context.navigate.WebflowRequestContextProfileRequestContextLookup;
+import net.shibboleth.utilities.java.support.security.DataSealerException;
+import net.shibboleth.utilities.java.support.security.SecureRandomIdentifierGenerationStrategy;
+
+/**
+ * Tests for {@link FormOutboundBatchIntrospectionResponseMessage}.
+ */
+public class FormOutboundBatchIntrospectionResponseMessageTest extends BaseTokenClaimsSetTest {
+
+    private FormOutboundBatchIntrospectionResponseMessage action;
+
+    private MemoryStorageService storageService;
+
+    private RevocationCache revocationCache;
+
+    private IntrospectionCache introspectionCache;
+
+    private AccessTokenClaimsSet atClaimsSet;
+
+    private RefreshTokenClaimsSet rfClaimsSet;
+
+    private AccessTokenClaimsSet revokedAtClaimsSet;
+
+    private AccessTokenClaimsSet expiredAtClaimsSet;
+
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        storageService = new MemoryStorageService();
+        storageService.setId("test");
+        storageService.initialize();
+
+        revocationCache = new RevocationCache();
+        revocationCache.setEntryExpiration(500);
+        revocationCache.setStorage(storageService);
+        revocationCache.setIssuedBeforeRevocationEnabled(true);
+        revocationCache.initialize();
+
+        introspectionCache = new IntrospectionCache();
+        introspectionCache.setId("test");
+        introspectionCache.initialize();
+
+        atClaimsSet = new AccessTokenClaimsSet(buildCode(), scope, dlClaims, dlClaimsUI, iat, exp);
+        rfClaimsSet = new RefreshTokenClaimsSet(buildCode(), iat, exp);
+        revokedAtClaimsSet = new AccessTokenClaimsSet(buildCode(), scope, dlClaims, dlClaimsUI, iat, exp);
+        revocationCache.revoke(RevocationCacheContexts.AUTHORIZATION_CODE, revokedAtClaimsSet.getID());
+        expiredAtClaimsSet = new AccessTokenClaimsSet(buildCode(), scope, dlClaims, dlClaimsUI, iat,
+                new Date(System.currentTimeMillis() - 1000));
+
+        action = new FormOutboundBatchIntrospectionResponseMessage(sealer);
+        action.setRevocationCache(revocationCache);
+        action.setIntrospectionCache(introspectionCache);
+        action.initialize();
+    }
+
+    private AuthorizeCodeClaimsSet buildCode() {
+        return new AuthorizeCodeClaimsSet.Builder(new SecureRandomIdentifierGenerationStrategy(), clientID, issuer,
+                userPrincipal, subject, iat, exp, authTime, redirectURI, scope).build();
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        introspectionCache.destroy();
+        revocationCache.destroy();
+        storageService.destroy();
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testIntrospection() throws DataSealerException, URISyntaxException {
+        String accessToken = atClaimsSet.serialize(sealer);
+        OAuth2BatchTokenRequest request = new OAuth2BatchTokenRequest(new URI("https://example.com"), new ClientID(),
+                Arrays.asList(accessToken, rfClaimsSet.serialize(sealer), "sometoken",
+                        revokedAtClaimsSet.serialize(sealer), expiredAtClaimsSet.serialize(sealer), accessToken));
+        RequestContext requestContext = new RequestContextBuilder().setInboundMessage(request).buildRequestContext();
+        ActionTestingSupport.assertProceedEvent(action.execute(requestContext));
+        ProfileRequestContext prc = new WebflowRequestContextProfileRequestContextLookup().apply(requestContext);
+        OAuth2BatchIntrospectionSuccessResponse resp =
+                (OAuth2BatchIntrospectionSuccessResponse) prc.getOutboundMessageContext().getMessage();
+        Assert.assertEquals(resp.getResponses().size(), 6);
+        TokenIntrospectionSuccessResponse atResponse = resp.getResponses().get(0);
+        Assert.assertTrue(atResponse.isActive());
+        Assert.assertEquals(atResponse.getClientID(), clientID);
+        Assert.assertEquals(atResponse.getTokenType(), AccessTokenType.BEARER);
+        Assert.assertTrue(resp.getResponses().get(1).isActive());
+        Assert.assertNull(resp.getResponses().get(1).getTokenType());
+        Assert.assertFalse(resp.getResponses().get(2).isActive());
+        Assert.assertFalse(resp.getResponses().get(3).isActive());
+        Assert.assertFalse(resp.getResponses().get(4).isActive());
+        Assert.assertTrue(resp.getResponses().get(5).isActive());
+        Assert.assertNotNull(introspectionCache.get(accessToken));
+    }
+
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testIntrospectionRevokedIssuedBefore() throws DataSealerException, URISyntaxException {
+        Assert.assertTrue(revocationCache.revokeIssuedBefore(RevocationCacheContexts.PRINCIPAL, userPrincipal,
+                new Date()));
+        OAuth2BatchTokenRequest request = new OAuth2BatchTokenRequest(new URI("https://example.com"), new ClientID(),
+                Arrays.asList(atClaimsSet.serialize(sealer), rfClaimsSet.serialize(sealer)));
+        RequestContext requestContext = new RequestContextBuilder().setInboundMessage(request).buildRequestContext();
+        ActionTestingSupport.assertProceedEvent(action.execute(requestContext));
+        ProfileRequestContext prc = new WebflowRequestContextProfileRequestContextLookup().apply(requestContext);
+        OAuth2BatchIntrospectionSuccessResponse resp =
+                (OAuth2BatchIntrospectionSuccessResponse) prc.getOutboundMessageContext().getMessage();
+        Assert.assertEquals(resp.getResponses().size(), 2);
+        Assert.assertFalse(resp.getResponses().get(0).isActive());
+        Assert.assertFalse(resp.getResponses().get(1).isActive());
+    }
+}
@@ -22,6 +22,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.security.NoSuchAlgorithmException;
 
+import org.geant.idpextension.oidc.storage.IntrospectionCache;
 import org.geant.idpextension.oidc.storage.RevocationCache;
 import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
 import org.geant.idpextension.oidc.token.support.AccessTokenClaimsSet;
@@ -35,6 +36,7 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
 import com.nimbusds.oauth2.sdk.TokenRevocationRequest;
 import com.nimbusds.oauth2.sdk.id.ClientID;
 import com.nimbusds.oauth2.sdk.token.BearerAccessToken;
@@ -131,6 +133,27 @@ public class RevokeTokenTest extends BaseTokenClaimsSetTest {
         Assert.assertTrue(revocationCache.isRevoked(RevocationCacheContexts.AUTHORIZATION_CODE, rfClaimsSet.getID()));
     }
 
+    @Test
+    public void testRevokeInvalidatesIntrospectionCache()
+            throws ComponentInitializationException, NoSuchAlgorithmException, DataSealerException, URISyntaxException {
+        init();
+        IntrospectionCache introspectionCache = new IntrospectionCache();
+        introspectionCache.setId("test");
+        introspectionCache.initialize();
+        action = new RevokeToken(sealer);
+        action.setRevocationCache(revocationCache);
+        action.setIntrospectionCache(introspectionCache);
+        action.initialize();
+        String token = revokeAccessToken.getToken().getValue();
+        introspectionCache.put(token, atClaimsSet.getID(), new TokenIntrospectionSuccessResponse.Builder(true).build(),
+                atClaimsSet.getClaimsSet().getExpirationTime(), introspectionCache.getGeneration());
+        Assert.assertNotNull(introspectionCache.get(token));
+        RequestContext requestContext =
+                new RequestContextBuilder().setInboundMessage(revokeAccessToken).buildRequestContext();
+        ActionTestingSupport.assertProceedEvent(action.execute(requestContext));
+        Assert.assertNull(introspectionCache.get(token));
+    }
+
     @Test
     public void testRevokeSomeUnknownToken()
             throws ComponentInitializationException, NoSuchAlgorithmException, DataSealerException, URISyntaxException {
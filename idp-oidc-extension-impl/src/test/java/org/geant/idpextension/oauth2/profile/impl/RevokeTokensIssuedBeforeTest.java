@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.profile.impl;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Date;
+
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2IssuedBeforeRevocationRequest;
+import org.geant.idpextension.oidc.storage.RevocationCache;
+import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
+import org.opensaml.profile.action.EventIds;
+import org.opensaml.storage.impl.MemoryStorageService;
+import org.springframework.webflow.execution.Event;
+import org.springframework.webflow.execution.RequestContext;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.oauth2.sdk.auth.ClientSecretBasic;
+import com.nimbusds.oauth2.sdk.auth.Secret;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+
+import net.shibboleth.idp.profile.ActionTestingSupport;
+import net.shibboleth.idp.profile.RequestContextBuilder;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.logic.ConstraintViolationException;
+
+/**
+ * Tests for {@link RevokeTokensIssuedBefore}.
+ */
+public class RevokeTokensIssuedBeforeTest {
+
+    private RevokeTokensIssuedBefore action;
+
+    private MemoryStorageService storageService;
+
+    private RevocationCache revocationCache;
+
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        storageService = new MemoryStorageService();
+        storageService.setId("test");
+        storageService.initialize();
+
+        revocationCache = new RevocationCache();
+        revocationCache.setStorage(storageService);
+        revocationCache.setIssuedBeforeRevocationEnabled(true);
+        revocationCache.initialize();
+
+        action = new RevokeTokensIssuedBefore();
+        action.setRevocationCache(revocationCache);
+        action.initialize();
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        revocationCache.destroy();
+        storageService.destroy();
+    }
+
+    private RequestContext buildRequestContext(String principal, String clientId) throws URISyntaxException {
+        OAuth2IssuedBeforeRevocationRequest request = new OAuth2IssuedBeforeRevocationRequest(
+                new URI("https://example.com"), new ClientSecretBasic(new ClientID("admin"), new Secret("secret")),
+                principal, clientId);
+        return new RequestContextBuilder().setInboundMessage(request).buildRequestContext();
+    }
+
+    @Test
+    public void testRevokePrincipal() throws URISyntaxException {
+        final Date before = new Date(System.currentTimeMillis() - 1000);
+        ActionTestingSupport.assertProceedEvent(action.execute(buildRequestContext("user", null)));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user", before));
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user",
+                new Date(System.currentTimeMillis() + 1000)));
+        Assert.assertFalse(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.CLIENT, "user", before));
+    }
+
+    @Test
+    public void testRevokePrincipalAndClient() throws URISyntaxException {
+        final Date before = new Date(System.currentTimeMillis() - 1000);
+        ActionTestingSupport.assertProceedEvent(action.execute(buildRequestContext("user", "client")));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.PRINCIPAL, "user", before));
+        Assert.assertTrue(revocationCache.isRevokedIssuedBefore(RevocationCacheContexts.CLIENT, "client", before));
+    }
+
+    @Test
+    public void testRevocationFailure() throws URISyntaxException, ComponentInitializationException {
+        RevocationCache failingCache = new RevocationCache() {
+
+            @Override
+            public boolean revokeIssuedBefore(String context, String s, Date issuedBefore) {
+                return false;
+            }
+        };
+        failingCache.setStorage(storageService);
+        failingCache.initialize();
+        action = new RevokeTokensIssuedBefore();
+        action.setRevocationCache(failingCache);
+        action.initialize();
+        final Event event = action.execute(buildRequestContext("user", "client"));
+        ActionTestingSupport.assertEvent(event, EventIds.IO_ERROR);
+    }
+
+    @Test(expectedExceptions = ConstraintViolationException.class)
+    public void testNoRevocationCache() throws ComponentInitializationException {
+        action = new RevokeTokensIssuedBefore();
+        action.initialize();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oauth2.profile.impl;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2BatchTokenRequest;
+import org.geant.idpextension.oidc.storage.IntrospectionCache;
+import org.geant.idpextension.oidc.storage.RevocationCache;
+import org.geant.idpextension.oidc.storage.RevocationCacheContexts;
+import org.geant.idpextension.oidc.token.support.AccessTokenClaimsSet;
+import org.geant.idpextension.oidc.token.support.AuthorizeCodeClaimsSet;
+import org.geant.idpextension.oidc.token.support.BaseTokenClaimsSetTest;
+import org.geant.idpextension.oidc.token.support.RefreshTokenClaimsSet;
+import org.opensaml.storage.impl.MemoryStorageService;
+import org.springframework.webflow.execution.RequestContext;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.oauth2.sdk.TokenIntrospectionSuccessResponse;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+
+import net.shibboleth.idp.profile.ActionTestingSupport;
+import net.shibboleth.idp.profile.RequestContextBuilder;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.security.DataSealerException;
+import net.shibboleth.utilities.java.support.security.SecureRandomIdentifierGenerationStrategy;
+
+/**
+ * Tests for {@link RevokeTokens}.
+ */
+public class RevokeTokensTest extends BaseTokenClaimsSetTest {
+
+    private RevokeTokens action;
+
+    private MemoryStorageService storageService;
+
+    private RevocationCache revocationCache;
+
+    private IntrospectionCache introspectionCache;
+
+    private AccessTokenClaimsSet atClaimsSet;
+
+    private RefreshTokenClaimsSet rfClaimsSet;
+
+    private AccessTokenClaimsSet otherAtClaimsSet;
+
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        storageService = new MemoryStorageService();
+        storageService.setId("test");
+        storageService.initialize();
+
+        revocationCache = new RevocationCache();
+        revocationCache.setEntryExpiration(500);
+        revocationCache.setStorage(storageService);
+        revocationCache.initialize();
+
+        introspectionCache = new IntrospectionCache();
+        introspectionCache.setId("test");
+        introspectionCache.initialize();
+
+        AuthorizeCodeClaimsSet acClaimsSet =
+                new AuthorizeCodeClaimsSet.Builder(new SecureRandomIdentifierGenerationStrategy(), clientID, issuer,
+                        userPrincipal, subject, iat, exp, authTime, redirectURI, scope).build();
+        atClaimsSet = new AccessTokenClaimsSet(acClaimsSet, scope, dlClaims, dlClaimsUI, iat, exp);
+        rfClaimsSet = new RefreshTokenClaimsSet(acClaimsSet, iat, exp);
+        AuthorizeCodeClaimsSet otherAcClaimsSet =
+                new AuthorizeCodeClaimsSet.Builder(new SecureRandomIdentifierGenerationStrategy(), clientID, issuer,
+                        userPrincipal, subject, iat, exp, authTime, redirectURI, scope).build();
+        otherAtClaimsSet = new AccessTokenClaimsSet(otherAcClaimsSet, scope, dlClaims, dlClaimsUI, iat, exp);
+
+        action = new RevokeTokens(sealer);
+        action.setRevocationCache(revocationCache);
+        action.setIntrospectionCache(introspectionCache);
+        action.initialize();
+    }
+
+    @AfterMethod
+    protected void tearDown() {
+        introspectionCache.destroy();
+        revocationCache.destroy();
+        storageService.destroy();
+    }
+
+    @Test
+    public void testRevokeTokens() throws DataSealerException, URISyntaxException {
+        String accessToken = atClaimsSet.serialize(sealer);
+        introspectionCache.put(accessToken, atClaimsSet.getID(),
+                new TokenIntrospectionSuccessResponse.Builder(true).build(), exp, introspectionCache.getGeneration());
+        OAuth2BatchTokenRequest request = new OAuth2BatchTokenRequest(new URI("https://example.com"), new ClientID(),
+                Arrays.asList(accessToken, rfClaimsSet.serialize(sealer), "sometoken",
+                        otherAtClaimsSet.serialize(sealer)));
+        RequestContext requestContext = new RequestContextBuilder().setInboundMessage(request).buildRequestContext();
+        ActionTestingSupport.assertProceedEvent(action.execute(requestContext));
+        Assert.assertTrue(revocationCache.isRevoked(RevocationCacheContexts.AUTHORIZATION_CODE, atClaimsSet.getID()));
+        Assert.assertTrue(
+                revocationCache.isRevoked(RevocationCacheContexts.AUTHORIZATION_CODE, otherAtClaimsSet.getID()));
+        Assert.assertNull(introspectionCache.get(accessToken));
+    }
+
+    @Test
+    public void testRevokeUnknownTokens() throws URISyntaxException {
+        OAuth2BatchTokenRequest request = new OAuth2BatchTokenRequest(new URI("https://example.com"), new ClientID(),
+                Arrays.asList("sometoken", "1at.sometoken"));
+        RequestContext requestContext = new RequestContextBuilder().setInboundMessage(request).buildRequestContext();
+        ActionTestingSupport.assertProceedEvent(action.execute(requestContext));
+    }
+
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void testNoRevocationCache() throws ComponentInitializationException {
+        action = new RevokeTokens(sealer);
+        action.initialize();
+    }
+}
@@ -16,14 +16,21 @@
 
 package org.geant.idpextension.oidc.decoding.impl;
 
+import java.net.URI;
+
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore;
 import org.opensaml.messaging.context.MessageContext;
 import org.opensaml.messaging.decoder.MessageDecodingException;
+import org.opensaml.storage.impl.MemoryStorageService;
 import org.springframework.mock.web.MockHttpServletRequest;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.nimbusds.oauth2.sdk.ResponseType;
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.oauth2.sdk.id.State;
 import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
 
 /**
@@ -64,4 +71,46 @@ public class OIDCAuthenticationRequestDecoderTest {
 				.setQueryString("client_id=s6BhdRkqt3&redirect_uri=https%3A%2F%2Fclient.example.org%2Fcb&scope=openid%20profile&state=af0ifjsldkj&nonce=n-0S6_WzA2Mj");
 		decoder.decode();
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testPushedRequestDecoding() throws Exception {
+		final MemoryStorageService storageService = new MemoryStorageService();
+		storageService.setId("test");
+		storageService.initialize();
+		final PushedAuthorizationRequestStore store = new PushedAuthorizationRequestStore();
+		store.setStorage(storageService);
+		store.initialize();
+		final AuthenticationRequest pushed = new AuthenticationRequest.Builder(new ResponseType("code"),
+				new Scope("openid"), new ClientID("s6BhdRkqt3"), URI.create("https://client.example.org/cb"))
+						.state(new State("af0ifjsldkj")).build();
+		final URI requestUri = store.store(pushed.getClientID(), pushed, null);
+		decoder = new OIDCAuthenticationRequestDecoder();
+		decoder.setHttpServletRequest(httpRequest);
+		decoder.setRequestStore(store);
+		decoder.initialize();
+		httpRequest.setQueryString("client_id=s6BhdRkqt3&request_uri=" + requestUri.toString());
+		decoder.decode();
+		final AuthenticationRequest message = decoder.getMessageContext().getMessage();
+		Assert.assertEquals(message.getState().getValue(), "af0ifjsldkj");
+		Assert.assertEquals(message.getRequestURI(), requestUri);
+		// Decoding does not consume the pushed request
+		Assert.assertNotNull(store.get(requestUri, pushed.getClientID()));
+	}
+
+	@Test(expectedExceptions = MessageDecodingException.class)
+	public void testUnknownPushedRequestDecoding() throws Exception {
+		final MemoryStorageService storageService = new MemoryStorageService();
+		storageService.setId("test");
+		storageService.initialize();
+		final PushedAuthorizationRequestStore store = new PushedAuthorizationRequestStore();
+		store.setStorage(storageService);
+		store.initialize();
+		decoder = new OIDCAuthenticationRequestDecoder();
+		decoder.setHttpServletRequest(httpRequest);
+		decoder.setRequestStore(store);
+		decoder.initialize();
+		httpRequest.setQueryString(
+				"client_id=s6BhdRkqt3&request_uri=" + PushedAuthorizationRequestStore.REQUEST_URI_PREFIX + "abc");
+		decoder.decode();
+	}
+}
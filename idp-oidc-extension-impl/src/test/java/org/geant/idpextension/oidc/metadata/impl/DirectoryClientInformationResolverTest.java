@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.geant.idpextension.oidc.criterion.ClientIDCriterion;
+import org.geant.idpextension.oidc.metadata.resolver.EntityChangeListener;
+import org.geant.idpextension.oidc.metadata.resolver.EntityChangeSet;
+import org.springframework.core.io.FileSystemResource;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
+
+import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+
+/**
+ * Unit tests for {@link DirectoryClientInformationResolver}.
+ */
+public class DirectoryClientInformationResolverTest {
+
+    private Path directory;
+
+    private DirectoryClientInformationResolver resolver;
+
+    private List<EntityChangeSet<ClientID>> changes;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("oidc-clients");
+        writeFile("a.json", "{\"client_id\":\"demo_rp\",\"redirect_uris\":[\"https://192.168.0.150/static\"]}");
+        writeFile("b.json", "[{\"client_id\":\"demo_rp2\",\"redirect_uris\":[\"https://192.168.0.150/static2\"]},"
+                + "{\"client_id\":\"demo_rp3\",\"redirect_uris\":[\"https://192.168.0.150/static3\"]}]");
+        writeFile("c.txt", "not a client");
+        resolver = new DirectoryClientInformationResolver(new FileSystemResource(directory.toFile()));
+        resolver.setId("mockId");
+        resolver.setLoadParallelism(2);
+        changes = new CopyOnWriteArrayList<>();
+        resolver.setChangeListeners(Collections.singletonList(new EntityChangeListener<ClientID>() {
+
+            @Override
+            public void onChange(final EntityChangeSet<ClientID> changeSet) {
+                changes.add(changeSet);
+            }
+        }));
+        resolver.initialize();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        resolver.destroy();
+        for (final File file : directory.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testInitialLoad() throws Exception {
+        Assert.assertNotNull(resolver.getLastUpdate());
+        Assert.assertEquals(resolver.getLastChangeSet().getAdded().size(), 3);
+        Assert.assertNotNull(resolve("demo_rp"));
+        Assert.assertNotNull(resolve("demo_rp2"));
+        Assert.assertNotNull(resolve("demo_rp3"));
+        Assert.assertNull(resolve("not_found"));
+    }
+
+    @Test
+    public void testUnchanged() throws Exception {
+        final EntityChangeSet<ClientID> changeSet = resolver.getLastChangeSet();
+        resolver.refresh();
+        Assert.assertSame(resolver.getLastChangeSet(), changeSet);
+    }
+
+    @Test
+    public void testChangedFiles() throws Exception {
+        final OIDCClientInformation untouched = resolve("demo_rp2");
+        writeFile("a.json", "{\"client_id\":\"demo_rp\",\"redirect_uris\":[\"https://192.168.0.150/updated\"]}");
+        writeFile("d.json", "{\"client_id\":\"demo_rp4\",\"redirect_uris\":[\"https://192.168.0.150/static4\"]}");
+        final EntityChangeSet<ClientID> changeSet = awaitChanges(2);
+        Assert.assertTrue(changeSet.getAdded().contains(new ClientID("demo_rp4")));
+        Assert.assertTrue(changeSet.getUpdated().contains(new ClientID("demo_rp")));
+        Assert.assertFalse(changeSet.getUpdated().contains(new ClientID("demo_rp2")));
+        Assert.assertEquals(resolve("demo_rp").getOIDCMetadata().getRedirectionURI().toString(),
+                "https://192.168.0.150/updated");
+        Assert.assertSame(resolve("demo_rp2"), untouched);
+    }
+
+    @Test
+    public void testRemovedFile() throws Exception {
+        Files.delete(directory.resolve("b.json"));
+        final EntityChangeSet<ClientID> changeSet = awaitChanges(2);
+        Assert.assertEquals(changeSet.getRemoved().size(), 2);
+        Assert.assertNull(resolve("demo_rp2"));
+        Assert.assertNotNull(resolve("demo_rp"));
+    }
+
+    @Test
+    public void testChangedFilesWithoutWatch() throws Exception {
+        final DirectoryClientInformationResolver timerResolver = new DirectoryClientInformationResolver(
+                new Timer(true), new FileSystemResource(directory.toFile()));
+        timerResolver.setId("mockTimerId");
+        timerResolver.initialize();
+        try {
+            writeFile("d.json", "{\"client_id\":\"demo_rp4\",\"redirect_uris\":[\"https://192.168.0.150/static4\"]}");
+            Files.delete(directory.resolve("a.json"));
+            timerResolver.refresh();
+            final EntityChangeSet<ClientID> changeSet = timerResolver.getLastChangeSet();
+            Assert.assertEquals(changeSet.getAdded(), Collections.singleton(new ClientID("demo_rp4")));
+            Assert.assertEquals(changeSet.getRemoved(), Collections.singleton(new ClientID("demo_rp")));
+            Assert.assertTrue(changeSet.getUpdated().isEmpty());
+        } finally {
+            timerResolver.destroy();
+        }
+    }
+
+    @Test
+    public void testInvalidFileKeepsPrevious() throws Exception {
+        writeFile("a.json", "{\"client_id\":");
+        writeFile("d.json", "{\"client_id\":\"demo_rp4\",\"redirect_uris\":[\"https://192.168.0.150/static4\"]}");
+        awaitChanges(1);
+        Assert.assertNotNull(resolve("demo_rp"));
+        Assert.assertNotNull(resolve("demo_rp4"));
+    }
+
+    @Test
+    public void testInvalidFileParsedAgain() throws Exception {
+        final String valid = "{\"client_id\":\"demo_rp\",\"redirect_uris\":[\"https://192.168.0.150/fixed\"]}";
+        final FileTime modified = FileTime.fromMillis(System.currentTimeMillis() - 60000);
+        // Read while being written: the same size and modification time as the complete file
+        writeFile("a.json", "x" + valid.substring(1));
+        Files.setLastModifiedTime(directory.resolve("a.json"), modified);
+        final EntityChangeSet<ClientID> changeSet = resolver.getLastChangeSet();
+        resolver.refresh();
+        Assert.assertSame(resolver.getLastChangeSet(), changeSet);
+        writeFile("a.json", valid);
+        Files.setLastModifiedTime(directory.resolve("a.json"), modified);
+        resolver.refresh();
+        Assert.assertEquals(resolve("demo_rp").getOIDCMetadata().getRedirectionURI().toString(),
+                "https://192.168.0.150/fixed");
+    }
+
+    private OIDCClientInformation resolve(final String clientId) throws Exception {
+        return resolver.resolveSingle(new CriteriaSet(new ClientIDCriterion(new ClientID(clientId))));
+    }
+
+    private void writeFile(final String fileName, final String contents) throws IOException {
+        Files.write(directory.resolve(fileName), contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Refreshes the resolver until the expected number of changed clients has been reported since the initial load,
+     * and merges the reported change sets.
+     */
+    private EntityChangeSet<ClientID> awaitChanges(final int expected) throws Exception {
+        final long deadline = System.currentTimeMillis() + 30000;
+        int changed = 0;
+        while (System.currentTimeMillis() < deadline) {
+            resolver.refresh();
+            final Set<ClientID> added = new HashSet<>();
+            final Set<ClientID> updated = new HashSet<>();
+            final Set<ClientID> removed = new HashSet<>();
+            for (final EntityChangeSet<ClientID> changeSet : changes.subList(1, changes.size())) {
+                added.addAll(changeSet.getAdded());
+                updated.addAll(changeSet.getUpdated());
+                removed.addAll(changeSet.getRemoved());
+            }
+            changed = added.size() + updated.size() + removed.size();
+            if (changed >= expected) {
+                return new EntityChangeSet<>("mockId", added, updated, removed);
+            }
+            Thread.sleep(100);
+        }
+        Assert.fail("Expected " + expected + " changed clients, got " + changed);
+        return null;
+    }
+}
@@ -17,11 +17,20 @@
 package org.geant.idpextension.oidc.metadata.impl;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import org.geant.idpextension.oidc.criterion.ClientIDCriterion;
+import org.geant.idpextension.oidc.metadata.resolver.EntityChangeListener;
+import org.geant.idpextension.oidc.metadata.resolver.EntityChangeSet;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
 import org.testng.Assert;
 import org.testng.annotations.Test;
@@ -35,6 +44,7 @@ import com.nimbusds.openid.connect.sdk.OIDCScopeValue;
 import com.nimbusds.openid.connect.sdk.rp.OIDCClientInformation;
 
 import net.shibboleth.utilities.java.support.resolver.CriteriaSet;
+import net.shibboleth.utilities.java.support.resolver.ResolverException;
 
 /**
  * Unit tests for {@link FilesystemClientInformationResolver}.
@@ -99,6 +109,124 @@ public class FilesystemClientInformationResolverTest {
         Assert.assertTrue(responseTypes.contains(new ResponseType(OIDCResponseTypeValue.ID_TOKEN)));
     }
 
+    @Test
+    public void testArrayInvalidEntriesSkipped() throws Exception {
+        initTest("/org/geant/idpextension/oidc/metadata/impl/oidc-clients-invalid.json");
+        Assert.assertNotNull(resolver.resolveSingle(new CriteriaSet(new ClientIDCriterion(new ClientID(clientId)))));
+        Assert.assertNotNull(resolver.resolveSingle(new CriteriaSet(new ClientIDCriterion(new ClientID(clientId2)))));
+        int count = 0;
+        for (final OIDCClientInformation information : resolver.resolve(new CriteriaSet())) {
+            Assert.assertNotNull(information);
+            count++;
+        }
+        Assert.assertEquals(count, 2);
+    }
+
+    @Test
+    public void testArrayInvalidEntryFails() throws Exception {
+        resolver = new FilesystemClientInformationResolver(
+                new ClassPathResource("/org/geant/idpextension/oidc/metadata/impl/oidc-clients-invalid.json"));
+        resolver.setId("mockId");
+        resolver.setFailOnInvalidEntry(true);
+        resolver.initialize();
+        Assert.assertNull(resolver.getLastUpdate());
+        try {
+            resolver.refresh();
+            Assert.fail("Invalid entry should have failed the refresh");
+        } catch (ResolverException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testIncrementalRefresh() throws Exception {
+        final File file = File.createTempFile("oidc-clients", ".json");
+        file.deleteOnExit();
+        final String client1 = "{\"client_id\":\"demo_rp\",\"redirect_uris\":[\"https://192.168.0.150/static\"]}";
+        final String client2 = "{\"client_id\":\"demo_rp2\",\"redirect_uris\":[\"https://192.168.0.150/static2\"]}";
+        writeFile(file, "[" + client1 + "," + client2 + "]", System.currentTimeMillis() - 60000);
+        final List<EntityChangeSet<ClientID>> changes = new ArrayList<>();
+        resolver = new FilesystemClientInformationResolver(new FileSystemResource(file));
+        resolver.setId("mockId");
+        resolver.setIncrementalRefresh(true);
+        // refreshed explicitly below, not by the change notifications
+        resolver.setChangeNotificationDelay(3600000);
+        resolver.setChangeListeners(Collections.singletonList(new EntityChangeListener<ClientID>() {
+
+            @Override
+            public void onChange(final EntityChangeSet<ClientID> changeSet) {
+                changes.add(changeSet);
+            }
+        }));
+        resolver.initialize();
+        Assert.assertEquals(changes.size(), 1);
+        Assert.assertEquals(changes.get(0).getSource(), "mockId");
+        Assert.assertEquals(changes.get(0).getAdded().size(), 2);
+        final OIDCClientInformation unchanged =
+                resolver.resolveSingle(new CriteriaSet(new ClientIDCriterion(new ClientID(clientId))));
+        Assert.assertNotNull(unchanged);
+
+        final String client2Updated =
+                "{\"client_id\":\"demo_rp2\",\"redirect_uris\":[\"https://192.168.0.150/updated\"]}";
+        final String client3 = "{\"client_id\":\"demo_rp3\",\"redirect_uris\":[\"https://192.168.0.150/static3\"]}";
+        writeFile(file, "[" + client1 + "," + client2Updated + "," + client3 + "]", System.currentTimeMillis() + 60000);
+        resolver.refresh();
+        Assert.assertEquals(changes.size(), 2);
+        final EntityChangeSet<ClientID> changeSet = resolver.getLastChangeSet();
+        Assert.assertSame(changes.get(1), changeSet);
+        Assert.assertEquals(changeSet.getAdded(), Collections.singleton(new ClientID("demo_rp3")));
+        Assert.assertEquals(changeSet.getUpdated(), Collections.singleton(new ClientID(clientId2)));
+        Assert.assertTrue(changeSet.getRemoved().isEmpty());
+        Assert.assertSame(resolver.resolveSingle(new CriteriaSet(new ClientIDCriterion(new ClientID(clientId)))),
+                unchanged);
+
+        writeFile(file, "[" + client3 + "]", System.currentTimeMillis() + 120000);
+        resolver.refresh();
+        Assert.assertEquals(resolver.getLastChangeSet().getRemoved().size(), 2);
+        Assert.assertTrue(resolver.getLastChangeSet().getRemoved().contains(new ClientID(clientId)));
+        Assert.assertTrue(resolver.getLastChangeSet().getAdded().isEmpty());
+        Assert.assertTrue(resolver.getLastChangeSet().getUpdated().isEmpty());
+        Assert.assertNull(resolver.resolveSingle(new CriteriaSet(new ClientIDCriterion(new ClientID(clientId)))));
+        resolver.destroy();
+    }
+
+    @Test
+    public void testFrozenLookups() throws Exception {
+        final File file = File.createTempFile("oidc-clients", ".json");
+        file.deleteOnExit();
+        final StringBuilder clients = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            clients.append(i == 0 ? "" : ",").append("{\"client_id\":\"client").append(i)
+                    .append("\",\"redirect_uris\":[\"https://192.168.0.150/static\"]}");
+        }
+        writeFile(file, clients.append("]").toString(), System.currentTimeMillis() - 60000);
+        resolver = new FilesystemClientInformationResolver(new FileSystemResource(file));
+        resolver.setId("mockId");
+        resolver.initialize();
+        for (int i = 0; i < 1000; i++) {
+            final OIDCClientInformation information =
+                    resolver.resolveSingle(new CriteriaSet(new ClientIDCriterion(new ClientID("client" + i))));
+            Assert.assertEquals(information.getID().getValue(), "client" + i);
+        }
+        Assert.assertNull(resolver.resolveSingle(new CriteriaSet(new ClientIDCriterion(new ClientID("client1000")))));
+        final CriteriaSet criteria = new CriteriaSet(new ClientIDCriterion(new ClientID("client1")));
+        final Iterable<OIDCClientInformation> resolved = resolver.resolve(criteria);
+        Assert.assertSame(resolver.resolve(criteria), resolved);
+        try {
+            ((List<OIDCClientInformation>) resolved).clear();
+            Assert.fail("Resolved client informations should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        resolver.destroy();
+    }
+
+    protected static void writeFile(final File file, final String contents, final long lastModified)
+            throws IOException {
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        Assert.assertTrue(file.setLastModified(lastModified));
+    }
+
     protected static void testScope(final Scope scope) {
         Assert.assertEquals(scope.size(), 6);
         Assert.assertTrue(scope.contains(OIDCScopeValue.OPENID));
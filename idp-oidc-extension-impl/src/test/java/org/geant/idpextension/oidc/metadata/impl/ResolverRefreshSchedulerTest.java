@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link ResolverRefreshScheduler}.
+ */
+public class ResolverRefreshSchedulerTest {
+
+    private ResolverRefreshScheduler scheduler;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        scheduler = new ResolverRefreshScheduler();
+        scheduler.setId("mockId");
+        scheduler.setPoolSize(1);
+        scheduler.setJitter(0.5);
+        scheduler.initialize();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Test
+    public void testSchedule() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Runnable task = new Runnable() {
+
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        };
+        Assert.assertNotNull(scheduler.schedule(task, 0));
+        Assert.assertNotNull(scheduler.schedule(task, 100));
+        Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidJitter() {
+        new ResolverRefreshScheduler().setJitter(1);
+    }
+
+    @Test
+    public void testDestroyed() throws Exception {
+        scheduler.destroy();
+        Assert.assertNotSame(ResolverRefreshScheduler.getDefault(), scheduler);
+        Assert.assertSame(ResolverRefreshScheduler.getDefault(), ResolverRefreshScheduler.getDefault());
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        final Path directory = Files.createTempDirectory("oidc-watch");
+        final Path file = directory.resolve("client.json");
+        final Path other = directory.resolve("other.json");
+        Files.write(file, "{}".getBytes(StandardCharsets.UTF_8));
+        final CountDownLatch fileLatch = new CountDownLatch(1);
+        final CountDownLatch directoryLatch = new CountDownLatch(1);
+        scheduler.watch(file, new Runnable() {
+
+            @Override
+            public void run() {
+                fileLatch.countDown();
+            }
+        });
+        scheduler.watch(directory, new Runnable() {
+
+            @Override
+            public void run() {
+                directoryLatch.countDown();
+            }
+        });
+        try {
+            Files.write(other, "{}".getBytes(StandardCharsets.UTF_8));
+            Assert.assertTrue(directoryLatch.await(30, TimeUnit.SECONDS));
+            Files.write(file, "{\"a\":1}".getBytes(StandardCharsets.UTF_8));
+            Assert.assertTrue(fileLatch.await(30, TimeUnit.SECONDS));
+        } finally {
+            Files.delete(file);
+            Files.delete(other);
+            Files.delete(directory);
+        }
+    }
+}
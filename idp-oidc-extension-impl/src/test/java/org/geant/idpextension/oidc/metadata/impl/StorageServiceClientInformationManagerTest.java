@@ -107,6 +107,37 @@ public class StorageServiceClientInformationManagerTest {
         Assert.assertNull(delayedResult);
     }
     
+    @Test
+    public void testParsedCache() throws Exception {
+        manager.storeClientInformation(initializeInformation(), null);
+        final CriteriaSet criteria = initializeCriteria();
+        final OIDCClientInformation result = resolver.resolveSingle(criteria);
+        Assert.assertNotNull(result);
+        Assert.assertSame(resolver.resolveSingle(criteria), result);
+        
+        manager.destroyClientInformation(new ClientID(clientIdValue));
+        final OIDCClientInformation updatedInformation = initializeInformation();
+        updatedInformation.getOIDCMetadata().setName("updated");
+        manager.storeClientInformation(updatedInformation, null);
+        final OIDCClientInformation updatedResult = resolver.resolveSingle(criteria);
+        Assert.assertNotSame(updatedResult, result);
+        Assert.assertEquals(updatedResult.getOIDCMetadata().getName(), "updated");
+    }
+
+    @Test
+    public void testParsedCacheDisabled() throws Exception {
+        resolver = new StorageServiceClientInformationResolver();
+        resolver.setStorageService(storageService);
+        resolver.setId("mockId");
+        resolver.setClientInformationCacheSize(0);
+        resolver.initialize();
+        manager.storeClientInformation(initializeInformation(), null);
+        final CriteriaSet criteria = initializeCriteria();
+        final OIDCClientInformation result = resolver.resolveSingle(criteria);
+        Assert.assertNotNull(result);
+        Assert.assertNotSame(resolver.resolveSingle(criteria), result);
+    }
+
     protected OIDCClientInformation initializeInformation() {
         final ClientID clientId = new ClientID(clientIdValue);
         final OIDCClientMetadata metadata = new OIDCClientMetadata();
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.metadata.impl;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.oauth2.sdk.ParseException;
+
+import net.minidev.json.JSONObject;
+
+/**
+ * Unit tests for {@link StreamingJsonEntityReader}.
+ */
+public class StreamingJsonEntityReaderTest {
+
+    private List<JSONObject> entries;
+
+    private StreamingJsonEntityReader.EntryHandler handler;
+
+    @BeforeMethod
+    public void setUp() {
+        entries = new ArrayList<>();
+        handler = new StreamingJsonEntityReader.EntryHandler() {
+
+            @Override
+            public void handle(final String entry) throws ParseException {
+                final JSONObject json = StreamingJsonEntityReader.toJSONObject(entry);
+                if (!json.containsKey("id")) {
+                    throw new ParseException("No id");
+                }
+                entries.add(json);
+            }
+        };
+    }
+
+    @Test
+    public void testSingleObject() throws ParseException, IOException {
+        Assert.assertEquals(StreamingJsonEntityReader.read(new StringReader(" {\"id\":\"a\",\"n\":1} "), handler,
+                false), 0);
+        Assert.assertEquals(entries.size(), 1);
+        Assert.assertEquals(entries.get(0).get("id"), "a");
+    }
+
+    @Test
+    public void testArray() throws ParseException, IOException {
+        Assert.assertEquals(StreamingJsonEntityReader.read(
+                new StringReader("[{\"id\":\"a\"}, {\"id\":\"b\",\"list\":[1,2]}]"), handler, false), 0);
+        Assert.assertEquals(entries.size(), 2);
+        Assert.assertEquals(entries.get(1).get("id"), "b");
+    }
+
+    @Test
+    public void testEmptyArray() throws ParseException, IOException {
+        Assert.assertEquals(StreamingJsonEntityReader.read(new StringReader("[]"), handler, false), 0);
+        Assert.assertTrue(entries.isEmpty());
+    }
+
+    @Test
+    public void testInvalidEntriesSkipped() throws ParseException, IOException {
+        Assert.assertEquals(StreamingJsonEntityReader.read(
+                new StringReader("[{\"id\":\"a\"}, {\"noid\":\"b\"}, \"c\", 1, {\"id\":\"d\"}]"), handler, false), 3);
+        Assert.assertEquals(entries.size(), 2);
+        Assert.assertEquals(entries.get(1).get("id"), "d");
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testInvalidEntryFails() throws ParseException, IOException {
+        StreamingJsonEntityReader.read(new StringReader("[{\"id\":\"a\"}, {\"noid\":\"b\"}]"), handler, true);
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testInvalidSingleObject() throws ParseException, IOException {
+        StreamingJsonEntityReader.read(new StringReader("{\"noid\":\"b\"}"), handler, false);
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testNotObjectOrArray() throws ParseException, IOException {
+        StreamingJsonEntityReader.read(new StringReader("\"string\""), handler, false);
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testTrailingContent() throws ParseException, IOException {
+        StreamingJsonEntityReader.read(new StringReader("[{\"id\":\"a\"}] {\"id\":\"b\"}"), handler, false);
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testSyntaxError() throws ParseException, IOException {
+        StreamingJsonEntityReader.read(new StringReader("[{\"id\":\"a\"}, {\"id\":"), handler, false);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.profile.flow;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.NoSuchAlgorithmException;
+
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2BatchIntrospectionSuccessResponse;
+import org.opensaml.storage.StorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.webflow.executor.FlowExecutionResult;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.TokenIntrospectionErrorResponse;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+import net.shibboleth.utilities.java.support.security.DataSealerException;
+
+/**
+ * Unit tests for the OAuth2 batch introspection flow.
+ */
+public class IntrospectionBatchFlowTest extends AbstractOidcApiFlowTest {
+
+    public static final String FLOW_ID = "oauth2/introspection-batch";
+
+    String clientId = "mockClientId";
+
+    String clientSecret = "mockClientSecret";
+
+    @Autowired
+    @Qualifier("shibboleth.StorageService")
+    StorageService storageService;
+
+    public IntrospectionBatchFlowTest() {
+        super(FLOW_ID);
+    }
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        removeMetadata(storageService, clientId);
+    }
+
+    protected void setTokens() throws NoSuchAlgorithmException, URISyntaxException, DataSealerException,
+            ComponentInitializationException {
+        setRequest("POST", "", "application/x-www-form-urlencoded");
+        request.addParameter("token",
+                super.buildToken(clientId, "sub", Scope.parse("openid")).toJSONObject().getAsString("access_token"));
+        request.addParameter("token", "unknowntoken");
+    }
+
+    @Test
+    public void testSuccess() throws IOException, NoSuchAlgorithmException, URISyntaxException, DataSealerException,
+            ComponentInitializationException {
+        storeMetadata(storageService, clientId, clientSecret);
+        setBasicAuth(clientId, clientSecret);
+        setTokens();
+        final FlowExecutionResult result = flowExecutor.launchExecution(FLOW_ID, null, externalContext);
+        OAuth2BatchIntrospectionSuccessResponse resp =
+                parseSuccessResponse(result, OAuth2BatchIntrospectionSuccessResponse.class);
+        Assert.assertEquals(resp.getResponses().size(), 2);
+        Assert.assertTrue(resp.getResponses().get(0).isActive());
+        Assert.assertEquals(resp.getResponses().get(0).getClientID().getValue(), clientId);
+        Assert.assertFalse(resp.getResponses().get(1).isActive());
+    }
+
+    @Test
+    public void testFailedAuthentication() throws IOException, NoSuchAlgorithmException, URISyntaxException,
+            DataSealerException, ComponentInitializationException {
+        storeMetadata(storageService, clientId, clientSecret);
+        setBasicAuth(clientId, clientSecret + "X");
+        setTokens();
+        final FlowExecutionResult result = flowExecutor.launchExecution(FLOW_ID, null, externalContext);
+        TokenIntrospectionErrorResponse resp = (TokenIntrospectionErrorResponse) parseErrorResponse(result);
+        Assert.assertEquals(resp.getErrorObject().getCode(), "invalid_client");
+    }
+}
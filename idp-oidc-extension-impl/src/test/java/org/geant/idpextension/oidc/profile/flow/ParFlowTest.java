@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.profile.flow;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.geant.idpextension.oidc.messaging.impl.OIDCPushedAuthorizationSuccessResponse;
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore;
+import org.opensaml.storage.StorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.webflow.executor.FlowExecutionResult;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the pushed authorization request flow.
+ */
+public class ParFlowTest extends AbstractOidcApiFlowTest {
+
+    public static final String FLOW_ID = "oidc/par";
+
+    String clientId = "mockClientId";
+    String clientSecret = "mockClientSecret";
+    String redirectUri = "https://example.org/cb";
+
+    @Autowired
+    @Qualifier("shibboleth.StorageService")
+    StorageService storageService;
+
+    public ParFlowTest() {
+        super(FLOW_ID);
+    }
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        removeMetadata(storageService, clientId);
+    }
+
+    protected Map<String, String> buildParameters() {
+        final Map<String, String> parameters = new HashMap<>();
+        parameters.put("response_type", "code");
+        parameters.put("client_id", clientId);
+        parameters.put("redirect_uri", redirectUri);
+        parameters.put("scope", "openid");
+        parameters.put("state", "mockState");
+        return parameters;
+    }
+
+    @Test
+    public void testUntrustedClient() throws IOException {
+        setBasicAuth(clientId, clientSecret);
+        setHttpFormRequest("POST", buildParameters());
+        final FlowExecutionResult result = flowExecutor.launchExecution(FLOW_ID, null, externalContext);
+        assertErrorCode(result, "invalid_request");
+        assertErrorDescriptionContains(result, "InvalidProfileConfiguration");
+    }
+
+    @Test
+    public void testInvalidSecret() throws IOException {
+        setBasicAuth(clientId, "invalidSecret");
+        setHttpFormRequest("POST", buildParameters());
+        storeMetadata(storageService, clientId, clientSecret, redirectUri);
+        final FlowExecutionResult result = flowExecutor.launchExecution(FLOW_ID, null, externalContext);
+        assertErrorCode(result, "invalid_request");
+        assertErrorDescriptionContains(result, "AccessDenied");
+    }
+
+    @Test
+    public void testInvalidRedirectUri() throws IOException {
+        setBasicAuth(clientId, clientSecret);
+        final Map<String, String> parameters = buildParameters();
+        parameters.put("redirect_uri", "https://example.org/invalid");
+        setHttpFormRequest("POST", parameters);
+        storeMetadata(storageService, clientId, clientSecret, redirectUri);
+        final FlowExecutionResult result = flowExecutor.launchExecution(FLOW_ID, null, externalContext);
+        assertErrorCode(result, "invalid_request");
+    }
+
+    @Test
+    public void testSuccess() throws IOException {
+        setBasicAuth(clientId, clientSecret);
+        setHttpFormRequest("POST", buildParameters());
+        storeMetadata(storageService, clientId, clientSecret, redirectUri);
+        final FlowExecutionResult result = flowExecutor.launchExecution(FLOW_ID, null, externalContext);
+        final OIDCPushedAuthorizationSuccessResponse response =
+                parseSuccessResponse(result, OIDCPushedAuthorizationSuccessResponse.class);
+        Assert.assertTrue(PushedAuthorizationRequestStore.isPushedRequestURI(response.getRequestURI()));
+        Assert.assertEquals(response.getExpiresIn(), 60);
+    }
+}
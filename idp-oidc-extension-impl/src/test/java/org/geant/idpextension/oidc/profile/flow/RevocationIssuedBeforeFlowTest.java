@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.profile.flow;
+
+import java.io.IOException;
+
+import org.geant.idpextension.oauth2.messaging.impl.OAuth2RevocationSuccessResponse;
+import org.opensaml.storage.StorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.webflow.executor.FlowExecutionResult;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for the flow revoking the tokens issued before the request.
+ */
+public class RevocationIssuedBeforeFlowTest extends AbstractOidcApiFlowTest {
+
+    public static final String FLOW_ID = "oauth2/revocation-issued-before";
+
+    String adminClientId = "mockAdminClientId";
+
+    String clientId = "mockClientId";
+
+    String clientSecret = "mockClientSecret";
+
+    @Autowired
+    @Qualifier("shibboleth.StorageService")
+    StorageService storageService;
+
+    public RevocationIssuedBeforeFlowTest() {
+        super(FLOW_ID);
+    }
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        removeMetadata(storageService, adminClientId);
+        removeMetadata(storageService, clientId);
+    }
+
+    @Test
+    public void testSuccess() throws IOException {
+        setBasicAuth(adminClientId, clientSecret);
+        setRequest("POST", "", "application/x-www-form-urlencoded");
+        request.addParameter("principal", "mockPrincipal");
+        request.addParameter("revoked_client_id", clientId);
+        storeMetadata(storageService, adminClientId, clientSecret);
+        final FlowExecutionResult result = flowExecutor.launchExecution(FLOW_ID, null, externalContext);
+        parseSuccessResponse(result, OAuth2RevocationSuccessResponse.class);
+    }
+
+    @Test
+    public void testNotEnabled() throws IOException {
+        setBasicAuth(clientId, clientSecret);
+        setRequest("POST", "", "application/x-www-form-urlencoded");
+        request.addParameter("principal", "mockPrincipal");
+        storeMetadata(storageService, clientId, clientSecret);
+        final FlowExecutionResult result = flowExecutor.launchExecution(FLOW_ID, null, externalContext);
+        assertErrorCode(result, "unauthorized_client");
+    }
+
+    @Test
+    public void testMissingParameters() throws IOException {
+        setBasicAuth(adminClientId, clientSecret);
+        setRequest("POST", "", "application/x-www-form-urlencoded");
+        storeMetadata(storageService, adminClientId, clientSecret);
+        final FlowExecutionResult result = flowExecutor.launchExecution(FLOW_ID, null, externalContext);
+        assertErrorCode(result, "invalid_request");
+    }
+}
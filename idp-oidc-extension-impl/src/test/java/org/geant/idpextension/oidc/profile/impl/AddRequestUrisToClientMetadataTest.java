@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.profile.impl;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.geant.idpextension.oidc.metadata.resolver.RemoteRequestObjectCache;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.openid.connect.sdk.rp.OIDCClientMetadata;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+/**
+ * Unit tests for {@link AddRequestUrisToClientMetadata}.
+ */
+public class AddRequestUrisToClientMetadataTest extends BaseOIDCClientMetadataPopulationTest {
+
+    AddRequestUrisToClientMetadata action;
+
+    RemoteRequestObjectCache requestObjectCache;
+
+    @BeforeMethod
+    public void setUp() throws ComponentInitializationException {
+        requestObjectCache = Mockito.mock(RemoteRequestObjectCache.class);
+        action = new AddRequestUrisToClientMetadata();
+        action.setRequestObjectCache(requestObjectCache);
+        action.initialize();
+    }
+
+    @Override
+    protected AbstractOIDCClientMetadataPopulationAction constructAction() {
+        return new AddRequestUrisToClientMetadata();
+    }
+
+    @Test
+    public void testNull() throws ComponentInitializationException {
+        OIDCClientMetadata result = new OIDCClientMetadata();
+        setUpContext(new OIDCClientMetadata(), result);
+        Assert.assertNull(action.execute(requestCtx));
+        Assert.assertNull(result.getRequestObjectURIs());
+        Mockito.verify(requestObjectCache, Mockito.never()).prefetch((URI) Mockito.any());
+    }
+
+    @Test
+    public void testSuccess() throws ComponentInitializationException, URISyntaxException {
+        OIDCClientMetadata request = new OIDCClientMetadata();
+        Set<URI> uris = new HashSet<>();
+        URI uri = new URI("https://client.example.org/request#abc");
+        uris.add(uri);
+        request.setRequestObjectURIs(uris);
+        OIDCClientMetadata result = new OIDCClientMetadata();
+        setUpContext(request, result);
+        Assert.assertNull(action.execute(requestCtx));
+        Assert.assertEquals(result.getRequestObjectURIs(), uris);
+        Mockito.verify(requestObjectCache).prefetch(uri);
+    }
+
+    @Test
+    public void testNoCache() throws ComponentInitializationException, URISyntaxException {
+        action = new AddRequestUrisToClientMetadata();
+        action.initialize();
+        OIDCClientMetadata request = new OIDCClientMetadata();
+        Set<URI> uris = new HashSet<>();
+        uris.add(new URI("https://client.example.org/request"));
+        request.setRequestObjectURIs(uris);
+        OIDCClientMetadata result = new OIDCClientMetadata();
+        setUpContext(request, result);
+        Assert.assertNull(action.execute(requestCtx));
+        Assert.assertEquals(result.getRequestObjectURIs(), uris);
+    }
+}
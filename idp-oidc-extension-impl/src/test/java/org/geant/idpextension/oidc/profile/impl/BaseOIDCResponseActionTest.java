@@ -248,6 +248,18 @@ public abstract class BaseOIDCResponseActionTest {
             return isRevoked;
         }
 
+        @Override
+        public boolean revokeIssuedBefore(@Nonnull @NotEmpty final String context, @Nonnull @NotEmpty final String s,
+                @Nonnull final Date issuedBefore) {
+            return revoke;
+        }
+
+        @Override
+        public boolean isRevokedIssuedBefore(@Nonnull @NotEmpty final String context,
+                @Nonnull @NotEmpty final String s, @Nonnull final Date issuedAt) {
+            return isRevoked;
+        }
+
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.profile.impl;
+
+import org.geant.idpextension.oidc.messaging.impl.OIDCPushedAuthorizationSuccessResponse;
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore;
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore.PushedRequest;
+import org.opensaml.storage.impl.MemoryStorageService;
+import org.springframework.webflow.execution.Event;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.PlainJWT;
+
+import net.shibboleth.idp.profile.ActionTestingSupport;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+/** {@link StorePushedAuthorizationRequest} unit test. */
+public class StorePushedAuthorizationRequestTest extends BaseOIDCResponseActionTest {
+
+    private StorePushedAuthorizationRequest action;
+
+    private PushedAuthorizationRequestStore store;
+
+    @BeforeMethod
+    private void init() throws ComponentInitializationException {
+        final MemoryStorageService storageService = new MemoryStorageService();
+        storageService.setId("test");
+        storageService.initialize();
+        store = new PushedAuthorizationRequestStore();
+        store.setStorage(storageService);
+        store.setRequestLifetime(90000);
+        store.initialize();
+        action = new StorePushedAuthorizationRequest();
+        action.setRequestStore(store);
+        action.initialize();
+    }
+
+    /**
+     * Test that the store is required.
+     */
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void testNoStore() throws ComponentInitializationException {
+        action = new StorePushedAuthorizationRequest();
+        action.initialize();
+    }
+
+    /**
+     * Test that the request and its request object are stored and the request_uri is returned.
+     */
+    @Test
+    public void testSuccess() {
+        respCtx.setRequestObject(new PlainJWT(new JWTClaimsSet.Builder().subject("alice").build()));
+        final Event event = action.execute(requestCtx);
+        ActionTestingSupport.assertProceedEvent(event);
+        final Object message = profileRequestCtx.getOutboundMessageContext().getMessage();
+        Assert.assertTrue(message instanceof OIDCPushedAuthorizationSuccessResponse);
+        final OIDCPushedAuthorizationSuccessResponse response = (OIDCPushedAuthorizationSuccessResponse) message;
+        Assert.assertEquals(response.getExpiresIn(), 90);
+        Assert.assertEquals(response.toHTTPResponse().getStatusCode(), 201);
+        final PushedRequest pushedRequest = store.remove(response.getRequestURI(), request.getClientID());
+        Assert.assertNotNull(pushedRequest);
+        Assert.assertEquals(pushedRequest.getParameters().get("nonce").get(0), request.getNonce().getValue());
+        Assert.assertEquals(pushedRequest.getRequestObject().serialize(), respCtx.getRequestObject().serialize());
+    }
+}
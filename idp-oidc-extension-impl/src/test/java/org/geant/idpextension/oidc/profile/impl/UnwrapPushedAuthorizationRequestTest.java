@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.geant.idpextension.oidc.profile.impl;
+
+import java.net.URI;
+
+import org.geant.idpextension.oidc.messaging.impl.OIDCPushedAuthorizationRequest;
+import org.geant.idpextension.oidc.profile.OidcEventIds;
+import org.opensaml.profile.context.ProfileRequestContext;
+import org.springframework.webflow.execution.Event;
+import org.springframework.webflow.execution.RequestContext;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.oauth2.sdk.ResponseType;
+import com.nimbusds.oauth2.sdk.Scope;
+import com.nimbusds.oauth2.sdk.auth.ClientSecretBasic;
+import com.nimbusds.oauth2.sdk.auth.Secret;
+import com.nimbusds.oauth2.sdk.id.ClientID;
+import com.nimbusds.openid.connect.sdk.AuthenticationRequest;
+
+import net.shibboleth.idp.profile.ActionTestingSupport;
+import net.shibboleth.idp.profile.RequestContextBuilder;
+import net.shibboleth.idp.profile.context.navigate.WebflowRequestContextProfileRequestContextLookup;
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+/** {@link UnwrapPushedAuthorizationRequest} unit test. */
+public class UnwrapPushedAuthorizationRequestTest {
+
+    private UnwrapPushedAuthorizationRequest action;
+
+    private ClientID clientId;
+
+    @BeforeMethod
+    public void setup() throws ComponentInitializationException {
+        action = new UnwrapPushedAuthorizationRequest();
+        action.initialize();
+        clientId = new ClientID("000123");
+    }
+
+    /**
+     * Test that the inbound message is replaced with the pushed authentication request.
+     */
+    @SuppressWarnings("rawtypes")
+    @Test
+    public void testSuccess() {
+        final AuthenticationRequest authnRequest = new AuthenticationRequest.Builder(new ResponseType("code"),
+                new Scope("openid"), clientId, URI.create("https://example.com/callback")).build();
+        final RequestContext requestCtx = buildRequestContext(authnRequest);
+        final Event event = action.execute(requestCtx);
+        ActionTestingSupport.assertProceedEvent(event);
+        final ProfileRequestContext prc = new WebflowRequestContextProfileRequestContextLookup().apply(requestCtx);
+        Assert.assertSame(prc.getInboundMessageContext().getMessage(), authnRequest);
+    }
+
+    /**
+     * Test that a pushed request referring to a request object with request_uri is rejected.
+     */
+    @Test
+    public void testRequestUri() {
+        final AuthenticationRequest authnRequest = new AuthenticationRequest.Builder(new ResponseType("code"),
+                new Scope("openid"), clientId, URI.create("https://example.com/callback"))
+                        .requestURI(URI.create("https://example.com/request")).build();
+        final Event event = action.execute(buildRequestContext(authnRequest));
+        ActionTestingSupport.assertEvent(event, OidcEventIds.INVALID_REQUEST_URI);
+    }
+
+    /**
+     * Build a request context with the pushed authorization request as the inbound message.
+     * 
+     * @param authnRequest the pushed authentication request
+     * @return the request context
+     */
+    private RequestContext buildRequestContext(final AuthenticationRequest authnRequest) {
+        return new RequestContextBuilder().setInboundMessage(new OIDCPushedAuthorizationRequest(
+                URI.create("https://op.example.com/par"), new ClientSecretBasic(clientId, new Secret("secret")),
+                authnRequest)).buildRequestContext();
+    }
+}
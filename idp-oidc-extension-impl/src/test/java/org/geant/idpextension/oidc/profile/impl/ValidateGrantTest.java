@@ -28,6 +28,7 @@ import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 
 import org.geant.idpextension.oidc.profile.OidcEventIds;
+import org.geant.idpextension.oidc.storage.NodeLocalReplayCache;
 import org.geant.idpextension.oidc.token.support.AuthorizeCodeClaimsSet;
 import org.geant.idpextension.oidc.token.support.RefreshTokenClaimsSet;
 import org.geant.idpextension.oidc.token.support.TokenClaimsSet;
@@ -180,6 +181,52 @@ public class ValidateGrantTest extends BaseOIDCResponseActionTest {
         ActionTestingSupport.assertEvent(action.execute(requestCtx), OidcEventIds.INVALID_GRANT);
     }
 
+    @SuppressWarnings("unchecked")
+    private void initNodeLocal(String codeNodeId, long issuedBeforeInitialization)
+            throws ComponentInitializationException, NoSuchAlgorithmException, URISyntaxException, DataSealerException {
+        NodeLocalReplayCache nodeLocalReplayCache = new NodeLocalReplayCache();
+        nodeLocalReplayCache.setId("id");
+        nodeLocalReplayCache.setNodeId("node1");
+        nodeLocalReplayCache.initialize();
+        Date now = new Date();
+        Date issued = new Date(nodeLocalReplayCache.getInitializationTime() - issuedBeforeInitialization);
+        acClaims = new AuthorizeCodeClaimsSet.Builder(idGenerator, new ClientID(clientId), "issuer", "userPrin",
+                "subject", issuedBeforeInitialization > 0 ? issued : now, new Date(now.getTime() + 100000), now,
+                new URI("http://example.com"), new Scope()).setNodeId(codeNodeId).build();
+        callback = new URI("https://client.com/callback");
+        codeGrant = new AuthorizationCodeGrant(new AuthorizationCode(acClaims.serialize(getDataSealer())), callback);
+        profileRequestCtx.getInboundMessageContext()
+                .setMessage(new TokenRequest(callback, new ClientID(clientId), codeGrant));
+        action = new ValidateGrant(getDataSealer());
+        action.setRevocationCache(new MockRevocationCache(false, true));
+        // The shared replay cache has no storage, it must not be used for the codes bound to a node.
+        action.setReplayCache(new ReplayCache());
+        action.setNodeLocalReplayCache(nodeLocalReplayCache);
+        action.initialize();
+    }
+
+    @Test
+    public void testAuthorizeCodeNodeLocal()
+            throws NoSuchAlgorithmException, ComponentInitializationException, URISyntaxException, DataSealerException {
+        initNodeLocal("node1", 0);
+        ActionTestingSupport.assertProceedEvent(action.execute(requestCtx));
+        ActionTestingSupport.assertEvent(action.execute(requestCtx), OidcEventIds.INVALID_GRANT);
+    }
+
+    @Test
+    public void testAuthorizeCodeNodeLocalBeforeRestart()
+            throws NoSuchAlgorithmException, ComponentInitializationException, URISyntaxException, DataSealerException {
+        initNodeLocal("node1", 5000);
+        ActionTestingSupport.assertEvent(action.execute(requestCtx), OidcEventIds.INVALID_GRANT);
+    }
+
+    @Test
+    public void testAuthorizeCodeOtherNode()
+            throws NoSuchAlgorithmException, ComponentInitializationException, URISyntaxException, DataSealerException {
+        initNodeLocal("node2", 0);
+        ActionTestingSupport.assertEvent(action.execute(requestCtx), OidcEventIds.INVALID_GRANT);
+    }
+
     @Test(expectedExceptions = ConstraintViolationException.class)
     public void testNoRevocationCache() throws NoSuchAlgorithmException, ComponentInitializationException {
         action = new ValidateGrant(getDataSealer());
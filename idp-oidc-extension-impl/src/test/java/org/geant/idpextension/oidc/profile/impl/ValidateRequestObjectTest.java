@@ -31,6 +31,7 @@ import org.geant.idpextension.oidc.messaging.context.OIDCAuthenticationResponseC
 import org.geant.idpextension.oidc.messaging.context.OIDCMetadataContext;
 import org.geant.idpextension.oidc.profile.OidcEventIds;
 import org.geant.idpextension.oidc.security.impl.OIDCSignatureValidationParameters;
+import org.geant.idpextension.oidc.storage.PushedAuthorizationRequestStore;
 import org.geant.security.jwk.BasicJWKCredential;
 import org.opensaml.profile.action.EventIds;
 import org.opensaml.profile.context.ProfileRequestContext;
@@ -273,6 +274,29 @@ public class ValidateRequestObjectTest {
         ActionTestingSupport.assertEvent(event, OidcEventIds.INVALID_REQUEST_OBJECT);
     }
 
+    /**
+     * Test that the request object of a pushed request is not validated again.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testPushedRequestObjectNotValidated() throws NoSuchAlgorithmException,
+            ComponentInitializationException, URISyntaxException, JOSEException {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        JWSSigner signer = new RSASSASigner(kpg.generateKeyPair().getPrivate());
+        SignedJWT signed = new SignedJWT(new JWSHeader(JWSAlgorithm.RS256),
+                new JWTClaimsSet.Builder().subject("alice").build());
+        signed.sign(signer);
+        AuthenticationRequest req = new AuthenticationRequest.Builder(new ResponseType("code"), new Scope("openid"),
+                new ClientID("000123"), URI.create("https://example.com/callback"))
+                        .requestURI(URI.create(PushedAuthorizationRequestStore.REQUEST_URI_PREFIX + "abc"))
+                        .state(new State()).build();
+        prc.getInboundMessageContext().setMessage(req);
+        oidcRespCtx.setRequestObject(signed);
+        final Event event = action.execute(requestCtx);
+        ActionTestingSupport.assertProceedEvent(event);
+    }
+
     /**
      * Test case of request object signed with wrong type of algorithm.
      */
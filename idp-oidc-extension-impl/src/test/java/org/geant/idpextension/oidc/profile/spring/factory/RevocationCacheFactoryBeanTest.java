@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.profile.spring.factory;
+
+import org.geant.idpextension.oidc.storage.RevocationCache;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Unit tests for {@link RevocationCacheFactoryBean}.
+ */
+public class RevocationCacheFactoryBeanTest {
+
+    private DefaultListableBeanFactory parent;
+
+    private DefaultListableBeanFactory flow;
+
+    private RevocationCache fallbackCache;
+
+    private RevocationCacheFactoryBean factoryBean;
+
+    @BeforeMethod
+    public void setUp() {
+        parent = new DefaultListableBeanFactory();
+        flow = new DefaultListableBeanFactory(parent);
+        fallbackCache = new RevocationCache();
+        flow.registerSingleton("shibboleth.oidc.DefaultRevocationCache", fallbackCache);
+        factoryBean = new RevocationCacheFactoryBean();
+        factoryBean.setBeanFactory(flow);
+    }
+
+    @Test
+    public void testSharedCache() throws Exception {
+        RevocationCache sharedCache = new RevocationCache();
+        parent.registerSingleton("shibboleth.oidc.RevocationCache", sharedCache);
+        factoryBean.afterPropertiesSet();
+        Assert.assertSame(factoryBean.getObject(), sharedCache);
+    }
+
+    @Test
+    public void testFallbackCache() throws Exception {
+        factoryBean.afterPropertiesSet();
+        Assert.assertSame(factoryBean.getObject(), fallbackCache);
+    }
+
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.security.impl;
+
+import javax.crypto.spec.SecretKeySpec;
+
+import org.geant.idpextension.oidc.profile.spring.factory.BasicJWKCredentialFactoryBean;
+import org.geant.security.jwk.BasicJWKCredential;
+import org.opensaml.security.credential.Credential;
+import org.springframework.core.io.ClassPathResource;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWEAlgorithm;
+import com.nimbusds.jose.JWEDecrypter;
+import com.nimbusds.jose.JWEEncrypter;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.RSADecrypter;
+import com.nimbusds.jose.crypto.RSAEncrypter;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.crypto.RSASSAVerifier;
+
+/**
+ * Tests for {@link CredentialCryptoRegistry}.
+ */
+public class CredentialCryptoRegistryTest {
+
+    private Credential rsaCredential;
+
+    private BasicJWKCredential secretCredential;
+
+    @BeforeMethod
+    protected void setUp() throws Exception {
+        BasicJWKCredentialFactoryBean factory = new BasicJWKCredentialFactoryBean();
+        factory.setJWKResource(new ClassPathResource("credentials/idp-signing-rs.jwk"));
+        factory.afterPropertiesSet();
+        rsaCredential = factory.getObject();
+        secretCredential = new BasicJWKCredential();
+        secretCredential.setSecretKey(new SecretKeySpec("abcdefghabcdefghabcdefghabcdefgh".getBytes(), "NONE"));
+        secretCredential.setAlgorithm(JWSAlgorithm.HS256);
+    }
+
+    @Test
+    public void testSigner() throws JOSEException {
+        JWSSigner signer = CredentialCryptoRegistry.getSigner(rsaCredential, JWSAlgorithm.RS256);
+        Assert.assertTrue(signer instanceof RSASSASigner);
+        Assert.assertSame(CredentialCryptoRegistry.getSigner(rsaCredential, JWSAlgorithm.RS512), signer);
+        Assert.assertTrue(
+                CredentialCryptoRegistry.getSigner(secretCredential, JWSAlgorithm.HS256) instanceof MACSigner);
+        Assert.assertNull(CredentialCryptoRegistry.getSigner(rsaCredential, JWEAlgorithm.RSA_OAEP_256));
+    }
+
+    @Test
+    public void testVerifier() throws JOSEException {
+        Assert.assertTrue(
+                CredentialCryptoRegistry.getVerifier(rsaCredential, JWSAlgorithm.RS256) instanceof RSASSAVerifier);
+        Assert.assertSame(CredentialCryptoRegistry.getVerifier(rsaCredential, JWSAlgorithm.PS256),
+                CredentialCryptoRegistry.getVerifier(rsaCredential, JWSAlgorithm.RS256));
+    }
+
+    @Test
+    public void testEncrypterAndDecrypter() throws JOSEException {
+        JWEEncrypter encrypter = CredentialCryptoRegistry.getEncrypter(rsaCredential, JWEAlgorithm.RSA_OAEP_256);
+        Assert.assertTrue(encrypter instanceof RSAEncrypter);
+        Assert.assertSame(CredentialCryptoRegistry.getEncrypter(rsaCredential, JWEAlgorithm.RSA_OAEP), encrypter);
+        JWEDecrypter decrypter = CredentialCryptoRegistry.getDecrypter(rsaCredential, JWEAlgorithm.RSA_OAEP_256);
+        Assert.assertTrue(decrypter instanceof RSADecrypter);
+        Assert.assertSame(CredentialCryptoRegistry.getDecrypter(rsaCredential, JWEAlgorithm.RSA_OAEP), decrypter);
+        Assert.assertNull(CredentialCryptoRegistry.getDecrypter(rsaCredential, JWSAlgorithm.RS256));
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.security.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.geant.security.jwk.BasicJWKCredential;
+import org.geant.security.jwk.JWKCredential;
+import org.opensaml.security.credential.Credential;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.nimbusds.jose.JWSAlgorithm;
+
+/**
+ * Tests for {@link KidIndexedCredentials}.
+ */
+public class KidIndexedCredentialsTest {
+
+    private BasicJWKCredential key1RS256;
+
+    private BasicJWKCredential key1RS512;
+
+    private BasicJWKCredential key2RS256;
+
+    private BasicJWKCredential noKid;
+
+    private KidIndexedCredentials<JWKCredential> index;
+
+    private BasicJWKCredential buildCredential(String kid, JWSAlgorithm algorithm) {
+        BasicJWKCredential credential = new BasicJWKCredential();
+        credential.setKid(kid);
+        credential.setAlgorithm(algorithm);
+        return credential;
+    }
+
+    @BeforeMethod
+    protected void setUp() {
+        key1RS256 = buildCredential("key1", JWSAlgorithm.RS256);
+        key1RS512 = buildCredential("key1", JWSAlgorithm.RS512);
+        key2RS256 = buildCredential("key2", JWSAlgorithm.RS256);
+        noKid = buildCredential(null, JWSAlgorithm.RS256);
+        index = new KidIndexedCredentials<JWKCredential>(
+                Arrays.<JWKCredential> asList(key1RS256, key1RS512, key2RS256, noKid));
+    }
+
+    @Test
+    public void testKidAndAlgorithm() {
+        List<JWKCredential> selected = index.select("key1", JWSAlgorithm.RS512);
+        Assert.assertEquals(selected.size(), 1);
+        Assert.assertSame(selected.get(0), key1RS512);
+        Assert.assertEquals(index.getIndexedSelections(), 1);
+        Assert.assertEquals(index.getFallbackSelections(), 0);
+    }
+
+    @Test
+    public void testKidOnly() {
+        Assert.assertEquals(index.select("key1", null), Arrays.asList(key1RS256, key1RS512));
+        Assert.assertEquals(index.select("key1", JWSAlgorithm.ES256), Arrays.asList(key1RS256, key1RS512));
+        Assert.assertEquals(index.select("key2", JWSAlgorithm.RS256), Arrays.asList(key2RS256));
+    }
+
+    @Test
+    public void testFallback() {
+        Assert.assertEquals(index.select(null, JWSAlgorithm.RS256).size(), 4);
+        Assert.assertEquals(index.select("unknown", JWSAlgorithm.RS256).size(), 4);
+        Assert.assertEquals(index.getFallbackSelections(), 2);
+        Assert.assertEquals(index.getIndexedSelections(), 0);
+    }
+
+    @Test
+    public void testIsIndexOf() {
+        Assert.assertTrue(index.isIndexOf(Arrays.<JWKCredential> asList(key1RS256, key1RS512, key2RS256, noKid)));
+        Assert.assertFalse(index.isIndexOf(Arrays.<JWKCredential> asList(key1RS256, key1RS512, key2RS256)));
+        Assert.assertFalse(index.isIndexOf(Arrays.<JWKCredential> asList(key1RS256, key1RS512, noKid, key2RS256)));
+        Assert.assertFalse(index.isIndexOf(Arrays.<JWKCredential> asList(key1RS256, key1RS512, key2RS256,
+                buildCredential(null, JWSAlgorithm.RS256))));
+    }
+
+    @Test
+    public void testValidationParameters() {
+        OIDCSignatureValidationParameters params = new OIDCSignatureValidationParameters();
+        params.getValidationCredentials().add(key1RS256);
+        Assert.assertEquals(params.selectValidationCredentials("key2", null), Arrays.asList(key1RS256));
+        params.getValidationCredentials().add(key2RS256);
+        Assert.assertEquals(params.selectValidationCredentials("key2", null), Arrays.asList(key2RS256));
+    }
+
+    @Test
+    public void testValidationParametersSameSizeRotation() {
+        OIDCSignatureValidationParameters params = new OIDCSignatureValidationParameters();
+        params.getValidationCredentials().add(key1RS256);
+        Assert.assertEquals(params.selectValidationCredentials("key1", null), Arrays.asList(key1RS256));
+        params.getValidationCredentials().set(0, key2RS256);
+        Assert.assertEquals(params.selectValidationCredentials("key2", null), Arrays.asList(key2RS256));
+        Assert.assertEquals(params.selectValidationCredentials("key1", null), Arrays.asList(key2RS256));
+    }
+
+    @Test
+    public void testDecryptionParametersSameSizeRotation() {
+        OIDCDecryptionParameters params = new OIDCDecryptionParameters();
+        params.getKeyTransportDecryptionCredentials().add(key1RS256);
+        Assert.assertEquals(params.selectKeyTransportDecryptionCredentials("key1", null), Arrays.asList(key1RS256));
+        params.getKeyTransportDecryptionCredentials().set(0, key2RS256);
+        Assert.assertEquals(params.selectKeyTransportDecryptionCredentials("key2", null),
+                Arrays.<Credential> asList(key2RS256));
+    }
+}
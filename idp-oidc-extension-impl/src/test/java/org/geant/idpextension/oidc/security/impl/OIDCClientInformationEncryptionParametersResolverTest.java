@@ -18,6 +18,7 @@
 
 package org.geant.idpextension.oidc.security.impl;
 
+import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -31,6 +32,7 @@ import org.opensaml.security.credential.Credential;
 import org.opensaml.xmlsec.EncryptionConfiguration;
 import org.opensaml.xmlsec.EncryptionParameters;
 import org.opensaml.xmlsec.criterion.EncryptionConfigurationCriterion;
+import org.opensaml.xmlsec.criterion.EncryptionOptionalCriterion;
 import org.springframework.core.io.ClassPathResource;
 import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
@@ -132,4 +134,61 @@ public class OIDCClientInformationEncryptionParametersResolverTest {
         Assert.assertNotNull(
                 ((OIDCDecryptionParameters) params).getKeyTransportDecryptionCredentials().get(0).getPrivateKey());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCachedDecryptionParameters() throws ResolverException {
+        resolver.setParameterType(ParameterType.REQUEST_OBJECT_DECRYPTION);
+        OIDCDecryptionParameters params = (OIDCDecryptionParameters) resolver.resolveSingle(criteria);
+        int size = params.getKeyTransportDecryptionCredentials().size();
+        params.getKeyTransportDecryptionCredentials().clear();
+        OIDCDecryptionParameters cached = (OIDCDecryptionParameters) resolver.resolveSingle(criteria);
+        Assert.assertNotSame(cached, params);
+        Assert.assertEquals(cached.getKeyTransportDecryptionCredentials().size(), size);
+        Assert.assertEquals(cached.selectKeyTransportDecryptionCredentials(null, null).size(), size);
+    }
+
+    @Test
+    public void testCachedParameters() throws ResolverException, ParseException {
+        EncryptionParameters params = resolver.resolveSingle(criteria);
+        // The cached parameters are handed out as copies the caller may modify
+        params.setKeyTransportEncryptionAlgorithm("RSA1_5");
+        EncryptionParameters cached = resolver.resolveSingle(criteria);
+        Assert.assertNotSame(cached, params);
+        Assert.assertEquals(cached.getKeyTransportEncryptionAlgorithm(), "RSA-OAEP-256");
+        Assert.assertSame(cached.getKeyTransportEncryptionCredential(), params.getKeyTransportEncryptionCredential());
+        // Key rotation
+        metaData.setJWKSet(JWKSet.parse(metaData.getJWKSet().toJSONObject(false).toJSONString()));
+        EncryptionParameters params2 = resolver.resolveSingle(criteria);
+        Assert.assertNotSame(params2.getKeyTransportEncryptionCredential(),
+                params.getKeyTransportEncryptionCredential());
+        Assert.assertSame(resolver.resolveSingle(criteria).getKeyTransportEncryptionCredential(),
+                params2.getKeyTransportEncryptionCredential());
+        // Metadata refresh
+        OIDCClientInformation clientInformation = criteria.get(ClientInformationCriterion.class)
+                .getOidcClientInformation();
+        criteria.add(new ClientInformationCriterion(new OIDCClientInformation(clientInformation.getID(), new Date(),
+                metaData, clientInformation.getSecret())), true);
+        Assert.assertNotSame(resolver.resolveSingle(criteria).getKeyTransportEncryptionCredential(),
+                params2.getKeyTransportEncryptionCredential());
+    }
+
+    @Test
+    public void testCachedEncryptionOptional() throws ResolverException {
+        metaData.setIDTokenJWEAlg(null);
+        Assert.assertNull(resolver.resolveSingle(criteria));
+        Assert.assertTrue(criteria.get(EncryptionOptionalCriterion.class).isEncryptionOptional());
+        CriteriaSet criteria2 = new CriteriaSet(criteria.get(EncryptionConfigurationCriterion.class),
+                criteria.get(ClientInformationCriterion.class));
+        Assert.assertNull(resolver.resolveSingle(criteria2));
+        Assert.assertTrue(criteria2.get(EncryptionOptionalCriterion.class).isEncryptionOptional());
+    }
+
+    @Test
+    public void testParametersCacheDisabled() throws ResolverException {
+        resolver.setParametersCacheSize(0);
+        EncryptionParameters params = resolver.resolveSingle(criteria);
+        Assert.assertNotSame(resolver.resolveSingle(criteria).getKeyTransportEncryptionCredential(),
+                params.getKeyTransportEncryptionCredential());
+        Assert.assertEquals(resolver.resolveSingle(criteria).getKeyTransportEncryptionAlgorithm(), "RSA-OAEP-256");
+    }
+}
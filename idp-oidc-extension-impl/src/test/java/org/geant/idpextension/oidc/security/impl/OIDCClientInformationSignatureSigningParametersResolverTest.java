@@ -102,6 +102,21 @@ public class OIDCClientInformationSignatureSigningParametersResolverTest {
         Assert.assertTrue(params.getSigningCredential().getPrivateKey() instanceof RSAPrivateKey);
     }
 
+    @Test
+    public void testCachedParameters() throws ResolverException {
+        SignatureSigningParameters params = resolver.resolveSingle(criteria);
+        // The cached parameters are handed out as copies the caller may modify
+        params.setSignatureAlgorithm("ES256");
+        SignatureSigningParameters cached = resolver.resolveSingle(criteria);
+        Assert.assertNotSame(cached, params);
+        Assert.assertEquals(cached.getSignatureAlgorithm(), "RS256");
+        Assert.assertSame(cached.getSigningCredential(), params.getSigningCredential());
+        resolver.setParameterType(ParameterType.USERINFO_SIGNING);
+        Assert.assertEquals(resolver.resolveSingle(criteria).getSignatureAlgorithm(), "ES256");
+        resolver.setParametersCacheSize(0);
+        Assert.assertNotSame(resolver.resolveSingle(criteria), resolver.resolveSingle(criteria));
+    }
+
     @Test
     public void testDefaultIdTokenParameters() throws ResolverException {
         metaData.setIDTokenJWSAlg(null);
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2017 - 2020, GÉANT
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”); you may not
+ * use this file except in compliance with the License. You may obtain a copy
+ * of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.geant.idpextension.oidc.storage.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+
+import org.apache.commons.io.FileUtils;
+import org.geant.idpextension.oidc.storage.RevocationCache;
+import org.geant.idpextension.oidc.storage.RevocationEvent;
+import org.geant.idpextension.oidc.storage.RevocationEventListener;
+import org.opensaml.storage.impl.MemoryStorageService;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import net.shibboleth.utilities.java.support.component.ComponentInitializationException;
+
+/**
+ * Unit tests for {@link FileRevocationEventChannel}.
+ */
+public class FileRevocationEventChannelTest {
+
+    private File directory;
+
+    private List<FileRevocationEventChannel> channels;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("revocations").toFile();
+        channels = new ArrayList<>();
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        for (FileRevocationEventChannel channel : channels) {
+            channel.destroy();
+        }
+        FileUtils.deleteDirectory(directory);
+    }
+
+    private FileRevocationEventChannel initChannel(String nodeId) throws ComponentInitializationException {
+        FileRevocationEventChannel channel = new FileRevocationEventChannel();
+        channel.setId(nodeId);
+        channel.setDirectory(directory);
+        channel.setNodeId(nodeId);
+        channel.setPollInterval(50);
+        channel.initialize();
+        channels.add(channel);
+        return channel;
+    }
+
+    @Test(expectedExceptions = ComponentInitializationException.class)
+    public void testNoNodeId() throws ComponentInitializationException {
+        FileRevocationEventChannel channel = new FileRevocationEventChannel();
+        channel.setId("test");
+        channel.setDirectory(directory);
+        channel.initialize();
+    }
+
+    @Test
+    public void testPropagation() throws Exception {
+        FileRevocationEventChannel node1 = initChannel("node1");
+        FileRevocationEventChannel node2 = initChannel("node2");
+        CollectingListener listener1 = new CollectingListener();
+        CollectingListener listener2 = new CollectingListener();
+        node1.subscribe(listener1);
+        node2.subscribe(listener2);
+        node1.publish(new RevocationEvent("context", "value 1", System.currentTimeMillis() + 60000));
+        // Expired events are not delivered
+        node1.publish(new RevocationEvent("context", "value2", System.currentTimeMillis() - 1));
+        Thread.sleep(300L);
+        Assert.assertEquals(listener2.events.size(), 1);
+        Assert.assertEquals(listener2.events.get(0).getContext(), "context");
+        Assert.assertEquals(listener2.events.get(0).getValue(), "value 1");
+        // Own events are delivered to the local listeners once
+        Assert.assertEquals(listener1.events.size(), 1);
+        Assert.assertEquals(listener1.events.get(0).getValue(), "value 1");
+    }
+
+    @Test
+    public void testLocalDelivery() throws Exception {
+        FileRevocationEventChannel node1 = initChannel("node1");
+        RevocationCache cache1 = initCache(node1);
+        RevocationCache cache2 = initCache(node1);
+        Assert.assertTrue(cache1.revoke("context", "item"));
+        Assert.assertTrue(cache2.isRevoked("context", "item"));
+    }
+
+    @Test
+    public void testIssuedBeforePropagation() throws Exception {
+        FileRevocationEventChannel node1 = initChannel("node1");
+        FileRevocationEventChannel node2 = initChannel("node2");
+        CollectingListener listener2 = new CollectingListener();
+        node2.subscribe(listener2);
+        node1.publish(new RevocationEvent("context", "value1", System.currentTimeMillis() + 60000, 10000L));
+        Thread.sleep(300L);
+        Assert.assertEquals(listener2.events.size(), 1);
+        Assert.assertEquals(listener2.events.get(0).getIssuedBefore(), Long.valueOf(10000));
+    }
+
+    @Test
+    public void testReplayOnSubscribe() throws Exception {
+        FileRevocationEventChannel node1 = initChannel("node1");
+        node1.publish(new RevocationEvent("context", "value1", System.currentTimeMillis() + 60000));
+        FileRevocationEventChannel node2 = initChannel("node2");
+        CollectingListener listener2 = new CollectingListener();
+        node2.subscribe(listener2);
+        Assert.assertEquals(listener2.events.size(), 1);
+        Assert.assertEquals(listener2.events.get(0).getValue(), "value1");
+    }
+
+    @Test
+    public void testRevocationCachePropagation() throws Exception {
+        RevocationCache cache1 = initCache(initChannel("node1"));
+        RevocationCache cache2 = initCache(initChannel("node2"));
+        Assert.assertFalse(cache2.isRevoked("context", "item"));
+        Assert.assertTrue(cache1.revoke("context", "item"));
+        Assert.assertTrue(cache1.isRevoked("context", "item"));
+        Thread.sleep(300L);
+        Assert.assertTrue(cache2.isRevoked("context", "item"));
+    }
+
+    private RevocationCache initCache(FileRevocationEventChannel channel) throws ComponentInitializationException {
+        MemoryStorageService storageService = new MemoryStorageService();
+        storageService.setId("test");
+        storageService.initialize();
+        RevocationCache cache = new RevocationCache();
+        cache.setStorage(storageService);
+        cache.setEventChannel(channel);
+        cache.setLocalLookupOnly(true);
+        cache.initialize();
+        return cache;
+    }
+
+    @Test
+    public void testLargeBacklog() throws Exception {
+        long expiration = System.currentTimeMillis() + 60000;
+        StringBuilder log = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            log.append(expiration).append(" context value").append(i).append('\n');
+        }
+        // Oversized lines are skipped, the following ones are still delivered
+        log.append(expiration).append(" context ");
+        for (int i = 0; i < 70000; i++) {
+            log.append('x');
+        }
+        log.append('\n').append(expiration).append(" context last\n");
+        // An incomplete line is left for the next poll
+        log.append(expiration).append(" context partial");
+        FileUtils.writeStringToFile(new File(directory, "node3.0.log"), log.toString(), "UTF-8");
+        FileRevocationEventChannel node2 = initChannel("node2");
+        CollectingListener listener2 = new CollectingListener();
+        node2.subscribe(listener2);
+        Assert.assertEquals(listener2.events.size(), 10001);
+        Assert.assertEquals(listener2.events.get(9999).getValue(), "value9999");
+        Assert.assertEquals(listener2.events.get(10000).getValue(), "last");
+        FileUtils.writeStringToFile(new File(directory, "node3.0.log"), "\n", "UTF-8", true);
+        Thread.sleep(300L);
+        Assert.assertEquals(listener2.events.size(), 10002);
+        Assert.assertEquals(listener2.events.get(10001).getValue(), "partial");
+    }
+
+    private static class CollectingListener implements RevocationEventListener {
+
+        private final List<RevocationEvent> events = new ArrayList<>();
+
+        @Override
+        public synchronized void onRevocation(@Nonnull RevocationEvent event) {
+            events.add(event);
+        }
+    }
+}